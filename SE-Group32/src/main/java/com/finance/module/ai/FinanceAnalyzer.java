@@ -13,12 +13,17 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import com.finance.tracker.classification.model.CategoryType;
 import com.finance.tracker.classification.model.Transaction;
 import com.finance.tracker.classification.util.TransactionDataCenter;
+import com.finance.tracker.classification.util.TransactionQuery;
 import com.finance.tracker.localization.CurrencyManager;
+import com.finance.tracker.ui.BackgroundTask;
+import com.finance.tracker.ui.BackgroundTaskExecutor;
 
 public class FinanceAnalyzer extends JFrame {
     private JTable dataTable;
@@ -83,64 +88,75 @@ public class FinanceAnalyzer extends JFrame {
     }
 
     private void loadTransactionData() {
-        try {
-            // Get transaction data from TransactionDataCenter
-            List<Transaction> transactions = TransactionDataCenter.getInstance().getAllTransactions();
+        // Read and format expenses on the shared background executor; rows are added on the EDT
+        BackgroundTaskExecutor.getInstance().submit(this, "FinanceAnalyzer.loadTransactions",
+                this::readTransactionRows, rows -> {
+                    for (Object[] row : rows) {
+                        tableModel.addRow(row);
+                    }
+                }, e -> {
+                    String errorMsg = "Failed to read transaction data: " + e.getMessage() + "\n";
+                    JOptionPane.showMessageDialog(this, errorMsg, "Error", JOptionPane.ERROR_MESSAGE);
+                });
+    }
+
+    /**
+     * Build the expense table rows (runs off the EDT)
+     */
+    private List<Object[]> readTransactionRows() {
+        // Get expense transactions from TransactionDataCenter (served by the type index)
+        List<Transaction> transactions = TransactionDataCenter.getInstance()
+                .query(new TransactionQuery().ofType(CategoryType.EXPENSE))
+                .collect(Collectors.toList());
+        
+        // Get current currency information
+        CurrencyManager currencyManager = CurrencyManager.getInstance();
+        String currentCurrency = currencyManager.getDefaultCurrency().getCode();
+        
+        // Add transaction data to table
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        List<Object[]> rows = new ArrayList<>(transactions.size());
+        
+        for (Transaction transaction : transactions) {
+            String description = transaction.getDescription();
+            if (description == null || description.trim().isEmpty()) {
+                description = transaction.getCategory().getName();
+            }
             
-            // Get current currency information
-            CurrencyManager currencyManager = CurrencyManager.getInstance();
-            String currentCurrency = currencyManager.getDefaultCurrency().getCode();
+            String formattedDate = transaction.getDateTime().format(formatter);
             
-            // Add transaction data to table
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+            // Convert transaction amount to current currency
+            BigDecimal amount = transaction.getAmount();
+            // Assuming transaction currency is stored or default is CNY
+            String transactionCurrency = "CNY"; // Default base currency
             
-            for (Transaction transaction : transactions) {
-                // Only process expense type transactions
-                if (transaction.getCategory().getType() == CategoryType.EXPENSE) {
-                    String description = transaction.getDescription();
-                    if (description == null || description.trim().isEmpty()) {
-                        description = transaction.getCategory().getName();
-                    }
-                    
-                    String formattedDate = transaction.getDateTime().format(formatter);
-                    
-                    // Convert transaction amount to current currency
-                    BigDecimal amount = transaction.getAmount();
-                    // Assuming transaction currency is stored or default is CNY
-                    String transactionCurrency = "CNY"; // Default base currency
-                    
-                    // Convert amount to current display currency if different
-                    if (!transactionCurrency.equals(currentCurrency)) {
-                        amount = currencyManager.convert(amount, transactionCurrency, currentCurrency);
-                    }
-                    
-                    // Format the amount with currency symbol
-                    String formattedAmount = currencyManager.format(amount, currentCurrency);
-                    
-                    tableModel.addRow(new Object[]{
-                        description, 
-                        formattedAmount, 
-                        formattedDate
-                    });
-                }
+            // Convert amount to current display currency if different
+            if (!transactionCurrency.equals(currentCurrency)) {
+                amount = currencyManager.convert(amount, transactionCurrency, currentCurrency);
             }
             
-            // If no expense transactions, add sample data
-            if (tableModel.getRowCount() == 0) {
-                // Format sample data with current currency
-                BigDecimal sample1 = new BigDecimal("100.00");
-                BigDecimal sample2 = new BigDecimal("150.00");
-                BigDecimal sample3 = new BigDecimal("200.00");
-                
-                tableModel.addRow(new Object[]{"Sample Data", currencyManager.format(sample1, currentCurrency), "2025-04-01"});
-                tableModel.addRow(new Object[]{"Sample Data", currencyManager.format(sample2, currentCurrency), "2025-04-05"});
-                tableModel.addRow(new Object[]{"Sample Data", currencyManager.format(sample3, currentCurrency), "2025-04-10"});
-            }
-        } catch (Exception e) {
-            String errorMsg = "Failed to read transaction data: " + e.getMessage() + "\n";
-            JOptionPane.showMessageDialog(this, errorMsg, "Error", JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
+            // Format the amount with currency symbol
+            String formattedAmount = currencyManager.format(amount, currentCurrency);
+            
+            rows.add(new Object[]{
+                description, 
+                formattedAmount, 
+                formattedDate
+            });
+        }
+        
+        // If no expense transactions, add sample data
+        if (rows.isEmpty()) {
+            // Format sample data with current currency
+            BigDecimal sample1 = new BigDecimal("100.00");
+            BigDecimal sample2 = new BigDecimal("150.00");
+            BigDecimal sample3 = new BigDecimal("200.00");
+            
+            rows.add(new Object[]{"Sample Data", currencyManager.format(sample1, currentCurrency), "2025-04-01"});
+            rows.add(new Object[]{"Sample Data", currencyManager.format(sample2, currentCurrency), "2025-04-05"});
+            rows.add(new Object[]{"Sample Data", currencyManager.format(sample3, currentCurrency), "2025-04-10"});
         }
+        return rows;
     }
 
     private void performAnalysis(ActionEvent e) {
@@ -149,21 +165,22 @@ public class FinanceAnalyzer extends JFrame {
             return;
         }
 
-        new SwingWorker<Void, String>() {
+        // Build expense data in natural language format (read the table on the EDT)
+        StringBuilder spendingData = new StringBuilder();
+        for (int i = 0; i < tableModel.getRowCount(); i++) {
+            spendingData.append(String.format(
+                    "[%s] spent %s on %s ",
+                    tableModel.getValueAt(i, 0),
+                    tableModel.getValueAt(i, 1).toString(),
+                    tableModel.getValueAt(i, 2)
+            ));
+        }
+
+        // Runs on the shared background executor and is cancelled when this window closes
+        BackgroundTaskExecutor.getInstance().submit(this, new BackgroundTask<Void>("FinanceAnalyzer.analyze") {
             @Override
             protected Void doInBackground()  {
                 try {
-                    // Build expense data in natural language format
-                    StringBuilder spendingData = new StringBuilder();
-                    for (int i = 0; i < tableModel.getRowCount(); i++) {
-                        spendingData.append(String.format(
-                                "[%s] spent %s on %s ",
-                                tableModel.getValueAt(i, 0),
-                                tableModel.getValueAt(i, 1).toString(),
-                                tableModel.getValueAt(i, 2)
-                        ));
-                    }
-
                     // Build the complete request content in English
                     String userQuestion = "Based on the following expense records, please provide: " +
                             "1. Recommended monthly budget " +
@@ -248,17 +265,15 @@ public class FinanceAnalyzer extends JFrame {
             }
 
             @Override
-            protected void process(List<String> chunks) {
-                for (String chunk : chunks) {
-                    resultArea.append(chunk + "\n");
-                }
+            protected void progressChanged(int percent, String message) {
+                resultArea.append(message + "\n");
             }
 
             @Override
-            protected void done() {
+            protected void finished() {
                 resultArea.append("\n\nAnalysis completed");
             }
-        }.execute();
+        });
     }
 
     /**
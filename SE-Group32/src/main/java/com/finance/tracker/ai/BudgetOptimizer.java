@@ -5,6 +5,7 @@
 package com.finance.tracker.ai;
 
 import com.finance.tracker.calendar.SeasonalityManager;
+import com.finance.tracker.localization.Money;
 import com.finance.tracker.profile.UserProfile;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -16,12 +17,18 @@ import java.util.Map;
  * Budget optimizer using AI techniques
  */
 public class BudgetOptimizer {
+    private static final BigDecimal OVERSPENT_RATE = new BigDecimal("1.05");
+    private static final BigDecimal UNDERSPENT_THRESHOLD = new BigDecimal("1.2");
+    private static final BigDecimal UNDERSPENT_RATE = new BigDecimal("1.15");
+    // Budgets and predictions are rounded to the nearest ten
+    private static final int SUGGESTION_SCALE = -1;
+    
     private UserProfile userProfile;
     
     // Singleton pattern
     private static BudgetOptimizer instance;
     
-    public static BudgetOptimizer getInstance() {
+    public static synchronized BudgetOptimizer getInstance() {
         if (instance == null) {
             instance = new BudgetOptimizer();
         }
@@ -45,34 +52,38 @@ public class BudgetOptimizer {
         
         // Get seasonality factor
         double seasonalFactor = SeasonalityManager.getInstance().getCurrentSeasonalityFactor();
+        BigDecimal seasonalRate = BigDecimal.valueOf(seasonalFactor);
         
         // For each category
         for (Map.Entry<String, BigDecimal> entry : currentBudgets.entrySet()) {
             String category = entry.getKey();
-            BigDecimal currentBudget = entry.getValue();
-            BigDecimal actualSpending = currentSpending.getOrDefault(category, BigDecimal.ZERO);
+            Money currentBudget = toMoney(entry.getValue());
+            Money actualSpending = toMoney(currentSpending.getOrDefault(category, BigDecimal.ZERO));
             
-            // Apply simple optimization algorithm
-            BigDecimal newBudget;
+            // Apply simple optimization algorithm; the growth and seasonal rates are
+            // combined so the suggestion is rounded only once
+            Money base;
+            BigDecimal rate;
             
             if (actualSpending.compareTo(currentBudget) > 0) {
                 // If overspent, suggest slightly higher budget
-                newBudget = actualSpending.multiply(BigDecimal.valueOf(1.05));
-            } else if (actualSpending.multiply(BigDecimal.valueOf(1.2)).compareTo(currentBudget) < 0) {
+                base = actualSpending;
+                rate = OVERSPENT_RATE.multiply(seasonalRate);
+            } else if (actualSpending.times(UNDERSPENT_THRESHOLD, RoundingMode.FLOOR).compareTo(currentBudget) < 0) {
                 // If significantly underspent, suggest lower budget
-                newBudget = actualSpending.multiply(BigDecimal.valueOf(1.15));
+                // (flooring keeps the comparison exact: the budget is a whole number of minor units)
+                base = actualSpending;
+                rate = UNDERSPENT_RATE.multiply(seasonalRate);
             } else {
                 // Otherwise keep same budget
-                newBudget = currentBudget;
+                base = currentBudget;
+                rate = seasonalRate;
             }
             
-            // Apply seasonality factor
-            newBudget = newBudget.multiply(BigDecimal.valueOf(seasonalFactor));
-            
-            // Round to nearest 10
-            newBudget = newBudget.divide(BigDecimal.TEN, 0, RoundingMode.HALF_UP).multiply(BigDecimal.TEN);
+            // Apply seasonality factor and round to nearest 10
+            Money newBudget = base.times(rate, SUGGESTION_SCALE, RoundingMode.HALF_UP);
             
-            optimizedBudget.put(category, newBudget);
+            optimizedBudget.put(category, toSuggestion(newBudget));
         }
         
         return optimizedBudget;
@@ -96,17 +107,25 @@ public class BudgetOptimizer {
         // For each category
         for (Map.Entry<String, BigDecimal> entry : currentCategorySpending.entrySet()) {
             String category = entry.getKey();
-            BigDecimal currentSpending = entry.getValue();
-            
-            // Apply simple prediction model (current spending * seasonal factor)
-            BigDecimal prediction = currentSpending.multiply(BigDecimal.valueOf(seasonalFactor));
+            Money currentSpending = toMoney(entry.getValue());
             
-            // Round to nearest 10
-            prediction = prediction.divide(BigDecimal.TEN, 0, RoundingMode.HALF_UP).multiply(BigDecimal.TEN);
+            // Apply simple prediction model (current spending * seasonal factor), rounded to nearest 10
+            Money prediction = currentSpending.times(BigDecimal.valueOf(seasonalFactor), SUGGESTION_SCALE, RoundingMode.HALF_UP);
             
-            predictions.put(category, prediction);
+            predictions.put(category, toSuggestion(prediction));
         }
         
         return predictions;
     }
-}
+    
+    private static Money toMoney(BigDecimal amount) {
+        return Money.of(amount, Money.BASE_CURRENCY, RoundingMode.HALF_EVEN);
+    }
+    
+    /**
+     * Suggestions are whole tens, returned without fraction digits as before
+     */
+    private static BigDecimal toSuggestion(Money amount) {
+        return amount.toBigDecimal().setScale(0, RoundingMode.UNNECESSARY);
+    }
+}
\ No newline at end of file
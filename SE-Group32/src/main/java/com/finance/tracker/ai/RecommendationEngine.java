@@ -1,7 +1,7 @@
 package com.finance.tracker.ai;
 
 import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -27,6 +27,7 @@ import com.finance.tracker.calendar.Holiday;
 import com.finance.tracker.calendar.SeasonalityManager;
 import com.finance.tracker.profile.CategorySpending;
 import com.finance.tracker.profile.UserProfile;
+import com.finance.tracker.persistence.AtomicFileWriter;
 
 public class RecommendationEngine {
     private static final String RECOMMENDATIONS_FILE = "data/recommendations.json";
@@ -41,7 +42,7 @@ public class RecommendationEngine {
 
     private static RecommendationEngine instance;
 
-    public static RecommendationEngine getInstance() {
+    public static synchronized RecommendationEngine getInstance() {
         if (instance == null) {
             instance = new RecommendationEngine();
         }
@@ -85,8 +86,8 @@ public class RecommendationEngine {
             recJson.put("dismissed", rec.isDismissed());
             recommendationsArray.add(recJson);
         }
-        try (FileWriter writer = new FileWriter(RECOMMENDATIONS_FILE)) {
-            writer.write(recommendationsArray.toJSONString());
+        try {
+            AtomicFileWriter.writeString(new File(RECOMMENDATIONS_FILE), recommendationsArray.toJSONString());
         } catch (IOException e) {
             System.err.println("Error saving recommendations: " + e.getMessage());
         }
@@ -32,7 +32,7 @@ public class ChineseHolidayCalendar {
     // Singleton pattern
     private static ChineseHolidayCalendar instance;
     
-    public static ChineseHolidayCalendar getInstance() {
+    public static synchronized ChineseHolidayCalendar getInstance() {
         if (instance == null) {
             instance = new ChineseHolidayCalendar();
         }
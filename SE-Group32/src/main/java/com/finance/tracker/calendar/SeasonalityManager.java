@@ -23,7 +23,7 @@ public class SeasonalityManager {
     // Singleton pattern
     private static SeasonalityManager instance;
     
-    public static SeasonalityManager getInstance() {
+    public static synchronized SeasonalityManager getInstance() {
         if (instance == null) {
             instance = new SeasonalityManager();
         }
@@ -5,7 +5,6 @@ import com.finance.tracker.classification.controller.CategorySelectionListener;
 import com.finance.tracker.classification.model.Category;
 import com.finance.tracker.classification.model.CategoryType;
 import com.finance.tracker.classification.model.Transaction;
-import com.finance.tracker.classification.util.CategoryManager;
 import com.finance.tracker.classification.util.TransactionManager;
 import com.finance.tracker.classification.view.CategoryPanel;
 import com.finance.tracker.classification.view.TransactionForm;
@@ -32,12 +31,10 @@ public class ClassificationModule {
      * @param csvFilePath CSV file path
      */
     public ClassificationModule(String csvFilePath) {
-    // Initialize manager
-    CategoryManager categoryManager = new CategoryManager();
-    transactionManager = new TransactionManager(categoryManager, csvFilePath);
+    // Initialize manager (shared with the other windows on the same ledger)
+    transactionManager = TransactionManager.getShared(csvFilePath);
 
     // Initialize views
-    transactionManager = new TransactionManager(categoryManager, csvFilePath);
     transactionList = new TransactionList(transactionManager);
     controller = new CategoryController(transactionManager, transactionList);                  
     panel = new CategoryPanel(controller);
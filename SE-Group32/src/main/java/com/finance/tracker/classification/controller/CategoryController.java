@@ -5,10 +5,13 @@ import com.finance.tracker.classification.model.CategoryType;
 import com.finance.tracker.classification.model.Transaction;
 import com.finance.tracker.classification.util.CategoryManager;
 import com.finance.tracker.classification.util.CSVImportManager;
+import com.finance.tracker.classification.util.CsvImportPipeline;
 import com.finance.tracker.classification.util.TransactionManager;
 import com.finance.tracker.classification.view.TransactionForm;
 import com.finance.tracker.classification.view.TransactionList;
 import com.finance.tracker.integration.AIModuleFacade;
+import com.finance.tracker.ui.BackgroundTask;
+import com.finance.tracker.ui.BackgroundTaskExecutor;
 
 import java.awt.*;
 import java.io.File;
@@ -76,26 +79,61 @@ public class CategoryController {
     /**
      * 从CSV文件导入交易记录
      * 
+     * 导入流水线在后台线程中流式读取、去重并分批保存，进度显示在表单上；
+     * 表单所在窗口关闭时任务被取消，已经保存的批次保留
+     * 
      * @param file CSV文件
-     * @param form 交易表单
-     * @return 导入的记录数量
+     * @param form 交易表单，显示进度和结果
+     * @return 提交的后台任务，file为null时返回null
      */
-    public int importCSV(File file, TransactionForm form) {
+    public BackgroundTask<CsvImportPipeline.Result> importCSV(File file, TransactionForm form) {
         if (file == null) {
-            return 0;
+            return null;
         }
         
-        try {
-            // 调用已有的CSV导入方法
-            return importTransactionsFromCSV(file.getAbsolutePath());
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(form, 
-                    "导入失败: " + e.getMessage(), 
-                    "导入错误", 
-                    JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
-            return 0;
-        }
+        return BackgroundTaskExecutor.getInstance().submit(form, new BackgroundTask<CsvImportPipeline.Result>("CategoryController.importCSV") {
+            @Override
+            protected CsvImportPipeline.Result doInBackground() throws Exception {
+                return importAndSync(file, progress -> reportProgress((int) (progress.getFraction() * 100),
+                        "Imported " + progress.getSaved() + " (" + progress.getDuplicates() + " duplicates)"));
+            }
+            
+            @Override
+            protected void progressChanged(int percent, String message) {
+                form.showImportProgress(percent, message);
+            }
+            
+            @Override
+            protected void succeeded(CsvImportPipeline.Result result) {
+                if (transactionList != null) {
+                    transactionList.refresh();
+                }
+                JOptionPane.showMessageDialog(form,
+                        "导入 " + result.getSaved() + " 条，跳过重复 " + result.getDuplicates()
+                                + " 条，无法解析 " + result.getRejected() + " 条",
+                        "导入完成",
+                        JOptionPane.INFORMATION_MESSAGE);
+            }
+            
+            @Override
+            protected void failed(Throwable cause) {
+                JOptionPane.showMessageDialog(form, 
+                        "导入失败: " + cause.getMessage(), 
+                        "导入错误", 
+                        JOptionPane.ERROR_MESSAGE);
+                cause.printStackTrace();
+            }
+            
+            @Override
+            protected void cancelled() {
+                System.out.println("CSV导入已取消: " + file.getName());
+            }
+            
+            @Override
+            protected void finished() {
+                form.importFinished();
+            }
+        });
     }
     
     /**
@@ -196,31 +234,45 @@ public class CategoryController {
      * @throws IOException if there is an error reading the CSV file
      */
     public int importTransactionsFromCSV(String csvFile) throws IOException {
-        java.util.List<Transaction> importedTransactions = csvImportManager.importTransactions(new File(csvFile));
-        int count = importedTransactions.size();
+        int count = (int) importAndSync(new File(csvFile), null).getSaved();
         
         // Update transaction list if available
         if (transactionList != null) {
             transactionList.refresh();
         }
         
+        return count;
+    }
+    
+    /**
+     * 通过导入流水线保存CSV中的交易，再把新交易同步到AI模型并更新推荐；不触碰界面
+     * 
+     * @param csvFile CSV文件
+     * @param listener 进度监听器，可以为null
+     * @return 导入结果
+     * @throws IOException 读取或保存失败
+     */
+    private CsvImportPipeline.Result importAndSync(File csvFile, CsvImportPipeline.ProgressListener listener)
+            throws IOException {
+        CsvImportPipeline.Result result = csvImportManager.importAndSaveTransactions(csvFile, listener);
+        
         // 显式触发AI推荐更新
-        if (count > 0) {
+        if (result.getSaved() > 0 && !result.isCancelled()) {
             try {
-                // 检查现有交易数据
-                java.util.List<Transaction> existing = transactionManager.getAllTransactions();
+                // 按变更序号增量同步，只重放这次导入的交易
+                transactionManager.syncChangesToAIModel();
                 
                 // 触发AI模块更新推荐
-                AIModuleFacade.getInstance().syncAllTransactions(existing);
+                AIModuleFacade.getInstance().generateRecommendations();
                 
-                System.out.println("已同步 " + count + " 条交易记录到AI模型并更新推荐");
+                System.out.println("已同步 " + result.getSaved() + " 条交易记录到AI模型并更新推荐");
             } catch (Exception e) {
                 System.err.println("触发AI推荐更新失败: " + e.getMessage());
                 e.printStackTrace();
             }
         }
         
-        return count;
+        return result;
     }
     
     /**
@@ -236,6 +288,7 @@ public class CategoryController {
         }
         
         Random random = new Random();
+        java.util.List<Transaction> batch = new java.util.ArrayList<>();
         
         for (int i = 0; i < number; i++) {
             BigDecimal amount = BigDecimal.valueOf(10 + random.nextInt(990));
@@ -247,10 +300,12 @@ public class CategoryController {
                 "Test transaction #" + (i+1)
             );
             
-            // 写入 TransactionManager
-            transactionManager.addTransaction(t);
+            batch.add(t);
         }
         
+        // 批量写入 TransactionManager
+        transactionManager.addTransactions(batch);
+        
         // 更新列表
         if (transactionList != null) {
             transactionList.refresh();
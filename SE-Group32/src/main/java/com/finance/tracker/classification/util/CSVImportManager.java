@@ -12,9 +12,11 @@ import java.util.*;
 public class CSVImportManager {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MAX_REPORTED_REJECTIONS = 20;
     
     private CategoryManager categoryManager;
     private TransactionManager transactionManager;
+    private List<ParallelCsvParser.Rejection> lastRejections = Collections.emptyList();
 
     // 构造器中引入两个管理类实例
     public CSVImportManager(CategoryManager categoryManager, TransactionManager transactionManager) {
@@ -22,76 +24,135 @@ public class CSVImportManager {
         this.transactionManager = transactionManager;
     }
 
-    // 导入CSV并保存交易记录
-    public List<Transaction> importAndSaveTransactions(File csvFile) throws IOException {
-        List<Transaction> importedTransactions = importTransactions(csvFile);
-        List<Transaction> existingTransactions = transactionManager.getAllTransactions();
-        
-        List<Transaction> processedTransactions = preprocessTransactions(importedTransactions, existingTransactions);
-        
-        for (Transaction transaction : processedTransactions) {
-            transactionManager.addTransaction(transaction);
-        }
-        
-        return processedTransactions;
+    // 导入CSV并保存交易记录：流式处理，内存占用与文件大小无关
+    public CsvImportPipeline.Result importAndSaveTransactions(File csvFile) throws IOException {
+        return importAndSaveTransactions(csvFile, null);
+    }
+
+    // 导入CSV并保存交易记录，每保存一批回调一次进度
+    public CsvImportPipeline.Result importAndSaveTransactions(File csvFile, CsvImportPipeline.ProgressListener listener)
+            throws IOException {
+        CsvImportPipeline pipeline = newImportPipeline();
+        pipeline.setProgressListener(listener);
+        CsvImportPipeline.Result result = pipeline.run(csvFile);
+        lastRejections = result.getRejections();
+        reportRejections(lastRejections, result.getRejected());
+        return result;
     }
 
-    // 从CSV导入交易记录
+    // 创建导入流水线，调用方可以设置批大小、进度监听，并在其他线程中取消
+    public CsvImportPipeline newImportPipeline() {
+        return new CsvImportPipeline(this, transactionManager);
+    }
+
+    // 从CSV导入交易记录：按块并行解析，结果保持文件顺序
     public List<Transaction> importTransactions(File csvFile) throws IOException {
-        List<Transaction> transactions = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(csvFile))) {
-            String line;
-            br.readLine(); // 跳过CSV标题行
-            while ((line = br.readLine()) != null) {
-                String[] values = line.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
-                Transaction transaction = parseTransaction(values);
-                if (transaction != null) {
-                    transactions.add(transaction);
-                }
+        ParallelCsvParser<ParsedRow> parser = new ParallelCsvParser<>(CSVImportManager::parseRow);
+        ParallelCsvParser.Result<ParsedRow> result = parser.parse(csvFile);
+
+        lastRejections = result.getRejections();
+        reportRejections(lastRejections, lastRejections.size());
+
+        // 类别在合并后统一解析（CategoryManager 不是线程安全的），每个类别ID只查找一次
+        Map<Integer, Category> categories = new HashMap<>();
+        List<Transaction> transactions = new ArrayList<>(result.getRecords().size());
+        for (ParsedRow row : result.getRecords()) {
+            Category category = categories.get(row.categoryId);
+            if (category == null) {
+                category = resolveCategory(row.categoryId, row.categoryType);
+                categories.put(row.categoryId, category);
             }
+            transactions.add(row.toTransaction(category));
         }
         return transactions;
     }
 
-    // 解析每一条CSV交易记录
-    private Transaction parseTransaction(String[] values) {
-        try {
-            if (values.length < 6) {
-                System.err.println("CSV数据不完整：" + Arrays.toString(values));
-                return null;
-            }
+    // 获取最近一次导入中被拒绝的行（流水线导入时只有最先出现的若干条）
+    public List<ParallelCsvParser.Rejection> getLastRejections() {
+        return lastRejections;
+    }
 
-            String id = values[0];
-            LocalDateTime dateTime = LocalDateTime.parse(values[1], DATE_FORMATTER);
-            int categoryId = Integer.parseInt(values[2]);
-            CategoryType categoryType = CategoryType.valueOf(values[3]);
-            BigDecimal amount = new BigDecimal(values[4]);
-            String description = values[5].replaceAll("^\"|\"$", "").replace("\"\"", "\"");
+    private void reportRejections(List<ParallelCsvParser.Rejection> rejections, long total) {
+        int shown = Math.min(rejections.size(), MAX_REPORTED_REJECTIONS);
+        for (int i = 0; i < shown; i++) {
+            ParallelCsvParser.Rejection rejection = rejections.get(i);
+            System.err.println("CSV第" + rejection.getLineNumber() + "行无法导入：" + rejection.getReason()
+                    + "：" + rejection.getText());
+        }
+        if (total > shown) {
+            System.err.println("另有" + (total - shown) + "行无法导入，详见 getLastRejections()");
+        }
+    }
 
-            Category category = categoryManager.getCategoryById(categoryId);
-            if (category == null) {
-                category = new Category(categoryId, "未知类别", categoryType, null);
-                categoryManager.addCategory(category);
+    // 解析每一条CSV交易记录（在解析线程中调用，不访问共享状态）
+    static ParsedRow parseRow(List<String> values) {
+        if (values.size() < 6) {
+            return null;
+        }
+        ParsedRow row = new ParsedRow();
+        row.id = values.get(0);
+        row.dateTime = parseDateTime(values.get(1));
+        row.categoryId = Integer.parseInt(values.get(2).trim());
+        row.categoryType = CategoryType.valueOf(values.get(3).trim());
+        row.amount = new BigDecimal(values.get(4).trim());
+        row.description = values.get(5);
+        return row;
+    }
+
+    // 固定格式 yyyy-MM-dd HH:mm:ss 直接按位解析，其他情况交给 DateTimeFormatter
+    private static LocalDateTime parseDateTime(String text) {
+        if (text.length() == 19 && text.charAt(4) == '-' && text.charAt(7) == '-' && text.charAt(10) == ' '
+                && text.charAt(13) == ':' && text.charAt(16) == ':') {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 7);
+            int day = digits(text, 8, 10);
+            int hour = digits(text, 11, 13);
+            int minute = digits(text, 14, 16);
+            int second = digits(text, 17, 19);
+            if ((year | month | day | hour | minute | second) >= 0) {
+                return LocalDateTime.of(year, month, day, hour, minute, second);
             }
+        }
+        return LocalDateTime.parse(text, DATE_FORMATTER);
+    }
 
-            return new Transaction(id, dateTime, category, amount, description);
-        } catch (Exception e) {
-            System.err.println("解析交易数据错误：" + e.getMessage());
-            return null;
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
         }
+        return value;
+    }
+
+    Category resolveCategory(int categoryId, CategoryType categoryType) {
+        return categoryManager.resolveCategory(categoryId, categoryType, "未知类别");
     }
 
-    // 数据预处理：去重和格式化
-    public List<Transaction> preprocessTransactions(List<Transaction> imported, List<Transaction> existing) {
-        Set<String> existingIds = new HashSet<>();
-        for (Transaction t : existing) {
-            existingIds.add(t.getId());
+    // 解析后的原始记录
+    static final class ParsedRow {
+        String id;
+        LocalDateTime dateTime;
+        int categoryId;
+        CategoryType categoryType;
+        BigDecimal amount;
+        String description;
+
+        Transaction toTransaction(Category category) {
+            return new Transaction(id, dateTime, category, amount, description);
         }
+    }
 
+    // 数据预处理：先格式化，再按ID和内容去重（指纹按格式化后的值计算）
+    public List<Transaction> preprocessTransactions(List<Transaction> imported) {
+        TransactionDedupIndex.Checker checker = transactionManager.newDuplicateChecker(true);
         List<Transaction> processed = new ArrayList<>();
         for (Transaction t : imported) {
-            if (!existingIds.contains(t.getId())) {
-                formatTransaction(t);
+            formatTransaction(t);
+            if (!checker.isDuplicate(t)) {
                 processed.add(t);
             }
         }
@@ -99,7 +160,7 @@ public class CSVImportManager {
     }
 
     // 数据格式化
-    private void formatTransaction(Transaction transaction) {
+    void formatTransaction(Transaction transaction) {
         BigDecimal amount = transaction.getAmount().setScale(2, BigDecimal.ROUND_HALF_UP);
         transaction.setAmount(amount);
 
@@ -2,18 +2,36 @@ package com.finance.tracker.classification.util;
 
 import com.finance.tracker.classification.model.Category;
 import com.finance.tracker.classification.model.CategoryType;
+import com.finance.tracker.persistence.AtomicFileWriter;
+import com.finance.tracker.persistence.WriteBehindPersister;
 import java.awt.Color;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Category Data Manager - Responsible for storing and retrieving category data
+ *
+ * Categories are kept in an id-keyed map (in insertion order) with a second
+ * index on (type, name), so lookups are constant time however many categories
+ * a ledger references. The per-type lists handed to the UI are immutable and
+ * rebuilt only after a change.
  */
 public class CategoryManager {
-    private List<Category> categories = new ArrayList<>();
+    private final Map<Integer, Category> categoriesById = new LinkedHashMap<>();
+    private final Map<NameKey, Category> categoriesByName = new HashMap<>();
+    // (type, name) each category was indexed under, since Category is mutable
+    private final Map<Integer, NameKey> indexedNames = new HashMap<>();
+    private final Map<CategoryType, List<Category>> typeListCache = new EnumMap<>(CategoryType.class);
+    private List<Category> allCategoriesCache;
+    private int maxId;
     
     // CSV file path for category data
     private static final String CATEGORIES_CSV_PATH = "categories.csv";
@@ -21,6 +39,49 @@ public class CategoryManager {
     // CSV file header
     private static final String CSV_HEADER = "ID,Name,Type,IconPath,ColorRGB";
     
+    // Placeholders created while loading a ledger are written behind, once per flush
+    private final WriteBehindPersister.Store categoriesStore = new WriteBehindPersister.Store() {
+        @Override
+        public String getName() {
+            return CATEGORIES_CSV_PATH;
+        }
+        
+        @Override
+        public void persist() {
+            saveCategories();
+        }
+    };
+    
+    /**
+     * Lookup key for (type, name)
+     */
+    private static final class NameKey {
+        private final CategoryType type;
+        private final String name;
+        
+        NameKey(CategoryType type, String name) {
+            this.type = type;
+            this.name = name;
+        }
+        
+        static NameKey of(Category category) {
+            return new NameKey(category.getType(), category.getName());
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof NameKey)) return false;
+            NameKey other = (NameKey) o;
+            return type == other.type && Objects.equals(name, other.name);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(type) + Objects.hashCode(name);
+        }
+    }
+    
     /**
      * Creates a new category manager
      */
@@ -29,7 +90,7 @@ public class CategoryManager {
         loadCategories();
         
         // If no categories were loaded, add default categories
-        if (categories.isEmpty()) {
+        if (categoriesById.isEmpty()) {
             initDefaultCategories();
         }
     }
@@ -38,24 +99,26 @@ public class CategoryManager {
      * Initialize default categories
      */
     private void initDefaultCategories() {
+        List<Category> defaults = new ArrayList<>();
+        
         // Expense categories
-        addCategory(new Category(1, "Food", CategoryType.EXPENSE, null, new Color(255, 153, 153)));
-        addCategory(new Category(2, "Shopping", CategoryType.EXPENSE, null, new Color(153, 204, 255)));
-        addCategory(new Category(3, "Transport", CategoryType.EXPENSE, null, new Color(153, 255, 153)));
-        addCategory(new Category(4, "Rent", CategoryType.EXPENSE, null, new Color(255, 204, 153)));
-        addCategory(new Category(5, "Bills", CategoryType.EXPENSE, null, new Color(204, 153, 255)));
-        addCategory(new Category(6, "Medical", CategoryType.EXPENSE, null, new Color(255, 255, 153)));
-        addCategory(new Category(7, "Other", CategoryType.EXPENSE, null, new Color(192, 192, 192)));
+        defaults.add(new Category(1, "Food", CategoryType.EXPENSE, null, new Color(255, 153, 153)));
+        defaults.add(new Category(2, "Shopping", CategoryType.EXPENSE, null, new Color(153, 204, 255)));
+        defaults.add(new Category(3, "Transport", CategoryType.EXPENSE, null, new Color(153, 255, 153)));
+        defaults.add(new Category(4, "Rent", CategoryType.EXPENSE, null, new Color(255, 204, 153)));
+        defaults.add(new Category(5, "Bills", CategoryType.EXPENSE, null, new Color(204, 153, 255)));
+        defaults.add(new Category(6, "Medical", CategoryType.EXPENSE, null, new Color(255, 255, 153)));
+        defaults.add(new Category(7, "Other", CategoryType.EXPENSE, null, new Color(192, 192, 192)));
         
         // Income categories
-        addCategory(new Category(8, "Salary", CategoryType.INCOME, null, new Color(102, 255, 102)));
-        addCategory(new Category(9, "Bonus", CategoryType.INCOME, null, new Color(102, 204, 255)));
-        addCategory(new Category(10, "Gift", CategoryType.INCOME, null, new Color(255, 204, 153)));
-        addCategory(new Category(11, "Investment", CategoryType.INCOME, null, new Color(153, 204, 204)));
-        addCategory(new Category(12, "Other", CategoryType.INCOME, null, new Color(192, 192, 192)));
+        defaults.add(new Category(8, "Salary", CategoryType.INCOME, null, new Color(102, 255, 102)));
+        defaults.add(new Category(9, "Bonus", CategoryType.INCOME, null, new Color(102, 204, 255)));
+        defaults.add(new Category(10, "Gift", CategoryType.INCOME, null, new Color(255, 204, 153)));
+        defaults.add(new Category(11, "Investment", CategoryType.INCOME, null, new Color(153, 204, 204)));
+        defaults.add(new Category(12, "Other", CategoryType.INCOME, null, new Color(192, 192, 192)));
         
-        // Save categories to CSV
-        saveCategories();
+        // Save categories to CSV (once for the whole set)
+        addCategories(defaults);
     }
     
     /**
@@ -63,20 +126,32 @@ public class CategoryManager {
      * 
      * @return List of all categories
      */
-    public List<Category> getAllCategories() {
-        return Collections.unmodifiableList(new ArrayList<>(categories));
+    public synchronized List<Category> getAllCategories() {
+        if (allCategoriesCache == null) {
+            allCategoriesCache = Collections.unmodifiableList(new ArrayList<>(categoriesById.values()));
+        }
+        return allCategoriesCache;
     }
     
     /**
      * Get categories by type
      * 
      * @param type Category type
-     * @return All categories of the specified type
+     * @return All categories of the specified type (immutable)
      */
-    public List<Category> getCategoriesByType(CategoryType type) {
-        return categories.stream()
-                .filter(c -> c.getType() == type)
-                .collect(Collectors.toList());
+    public synchronized List<Category> getCategoriesByType(CategoryType type) {
+        List<Category> cached = typeListCache.get(type);
+        if (cached == null) {
+            List<Category> ofType = new ArrayList<>();
+            for (Category category : categoriesById.values()) {
+                if (category.getType() == type) {
+                    ofType.add(category);
+                }
+            }
+            cached = Collections.unmodifiableList(ofType);
+            typeListCache.put(type, cached);
+        }
+        return cached;
     }
     
     /**
@@ -85,11 +160,19 @@ public class CategoryManager {
      * @param id Category ID
      * @return Found category, or null
      */
-    public Category getCategoryById(int id) {
-        return categories.stream()
-                .filter(c -> c.getId() == id)
-                .findFirst()
-                .orElse(null);
+    public synchronized Category getCategoryById(int id) {
+        return categoriesById.get(id);
+    }
+    
+    /**
+     * Get category by type and name
+     * 
+     * @param type Category type
+     * @param name Category name
+     * @return The first category registered under that type and name, or null
+     */
+    public synchronized Category getCategoryByName(CategoryType type, String name) {
+        return categoriesByName.get(new NameKey(type, name));
     }
     
     /**
@@ -97,25 +180,66 @@ public class CategoryManager {
      * 
      * @param category Category to add
      */
-    public void addCategory(Category category) {
-        if (getCategoryById(category.getId()) == null) {
-            categories.add(category);
+    public synchronized void addCategory(Category category) {
+        if (register(category)) {
             saveCategories(); // Save to CSV
         }
     }
     
+    /**
+     * Add several categories, saving the CSV file once
+     * 
+     * @param newCategories Categories to add; IDs that already exist are skipped
+     * @return Number of categories added
+     */
+    public synchronized int addCategories(Collection<Category> newCategories) {
+        int added = 0;
+        for (Category category : newCategories) {
+            if (register(category)) {
+                added++;
+            }
+        }
+        if (added > 0) {
+            saveCategories();
+        }
+        return added;
+    }
+    
+    /**
+     * Look up a category referenced by stored data, registering a placeholder if it no longer exists
+     * 
+     * The placeholder is saved by the write-behind persister, so a ledger that
+     * references many missing categories rewrites the CSV file once per flush
+     * rather than once per category.
+     * 
+     * @param id Category ID
+     * @param type Type recorded with the data
+     * @param placeholderName Name for the placeholder
+     * @return Existing or newly registered category
+     */
+    public synchronized Category resolveCategory(int id, CategoryType type, String placeholderName) {
+        Category category = categoriesById.get(id);
+        if (category == null) {
+            category = new Category(id, placeholderName, type, null);
+            register(category);
+            WriteBehindPersister.getInstance().markDirty(categoriesStore);
+        }
+        return category;
+    }
+    
     /**
      * Update existing category
      * 
      * @param category Category to update
      */
-    public void updateCategory(Category category) {
-        for (int i = 0; i < categories.size(); i++) {
-            if (categories.get(i).getId() == category.getId()) {
-                categories.set(i, category);
-                saveCategories(); // Save to CSV
-                return;
-            }
+    public synchronized void updateCategory(Category category) {
+        if (categoriesById.containsKey(category.getId())) {
+            unindexName(category.getId());
+            categoriesById.put(category.getId(), category);
+            indexName(category);
+            invalidateLists();
+            saveCategories(); // Save to CSV
+            return;
         }
         
         // If category doesn't exist, add it
@@ -128,12 +252,30 @@ public class CategoryManager {
      * @param category Category to delete
      * @return Whether deletion was successful
      */
-    public boolean deleteCategory(Category category) {
-        boolean removed = categories.removeIf(c -> c.getId() == category.getId());
-        if (removed) {
-            saveCategories(); // Save to CSV
+    public synchronized boolean deleteCategory(Category category) {
+        int id = category.getId();
+        if (categoriesById.remove(id) == null) {
+            return false;
+        }
+        NameKey key = unindexName(id);
+        if (key != null && !categoriesByName.containsKey(key)) {
+            // Another category with the same type and name takes over the lookup
+            for (Category other : categoriesById.values()) {
+                if (key.equals(indexedNames.get(other.getId()))) {
+                    categoriesByName.put(key, other);
+                    break;
+                }
+            }
+        }
+        if (id == maxId) {
+            maxId = 0;
+            for (int remaining : categoriesById.keySet()) {
+                maxId = Math.max(maxId, remaining);
+            }
         }
-        return removed;
+        invalidateLists();
+        saveCategories(); // Save to CSV
+        return true;
     }
     
     /**
@@ -141,23 +283,59 @@ public class CategoryManager {
      * 
      * @return Next available ID
      */
-    public int getNextAvailableId() {
-        return categories.stream()
-                .mapToInt(Category::getId)
-                .max()
-                .orElse(0) + 1;
+    public synchronized int getNextAvailableId() {
+        return maxId + 1;
+    }
+    
+    /**
+     * Add a category to the indexes without saving
+     * 
+     * @return false if the ID is already taken
+     */
+    private boolean register(Category category) {
+        if (categoriesById.containsKey(category.getId())) {
+            return false;
+        }
+        categoriesById.put(category.getId(), category);
+        indexName(category);
+        maxId = categoriesById.size() == 1 ? category.getId() : Math.max(maxId, category.getId());
+        invalidateLists();
+        return true;
+    }
+    
+    private void indexName(Category category) {
+        NameKey key = NameKey.of(category);
+        indexedNames.put(category.getId(), key);
+        categoriesByName.putIfAbsent(key, category);
+    }
+    
+    private NameKey unindexName(int id) {
+        NameKey key = indexedNames.remove(id);
+        if (key != null) {
+            Category indexed = categoriesByName.get(key);
+            if (indexed != null && indexed.getId() == id) {
+                categoriesByName.remove(key);
+            }
+        }
+        return key;
+    }
+    
+    private void invalidateLists() {
+        allCategoriesCache = null;
+        typeListCache.clear();
     }
     
     /**
      * Save categories to CSV file
      */
-    private void saveCategories() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(CATEGORIES_CSV_PATH))) {
+    private synchronized void saveCategories() {
+        StringWriter buffer = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(buffer)) {
             // Write header
             writer.println(CSV_HEADER);
             
             // Write each category
-            for (Category category : categories) {
+            for (Category category : categoriesById.values()) {
                 StringBuilder sb = new StringBuilder();
                 sb.append(category.getId()).append(",");
                 
@@ -183,7 +361,11 @@ public class CategoryManager {
                 
                 writer.println(sb.toString());
             }
-            
+        }
+        
+        // Replace the file atomically so a crash never leaves it half written
+        try {
+            AtomicFileWriter.writeString(new File(CATEGORIES_CSV_PATH), buffer.toString());
             System.out.println("Category data saved to: " + new File(CATEGORIES_CSV_PATH).getAbsolutePath());
             
         } catch (IOException e) {
@@ -195,7 +377,11 @@ public class CategoryManager {
      * Load categories from CSV file
      */
     private void loadCategories() {
-        categories.clear();
+        categoriesById.clear();
+        categoriesByName.clear();
+        indexedNames.clear();
+        invalidateLists();
+        maxId = 0;
         File file = new File(CATEGORIES_CSV_PATH);
         
         if (!file.exists()) {
@@ -212,12 +398,12 @@ public class CategoryManager {
             // Read each line of category data
             while ((line = reader.readLine()) != null) {
                 Category category = parseCsvLine(line);
-                if (category != null) {
-                    categories.add(category);
+                if (category != null && !register(category)) {
+                    System.err.println("Skipping duplicate category ID " + category.getId());
                 }
             }
             
-            System.out.println("Loaded " + categories.size() + " categories from file");
+            System.out.println("Loaded " + categoriesById.size() + " categories from file");
             
         } catch (IOException e) {
             System.err.println("Error loading category data: " + e.getMessage());
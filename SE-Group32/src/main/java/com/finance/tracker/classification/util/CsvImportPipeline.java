@@ -0,0 +1,576 @@
+package com.finance.tracker.classification.util;
+
+import com.finance.tracker.classification.model.Category;
+import com.finance.tracker.classification.model.Transaction;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式CSV导入流水线
+ *
+ * 读取 → 解析 → 格式化 → 去重 → 分批保存，每个阶段一个线程，阶段之间用有界队列按批传递。
+ * 下游处理不过来时上游会阻塞等待（背压），因此内存中最多只有 队列容量 × 批大小 条记录，
+ * 与文件大小无关；去重查的是 {@link TransactionDedupIndex}，只额外保留本次导入出现过的ID和指纹的哈希。
+ * 格式化在去重之前，内容指纹按保存时的金额和描述计算，与账本中已有交易的指纹一致。
+ *
+ * 每保存一批都会回调进度监听器，可随时调用 {@link #cancel()} 取消；
+ * 取消前已经保存的批次会保留。每个流水线实例只能运行一次。
+ */
+public class CsvImportPipeline {
+
+    /**
+     * 进度监听器，在流水线线程中回调，更新界面时需自行切换到事件分发线程
+     */
+    public interface ProgressListener {
+        void onProgress(Progress progress);
+    }
+
+    /**
+     * 某一时刻的导入进度
+     */
+    public static final class Progress {
+        private final long bytesRead;
+        private final long totalBytes;
+        private final long parsed;
+        private final long rejected;
+        private final long duplicates;
+        private final long saved;
+        private final boolean finished;
+
+        Progress(long bytesRead, long totalBytes, long parsed, long rejected, long duplicates, long saved,
+                 boolean finished) {
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+            this.parsed = parsed;
+            this.rejected = rejected;
+            this.duplicates = duplicates;
+            this.saved = saved;
+            this.finished = finished;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        /**
+         * 已读取字节占文件大小的比例（0到1）
+         */
+        public double getFraction() {
+            return totalBytes == 0 ? 1.0 : Math.min(1.0, (double) bytesRead / totalBytes);
+        }
+
+        public long getParsed() {
+            return parsed;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getSaved() {
+            return saved;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+    }
+
+    /**
+     * 导入结果
+     */
+    public static final class Result {
+        private final long saved;
+        private final long duplicates;
+        private final long rejected;
+        private final List<ParallelCsvParser.Rejection> rejections;
+        private final boolean cancelled;
+
+        Result(long saved, long duplicates, long rejected, List<ParallelCsvParser.Rejection> rejections,
+               boolean cancelled) {
+            this.saved = saved;
+            this.duplicates = duplicates;
+            this.rejected = rejected;
+            this.rejections = rejections;
+            this.cancelled = cancelled;
+        }
+
+        public long getSaved() {
+            return saved;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * 无法解析的行数
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * 无法解析的行中最先出现的若干条（最多 {@link #setMaxRejectionSamples} 条）
+         */
+        public List<ParallelCsvParser.Rejection> getRejections() {
+            return rejections;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int DEFAULT_QUEUE_CAPACITY = 4;
+    private static final int DEFAULT_MAX_REJECTION_SAMPLES = 100;
+    private static final long POLL_MILLIS = 100;
+
+    // 流结束标记，按引用比较
+    private static final List<?> END = new ArrayList<>(0);
+
+    private final CSVImportManager importManager;
+    private final TransactionManager transactionManager;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private Charset charset = Charset.defaultCharset();
+    private ProgressListener progressListener;
+    private boolean matchContent = true;
+    private int maxRejectionSamples = DEFAULT_MAX_REJECTION_SAMPLES;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean cancelled;
+    private volatile Throwable failure;
+    private long totalBytes;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    // 只保留最先出现的若干条，内存占用与文件大小无关
+    private final List<ParallelCsvParser.Rejection> rejections =
+            Collections.synchronizedList(new ArrayList<>());
+
+    CsvImportPipeline(CSVImportManager importManager, TransactionManager transactionManager) {
+        this.importManager = importManager;
+        this.transactionManager = transactionManager;
+    }
+
+    /**
+     * 设置结果中保留的无法解析行的条数，超出的只计数
+     */
+    public void setMaxRejectionSamples(int maxRejectionSamples) {
+        if (maxRejectionSamples < 0) {
+            throw new IllegalArgumentException("Rejection sample count must not be negative: " + maxRejectionSamples);
+        }
+        this.maxRejectionSamples = maxRejectionSamples;
+    }
+
+    /**
+     * 设置每批记录数，也是每次保存的记录数
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 设置阶段之间每个队列最多缓存的批数
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * 设置是否按内容指纹去重（日期、金额、类别、描述都相同），默认开启
+     */
+    public void setMatchContent(boolean matchContent) {
+        this.matchContent = matchContent;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * 请求取消导入，各阶段会在处理完当前批后退出
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 运行流水线，阻塞直到导入完成、被取消或出错
+     *
+     * @param csvFile CSV文件
+     * @return 导入结果
+     * @throws IOException 读取或保存失败
+     */
+    public Result run(File csvFile) throws IOException {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("Import pipeline can only be run once");
+        }
+        totalBytes = csvFile.length();
+
+        BlockingQueue<List<RawRecord>> raw = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<Transaction>> parsedQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<Transaction>> normalized = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<Transaction>> unique = new ArrayBlockingQueue<>(queueCapacity);
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(newStageThread("read", () -> read(csvFile, raw)));
+        threads.add(newStageThread("parse", () -> transform(raw, parsedQueue, new ParseStage())));
+        threads.add(newStageThread("normalize", () -> transform(parsedQueue, normalized, this::normalize)));
+        threads.add(newStageThread("dedupe", () -> transform(normalized, unique, new DedupeStage())));
+        threads.add(newStageThread("persist", () -> persist(unique)));
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        }
+
+        if (failure != null) {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            throw new IOException("CSV import failed: " + failure.getMessage(), failure);
+        }
+        reportProgress(true);
+        return new Result(saved.get(), duplicates.get(), rejected.get(), new ArrayList<>(rejections), cancelled);
+    }
+
+    private interface StageBody {
+        void run() throws Exception;
+    }
+
+    private interface BatchFunction<I, O> {
+        List<O> apply(List<I> batch) throws Exception;
+    }
+
+    private Thread newStageThread(String name, StageBody body) {
+        Thread thread = new Thread(() -> {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                System.err.println("CSV导入阶段[" + name + "]失败: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }, "csv-import-" + name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // 出错或取消后各阶段都应尽快停止
+    private boolean stopped() {
+        return cancelled || failure != null;
+    }
+
+    /**
+     * 读取阶段：按行读取，引号未闭合时继续拼接下一行，凑满一批后放入队列
+     */
+    private void read(File csvFile, BlockingQueue<List<RawRecord>> out) throws IOException, InterruptedException {
+        try (CountingInputStream counter = new CountingInputStream(new FileInputStream(csvFile));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(counter, charset))) {
+            List<RawRecord> batch = new ArrayList<>(batchSize);
+            StringBuilder record = new StringBuilder();
+            boolean inQuotes = false;
+            long lineNumber = 0;
+            long recordLine = 0;
+            String line;
+            while (!stopped() && (line = reader.readLine()) != null) {
+                lineNumber++;
+                if (record.length() == 0) {
+                    recordLine = lineNumber;
+                } else {
+                    record.append('\n');
+                }
+                record.append(line);
+                if (hasOddQuotes(line)) {
+                    inQuotes = !inQuotes;
+                }
+                if (inQuotes) {
+                    continue;
+                }
+
+                String text = record.toString();
+                record.setLength(0);
+                // 第一行是表头
+                if (recordLine == 1 || text.trim().isEmpty()) {
+                    continue;
+                }
+                batch.add(new RawRecord(recordLine, text));
+                if (batch.size() >= batchSize) {
+                    bytesRead.set(counter.getCount());
+                    if (!offer(out, batch)) {
+                        return;
+                    }
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            // 文件末尾引号未闭合的记录交给解析阶段报告
+            if (record.length() > 0) {
+                batch.add(new RawRecord(recordLine, record.toString()));
+            }
+            bytesRead.set(counter.getCount());
+            if (!batch.isEmpty() && !offer(out, batch)) {
+                return;
+            }
+            offer(out, end());
+        }
+    }
+
+    private static boolean hasOddQuotes(String line) {
+        boolean odd = false;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                odd = !odd;
+            }
+        }
+        return odd;
+    }
+
+    /**
+     * 中间阶段：从上游取一批、处理、把非空结果交给下游
+     */
+    private <I, O> void transform(BlockingQueue<List<I>> in, BlockingQueue<List<O>> out,
+                                  BatchFunction<I, O> function) throws Exception {
+        List<I> batch;
+        while ((batch = poll(in)) != null) {
+            if (batch == END) {
+                offer(out, end());
+                return;
+            }
+            List<O> result = function.apply(batch);
+            if (!result.isEmpty() && !offer(out, result)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 解析阶段：分词并转换为交易记录，类别按ID缓存（只在本线程访问 CategoryManager）
+     */
+    private final class ParseStage implements BatchFunction<RawRecord, Transaction> {
+        private final Map<Integer, Category> categories = new HashMap<>();
+
+        @Override
+        public List<Transaction> apply(List<RawRecord> batch) {
+            List<Transaction> result = new ArrayList<>(batch.size());
+            for (RawRecord record : batch) {
+                try {
+                    CSVImportManager.ParsedRow row = CSVImportManager.parseRow(CsvTokenizer.split(record.text));
+                    if (row == null) {
+                        reject(new ParallelCsvParser.Rejection(record.lineNumber, "incomplete record", record.text));
+                        continue;
+                    }
+                    Category category = categories.get(row.categoryId);
+                    if (category == null) {
+                        category = importManager.resolveCategory(row.categoryId, row.categoryType);
+                        categories.put(row.categoryId, category);
+                    }
+                    result.add(row.toTransaction(category));
+                } catch (Exception e) {
+                    reject(new ParallelCsvParser.Rejection(record.lineNumber, String.valueOf(e.getMessage()),
+                            record.text));
+                }
+            }
+            parsed.addAndGet(result.size());
+            return result;
+        }
+    }
+
+    /**
+     * 去重阶段：跳过已存在的交易、本次导入中重复出现的ID，以及（可选）内容与已有交易相同的记录
+     *
+     * 检查器记住的是本次导入已放行的记录，后面的批次即使还没保存也能被识别为重复
+     */
+    private final class DedupeStage implements BatchFunction<Transaction, Transaction> {
+        private final TransactionDedupIndex.Checker checker = transactionManager.newDuplicateChecker(matchContent);
+
+        @Override
+        public List<Transaction> apply(List<Transaction> batch) {
+            List<Transaction> result = new ArrayList<>(batch.size());
+            for (Transaction transaction : batch) {
+                if (!checker.isDuplicate(transaction)) {
+                    result.add(transaction);
+                }
+            }
+            duplicates.addAndGet(batch.size() - result.size());
+            return result;
+        }
+    }
+
+    private List<Transaction> normalize(List<Transaction> batch) {
+        for (Transaction transaction : batch) {
+            importManager.formatTransaction(transaction);
+        }
+        return batch;
+    }
+
+    /**
+     * 保存阶段：每批调用一次 addTransactions（只写一次日志、只同步一次AI档案、只通知一次）
+     */
+    private void persist(BlockingQueue<List<Transaction>> in) throws InterruptedException {
+        List<Transaction> batch;
+        while ((batch = poll(in)) != null && batch != END) {
+            transactionManager.addTransactions(batch);
+            saved.addAndGet(batch.size());
+            reportProgress(false);
+        }
+    }
+
+    private void reject(ParallelCsvParser.Rejection rejection) {
+        if (rejected.incrementAndGet() <= maxRejectionSamples) {
+            rejections.add(rejection);
+        }
+    }
+
+    private void reportProgress(boolean finished) {
+        ProgressListener listener = progressListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onProgress(new Progress(bytesRead.get(), totalBytes, parsed.get(), rejected.get(),
+                    duplicates.get(), saved.get(), finished));
+        } catch (Exception e) {
+            System.err.println("导入进度回调出错: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 队列满时等待下游，停止后放弃
+     *
+     * @return 停止时返回false
+     */
+    private <E> boolean offer(BlockingQueue<List<E>> queue, List<E> batch) throws InterruptedException {
+        while (!queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (stopped()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 队列空时等待上游，停止后返回null
+     */
+    private <E> List<E> poll(BlockingQueue<List<E>> queue) throws InterruptedException {
+        while (true) {
+            if (stopped()) {
+                return null;
+            }
+            List<E> batch = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (batch != null) {
+                return batch;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> List<E> end() {
+        return (List<E>) END;
+    }
+
+    /**
+     * 未解析的记录文本及其起始行号
+     */
+    private static final class RawRecord {
+        private final long lineNumber;
+        private final String text;
+
+        RawRecord(long lineNumber, String text) {
+            this.lineNumber = lineNumber;
+            this.text = text;
+        }
+    }
+
+    /**
+     * 统计已读取字节数，用于计算进度
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
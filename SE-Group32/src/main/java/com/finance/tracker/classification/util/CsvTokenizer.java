@@ -0,0 +1,130 @@
+package com.finance.tracker.classification.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSV记录分词器 - 逐字符扫描，支持引号字段
+ *
+ * 引号内的逗号和换行属于字段内容，"" 表示一个引号字符；字段两侧的引号会被去掉。
+ * 每个字符只访问一次，不使用正则，因此带引号的长描述也是线性时间。
+ */
+public class CsvTokenizer {
+
+    private final CharSequence text;
+    private final int length;
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private long line;
+    private long recordLine;
+    private int recordStart;
+
+    /**
+     * 创建分词器
+     *
+     * @param text 待解析的文本，可包含多条记录
+     * @param firstLineNumber 文本第一行在原文件中的行号
+     */
+    public CsvTokenizer(CharSequence text, long firstLineNumber) {
+        this.text = text;
+        this.length = text.length();
+        this.line = firstLineNumber;
+    }
+
+    /**
+     * 拆分单条记录
+     *
+     * @param record 一条CSV记录
+     * @return 字段列表
+     */
+    public static List<String> split(String record) {
+        CsvTokenizer tokenizer = new CsvTokenizer(record, 1);
+        if (!tokenizer.next()) {
+            List<String> empty = new ArrayList<>();
+            empty.add("");
+            return empty;
+        }
+        return new ArrayList<>(tokenizer.getFields());
+    }
+
+    /**
+     * 读取下一条记录
+     *
+     * @return 没有更多记录时返回false
+     */
+    public boolean next() {
+        if (position >= length) {
+            return false;
+        }
+
+        fields.clear();
+        field.setLength(0);
+        recordLine = line;
+        recordStart = position;
+
+        boolean inQuotes = false;
+        while (position < length) {
+            char c = text.charAt(position++);
+            if (inQuotes) {
+                if (c == '"') {
+                    if (position < length && text.charAt(position) == '"') {
+                        field.append('"');
+                        position++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                line++;
+                break;
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return true;
+    }
+
+    /**
+     * 当前记录的字段（下次调用 next 时会被覆盖）
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * 当前记录是否为空行
+     */
+    public boolean isBlank() {
+        return fields.size() == 1 && fields.get(0).trim().isEmpty();
+    }
+
+    /**
+     * 当前记录起始行在原文件中的行号
+     */
+    public long getLineNumber() {
+        return recordLine;
+    }
+
+    /**
+     * 当前记录的原始文本（不含行尾换行），用于错误报告
+     */
+    public String getRecordText() {
+        int end = position;
+        while (end > recordStart && (text.charAt(end - 1) == '\n' || text.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        return text.subSequence(recordStart, end).toString();
+    }
+}
@@ -0,0 +1,278 @@
+package com.finance.tracker.classification.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 并行CSV解析器
+ *
+ * 先对文件做一次字节级扫描，按约 chunkSize 字节在记录边界（引号外的换行）处切分，
+ * 同时记下每块起始行号；随后在 fork-join 线程池中并行分词和解析各块，最后按文件顺序合并。
+ * 无法解析的记录连同行号一起收集到结果中，而不是被静默丢弃。
+ *
+ * @param <T> 每条记录解析后的类型
+ */
+public class ParallelCsvParser<T> {
+
+    /**
+     * 单条记录的解析函数，会在多个线程中同时调用，必须是线程安全的
+     *
+     * @param <T> 解析结果类型
+     */
+    public interface RecordParser<T> {
+        /**
+         * @param fields 记录的字段
+         * @return 解析结果；返回null表示该记录不完整
+         * @throws Exception 解析失败，异常信息会作为拒绝原因
+         */
+        T parse(List<String> fields) throws Exception;
+    }
+
+    /**
+     * 被拒绝的记录
+     */
+    public static final class Rejection {
+        private final long lineNumber;
+        private final String reason;
+        private final String text;
+
+        Rejection(long lineNumber, String reason, String text) {
+            this.lineNumber = lineNumber;
+            this.reason = reason;
+            this.text = text;
+        }
+
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + ": " + reason + " -> " + text;
+        }
+    }
+
+    /**
+     * 解析结果：按文件顺序排列的记录和被拒绝的行
+     *
+     * @param <T> 解析结果类型
+     */
+    public static final class Result<T> {
+        private final List<T> records;
+        private final List<Rejection> rejections;
+
+        Result(List<T> records, List<Rejection> rejections) {
+            this.records = records;
+            this.rejections = rejections;
+        }
+
+        public List<T> getRecords() {
+            return records;
+        }
+
+        public List<Rejection> getRejections() {
+            return rejections;
+        }
+    }
+
+    private static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final RecordParser<T> parser;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private boolean skipHeader = true;
+    private Charset charset = Charset.defaultCharset();
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    public ParallelCsvParser(RecordParser<T> parser) {
+        this.parser = parser;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public void setSkipHeader(boolean skipHeader) {
+        this.skipHeader = skipHeader;
+    }
+
+    /**
+     * 设置文件编码，必须兼容ASCII（换行、逗号和引号为单字节），默认为平台编码
+     */
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 解析文件
+     *
+     * @param file CSV文件
+     * @return 解析结果
+     * @throws IOException 文件无法读取
+     */
+    public Result<T> parse(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("CSV file too large to import: " + file.getName());
+            }
+            if (size == 0) {
+                return new Result<>(Collections.emptyList(), Collections.emptyList());
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            List<Chunk> chunks = findChunks(buffer);
+
+            // 每个分块写自己的下标，列表长度固定，invoke返回前的写入对这里可见
+            List<List<T>> records = new ArrayList<>(Collections.nCopies(chunks.size(), null));
+            List<List<Rejection>> rejections = new ArrayList<>(Collections.nCopies(chunks.size(), null));
+            pool.invoke(new ParseTask(buffer, chunks, 0, chunks.size(), records, rejections));
+
+            // 按文件顺序合并
+            int total = 0;
+            for (List<T> chunkRecords : records) {
+                total += chunkRecords.size();
+            }
+            List<T> merged = new ArrayList<>(total);
+            List<Rejection> mergedRejections = new ArrayList<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                merged.addAll(records.get(i));
+                mergedRejections.addAll(rejections.get(i));
+            }
+            return new Result<>(merged, mergedRejections);
+        }
+    }
+
+    /**
+     * 一个按记录边界切出的字节区间
+     */
+    private static final class Chunk {
+        private final int start;
+        private final int end;
+        private final long firstLine;
+
+        Chunk(int start, int end, long firstLine) {
+            this.start = start;
+            this.end = end;
+            this.firstLine = firstLine;
+        }
+    }
+
+    /**
+     * 顺序扫描一次字节，找到引号外的换行作为切分点，并记录每块起始行号
+     */
+    private List<Chunk> findChunks(ByteBuffer buffer) {
+        List<Chunk> chunks = new ArrayList<>();
+        int limit = buffer.limit();
+        int chunkStart = 0;
+        long chunkLine = 1;
+        long line = 1;
+        boolean inQuotes = false;
+        for (int i = 0; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (b == '\n') {
+                line++;
+                if (!inQuotes && i + 1 - chunkStart >= chunkSize) {
+                    chunks.add(new Chunk(chunkStart, i + 1, chunkLine));
+                    chunkStart = i + 1;
+                    chunkLine = line;
+                }
+            }
+        }
+        if (chunkStart < limit) {
+            chunks.add(new Chunk(chunkStart, limit, chunkLine));
+        }
+        return chunks;
+    }
+
+    /**
+     * 递归二分块区间，单块时在当前线程中解析
+     */
+    private final class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ByteBuffer buffer;
+        private final List<Chunk> chunks;
+        private final int from;
+        private final int to;
+        private final List<List<T>> records;
+        private final List<List<Rejection>> rejections;
+
+        ParseTask(ByteBuffer buffer, List<Chunk> chunks, int from, int to,
+                  List<List<T>> records, List<List<Rejection>> rejections) {
+            this.buffer = buffer;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.records = records;
+            this.rejections = rejections;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                parseChunk(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ParseTask(buffer, chunks, from, mid, records, rejections),
+                    new ParseTask(buffer, chunks, mid, to, records, rejections));
+        }
+
+        private void parseChunk(int index) {
+            Chunk chunk = chunks.get(index);
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(chunk.start);
+            slice.limit(chunk.end);
+            CharSequence text = charset.decode(slice);
+
+            List<T> parsed = new ArrayList<>();
+            List<Rejection> rejected = new ArrayList<>();
+            CsvTokenizer tokenizer = new CsvTokenizer(text, chunk.firstLine);
+            while (tokenizer.next()) {
+                if ((skipHeader && tokenizer.getLineNumber() == 1) || tokenizer.isBlank()) {
+                    continue;
+                }
+                try {
+                    T record = parser.parse(tokenizer.getFields());
+                    if (record != null) {
+                        parsed.add(record);
+                    } else {
+                        rejected.add(new Rejection(tokenizer.getLineNumber(), "incomplete record",
+                                tokenizer.getRecordText()));
+                    }
+                } catch (Exception e) {
+                    rejected.add(new Rejection(tokenizer.getLineNumber(), String.valueOf(e.getMessage()),
+                            tokenizer.getRecordText()));
+                }
+            }
+            records.set(index, parsed);
+            rejections.set(index, rejected);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.finance.tracker.classification.util;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 不可变有序映射（AVL树，路径复制）
+ *
+ * 每次修改只复制从根到目标节点的路径，返回新的映射，原映射保持不变，
+ * 因此任意旧版本都可以在不加锁的情况下被并发读取。
+ * 每个节点记录子树大小，可以按位置取值，{@link #valuesView()} 借此提供不复制的只读列表。
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+final class PersistentSortedMap<K, V> {
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+        private final int height;
+        private final int count; // 子树中的节点数
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.count = 1 + count(left) + count(right);
+        }
+    }
+
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> root;
+    private final int size;
+
+    private PersistentSortedMap(Comparator<? super K> comparator, Node<K, V> root, int size) {
+        this.comparator = comparator;
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * 创建按自然顺序排序的空映射
+     */
+    static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> empty() {
+        return new PersistentSortedMap<>(Comparator.naturalOrder(), null, 0);
+    }
+
+    /**
+     * 由已按键严格升序排列的键值直接构造平衡树，耗时 O(n)
+     *
+     * @param keys 严格升序且不重复的键
+     * @param values 与键一一对应的值
+     */
+    static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> fromSorted(List<K> keys, List<V> values) {
+        return new PersistentSortedMap<>(Comparator.naturalOrder(), build(keys, values, 0, keys.size() - 1), keys.size());
+    }
+
+    private static <K, V> Node<K, V> build(List<K> keys, List<V> values, int low, int high) {
+        if (low > high) {
+            return null;
+        }
+        int mid = (low + high) >>> 1;
+        return new Node<>(keys.get(mid), values.get(mid),
+                build(keys, values, low, mid - 1), build(keys, values, mid + 1, high));
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    V get(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int cmp = comparator.compare(key, node.key);
+            if (cmp == 0) {
+                return node.value;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * 返回包含该键值对的新映射；键已存在时替换其值
+     */
+    PersistentSortedMap<K, V> put(K key, V value) {
+        int newSize = containsKey(key) ? size : size + 1;
+        return new PersistentSortedMap<>(comparator, insert(root, key, value), newSize);
+    }
+
+    /**
+     * 返回移除该键后的新映射；键不存在时返回自身
+     */
+    PersistentSortedMap<K, V> remove(K key) {
+        if (!containsKey(key)) {
+            return this;
+        }
+        return new PersistentSortedMap<>(comparator, delete(root, key), size - 1);
+    }
+
+    /**
+     * 按键顺序遍历 [from, to) 范围内的值，任一端为null表示不限
+     */
+    Iterator<V> values(K from, K to) {
+        return new RangeIterator(from, to);
+    }
+
+    Iterator<V> values() {
+        return values(null, null);
+    }
+
+    /**
+     * 按键顺序排在第 index 位的值，耗时 O(log n)
+     */
+    V valueAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        Node<K, V> node = root;
+        while (true) {
+            int leftCount = count(node.left);
+            if (index < leftCount) {
+                node = node.left;
+            } else if (index == leftCount) {
+                return node.value;
+            } else {
+                index -= leftCount + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * 按键顺序排列的全部值的只读列表视图，不复制数据；映射不可变，视图内容也不会变化
+     */
+    List<V> valuesView() {
+        return new AbstractList<V>() {
+            @Override
+            public V get(int index) {
+                return valueAt(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<V> iterator() {
+                return values();
+            }
+        };
+    }
+
+    /**
+     * 按键顺序遍历全部键
+     */
+    Iterator<K> keys() {
+        RangeIterator nodes = new RangeIterator(null, null);
+        return new Iterator<K>() {
+            @Override
+            public boolean hasNext() {
+                return nodes.hasNext();
+            }
+
+            @Override
+            public K next() {
+                return nodes.nextNode().key;
+            }
+        };
+    }
+
+    private Node<K, V> insert(Node<K, V> node, K key, V value) {
+        if (node == null) {
+            return new Node<>(key, value, null, null);
+        }
+        int cmp = comparator.compare(key, node.key);
+        if (cmp < 0) {
+            return balance(node.key, node.value, insert(node.left, key, value), node.right);
+        }
+        if (cmp > 0) {
+            return balance(node.key, node.value, node.left, insert(node.right, key, value));
+        }
+        return new Node<>(key, value, node.left, node.right);
+    }
+
+    private Node<K, V> delete(Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = comparator.compare(key, node.key);
+        if (cmp < 0) {
+            return balance(node.key, node.value, delete(node.left, key), node.right);
+        }
+        if (cmp > 0) {
+            return balance(node.key, node.value, node.left, delete(node.right, key));
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node<K, V> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.key, successor.value, node.left, deleteMin(node.right));
+    }
+
+    private Node<K, V> deleteMin(Node<K, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.key, node.value, deleteMin(node.left), node.right);
+    }
+
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+            }
+            Node<K, V> pivot = left.right;
+            return new Node<>(pivot.key, pivot.value,
+                    new Node<>(left.key, left.value, left.left, pivot.left),
+                    new Node<>(key, value, pivot.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+            }
+            Node<K, V> pivot = right.left;
+            return new Node<>(pivot.key, pivot.value,
+                    new Node<>(key, value, left, pivot.left),
+                    new Node<>(right.key, right.value, pivot.right, right.right));
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int count(Node<?, ?> node) {
+        return node == null ? 0 : node.count;
+    }
+
+    private final class RangeIterator implements Iterator<V> {
+        private final K from;
+        private final K to;
+        private final Deque<Node<K, V>> stack = new ArrayDeque<>();
+
+        RangeIterator(K from, K to) {
+            this.from = from;
+            this.to = to;
+            pushLeft(root);
+        }
+
+        private void pushLeft(Node<K, V> node) {
+            while (node != null) {
+                if (from != null && comparator.compare(node.key, from) < 0) {
+                    node = node.right;
+                } else {
+                    stack.push(node);
+                    node = node.left;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty() && (to == null || comparator.compare(stack.peek().key, to) < 0);
+        }
+
+        @Override
+        public V next() {
+            return nextNode().value;
+        }
+
+        Node<K, V> nextNode() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> node = stack.pop();
+            pushLeft(node.right);
+            return node;
+        }
+    }
+}
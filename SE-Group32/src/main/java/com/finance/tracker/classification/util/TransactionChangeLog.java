@@ -0,0 +1,246 @@
+package com.finance.tracker.classification.util;
+
+import com.finance.tracker.classification.model.Transaction;
+import com.finance.tracker.persistence.AtomicFileWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 账本变更序号与最近变更记录
+ *
+ * 每次增删改分配一个单调递增的序号。下游（AI模型的用户配置文件）记住自己应用到的序号，
+ * 同步时只重放之后的变更。内存中只保留最近的若干条变更；下游落后太多、账本被替换，
+ * 或者本次运行中还没有对账过时，{@link #getChangesSince} 返回null，由调用方改用校验和对账。
+ *
+ * 序号文件与账本数据分开、延后写入，崩溃后读到的序号可能落后或超前于账本，
+ * 上次运行分配过的序号也可能被再次分配，因此上次运行留下的同步位置不可信：
+ * 每次启动后的第一次同步都要对账，对账后用 {@link #markReconciled} 记下当时的序号，
+ * 之后只有不早于该序号的同步位置才按增量重放。
+ *
+ * 账本ID和当前序号以 transactions.seq 的形式保存在账本旁边。账本ID在文件第一次创建时随机生成，
+ * 用来区分不同的账本文件，避免下游把另一个账本的序号当成自己的。所有方法都是线程安全的。
+ */
+public class TransactionChangeLog {
+
+    /**
+     * 一条变更
+     */
+    public static final class Change {
+        private final long sequence;
+        private final TransactionJournal.Operation operation;
+        private final Transaction transaction;
+        private final Transaction previous;
+        private final long recordedMillis;
+
+        Change(long sequence, TransactionJournal.Operation operation, Transaction transaction, Transaction previous,
+               long recordedMillis) {
+            this.sequence = sequence;
+            this.operation = operation;
+            this.transaction = transaction;
+            this.previous = previous;
+            this.recordedMillis = recordedMillis;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public TransactionJournal.Operation getOperation() {
+            return operation;
+        }
+
+        /**
+         * 新增或修改后的交易；删除时为被删除的交易
+         */
+        public Transaction getTransaction() {
+            return transaction;
+        }
+
+        /**
+         * 修改或覆盖前的交易，下游据此扣减旧版本；新交易和删除时为null
+         */
+        public Transaction getPrevious() {
+            return previous;
+        }
+
+        /**
+         * 记录这条变更的时间（System.currentTimeMillis）
+         */
+        public long getRecordedMillis() {
+            return recordedMillis;
+        }
+    }
+
+    private static final int DEFAULT_CAPACITY = 10_000;
+
+    private final File file;
+    private final ArrayDeque<Change> recent = new ArrayDeque<>();
+    private String ledgerId;
+    private long sequence;
+    private long persistedSequence = -1;
+    private long reconciledSequence = -1; // 本次运行最近一次对账时的序号，-1表示还没有对账
+    private int capacity = DEFAULT_CAPACITY;
+
+    /**
+     * 读取序号文件；文件不存在或损坏时生成新的账本ID，序号从0开始
+     *
+     * @param file 序号文件
+     */
+    public TransactionChangeLog(File file) {
+        this.file = file;
+        load();
+    }
+
+    private void load() {
+        if (file.exists()) {
+            try {
+                String[] parts = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim().split(",");
+                ledgerId = parts[0];
+                sequence = Long.parseLong(parts[1]);
+                persistedSequence = sequence;
+                return;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error reading change sequence file, starting a new one: " + e.getMessage());
+            }
+        }
+        ledgerId = UUID.randomUUID().toString();
+        sequence = 0;
+    }
+
+    /**
+     * 记录一批变更
+     *
+     * @param operation 操作类型
+     * @param changed 变更的交易
+     * @return 这批变更中最后一条的序号
+     */
+    public synchronized long append(TransactionJournal.Operation operation, Collection<Transaction> changed) {
+        return append(operation, changed, Collections.emptyMap());
+    }
+
+    /**
+     * 记录一批变更，并带上被修改或覆盖的交易变更前的版本
+     *
+     * @param operation 操作类型
+     * @param changed 变更的交易
+     * @param previous 交易ID到变更前版本的映射，新交易不在其中
+     * @return 这批变更中最后一条的序号
+     */
+    public synchronized long append(TransactionJournal.Operation operation, Collection<Transaction> changed,
+                                    Map<String, Transaction> previous) {
+        long now = System.currentTimeMillis();
+        for (Transaction transaction : changed) {
+            recent.addLast(new Change(++sequence, operation, transaction, previous.get(transaction.getId()), now));
+        }
+        while (recent.size() > capacity) {
+            recent.removeFirst();
+        }
+        return sequence;
+    }
+
+    /**
+     * 获取某个序号之后的全部变更
+     *
+     * @param since 下游已应用到的序号
+     * @return 按序号排列的变更；需要的记录已不在内存中、本次运行还没有对账，
+     *         或序号不属于当前账本时返回null
+     */
+    public synchronized List<Change> getChangesSince(long since) {
+        if (reconciledSequence < 0 || since < reconciledSequence || since > sequence) {
+            return null;
+        }
+        long oldestAvailable = recent.isEmpty() ? sequence + 1 : recent.peekFirst().getSequence();
+        if (since + 1 < oldestAvailable) {
+            return null;
+        }
+        List<Change> changes = new ArrayList<>((int) (sequence - since));
+        for (Change change : recent) {
+            if (change.getSequence() > since) {
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * 记录下游已按校验和与账本对账，之后可以从该序号起增量同步
+     *
+     * @param reconciled 读取账本之前的序号（即下游记下的同步位置）
+     */
+    public synchronized void markReconciled(long reconciled) {
+        reconciledSequence = Math.max(reconciledSequence, reconciled);
+    }
+
+    /**
+     * 某个序号之后第一条变更的记录时间，下游据此计算同步延迟
+     *
+     * @param since 下游已应用到的序号
+     * @return 记录时间（毫秒），之后没有变更时返回-1；
+     *         那条变更已不在内存中时返回内存中最早一条的时间（实际延迟至少这么长），内存中也没有时返回-1
+     */
+    public synchronized long getFirstChangeTimeAfter(long since) {
+        if (since >= sequence || recent.isEmpty()) {
+            return -1;
+        }
+        for (Change change : recent) {
+            if (change.getSequence() > since) {
+                return change.getRecordedMillis();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 当前序号：最后一次变更的序号
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    public synchronized String getLedgerId() {
+        return ledgerId;
+    }
+
+    /**
+     * 设置内存中保留的变更条数
+     */
+    public synchronized void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        while (recent.size() > capacity) {
+            recent.removeFirst();
+        }
+    }
+
+    /**
+     * 把账本ID和当前序号写入文件，序号未变时不写
+     *
+     * @throws IOException 写入失败
+     */
+    public void save() throws IOException {
+        String content;
+        long saving;
+        synchronized (this) {
+            if (sequence == persistedSequence) {
+                return;
+            }
+            saving = sequence;
+            content = ledgerId + "," + sequence;
+        }
+        AtomicFileWriter.writeString(file, content);
+        synchronized (this) {
+            persistedSequence = Math.max(persistedSequence, saving);
+        }
+    }
+}
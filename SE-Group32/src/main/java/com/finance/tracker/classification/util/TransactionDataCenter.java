@@ -6,32 +6,44 @@ import com.finance.tracker.classification.model.Transaction;
 import com.finance.tracker.integration.TransactionSyncFacade;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.time.YearMonth;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
 
 /**
  * 交易数据中心 - 统一数据访问点
  * 
  * 所有模块都应该通过此类进行交易数据的读取和修改
  * 遵循单例模式确保全局唯一
+ * 
+ * 数据中心本身不保存交易：读取直接基于 {@link TransactionManager} 中已加载交易的不可变版本化快照，
+ * 任何线程都可以不加锁地读取，读取不会阻塞写入；
+ * 需要多次读取保持一致（例如后台生成图表或AI分析）时，先取得 {@link #getSnapshot()}，
+ * 再在同一快照上读取，并可通过 {@link TransactionSnapshot#getVersion()} 得知读到的版本。
+ * 
+ * 管理器使用按月分区存储时，这里只包含已加载的月份：带时间范围的查询会先加载所需月份，
+ * 需要完整历史时调用 {@link #loadMonths} 或 {@link #loadAllPartitions()}；
+ * 合计金额始终覆盖全部历史（未加载的月份取自分区清单）。
+ * 
+ * 变更通知有两种：{@link TransactionChangeListener} 在修改线程上逐次同步调用；
+ * {@link #getEventBus()} 把一段时间内的变更合并后异步投递，界面应使用后者。
  */
 public class TransactionDataCenter {
     // 单例实例
     private static TransactionDataCenter instance;
     
-    // 内部数据存储
-    private final List<Transaction> transactions = new ArrayList<>();
-    
     // 数据源管理
-    private TransactionManager transactionManager;
+    private volatile TransactionManager transactionManager;
     
-    // 观察者列表
+    // 观察者列表（同步通知）
     private final List<TransactionChangeListener> listeners = new CopyOnWriteArrayList<>();
     
+    // 异步合并通知
+    private final TransactionEventBus eventBus = new TransactionEventBus();
+    
     /**
      * 私有构造函数确保单例
      */
@@ -62,14 +74,10 @@ public class TransactionDataCenter {
     }
     
     /**
-     * 从底层存储刷新数据
+     * 通知订阅者整体刷新（数据直接读取管理器的快照，不需要复制）
      */
     public void refreshData() {
         if (transactionManager != null) {
-            synchronized (transactions) {
-                transactions.clear();
-                transactions.addAll(transactionManager.getAllTransactions());
-            }
             notifyListeners(ChangeType.REFRESH, null);
         }
     }
@@ -81,11 +89,19 @@ public class TransactionDataCenter {
      */
     public void addTransaction(Transaction transaction) {
         if (transactionManager != null) {
+            // 管理器持久化后会回调onTransactionsAdded更新本地数据并通知监听器
             transactionManager.addTransaction(transaction);
-            synchronized (transactions) {
-                transactions.add(transaction);
-            }
-            notifyListeners(ChangeType.ADD, transaction);
+        }
+    }
+    
+    /**
+     * 批量添加交易记录：只持久化一次、只同步一次AI档案、只发出一次批量变更通知
+     * 
+     * @param newTransactions 交易记录
+     */
+    public void addTransactions(Collection<Transaction> newTransactions) {
+        if (transactionManager != null) {
+            transactionManager.addTransactions(newTransactions);
         }
     }
     
@@ -96,14 +112,140 @@ public class TransactionDataCenter {
      * @return 是否成功删除
      */
     public boolean deleteTransaction(Transaction transaction) {
-        if (transactionManager != null && transactionManager.deleteTransaction(transaction)) {
-            synchronized (transactions) {
-                transactions.remove(transaction);
-            }
-            notifyListeners(ChangeType.DELETE, transaction);
-            return true;
+        return transactionManager != null && transactionManager.deleteTransaction(transaction);
+    }
+    
+    /**
+     * 批量删除交易记录
+     * 
+     * @param toDelete 要删除的交易记录
+     * @return 实际删除的数量
+     */
+    public int deleteTransactions(Collection<Transaction> toDelete) {
+        if (transactionManager == null) {
+            return 0;
         }
-        return false;
+        return transactionManager.deleteTransactions(toDelete);
+    }
+    
+    /**
+     * 更新交易记录（按ID匹配）
+     * 
+     * @param transaction 更新后的交易记录
+     * @return 是否找到并更新
+     */
+    public boolean updateTransaction(Transaction transaction) {
+        return transactionManager != null && transactionManager.updateTransaction(transaction);
+    }
+    
+    /**
+     * 管理器新增交易后的回调
+     * 
+     * 以下 on* 回调都在管理器的storageLock内、管理器更新快照之后调用，按账本的修改顺序发布到事件总线；
+     * 同步监听器由管理器在锁外调用 {@link #fireChange} 通知
+     * 
+     * @param source 发生变更的管理器
+     * @param added 新增的交易记录
+     */
+    void onTransactionsAdded(TransactionManager source, List<Transaction> added) {
+        if (source != transactionManager) {
+            return;
+        }
+        publish(ChangeType.ADD, added);
+    }
+    
+    /**
+     * 管理器删除交易后的回调
+     * 
+     * @param source 发生变更的管理器
+     * @param removed 被删除的交易记录
+     */
+    void onTransactionsDeleted(TransactionManager source, List<Transaction> removed) {
+        if (source != transactionManager) {
+            return;
+        }
+        publish(ChangeType.DELETE, removed);
+    }
+    
+    /**
+     * 管理器更新交易后的回调
+     * 
+     * @param source 发生变更的管理器
+     * @param updated 更新后的交易记录
+     */
+    void onTransactionUpdated(TransactionManager source, Transaction updated) {
+        if (source != transactionManager) {
+            return;
+        }
+        publish(ChangeType.UPDATE, Collections.singletonList(updated));
+    }
+    
+    /**
+     * 管理器加载或淘汰月份分区后的回调
+     * 
+     * @param source 发生变更的管理器
+     * @param loaded 新加载的交易记录
+     * @param evicted 移出内存的交易记录
+     */
+    void onPartitionsChanged(TransactionManager source, List<Transaction> loaded, List<Transaction> evicted) {
+        if (source != transactionManager) {
+            return;
+        }
+        publish(ChangeType.REFRESH, Collections.emptyList());
+    }
+    
+    /**
+     * 在管理器的storageLock外通知同步监听器，对应的 on* 回调已经发布了这次变更
+     * 
+     * @param source 发生变更的管理器
+     * @param type 变更类型
+     * @param changed 变更的交易记录，REFRESH时为空
+     */
+    void fireChange(TransactionManager source, ChangeType type, List<Transaction> changed) {
+        if (source != transactionManager) {
+            return;
+        }
+        fireListeners(type, changed);
+    }
+    
+    /**
+     * 加载指定月份范围（分区存储时有效）
+     * 
+     * @param from 起始月份（含），null表示最早
+     * @param to 结束月份（含），null表示最新
+     */
+    public void loadMonths(YearMonth from, YearMonth to) {
+        if (transactionManager != null) {
+            transactionManager.loadMonths(from, to);
+        }
+    }
+    
+    /**
+     * 加载全部历史（分区存储时有效）
+     */
+    public void loadAllPartitions() {
+        if (transactionManager != null) {
+            transactionManager.loadAllPartitions();
+        }
+    }
+    
+    /**
+     * 获取当前数据快照，快照内的所有读取都属于同一版本
+     * 
+     * @return 不可变快照
+     */
+    public TransactionSnapshot getSnapshot() {
+        TransactionManager manager = transactionManager;
+        return manager != null ? manager.getLoadedSnapshot() : TransactionSnapshot.EMPTY;
+    }
+    
+    /**
+     * 获取当前数据版本号，每次数据变更后递增
+     * 
+     * @return 版本号
+     */
+    public long getVersion() {
+        return getSnapshot().getVersion();
     }
     
     /**
@@ -112,53 +254,42 @@ public class TransactionDataCenter {
      * @return 交易记录列表（不可修改）
      */
     public List<Transaction> getAllTransactions() {
-        synchronized (transactions) {
-            List<Transaction> sortedList = new ArrayList<>(transactions);
-            sortedList.sort(Comparator.comparing(Transaction::getDateTime).reversed());
-            return Collections.unmodifiableList(sortedList);
-        }
+        // 索引已按时间降序维护，无需排序
+        return getSnapshot().getAll();
     }
     
     /**
      * 根据类型获取交易记录
      * 
      * @param type 类别类型
-     * @return 交易记录列表
+     * @return 交易记录列表（按时间降序）
      */
     public List<Transaction> getTransactionsByType(CategoryType type) {
-        List<Transaction> result = new ArrayList<>();
-        synchronized (transactions) {
-            for (Transaction t : transactions) {
-                if (t.getCategory().getType() == type) {
-                    result.add(t);
-                }
-            }
-        }
-        
-        // 按时间排序（降序）
-        result.sort(Comparator.comparing(Transaction::getDateTime).reversed());
-        return result;
+        return getSnapshot().getByType(type);
     }
     
     /**
      * 根据类别获取交易记录
      * 
      * @param category 类别
-     * @return 交易记录列表
+     * @return 交易记录列表（按时间降序）
      */
     public List<Transaction> getTransactionsByCategory(Category category) {
-        List<Transaction> result = new ArrayList<>();
-        synchronized (transactions) {
-            for (Transaction t : transactions) {
-                if (t.getCategory().getId() == category.getId()) {
-                    result.add(t);
-                }
-            }
+        return getSnapshot().getByCategory(category.getId());
+    }
+    
+    /**
+     * 执行交易查询，结果按时间降序惰性返回
+     * 
+     * @param query 查询条件
+     * @return 惰性结果流
+     */
+    public Stream<Transaction> query(TransactionQuery query) {
+        TransactionManager manager = transactionManager;
+        if (manager != null) {
+            manager.loadPartitionsFor(query);
         }
-        
-        // 按时间排序（降序）
-        result.sort(Comparator.comparing(Transaction::getDateTime).reversed());
-        return result;
+        return getSnapshot().query(query);
     }
     
     /**
@@ -167,15 +298,8 @@ public class TransactionDataCenter {
      * @return 总收入金额
      */
     public BigDecimal getTotalIncome() {
-        BigDecimal total = BigDecimal.ZERO;
-        synchronized (transactions) {
-            for (Transaction t : transactions) {
-                if (t.getCategory().getType() == CategoryType.INCOME) {
-                    total = total.add(t.getAmount());
-                }
-            }
-        }
-        return total;
+        TransactionManager manager = transactionManager;
+        return manager != null ? manager.getTotalIncome() : BigDecimal.ZERO;
     }
     
     /**
@@ -184,15 +308,8 @@ public class TransactionDataCenter {
      * @return 总支出金额
      */
     public BigDecimal getTotalExpense() {
-        BigDecimal total = BigDecimal.ZERO;
-        synchronized (transactions) {
-            for (Transaction t : transactions) {
-                if (t.getCategory().getType() == CategoryType.EXPENSE) {
-                    total = total.add(t.getAmount());
-                }
-            }
-        }
-        return total;
+        TransactionManager manager = transactionManager;
+        return manager != null ? manager.getTotalExpense() : BigDecimal.ZERO;
     }
     
     /**
@@ -201,11 +318,57 @@ public class TransactionDataCenter {
      * @return 当前余额
      */
     public BigDecimal getBalance() {
-        return getTotalIncome().subtract(getTotalExpense());
+        TransactionManager manager = transactionManager;
+        return manager != null ? manager.getBalance() : BigDecimal.ZERO;
+    }
+    
+    /**
+     * 计算指定类别的金额合计
+     * 
+     * @param category 类别
+     * @return 合计金额
+     */
+    public BigDecimal getTotalByCategory(Category category) {
+        TransactionManager manager = transactionManager;
+        return manager != null ? manager.getTotalByCategory(category) : BigDecimal.ZERO;
+    }
+    
+    /**
+     * 设置合计一致性校验模式（测试用）：开启后每次读取合计都会从头重算并比对
+     * 
+     * @param enabled 是否开启
+     */
+    public void setTotalsConsistencyCheck(boolean enabled) {
+        TransactionManager manager = transactionManager;
+        if (manager != null) {
+            manager.setTotalsConsistencyCheck(enabled);
+        }
+    }
+    
+    /**
+     * 从头重算合计并与增量维护的结果比对
+     * 
+     * @return 合计是否一致
+     */
+    public boolean verifyTotals() {
+        TransactionManager manager = transactionManager;
+        return manager == null || manager.verifyTotals();
     }
     
     /**
-     * 添加交易数据变更监听器
+     * 获取异步事件总线
+     * 
+     * 通过 {@link #addTransactionChangeListener} 注册的监听器在修改数据的线程上逐次同步调用；
+     * 界面等需要合并通知的订阅者应改为订阅此总线，一段时间内的变更只收到一次
+     * 
+     * @return 事件总线
+     */
+    public TransactionEventBus getEventBus() {
+        return eventBus;
+    }
+    
+    /**
+     * 添加交易数据变更监听器（同步通知）
      * 
      * @param listener 监听器
      */
@@ -231,8 +394,48 @@ public class TransactionDataCenter {
      * @param transaction 相关交易对象
      */
     private void notifyListeners(ChangeType type, Transaction transaction) {
+        List<Transaction> changed = transaction == null ? Collections.emptyList() : Collections.singletonList(transaction);
+        publish(type, changed);
+        fireListeners(type, changed);
+    }
+    
+    /**
+     * 把变更发布到事件总线
+     */
+    private void publish(ChangeType type, List<Transaction> changed) {
+        switch (type) {
+            case ADD:
+                eventBus.publishAdded(changed);
+                break;
+            case DELETE:
+                eventBus.publishRemoved(changed);
+                break;
+            case UPDATE:
+                changed.forEach(eventBus::publishUpdated);
+                break;
+            default:
+                eventBus.publishRefresh();
+                break;
+        }
+    }
+    
+    /**
+     * 通知同步监听器一次变更：单条记录（或REFRESH）按原方式通知，多条记录合并为一次批量通知
+     * 
+     * @param type 变更类型
+     * @param changed 变更的交易记录
+     */
+    private void fireListeners(ChangeType type, List<Transaction> changed) {
+        if (changed.size() <= 1) {
+            Transaction transaction = changed.isEmpty() ? null : changed.get(0);
+            for (TransactionChangeListener listener : listeners) {
+                listener.onTransactionDataChanged(type, transaction);
+            }
+            return;
+        }
+        List<Transaction> batch = Collections.unmodifiableList(changed);
         for (TransactionChangeListener listener : listeners) {
-            listener.onTransactionDataChanged(type, transaction);
+            listener.onTransactionsChanged(type, batch);
         }
     }
     
@@ -254,6 +457,18 @@ public class TransactionDataCenter {
          * @param transaction 变更的交易对象（仅对ADD/DELETE/UPDATE有效，REFRESH为null）
          */
         void onTransactionDataChanged(ChangeType type, Transaction transaction);
+        
+        /**
+         * 批量变更通知方法，一次批量添加或删除只调用一次
+         * 
+         * 默认按整体刷新处理，需要增量更新的监听器可以覆盖此方法
+         * 
+         * @param type 变更类型（ADD或DELETE）
+         * @param transactions 本批次变更的全部交易对象
+         */
+        default void onTransactionsChanged(ChangeType type, List<Transaction> transactions) {
+            onTransactionDataChanged(ChangeType.REFRESH, null);
+        }
     }
     
     /**
@@ -0,0 +1,144 @@
+package com.finance.tracker.classification.util;
+
+import com.finance.tracker.classification.model.Category;
+import com.finance.tracker.classification.model.Transaction;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 交错写入驱动：多个线程同时新增交易，并对彼此新增的交易做修改和删除，结束后
+ * 数据中心的索引和事件总线的订阅者都必须与管理器的内容一致（变更按账本顺序应用）。
+ *
+ * 管理器固定使用工作目录下的 data/transactions.csv，因此需要在空目录中运行；
+ * 检查失败时以状态1退出。
+ */
+public class TransactionDataCenterTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 3000;
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        if (new File("data/transactions.csv").exists()) {
+            System.err.println("data/transactions.csv already exists; run this driver from an empty directory");
+            System.exit(2);
+        }
+
+        CategoryManager categoryManager = new CategoryManager();
+        TransactionManager manager = new TransactionManager(categoryManager, "transactions.csv");
+        manager.setSyncWithAIModel(false);
+        TransactionDataCenter dataCenter = TransactionDataCenter.getInstance();
+        List<Category> categories = categoryManager.getAllCategories();
+
+        // 订阅者按收到的变更维护一份镜像
+        Map<String, BigDecimal> mirror = new ConcurrentHashMap<>();
+        dataCenter.getEventBus().subscribe("mirror", delta -> {
+            synchronized (mirror) {
+                if (delta.isRefresh()) {
+                    mirror.clear();
+                    mirror.putAll(amounts(dataCenter.getAllTransactions()));
+                }
+                delta.getRemoved().forEach(t -> mirror.remove(t.getId()));
+                delta.getAdded().forEach(t -> mirror.put(t.getId(), t.getAmount()));
+                delta.getUpdated().forEach(t -> mirror.put(t.getId(), t.getAmount()));
+            }
+        }, TransactionEventBus.Delivery.BACKGROUND);
+        // 先投递初始化时的整体刷新：刷新时订阅者读取的是投递时的最新数据，
+        // 与写入同时发生时会比随后的变更还新，那不是这里要检查的顺序问题
+        dataCenter.getEventBus().flush();
+        Thread.sleep(200);
+
+        List<String> ids = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int w = 0; w < THREADS; w++) {
+            Random random = new Random(w);
+            String prefix = "writer-" + w + "-";
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    int operation = random.nextInt(3);
+                    String id;
+                    synchronized (ids) {
+                        if (operation == 0 || ids.isEmpty()) {
+                            operation = 0;
+                            id = prefix + i;
+                            ids.add(id);
+                        } else {
+                            // 只在最近新增的少量交易中挑选，让各线程频繁碰到同一笔交易
+                            id = ids.get(Math.max(0, ids.size() - 1 - random.nextInt(20)));
+                        }
+                    }
+                    Transaction transaction = new Transaction(id, LocalDateTime.of(2024, 1 + random.nextInt(12), 1, 12, 0),
+                            categories.get(random.nextInt(categories.size())),
+                            BigDecimal.valueOf(random.nextInt(10000), 2), "interleaving");
+                    switch (operation) {
+                        case 0:
+                            manager.addTransaction(transaction);
+                            break;
+                        case 1:
+                            manager.updateTransaction(transaction);
+                            break;
+                        default:
+                            manager.deleteTransaction(transaction);
+                            break;
+                    }
+                }
+            }, "writer-" + w);
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Map<String, BigDecimal> expected = amounts(manager.getAllTransactions());
+        check("data center index matches the manager", expected.equals(amounts(dataCenter.getAllTransactions())));
+        check("data center totals match the manager",
+                dataCenter.getBalance().compareTo(manager.getBalance()) == 0);
+
+        dataCenter.getEventBus().flush();
+        boolean converged = false;
+        for (int i = 0; i < 100 && !converged; i++) {
+            Thread.sleep(50);
+            synchronized (mirror) {
+                converged = expected.equals(new HashMap<>(mirror));
+            }
+        }
+        check("event bus subscriber converges to the manager", converged);
+
+        System.out.println(failures == 0 ? "All checks passed" : failures + " check(s) failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static Map<String, BigDecimal> amounts(List<Transaction> transactions) {
+        Map<String, BigDecimal> amounts = new HashMap<>();
+        for (Transaction transaction : transactions) {
+            amounts.put(transaction.getId(), transaction.getAmount());
+        }
+        return amounts;
+    }
+
+    private static void check(String name, boolean passed) {
+        System.out.println((passed ? "PASS  " : "FAIL  ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,536 @@
+package com.finance.tracker.classification.util;
+
+import com.finance.tracker.classification.model.Transaction;
+import com.finance.tracker.persistence.AtomicFileWriter;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 交易去重索引
+ *
+ * 由三部分组成：
+ * 1. 交易ID的布隆过滤器，绝大多数新ID不需要再查精确表；
+ * 2. 精确哈希表：ID的64位哈希 → 内容指纹和所在月份，用于判断ID可能已存在，以及在更新/删除时找回旧指纹；
+ * 3. 指纹计数表：内容指纹 →（日期、金额、类别、规范化描述）相同的交易条数。
+ *
+ * 精确表只保存ID的哈希，命中后还要由 {@link IdLookup} 到账本中该月份确认ID确实存在，
+ * 两个不同ID哈希相同时不会把真实的新交易当作重复丢掉。
+ *
+ * 内容指纹用来发现"同一张账单换了ID再导一次"的情况。同一天两笔相同的消费是正常的，
+ * 因此按计数判断：已有 c 条相同指纹时，本次导入中该指纹的前 c 次出现视为重复。
+ *
+ * 索引随增删改增量维护，检查一条记录是 O(1)；并以 transactions.dedup 的形式保存在账本旁边，
+ * 文件中记录了对应基础文件的长度和修改时间，不匹配时由调用方重建。所有方法都是线程安全的。
+ */
+public class TransactionDedupIndex {
+
+    private static final int MAGIC = 0x46544458; // "FTDX"
+    private static final int VERSION = 2;
+
+    private static final int BLOOM_BITS_PER_ENTRY = 10;
+    private static final int BLOOM_HASHES = 7;
+    private static final int MIN_BLOOM_CAPACITY = 1 << 12;
+
+    private final LongTable fingerprintsById = new LongTable();
+    private final LongTable monthsById = new LongTable(); // ID哈希 → 所在月份（epochMonth + 1，0表示没有日期）
+    private final LongTable fingerprintCounts = new LongTable();
+    private long[] bloom;
+    private int bloomCapacity;
+
+    public TransactionDedupIndex() {
+        resetBloom(MIN_BLOOM_CAPACITY);
+    }
+
+    /**
+     * 由一组交易构建索引
+     */
+    public static TransactionDedupIndex of(Collection<Transaction> transactions) {
+        TransactionDedupIndex index = new TransactionDedupIndex();
+        index.addAll(transactions);
+        return index;
+    }
+
+    /**
+     * 按ID查询账本，确认精确表的命中
+     */
+    public interface IdLookup {
+        /**
+         * @param id 交易ID
+         * @param month 索引中记录的该ID所在月份，没有日期时为null
+         * @return 账本中是否存在该ID的交易
+         */
+        boolean containsId(String id, YearMonth month);
+    }
+
+    /**
+     * 检查器：在一次导入中依次判断每条记录是否重复，并记住本次已经出现过的ID和指纹
+     *
+     * 每次导入使用一个新的检查器，检查器本身不是线程安全的
+     */
+    public final class Checker {
+        private final boolean matchContent;
+        private final IdLookup lookup;
+        private final Set<String> seenIds = new HashSet<>();
+        private final LongTable seenFingerprints = new LongTable();
+
+        private Checker(boolean matchContent, IdLookup lookup) {
+            this.matchContent = matchContent;
+            this.lookup = lookup;
+        }
+
+        /**
+         * 内容指纹按交易当前的值计算，调用前应先完成格式化（金额精度、描述空白）
+         *
+         * @param transaction 待导入的交易
+         * @return true 表示ID已存在、本次导入中ID重复，或者内容与已有交易重复
+         */
+        public boolean isDuplicate(Transaction transaction) {
+            String id = transaction.getId();
+            if (!seenIds.add(id) || containsStoredId(id)) {
+                return true;
+            }
+            if (!matchContent) {
+                return false;
+            }
+            long fingerprint = fingerprint(transaction);
+            long occurrence = seenFingerprints.get(fingerprint) + 1;
+            seenFingerprints.put(fingerprint, occurrence);
+            return occurrence <= countFingerprint(fingerprint);
+        }
+
+        // 精确表只有哈希，命中时到账本确认，排除哈希碰撞
+        private boolean containsStoredId(String id) {
+            long idHash = idHash(id);
+            YearMonth month;
+            synchronized (TransactionDedupIndex.this) {
+                if (!containsIdHash(idHash)) {
+                    return false;
+                }
+                month = decodeMonth(monthsById.get(idHash));
+            }
+            return lookup.containsId(id, month);
+        }
+    }
+
+    /**
+     * 创建一次导入用的检查器
+     *
+     * @param matchContent 是否同时按内容指纹去重
+     * @param lookup 确认ID命中用的账本查询
+     */
+    public Checker newChecker(boolean matchContent, IdLookup lookup) {
+        return new Checker(matchContent, lookup);
+    }
+
+    /**
+     * 布隆过滤器判断：返回false时ID一定不存在
+     */
+    public boolean mightContainId(String id) {
+        return mightContainIdHash(idHash(id));
+    }
+
+    /**
+     * 已有交易中与该指纹内容相同的条数
+     */
+    public synchronized int countFingerprint(long fingerprint) {
+        return (int) fingerprintCounts.get(fingerprint);
+    }
+
+    public synchronized int size() {
+        return fingerprintsById.size();
+    }
+
+    /**
+     * 添加或替换（按ID）一条交易
+     */
+    public synchronized void add(Transaction transaction) {
+        long idHash = idHash(transaction.getId());
+        long fingerprint = fingerprint(transaction);
+        if (fingerprintsById.containsKey(idHash)) {
+            decrement(fingerprintsById.get(idHash));
+        } else if (fingerprintsById.size() >= bloomCapacity) {
+            resetBloom(bloomCapacity * 2);
+        }
+        fingerprintsById.put(idHash, fingerprint);
+        monthsById.put(idHash, encodeMonth(transaction));
+        fingerprintCounts.put(fingerprint, fingerprintCounts.get(fingerprint) + 1);
+        addToBloom(idHash);
+    }
+
+    public synchronized void addAll(Collection<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            add(transaction);
+        }
+    }
+
+    /**
+     * 按ID移除一条交易（布隆过滤器中的位保留到下次重建）
+     */
+    public synchronized void remove(String id) {
+        long idHash = idHash(id);
+        if (fingerprintsById.containsKey(idHash)) {
+            decrement(fingerprintsById.remove(idHash));
+            monthsById.remove(idHash);
+        }
+    }
+
+    public synchronized void removeAll(Collection<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            remove(transaction.getId());
+        }
+    }
+
+    /**
+     * 用一组交易整体替换索引内容
+     */
+    public synchronized void rebuild(Collection<Transaction> transactions) {
+        fingerprintsById.clear();
+        monthsById.clear();
+        fingerprintCounts.clear();
+        resetBloom(Math.max(MIN_BLOOM_CAPACITY, transactions.size() * 2));
+        addAll(transactions);
+    }
+
+    /**
+     * 保存索引，并记下对应基础文件的长度和修改时间
+     *
+     * @param file 索引文件
+     * @param baseFile 与索引内容一致的基础文件
+     * @throws IOException 写入失败
+     */
+    public synchronized void save(File file, File baseFile) throws IOException {
+        AtomicFileWriter.write(file, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(baseFile.length());
+            out.writeLong(baseFile.lastModified());
+            out.writeInt(bloomCapacity);
+            for (long word : bloom) {
+                out.writeLong(word);
+            }
+            out.writeInt(fingerprintsById.size());
+            for (int slot = 0; slot < fingerprintsById.keys.length; slot++) {
+                if (fingerprintsById.keys[slot] != 0) {
+                    out.writeLong(fingerprintsById.keys[slot]);
+                    out.writeLong(fingerprintsById.values[slot]);
+                    out.writeLong(monthsById.get(fingerprintsById.keys[slot]));
+                }
+            }
+            out.flush();
+        });
+    }
+
+    /**
+     * 从文件加载索引
+     *
+     * @param file 索引文件
+     * @param baseFile 当前的基础文件
+     * @param expectedSize 基础文件中的交易条数
+     * @return 文件不存在、已损坏或与基础文件不一致时返回false，索引内容保持不变
+     */
+    public synchronized boolean load(File file, File baseFile, int expectedSize) {
+        if (!file.exists() || !baseFile.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+            if (in.readLong() != baseFile.length() || in.readLong() != baseFile.lastModified()) {
+                return false;
+            }
+            int capacity = in.readInt();
+            if (capacity < MIN_BLOOM_CAPACITY) {
+                return false;
+            }
+            long[] bits = new long[bloomWords(capacity)];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = in.readLong();
+            }
+            int count = in.readInt();
+            if (count != expectedSize) {
+                return false;
+            }
+            LongTable byId = new LongTable();
+            LongTable months = new LongTable();
+            LongTable counts = new LongTable();
+            for (int i = 0; i < count; i++) {
+                long idHash = in.readLong();
+                long fingerprint = in.readLong();
+                byId.put(idHash, fingerprint);
+                months.put(idHash, in.readLong());
+                counts.put(fingerprint, counts.get(fingerprint) + 1);
+            }
+
+            fingerprintsById.replaceWith(byId);
+            monthsById.replaceWith(months);
+            fingerprintCounts.replaceWith(counts);
+            bloom = bits;
+            bloomCapacity = capacity;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error loading dedup index, it will be rebuilt: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 交易内容指纹：日期、金额（忽略末尾的0）、类别ID和规范化后的描述（小写、合并空白）
+     */
+    public static long fingerprint(Transaction transaction) {
+        long hash = FNV_OFFSET;
+        hash = mixLong(hash, transaction.getDateTime() == null ? 0 : transaction.getDateTime().toLocalDate().toEpochDay());
+        BigDecimal amount = transaction.getAmount();
+        if (amount != null) {
+            BigDecimal normalized = amount.signum() == 0 ? BigDecimal.ZERO : amount.stripTrailingZeros();
+            hash = mixLong(hash, normalized.scale());
+            hash = mixString(hash, normalized.unscaledValue().toString());
+        }
+        hash = mixLong(hash, transaction.getCategory() == null ? -1 : transaction.getCategory().getId());
+        hash = mixDescription(hash, transaction.getDescription());
+        return finish(hash);
+    }
+
+    private static long encodeMonth(Transaction transaction) {
+        if (transaction.getDateTime() == null) {
+            return 0;
+        }
+        YearMonth month = YearMonth.from(transaction.getDateTime());
+        return month.getYear() * 12L + month.getMonthValue(); // 从1开始，0留给没有日期的交易
+    }
+
+    private static YearMonth decodeMonth(long encoded) {
+        if (encoded == 0) {
+            return null;
+        }
+        long index = encoded - 1;
+        return YearMonth.of((int) Math.floorDiv(index, 12), (int) Math.floorMod(index, 12) + 1);
+    }
+
+    static long idHash(String id) {
+        return finish(mixString(FNV_OFFSET, id));
+    }
+
+    private synchronized boolean containsIdHash(long idHash) {
+        return mightContainIdHash(idHash) && fingerprintsById.containsKey(idHash);
+    }
+
+    private synchronized boolean mightContainIdHash(long idHash) {
+        int bits = bloom.length * 64;
+        int h1 = (int) idHash;
+        int h2 = (int) (idHash >>> 32);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bits;
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addToBloom(long idHash) {
+        int bits = bloom.length * 64;
+        int h1 = (int) idHash;
+        int h2 = (int) (idHash >>> 32);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bits;
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    // 扩容或重建时由精确表重新生成，同时清掉已删除ID留下的位
+    private void resetBloom(int capacity) {
+        bloomCapacity = capacity;
+        bloom = new long[bloomWords(capacity)];
+        for (int slot = 0; slot < fingerprintsById.keys.length; slot++) {
+            if (fingerprintsById.keys[slot] != 0) {
+                addToBloom(fingerprintsById.keys[slot]);
+            }
+        }
+    }
+
+    private static int bloomWords(int capacity) {
+        return (int) Math.min(Integer.MAX_VALUE / 64, ((long) capacity * BLOOM_BITS_PER_ENTRY + 63) / 64);
+    }
+
+    private void decrement(long fingerprint) {
+        long count = fingerprintCounts.get(fingerprint) - 1;
+        if (count > 0) {
+            fingerprintCounts.put(fingerprint, count);
+        } else {
+            fingerprintCounts.remove(fingerprint);
+        }
+    }
+
+    // 64位FNV-1a，最后用 MurmurHash3 的 fmix64 打散
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long mixLong(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    private static long mixChar(long hash, char c) {
+        hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+        return (hash ^ (c >>> 8)) * FNV_PRIME;
+    }
+
+    private static long mixString(long hash, String text) {
+        if (text == null) {
+            return mixLong(hash, -1);
+        }
+        for (int i = 0; i < text.length(); i++) {
+            hash = mixChar(hash, text.charAt(i));
+        }
+        return mixLong(hash, text.length());
+    }
+
+    private static long mixDescription(long hash, String description) {
+        if (description == null) {
+            return mixLong(hash, -1);
+        }
+        boolean pendingSpace = false;
+        boolean started = false;
+        for (int i = 0; i < description.length(); i++) {
+            char c = description.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = started;
+                continue;
+            }
+            if (pendingSpace) {
+                hash = mixChar(hash, ' ');
+                pendingSpace = false;
+            }
+            hash = mixChar(hash, Character.toLowerCase(c));
+            started = true;
+        }
+        return mixLong(hash, -2);
+    }
+
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        // 0 用作空槽
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * long → long 开放寻址哈希表（线性探测，删除时回移），键不能为0，缺失的值为0
+     */
+    private static final class LongTable {
+        private long[] keys = new long[16];
+        private long[] values = new long[16];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        boolean containsKey(long key) {
+            return keys[find(key)] == key;
+        }
+
+        long get(long key) {
+            int slot = find(key);
+            return keys[slot] == key ? values[slot] : 0;
+        }
+
+        void put(long key, long value) {
+            int slot = find(key);
+            if (keys[slot] != key) {
+                if ((size + 1) * 4 > keys.length * 3) {
+                    resize();
+                    slot = find(key);
+                }
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        long remove(long key) {
+            int slot = find(key);
+            if (keys[slot] != key) {
+                return 0;
+            }
+            long removed = values[slot];
+            int mask = keys.length - 1;
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (keys[next] != 0) {
+                int home = home(keys[next], mask);
+                // 把不再能从原位置探测到的键挪进空位
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[hole] = 0;
+            values[hole] = 0;
+            size--;
+            return removed;
+        }
+
+        void clear() {
+            keys = new long[16];
+            values = new long[16];
+            size = 0;
+        }
+
+        void replaceWith(LongTable other) {
+            keys = other.keys;
+            values = other.values;
+            size = other.size;
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            int slot = home(key, mask);
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static int home(long key, int mask) {
+            return (int) (key ^ (key >>> 32)) & mask;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = home(oldKeys[i], mask);
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.finance.tracker.classification.util;
+
+import com.finance.tracker.classification.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一段时间内交易变更的合并结果
+ *
+ * 同一ID的多次变更按净效果合并：先添加后删除互相抵消，先添加后更新仍算添加（取最新内容），
+ * 先删除后重新添加算更新。因此同一ID最多只出现在一个列表中。
+ * {@link #isRefresh()} 为true时表示底层数据整体变化（重新加载、切换存储、加载分区等），
+ * 订阅者应整体刷新，三个列表仅供参考。
+ */
+public final class TransactionDelta {
+
+    private final List<Transaction> added;
+    private final List<Transaction> removed;
+    private final List<Transaction> updated;
+    private final boolean refresh;
+    private final int eventCount;
+    private final long firstEventNanos;
+
+    private TransactionDelta(Builder builder) {
+        this.added = freeze(builder.added);
+        this.removed = freeze(builder.removed);
+        this.updated = freeze(builder.updated);
+        this.refresh = builder.refresh;
+        this.eventCount = builder.eventCount;
+        this.firstEventNanos = builder.firstEventNanos;
+    }
+
+    private static List<Transaction> freeze(Map<String, Transaction> byId) {
+        return byId.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(byId.values()));
+    }
+
+    /**
+     * 新增的交易（按发生顺序）
+     */
+    public List<Transaction> getAdded() {
+        return added;
+    }
+
+    /**
+     * 删除的交易
+     */
+    public List<Transaction> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * 更新后的交易
+     */
+    public List<Transaction> getUpdated() {
+        return updated;
+    }
+
+    /**
+     * 是否需要整体刷新
+     */
+    public boolean isRefresh() {
+        return refresh;
+    }
+
+    /**
+     * 合并进来的原始变更次数
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * 最早一次变更的时间（System.nanoTime），用于统计投递延迟
+     */
+    long getFirstEventNanos() {
+        return firstEventNanos;
+    }
+
+    public boolean isEmpty() {
+        return !refresh && added.isEmpty() && removed.isEmpty() && updated.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionDelta{added=" + added.size() + ", removed=" + removed.size()
+                + ", updated=" + updated.size() + ", refresh=" + refresh + ", events=" + eventCount + "}";
+    }
+
+    /**
+     * 增量合并器，非线程安全，由事件总线在锁内使用
+     */
+    static final class Builder {
+        private final Map<String, Transaction> added = new LinkedHashMap<>();
+        private final Map<String, Transaction> removed = new LinkedHashMap<>();
+        private final Map<String, Transaction> updated = new LinkedHashMap<>();
+        private boolean refresh;
+        private int eventCount;
+        private long firstEventNanos;
+
+        void add(Transaction transaction) {
+            String id = transaction.getId();
+            if (removed.remove(id) != null || updated.containsKey(id)) {
+                updated.put(id, transaction);
+            } else {
+                added.put(id, transaction);
+            }
+        }
+
+        void update(Transaction transaction) {
+            String id = transaction.getId();
+            if (added.containsKey(id)) {
+                added.put(id, transaction);
+            } else {
+                updated.put(id, transaction);
+            }
+        }
+
+        void remove(Transaction transaction) {
+            String id = transaction.getId();
+            if (added.remove(id) != null) {
+                return;
+            }
+            updated.remove(id);
+            removed.put(id, transaction);
+        }
+
+        void refresh() {
+            refresh = true;
+        }
+
+        /**
+         * 记录原始变更次数
+         */
+        void countEvents(int count, long nanos) {
+            if (eventCount == 0) {
+                firstEventNanos = nanos;
+            }
+            eventCount += count;
+        }
+
+        /**
+         * 把一个已合并的变更接在当前内容之后
+         */
+        void append(TransactionDelta delta) {
+            if (eventCount == 0) {
+                firstEventNanos = delta.firstEventNanos;
+            } else {
+                firstEventNanos = Math.min(firstEventNanos, delta.firstEventNanos);
+            }
+            eventCount += delta.eventCount;
+            refresh |= delta.refresh;
+            // 同一ID在一个变更中只出现一次，三个列表的重放顺序不影响结果
+            for (Transaction t : delta.removed) {
+                remove(t);
+            }
+            for (Transaction t : delta.added) {
+                add(t);
+            }
+            for (Transaction t : delta.updated) {
+                update(t);
+            }
+        }
+
+        boolean isEmpty() {
+            return eventCount == 0;
+        }
+
+        TransactionDelta build() {
+            return new TransactionDelta(this);
+        }
+    }
+}
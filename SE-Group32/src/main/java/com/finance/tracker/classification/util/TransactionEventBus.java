@@ -0,0 +1,381 @@
+package com.finance.tracker.classification.util;
+
+import com.finance.tracker.classification.model.Transaction;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * 交易变更事件总线 - 异步、合并后投递
+ *
+ * 发布方（数据中心）调用 publish* 后立即返回；同一合并窗口内的所有变更合并为一个
+ * {@link TransactionDelta}，窗口结束时投递给订阅者。一次导入一千条记录，订阅者只收到一次通知。
+ *
+ * 每个订阅者按顺序收到自己的变更：界面订阅者在EDT上执行，其他订阅者在后台线程池执行。
+ * 订阅者处理较慢时，排队中的多个变更会再合并为一个。
+ * 每个订阅者的投递延迟（最早一次变更到开始处理）和处理耗时记录在 {@link ListenerStats} 中。
+ */
+public class TransactionEventBus {
+
+    /**
+     * 投递线程
+     */
+    public enum Delivery {
+        /** 在Swing事件分发线程上投递，界面组件使用 */
+        EDT,
+        /** 在后台线程池上投递 */
+        BACKGROUND
+    }
+
+    /**
+     * 变更订阅者
+     */
+    public interface DeltaListener {
+        /**
+         * 收到一批合并后的变更
+         *
+         * @param delta 合并后的变更
+         */
+        void onTransactionsChanged(TransactionDelta delta);
+    }
+
+    /**
+     * 单个订阅者的投递统计
+     */
+    public static final class ListenerStats {
+        private final String name;
+        private final Delivery delivery;
+        private final long deliveries;
+        private final long events;
+        private final long failures;
+        private final long totalLatencyNanos;
+        private final long maxLatencyNanos;
+        private final long totalHandlerNanos;
+        private final long maxHandlerNanos;
+
+        ListenerStats(String name, Delivery delivery, long deliveries, long events, long failures,
+                      long totalLatencyNanos, long maxLatencyNanos, long totalHandlerNanos, long maxHandlerNanos) {
+            this.name = name;
+            this.delivery = delivery;
+            this.deliveries = deliveries;
+            this.events = events;
+            this.failures = failures;
+            this.totalLatencyNanos = totalLatencyNanos;
+            this.maxLatencyNanos = maxLatencyNanos;
+            this.totalHandlerNanos = totalHandlerNanos;
+            this.maxHandlerNanos = maxHandlerNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Delivery getDelivery() {
+            return delivery;
+        }
+
+        /**
+         * 调用订阅者的次数
+         */
+        public long getDeliveries() {
+            return deliveries;
+        }
+
+        /**
+         * 合并进这些调用的原始变更次数
+         */
+        public long getEventCount() {
+            return events;
+        }
+
+        /**
+         * 订阅者抛出异常的次数
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * 平均投递延迟：最早一次变更到订阅者开始处理
+         */
+        public double getAverageLatencyMillis() {
+            return deliveries == 0 ? 0 : totalLatencyNanos / 1e6 / deliveries;
+        }
+
+        public double getMaxLatencyMillis() {
+            return maxLatencyNanos / 1e6;
+        }
+
+        /**
+         * 订阅者平均处理耗时
+         */
+        public double getAverageHandlerMillis() {
+            return deliveries == 0 ? 0 : totalHandlerNanos / 1e6 / deliveries;
+        }
+
+        public double getMaxHandlerMillis() {
+            return maxHandlerNanos / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s [%s]: %d deliveries, %d events, %d failures, latency avg %.1f ms / max %.1f ms, "
+                            + "handler avg %.1f ms / max %.1f ms",
+                    name, delivery, deliveries, events, failures, getAverageLatencyMillis(), getMaxLatencyMillis(),
+                    getAverageHandlerMillis(), getMaxHandlerMillis());
+        }
+    }
+
+    private static final long DEFAULT_COALESCING_WINDOW_MILLIS = 50;
+
+    private final Object lock = new Object();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService timer;
+    private final ExecutorService backgroundExecutor;
+    private TransactionDelta.Builder pending = new TransactionDelta.Builder();
+    private ScheduledFuture<?> scheduledFlush;
+    private volatile long coalescingWindowMillis = DEFAULT_COALESCING_WINDOW_MILLIS;
+
+    public TransactionEventBus() {
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("transaction-event-bus"));
+        this.backgroundExecutor = Executors.newCachedThreadPool(daemonThreads("transaction-event-listener"));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 添加订阅者
+     *
+     * @param name 统计中显示的名称
+     * @param listener 订阅者
+     * @param delivery 投递线程
+     */
+    public void subscribe(String name, DeltaListener listener, Delivery delivery) {
+        if (listener == null) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            if (subscription.listener == listener) {
+                return;
+            }
+        }
+        subscriptions.add(new Subscription(name, listener, delivery));
+    }
+
+    /**
+     * 移除订阅者，已排队的变更不再投递
+     *
+     * @param listener 订阅者
+     */
+    public void unsubscribe(DeltaListener listener) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.listener == listener) {
+                subscription.cancelled = true;
+                subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    public void publishAdded(Collection<Transaction> transactions) {
+        publish(transactions.size(), builder -> transactions.forEach(builder::add));
+    }
+
+    public void publishRemoved(Collection<Transaction> transactions) {
+        publish(transactions.size(), builder -> transactions.forEach(builder::remove));
+    }
+
+    public void publishUpdated(Transaction transaction) {
+        publish(1, builder -> builder.update(transaction));
+    }
+
+    public void publishRefresh() {
+        publish(1, TransactionDelta.Builder::refresh);
+    }
+
+    private void publish(int events, Consumer<TransactionDelta.Builder> change) {
+        if (events == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (lock) {
+            pending.countEvents(events, now);
+            change.accept(pending);
+            if (scheduledFlush == null) {
+                scheduledFlush = timer.schedule(this::flush, coalescingWindowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * 立即结束当前合并窗口并投递（不等待订阅者处理完）
+     */
+    public void flush() {
+        synchronized (lock) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            TransactionDelta delta = pending.build();
+            pending = new TransactionDelta.Builder();
+            if (delta.isEmpty()) {
+                // 窗口内的变更互相抵消
+                return;
+            }
+            // 仍在lock内入队：定时投递与显式flush()同时发生时，订阅者按取出的先后收到变更
+            // （入队只是排队并提交投递任务，不等待订阅者处理）
+            for (Subscription subscription : subscriptions) {
+                subscription.enqueue(delta);
+            }
+        }
+    }
+
+    /**
+     * 设置合并窗口：第一次变更后等待多久再投递
+     *
+     * @param millis 毫秒数，0表示尽快投递（仍然合并已到达的变更）
+     */
+    public void setCoalescingWindowMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Coalescing window must not be negative: " + millis);
+        }
+        this.coalescingWindowMillis = millis;
+    }
+
+    public long getCoalescingWindowMillis() {
+        return coalescingWindowMillis;
+    }
+
+    /**
+     * 获取每个订阅者的投递统计
+     *
+     * @return 名称到统计的映射（按订阅顺序）
+     */
+    public Map<String, ListenerStats> getListenerStats() {
+        Map<String, ListenerStats> stats = new LinkedHashMap<>();
+        for (Subscription subscription : subscriptions) {
+            stats.put(subscription.name, subscription.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * 一个订阅者及其待投递队列，队列由一个任务串行处理，保证投递顺序
+     */
+    private final class Subscription {
+        private final String name;
+        private final DeltaListener listener;
+        private final Delivery delivery;
+        private final ArrayDeque<TransactionDelta> queue = new ArrayDeque<>();
+        private boolean draining;
+        private volatile boolean cancelled;
+
+        private long deliveries;
+        private long events;
+        private long failures;
+        private long totalLatencyNanos;
+        private long maxLatencyNanos;
+        private long totalHandlerNanos;
+        private long maxHandlerNanos;
+
+        Subscription(String name, DeltaListener listener, Delivery delivery) {
+            this.name = name;
+            this.listener = listener;
+            this.delivery = delivery;
+        }
+
+        void enqueue(TransactionDelta delta) {
+            synchronized (this) {
+                queue.add(delta);
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            if (delivery == Delivery.EDT) {
+                SwingUtilities.invokeLater(this::drain);
+            } else {
+                backgroundExecutor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                TransactionDelta delta;
+                synchronized (this) {
+                    if (queue.isEmpty() || cancelled) {
+                        queue.clear();
+                        draining = false;
+                        return;
+                    }
+                    if (queue.size() == 1) {
+                        delta = queue.poll();
+                    } else {
+                        // 处理跟不上时把排队的变更再合并一次
+                        TransactionDelta.Builder merged = new TransactionDelta.Builder();
+                        while (!queue.isEmpty()) {
+                            merged.append(queue.poll());
+                        }
+                        delta = merged.build();
+                    }
+                }
+                if (!delta.isEmpty()) {
+                    deliver(delta);
+                }
+            }
+        }
+
+        private void deliver(TransactionDelta delta) {
+            long start = System.nanoTime();
+            boolean failed = false;
+            try {
+                listener.onTransactionsChanged(delta);
+            } catch (RuntimeException e) {
+                failed = true;
+                System.err.println("Transaction listener " + name + " failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+            long end = System.nanoTime();
+            synchronized (this) {
+                long latency = start - delta.getFirstEventNanos();
+                long handler = end - start;
+                deliveries++;
+                events += delta.getEventCount();
+                if (failed) {
+                    failures++;
+                }
+                totalLatencyNanos += latency;
+                maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+                totalHandlerNanos += handler;
+                maxHandlerNanos = Math.max(maxHandlerNanos, handler);
+            }
+        }
+
+        synchronized ListenerStats stats() {
+            return new ListenerStats(name, delivery, deliveries, events, failures,
+                    totalLatencyNanos, maxLatencyNanos, totalHandlerNanos, maxHandlerNanos);
+        }
+    }
+}
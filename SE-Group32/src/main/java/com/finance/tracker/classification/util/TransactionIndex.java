@@ -0,0 +1,249 @@
+package com.finance.tracker.classification.util;
+
+import com.finance.tracker.classification.model.CategoryType;
+import com.finance.tracker.classification.model.Transaction;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 交易索引 - 按时间倒序（最新在前）维护交易记录
+ *
+ * 内部持有当前的 {@link TransactionSnapshot}。写操作互斥，每次修改（包括一整批修改）
+ * 生成新快照并以递增的版本号原子发布；读操作只读取当前快照，从不加锁，也不会阻塞写入。
+ * 需要多次读取保持一致时，先调用 {@link #snapshot()} 再在同一快照上读取。
+ */
+public class TransactionIndex {
+
+    private volatile TransactionSnapshot snapshot = TransactionSnapshot.EMPTY;
+
+    // 一致性校验模式：每次读取合计前都从头重新计算并比对（用于测试）
+    private volatile boolean consistencyCheckEnabled = false;
+
+    /**
+     * 获取当前快照
+     *
+     * @return 不可变快照
+     */
+    public TransactionSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 获取当前版本号
+     *
+     * @return 版本号
+     */
+    public long getVersion() {
+        return snapshot.getVersion();
+    }
+
+    /**
+     * 添加交易记录；ID已存在时替换原记录
+     *
+     * @param transaction 交易记录
+     * @return 被替换的原记录，没有则为null
+     */
+    public synchronized Transaction put(Transaction transaction) {
+        TransactionSnapshot current = snapshot;
+        Transaction previous = current.get(transaction.getId());
+        publish(current.with(transaction));
+        return previous;
+    }
+
+    /**
+     * 批量添加交易记录，整批作为一个版本发布
+     *
+     * @param transactions 交易记录
+     */
+    public synchronized void putAll(Collection<Transaction> transactions) {
+        TransactionSnapshot next = snapshot;
+        for (Transaction transaction : transactions) {
+            next = next.with(transaction);
+        }
+        publish(next);
+    }
+
+    /**
+     * 按ID移除交易记录
+     *
+     * @param id 交易ID
+     * @return 被移除的记录，不存在则为null
+     */
+    public synchronized Transaction remove(String id) {
+        TransactionSnapshot current = snapshot;
+        Transaction removed = current.get(id);
+        if (removed != null) {
+            publish(current.without(id));
+        }
+        return removed;
+    }
+
+    /**
+     * 按ID批量移除交易记录，整批作为一个版本发布
+     *
+     * @param ids 交易ID
+     * @return 实际被移除的记录
+     */
+    public synchronized List<Transaction> removeAll(Collection<String> ids) {
+        TransactionSnapshot next = snapshot;
+        List<Transaction> removed = new ArrayList<>();
+        for (String id : ids) {
+            Transaction existing = next.get(id);
+            if (existing != null) {
+                removed.add(existing);
+                next = next.without(id);
+            }
+        }
+        if (!removed.isEmpty()) {
+            publish(next);
+        }
+        return removed;
+    }
+
+    /**
+     * 清空索引
+     */
+    public synchronized void clear() {
+        publish(TransactionSnapshot.EMPTY);
+    }
+
+    /**
+     * 用给定的交易整体替换当前内容，读者不会看到中间的空状态
+     *
+     * @param transactions 交易记录
+     */
+    public synchronized void replaceAll(Collection<Transaction> transactions) {
+        publish(TransactionSnapshot.of(transactions));
+    }
+
+    private void publish(TransactionSnapshot next) {
+        snapshot = next.withVersion(snapshot.getVersion() + 1);
+    }
+
+    /**
+     * 按ID查找交易记录
+     *
+     * @param id 交易ID
+     * @return 交易记录，不存在则为null
+     */
+    public Transaction get(String id) {
+        return snapshot.get(id);
+    }
+
+    public boolean contains(String id) {
+        return snapshot.contains(id);
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * 获取全部交易记录（按时间降序）
+     *
+     * @return 只读列表
+     */
+    public List<Transaction> getAll() {
+        return snapshot.getAll();
+    }
+
+    /**
+     * 获取指定类型的交易记录（按时间降序）
+     *
+     * @param type 类别类型
+     * @return 只读列表
+     */
+    public List<Transaction> getByType(CategoryType type) {
+        return snapshot.getByType(type);
+    }
+
+    /**
+     * 获取指定类别的交易记录（按时间降序）
+     *
+     * @param categoryId 类别ID
+     * @return 只读列表
+     */
+    public List<Transaction> getByCategory(int categoryId) {
+        return snapshot.getByCategory(categoryId);
+    }
+
+    /**
+     * 在当前快照上执行查询，结果按时间降序惰性返回
+     *
+     * @param query 查询条件
+     * @return 惰性结果流
+     */
+    public Stream<Transaction> query(TransactionQuery query) {
+        return snapshot.query(query);
+    }
+
+    /**
+     * 获取指定类型的金额合计
+     *
+     * @param type 类别类型
+     * @return 合计金额
+     */
+    public BigDecimal getTotal(CategoryType type) {
+        checkConsistencyIfEnabled();
+        return snapshot.getTotal(type);
+    }
+
+    /**
+     * 获取指定类别的金额合计
+     *
+     * @param categoryId 类别ID
+     * @return 合计金额
+     */
+    public BigDecimal getCategoryTotal(int categoryId) {
+        checkConsistencyIfEnabled();
+        return snapshot.getCategoryTotal(categoryId);
+    }
+
+    /**
+     * 获取余额（总收入减总支出）
+     *
+     * @return 余额
+     */
+    public BigDecimal getBalance() {
+        checkConsistencyIfEnabled();
+        return snapshot.getBalance();
+    }
+
+    /**
+     * 从头重新计算全部合计并与增量维护的结果比对，不一致时输出差异并以重算结果修正
+     *
+     * @return 合计是否一致
+     */
+    public synchronized boolean verifyTotals() {
+        TransactionSnapshot current = snapshot;
+        TransactionSnapshot recomputed = current.withRecomputedTotals();
+        if (current.totalsMatch(recomputed)) {
+            return true;
+        }
+        publish(recomputed);
+        return false;
+    }
+
+    /**
+     * 设置一致性校验模式
+     *
+     * @param enabled true表示每次读取合计前都重新计算并比对
+     */
+    public void setConsistencyCheckEnabled(boolean enabled) {
+        this.consistencyCheckEnabled = enabled;
+    }
+
+    public boolean isConsistencyCheckEnabled() {
+        return consistencyCheckEnabled;
+    }
+
+    private void checkConsistencyIfEnabled() {
+        if (consistencyCheckEnabled) {
+            verifyTotals();
+        }
+    }
+}
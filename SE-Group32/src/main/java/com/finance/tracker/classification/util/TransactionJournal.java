@@ -0,0 +1,328 @@
+package com.finance.tracker.classification.util;
+
+import com.finance.tracker.classification.model.Transaction;
+import com.finance.tracker.persistence.WriteAheadLog;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 交易日志 - 以追加方式记录交易的增删改操作
+ *
+ * 日志基于 {@link WriteAheadLog}，每条记录带长度和CRC32校验，内容为 "操作码,内容"：
+ * A/U 后面跟交易的CSV行，D 后面跟交易ID。
+ * 启动时先读取基础CSV，再按顺序重放日志（写入时崩溃留下的残缺尾部会被截掉）；
+ * 压缩时把日志合并回基础CSV。旧版本的纯文本日志仍可重放。
+ *
+ * 写入分两步：{@link #appendAll} 只缓冲并返回序号，{@link #sync} 等待落盘；
+ * 多个线程同时等待时共用一次fsync（组提交）。
+ */
+public class TransactionJournal {
+
+    /**
+     * 日志操作类型
+     */
+    public enum Operation {
+        ADD('A'), UPDATE('U'), DELETE('D');
+
+        private final char code;
+
+        Operation(char code) {
+            this.code = code;
+        }
+
+        public char getCode() {
+            return code;
+        }
+
+        static Operation fromCode(char code) {
+            for (Operation op : values()) {
+                if (op.code == code) {
+                    return op;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final File journalFile;
+    private final File compactingFile;
+    private WriteAheadLog log;
+    private boolean syncOnWrite = true;
+
+    /**
+     * 创建交易日志
+     *
+     * @param baseFile 基础CSV文件，日志文件与其放在同一目录
+     */
+    public TransactionJournal(File baseFile) {
+        this.journalFile = new File(baseFile.getPath() + ".journal");
+        this.compactingFile = new File(baseFile.getPath() + ".journal.compacting");
+    }
+
+    /**
+     * 追加一条日志记录并等待落盘
+     *
+     * @param operation 操作类型
+     * @param transaction 交易记录
+     * @throws IOException 写入失败
+     */
+    public void append(Operation operation, Transaction transaction) throws IOException {
+        List<Transaction> single = new ArrayList<>(1);
+        single.add(transaction);
+        sync(appendAll(operation, single));
+    }
+
+    /**
+     * 缓冲一批同类型记录，调用 {@link #sync} 后才保证落盘
+     *
+     * @param operation 操作类型
+     * @param transactions 交易记录
+     * @return 最后一条记录的序号
+     * @throws IOException 写入失败
+     */
+    public synchronized long appendAll(Operation operation, Collection<Transaction> transactions) throws IOException {
+        List<byte[]> records = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            String payload = operation == Operation.DELETE ? transaction.getId() : transaction.toCsvLine();
+            records.add((operation.getCode() + "," + payload).getBytes(StandardCharsets.UTF_8));
+        }
+        return openLog().appendAll(records);
+    }
+
+    /**
+     * 等待指定序号之前的记录全部写入磁盘
+     *
+     * 不持有日志锁等待，其他线程可以继续追加，并由同一次fsync一起提交
+     *
+     * @param sequence appendAll 返回的序号
+     * @throws IOException 写入失败
+     */
+    public void sync(long sequence) throws IOException {
+        WriteAheadLog current;
+        synchronized (this) {
+            current = log;
+        }
+        if (current != null) {
+            current.sync(sequence);
+        }
+    }
+
+    /**
+     * 把目前已缓冲的全部记录写入磁盘
+     *
+     * @throws IOException 写入失败
+     */
+    public void syncAll() throws IOException {
+        sync(Long.MAX_VALUE);
+    }
+
+    private WriteAheadLog openLog() throws IOException {
+        if (log == null) {
+            if (journalFile.exists() && !WriteAheadLog.isLogFile(journalFile)) {
+                // 旧版本的文本日志已在启动时重放并合并，不再追加到它后面
+                Files.delete(journalFile.toPath());
+            }
+            log = new WriteAheadLog(journalFile);
+            log.setForceOnSync(syncOnWrite);
+        }
+        return log;
+    }
+
+    /**
+     * 按顺序重放日志到交易表中（先重放压缩中的旧日志，再重放当前日志）
+     *
+     * 重放按ID进行，因此重复重放同一条记录不会产生重复数据
+     *
+     * @param transactions 以ID为键的交易表，会被原地修改
+     * @param parser CSV行解析器
+     * @return 重放的记录数
+     */
+    public synchronized int replay(Map<String, Transaction> transactions, Function<String, Transaction> parser) {
+        int replayed = replayFile(compactingFile, transactions, parser);
+        replayed += replayFile(journalFile, transactions, parser);
+        return replayed;
+    }
+
+    private int replayFile(File file, Map<String, Transaction> transactions, Function<String, Transaction> parser) {
+        if (!file.exists()) {
+            return 0;
+        }
+        if (!WriteAheadLog.isLogFile(file)) {
+            return replayLegacyFile(file, transactions, parser);
+        }
+
+        int[] replayed = {0};
+        int[] recordNumber = {0};
+        try (WriteAheadLog fileLog = new WriteAheadLog(file)) {
+            fileLog.replay(payload -> {
+                recordNumber[0]++;
+                if (applyRecord(new String(payload, StandardCharsets.UTF_8), transactions, parser)) {
+                    replayed[0]++;
+                } else {
+                    System.err.println("Skipping unparsable journal record " + recordNumber[0] + " in " + file.getName());
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Error replaying journal " + file.getName() + ": " + e.getMessage());
+        }
+        return replayed[0];
+    }
+
+    /**
+     * 重放旧版本的纯文本日志（每行一条记录）
+     */
+    private int replayLegacyFile(File file, Map<String, Transaction> transactions, Function<String, Transaction> parser) {
+        int replayed = 0;
+        int lineNumber = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (applyRecord(line, transactions, parser)) {
+                    replayed++;
+                } else {
+                    // 末尾的不完整记录（写入时崩溃）直接忽略
+                    System.err.println("Skipping malformed journal record " + lineNumber + " in " + file.getName());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error replaying journal " + file.getName() + ": " + e.getMessage());
+        }
+        return replayed;
+    }
+
+    private boolean applyRecord(String record, Map<String, Transaction> transactions, Function<String, Transaction> parser) {
+        Operation op = record.length() > 2 && record.charAt(1) == ',' ? Operation.fromCode(record.charAt(0)) : null;
+        if (op == null) {
+            return false;
+        }
+
+        String payload = record.substring(2);
+        if (op == Operation.DELETE) {
+            transactions.remove(payload);
+            return true;
+        }
+        Transaction transaction = parser.apply(payload);
+        if (transaction == null) {
+            return false;
+        }
+        transactions.put(transaction.getId(), transaction);
+        return true;
+    }
+
+    /**
+     * 开始压缩：把当前日志移到压缩文件，之后的写入进入新的日志文件
+     *
+     * 调用方必须在同一把锁内取得与此时刻一致的交易快照
+     *
+     * @throws IOException 文件操作失败
+     */
+    public synchronized void beginCompaction() throws IOException {
+        closeLog();
+        if (!journalFile.exists()) {
+            return;
+        }
+
+        if (compactingFile.exists()) {
+            // 上一次压缩未完成，把当前日志的记录接到旧日志后面
+            List<byte[]> records = new ArrayList<>();
+            try (WriteAheadLog current = new WriteAheadLog(journalFile)) {
+                current.replay(records::add);
+            }
+            try (WriteAheadLog compacting = new WriteAheadLog(compactingFile)) {
+                compacting.replay(payload -> { });
+                compacting.appendAndSync(records);
+            }
+            Files.delete(journalFile.toPath());
+        } else {
+            Files.move(journalFile.toPath(), compactingFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * 完成压缩：基础文件已包含压缩日志中的全部记录，删除压缩文件
+     */
+    public synchronized void finishCompaction() {
+        if (compactingFile.exists() && !compactingFile.delete()) {
+            System.err.println("Unable to delete compacted journal: " + compactingFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 清空所有日志（基础文件已完整重写时调用）
+     */
+    public synchronized void reset() {
+        closeLog();
+        if (journalFile.exists() && !journalFile.delete()) {
+            System.err.println("Unable to delete journal: " + journalFile.getAbsolutePath());
+        }
+        finishCompaction();
+    }
+
+    /**
+     * 关闭日志文件句柄
+     */
+    public synchronized void close() {
+        closeLog();
+    }
+
+    private void closeLog() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                System.err.println("Error closing journal: " + e.getMessage());
+            }
+            log = null;
+        }
+    }
+
+    /**
+     * 判断磁盘上是否有尚未合并回基础文件的日志记录（包括压缩中的旧日志）
+     *
+     * @return 有记录时返回true
+     */
+    public synchronized boolean hasRecords() {
+        return hasRecords(compactingFile) || hasRecords(journalFile);
+    }
+
+    private static boolean hasRecords(File file) {
+        if (!file.exists()) {
+            return false;
+        }
+        return WriteAheadLog.isLogFile(file) ? WriteAheadLog.hasRecords(file) : file.length() > 0;
+    }
+
+    /**
+     * 获取当前日志中的记录数
+     *
+     * @return 记录数
+     */
+    public synchronized int getEntryCount() {
+        return log == null ? 0 : log.getRecordCount();
+    }
+
+    /**
+     * 设置每次写入后是否执行fsync
+     *
+     * @param syncOnWrite true表示每条记录都落盘
+     */
+    public synchronized void setSyncOnWrite(boolean syncOnWrite) {
+        this.syncOnWrite = syncOnWrite;
+        if (log != null) {
+            log.setForceOnSync(syncOnWrite);
+        }
+    }
+
+    public synchronized boolean isSyncOnWrite() {
+        return syncOnWrite;
+    }
+}
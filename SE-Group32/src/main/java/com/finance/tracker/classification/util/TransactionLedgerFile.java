@@ -0,0 +1,214 @@
+package com.finance.tracker.classification.util;
+
+import com.finance.tracker.classification.model.Category;
+import com.finance.tracker.classification.model.CategoryType;
+import com.finance.tracker.classification.model.Transaction;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * 二进制列式账本文件
+ *
+ * 文件布局（大端序）：
+ * <pre>
+ * 头部      int 魔数, short 格式版本, int 记录数 n, int 描述字典大小 d
+ * 时间列    long[n]  UTC纪元秒
+ * 金额列    long[n]  未缩放值；byte[n] 小数位数
+ * 类别列    int[n]   类别ID；byte[n] 类别类型序号
+ * 描述列    int[n]   描述在字典中的序号，-1表示无描述
+ * 描述字典  d 个 (int 字节数, UTF-8 字节)
+ * ID区      n 个 (int 字节数, UTF-8 字节)
+ * </pre>
+ * 读取通过 {@link MappedByteBuffer} 直接按列访问，无需逐字符解析文本、解析日期或构造字符串缓冲；
+ * 相同的描述只解码一次并在记录间共享。
+ */
+public final class TransactionLedgerFile {
+
+    private static final int MAGIC = 0x46544C47; // "FTLG"
+    private static final short FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 4 + 4;
+    // 每条记录在定长列中占用的字节数
+    private static final int ROW_COLUMN_BYTES = 8 + 8 + 1 + 4 + 1 + 4;
+
+    private TransactionLedgerFile() {
+    }
+
+    /**
+     * 把交易记录写入账本文件
+     *
+     * @param file 目标文件
+     * @param transactions 交易记录
+     * @throws IOException 写入失败，或金额超出二进制格式可表示的范围
+     */
+    public static void write(File file, List<Transaction> transactions) throws IOException {
+        int count = transactions.size();
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> dictionaryEntries = new ArrayList<>();
+        int[] descriptionRefs = new int[count];
+        for (int i = 0; i < count; i++) {
+            String description = transactions.get(i).getDescription();
+            if (description == null) {
+                descriptionRefs[i] = -1;
+                continue;
+            }
+            Integer ref = dictionary.get(description);
+            if (ref == null) {
+                ref = dictionaryEntries.size();
+                dictionary.put(description, ref);
+                dictionaryEntries.add(description);
+            }
+            descriptionRefs[i] = ref;
+        }
+
+        try (FileOutputStream fileOut = new FileOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeInt(count);
+            out.writeInt(dictionaryEntries.size());
+
+            for (Transaction t : transactions) {
+                out.writeLong(t.getDateTime().toEpochSecond(ZoneOffset.UTC));
+            }
+            for (Transaction t : transactions) {
+                out.writeLong(unscaledAmount(t));
+            }
+            for (Transaction t : transactions) {
+                out.writeByte(t.getAmount().scale());
+            }
+            for (Transaction t : transactions) {
+                out.writeInt(t.getCategory().getId());
+            }
+            for (Transaction t : transactions) {
+                out.writeByte(t.getCategory().getType().ordinal());
+            }
+            for (int ref : descriptionRefs) {
+                out.writeInt(ref);
+            }
+            for (String entry : dictionaryEntries) {
+                writeString(out, entry);
+            }
+            for (Transaction t : transactions) {
+                writeString(out, t.getId());
+            }
+
+            out.flush();
+            fileOut.getChannel().force(false);
+        }
+    }
+
+    private static long unscaledAmount(Transaction t) throws IOException {
+        BigDecimal amount = t.getAmount();
+        BigInteger unscaled = amount.unscaledValue();
+        if (unscaled.bitLength() > 63 || amount.scale() < Byte.MIN_VALUE || amount.scale() > Byte.MAX_VALUE) {
+            throw new IOException("Amount of transaction " + t.getId() + " cannot be stored in the binary ledger: " + amount);
+        }
+        return unscaled.longValue();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 读取账本文件
+     *
+     * 类别通过 categoryResolver 按 (类别ID, 记录中的类别类型) 解析，每个不同的类别ID只解析一次
+     *
+     * @param file 账本文件
+     * @param categoryResolver 类别解析器
+     * @return 按文件顺序排列的交易记录
+     * @throws IOException 文件无法读取或内容损坏
+     */
+    public static List<Transaction> read(File file, BiFunction<Integer, CategoryType, Category> categoryResolver)
+            throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer, categoryResolver);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt ledger file " + file.getName() + ": " + e, e);
+        }
+    }
+
+    private static List<Transaction> read(MappedByteBuffer buffer,
+                                          BiFunction<Integer, CategoryType, Category> categoryResolver)
+            throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a transaction ledger file");
+        }
+        short version = buffer.getShort(4);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported ledger format version: " + version);
+        }
+        int count = buffer.getInt(6);
+        int dictionarySize = buffer.getInt(10);
+        if (count < 0 || dictionarySize < 0 || (long) count * ROW_COLUMN_BYTES > buffer.limit() - HEADER_SIZE) {
+            throw new IOException("Corrupt ledger header");
+        }
+
+        int timeColumn = HEADER_SIZE;
+        int amountColumn = timeColumn + 8 * count;
+        int scaleColumn = amountColumn + 8 * count;
+        int categoryColumn = scaleColumn + count;
+        int typeColumn = categoryColumn + 4 * count;
+        int descriptionColumn = typeColumn + count;
+
+        buffer.position(descriptionColumn + 4 * count);
+        String[] dictionary = new String[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionary[i] = readString(buffer);
+        }
+
+        CategoryType[] types = CategoryType.values();
+        Map<Integer, Category> categories = new HashMap<>();
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = readString(buffer);
+            LocalDateTime dateTime = LocalDateTime.ofEpochSecond(buffer.getLong(timeColumn + 8 * i), 0, ZoneOffset.UTC);
+            BigDecimal amount = BigDecimal.valueOf(buffer.getLong(amountColumn + 8 * i), buffer.get(scaleColumn + i));
+            int categoryId = buffer.getInt(categoryColumn + 4 * i);
+            CategoryType type = types[buffer.get(typeColumn + i)];
+            int descriptionRef = buffer.getInt(descriptionColumn + 4 * i);
+            String description = descriptionRef >= 0 ? dictionary[descriptionRef] : null;
+
+            Category category = categories.get(categoryId);
+            if (category == null) {
+                category = categoryResolver.apply(categoryId, type);
+                categories.put(categoryId, category);
+            }
+            transactions.add(new Transaction(id, dateTime, category, amount, description));
+        }
+        return transactions;
+    }
+
+    private static String readString(MappedByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Corrupt ledger string at offset " + buffer.position());
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -4,29 +4,172 @@ import com.finance.tracker.classification.model.Category;
 import com.finance.tracker.classification.model.CategoryType;
 import com.finance.tracker.classification.model.Transaction;
 import com.finance.tracker.integration.TransactionSyncFacade;
+import com.finance.tracker.integration.TransactionSyncQueue;
+import com.finance.tracker.localization.MoneyAccumulator;
+import com.finance.tracker.persistence.AtomicFileWriter;
+import com.finance.tracker.persistence.WriteBehindPersister;
 import java.io.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
  * Transaction Manager - Manages access to transaction records
  */
 public class TransactionManager {
-    private List<Transaction> transactions = new ArrayList<>();
+    private final TransactionIndex transactions = new TransactionIndex(); // 按时间倒序维护
+    private final TransactionDedupIndex dedupIndex = new TransactionDedupIndex(); // 导入去重用
     private CategoryManager categoryManager;
     private String csvFilePath;
+    private String ledgerFilePath;
+    private String dedupFilePath;
+    private String partitionDirPath;
+    private volatile LedgerFormat ledgerFormat;
     private boolean syncWithAIModel = true; // 控制是否同步到AI模型
+    private TransactionChangeLog changeLog; // 变更序号，AI模型据此增量同步
+    
+    // 日志存储模式：增删改只追加到日志，由后台压缩合并回CSV
+    private TransactionJournal journal;
+    private boolean journalEnabled = true;
+    private volatile boolean compactionScheduled = false;
+    private volatile long baseGeneration = 0;
+    private final Object storageLock = new Object();   // 保护内存列表与日志追加的一致性
+    private final Object baseFileLock = new Object();  // 串行化基础CSV文件的重写
+    
+    // 分区存储模式：内存中只保留已加载的月份，以下字段都由storageLock保护
+    private TransactionPartitionStore partitionStore;
+    private final Map<YearMonth, Boolean> loadedMonths = new LinkedHashMap<>(16, 0.75f, true); // 访问顺序，最久未用的在前
+    private final Set<YearMonth> dirtyMonths = new HashSet<>();
+    private int partitionMemoryBudget = DEFAULT_PARTITION_MEMORY_BUDGET;
     
     // CSV file header row
     private static final String CSV_HEADER = "ID,DateTime,CategoryID,CategoryType,Amount,Description";
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
+    // 后台写线程负责的两类持久化：日志落盘、全量保存
+    private final WriteBehindPersister.Store journalStore = new WriteBehindPersister.Store() {
+        @Override
+        public String getName() {
+            return "transaction journal";
+        }
+        
+        @Override
+        public void persist() {
+            syncJournal();
+        }
+    };
+    private final WriteBehindPersister.Store baseFileStore = new WriteBehindPersister.Store() {
+        @Override
+        public String getName() {
+            return "transaction base file";
+        }
+        
+        @Override
+        public void persist() {
+            writeBaseAndResetJournal();
+        }
+    };
+    private final WriteBehindPersister.Store changeSequenceStore = new WriteBehindPersister.Store() {
+        @Override
+        public String getName() {
+            return "transaction change sequence";
+        }
+        
+        @Override
+        public void persist() throws IOException {
+            changeLog.save();
+        }
+    };
+    private final AtomicLong lastPersistTicket = new AtomicLong();
+    // AI模型对账时按月读取账本，分区模式下只加载校验和不一致的月份
+    private final TransactionSyncFacade.Ledger syncLedger = new TransactionSyncFacade.Ledger() {
+        @Override
+        public Map<YearMonth, Long> getMonthChecksums() {
+            return TransactionManager.this.getMonthChecksums();
+        }
+        
+        @Override
+        public List<Transaction> getTransactions(Collection<YearMonth> months) {
+            return getTransactionsInMonths(months);
+        }
+    };
+    
+    // appendToJournal 未写入日志时的返回值
+    private static final long NOT_JOURNALED = -1;
+    
+    // 日志记录数达到该值时触发后台压缩
+    private static final int COMPACTION_THRESHOLD = 500;
+    
+    // 分区模式启动时加载最近的几个月
+    private static final int INITIAL_PARTITION_MONTHS = 3;
+    
+    // 分区模式下内存中最多保留的交易条数，超出后淘汰最久未用的月份
+    private static final int DEFAULT_PARTITION_MEMORY_BUDGET = 100_000;
+    
+    // 账本在工作目录下的位置，构造参数中的路径只用于首次运行时从资源复制初始数据
+    private static final String WORKING_FILE_PATH = "data/transactions.csv";
+    
+    // 按账本文件（绝对路径）共享的管理器，见 getShared
+    private static final Map<String, TransactionManager> SHARED_MANAGERS = new HashMap<>();
+    
+    // 所有管理器共用一个压缩线程
+    private static final ExecutorService COMPACTION_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "transaction-journal-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * Storage format of the base file
+     * 
+     * CSV keeps the human-readable transactions.csv; BINARY keeps the columnar
+     * transactions.ledger next to it. The journal is text in both cases.
+     * PARTITIONED keeps one segment per month in transactions.partitions/ and
+     * loads months only when they are used; it writes changed months directly
+     * instead of going through the journal.
+     */
+    public enum LedgerFormat {
+        CSV, BINARY, PARTITIONED
+    }
+    
+    /**
+     * Get the manager shared by every window working on the ledger file, creating it on first use
+     * 
+     * Each manager keeps its own in-memory copy, journal and change sequence, so two managers
+     * on the same file would overwrite each other's changes; UI code should obtain its manager here
+     * and use its {@link #getCategoryManager()}.
+     * 
+     * @param csvFilePath CSV file path
+     * @return Shared transaction manager
+     */
+    public static synchronized TransactionManager getShared(String csvFilePath) {
+        String key = new File(WORKING_FILE_PATH).getAbsolutePath();
+        TransactionManager manager = SHARED_MANAGERS.get(key);
+        if (manager == null) {
+            manager = new TransactionManager(new CategoryManager(), csvFilePath);
+            SHARED_MANAGERS.put(key, manager);
+        }
+        return manager;
+    }
+    
     /**
      * Creates a new transaction manager
      * 
@@ -37,7 +180,7 @@ public class TransactionManager {
         this.categoryManager = categoryManager;
         
         // 设置工作目录下的文件路径
-        File workingDirFile = new File("data/transactions.csv");
+        File workingDirFile = new File(WORKING_FILE_PATH);
         this.csvFilePath = workingDirFile.getAbsolutePath();
         
         // 确保工作目录存在
@@ -67,7 +210,22 @@ public class TransactionManager {
             }
         }
         
-        loadTransactions(); // Load existing transactions from CSV
+        // The partitioned store and then the binary ledger take precedence once created
+        String basePath = this.csvFilePath.replaceFirst("\\.csv$", "");
+        this.ledgerFilePath = basePath + ".ledger";
+        this.partitionDirPath = basePath + ".partitions";
+        this.dedupFilePath = basePath + ".dedup";
+        this.changeLog = new TransactionChangeLog(new File(basePath + ".seq"));
+        this.partitionStore = new TransactionPartitionStore(new File(partitionDirPath), CSV_HEADER, this::parseCsvLine);
+        this.partitionStore.setRowChecksumFunction(TransactionSyncFacade::checksumOf);
+        if (TransactionPartitionStore.exists(new File(partitionDirPath))) {
+            this.ledgerFormat = LedgerFormat.PARTITIONED;
+        } else {
+            this.ledgerFormat = new File(ledgerFilePath).exists() ? LedgerFormat.BINARY : LedgerFormat.CSV;
+        }
+        
+        this.journal = new TransactionJournal(new File(this.csvFilePath));
+        loadTransactions(); // Load existing transactions from CSV and replay the journal
         
         // 初始化并注册到数据中心
         initializeDataCenter();
@@ -87,40 +245,101 @@ public class TransactionManager {
      * @param transaction Transaction record
      */
     public void addTransaction(Transaction transaction) {
-        transactions.add(transaction);
-        saveTransactions(); // Save to CSV
+        addTransactions(Collections.singletonList(transaction));
+    }
+    
+    /**
+     * Add a batch of transaction records
+     * 
+     * The batch is persisted once, synced to the AI model once and
+     * reported to the data center as a single change
+     * 
+     * @param newTransactions Transaction records
+     */
+    public void addTransactions(Collection<Transaction> newTransactions) {
+        if (newTransactions == null || newTransactions.isEmpty()) {
+            return;
+        }
+        
+        List<Transaction> added = new ArrayList<>(newTransactions);
+        List<Transaction> loaded;
+        long journalSequence;
+        synchronized (storageLock) {
+            loaded = loadMonthsLocked(monthsOf(added));
+            // 已存在的ID会被覆盖，旧版本随变更一起记录，AI模型据此扣减
+            Map<String, Transaction> replaced = new HashMap<>();
+            for (Transaction transaction : added) {
+                Transaction previous = transactions.get(transaction.getId());
+                if (previous != null) {
+                    replaced.put(transaction.getId(), previous);
+                }
+            }
+            transactions.putAll(added);
+            dedupIndex.addAll(added);
+            markMonthsDirtyLocked(added);
+            journalSequence = appendToJournal(TransactionJournal.Operation.ADD, added);
+            changeLog.append(TransactionJournal.Operation.ADD, added, replaced);
+            applyPartitionsChangedLocked(loaded, Collections.emptyList());
+            TransactionDataCenter.getInstance().onTransactionsAdded(this, added);
+        }
+        persistChange(journalSequence);
+        notifyPartitionsChanged(loaded, Collections.emptyList());
+        TransactionDataCenter.getInstance().fireChange(this, TransactionDataCenter.ChangeType.ADD, added);
         
         // 同步到AI模型
         if (syncWithAIModel) {
-            syncTransactionToAIModel(transaction);
+            queueAISync();
         }
     }
     
     /**
-     * 同步一条交易记录到AI模型
-     * 
-     * @param transaction 要同步的交易记录
+     * 把同步交给AI同步队列的后台线程，写入方不等待用户配置文件更新
+     */
+    private void queueAISync() {
+        TransactionSyncQueue.getInstance().submit(changeLog, syncLedger);
+    }
+    
+    /**
+     * 在当前线程把AI模型尚未应用的变更同步过去（按变更序号增量重放，必要时按月对账）
      */
-    private void syncTransactionToAIModel(Transaction transaction) {
+    public void syncChangesToAIModel() {
         try {
             TransactionSyncFacade syncFacade = TransactionSyncFacade.getInstance();
-            syncFacade.appendTransaction(transaction);
+            syncFacade.syncChanges(changeLog, syncLedger);
         } catch (Exception e) {
             System.err.println("同步交易到AI模型失败: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
+    /**
+     * 获取账本的变更记录
+     * 
+     * @return 变更记录
+     */
+    public TransactionChangeLog getChangeLog() {
+        return changeLog;
+    }
+    
     /**
      * Get all transaction records
      * 
      * @return List of transaction records
      */
     public List<Transaction> getAllTransactions() {
-        // Return a sorted copy, in descending order by time (newest first)
-        List<Transaction> sortedList = new ArrayList<>(transactions);
-        sortedList.sort(Comparator.comparing(Transaction::getDateTime).reversed());
-        return Collections.unmodifiableList(sortedList);
+        loadAllPartitions();
+        // Already kept in descending order by time (newest first)
+        return transactions.getAll();
+    }
+    
+    /**
+     * 已加载到内存的交易记录的当前快照（非分区模式下即全部记录），不触发加载；
+     * 数据中心的读取都基于它
+     * 
+     * @return 不可变快照
+     */
+    TransactionSnapshot getLoadedSnapshot() {
+        return transactions.snapshot();
     }
     
     /**
@@ -130,16 +349,8 @@ public class TransactionManager {
      * @return Transaction records of the specified type
      */
     public List<Transaction> getTransactionsByType(CategoryType type) {
-        List<Transaction> result = new ArrayList<>();
-        for (Transaction t : transactions) {
-            if (t.getCategory().getType() == type) {
-                result.add(t);
-            }
-        }
-        
-        // Sort by time in descending order
-        result.sort(Comparator.comparing(Transaction::getDateTime).reversed());
-        return result;
+        loadAllPartitions();
+        return transactions.getByType(type);
     }
     
     /**
@@ -149,16 +360,72 @@ public class TransactionManager {
      * @return Transaction records for that category
      */
     public List<Transaction> getTransactionsByCategory(Category category) {
-        List<Transaction> result = new ArrayList<>();
-        for (Transaction t : transactions) {
-            if (t.getCategory().getId() == category.getId()) {
-                result.add(t);
+        loadAllPartitions();
+        return transactions.getByCategory(category.getId());
+    }
+    
+    /**
+     * Get an immutable, versioned snapshot of the transactions
+     * 
+     * @return Current snapshot
+     */
+    public TransactionSnapshot getSnapshot() {
+        loadAllPartitions();
+        return transactions.snapshot();
+    }
+    
+    /**
+     * Run a transaction query against the indexes
+     * 
+     * In partitioned mode the months covered by the query's time range are loaded first
+     * 
+     * @param query Query conditions
+     * @return Lazily evaluated results, newest first
+     */
+    public Stream<Transaction> query(TransactionQuery query) {
+        loadPartitionsFor(query);
+        return transactions.query(query);
+    }
+    
+    /**
+     * Create a duplicate checker for one import
+     * 
+     * @param matchContent Also treat rows with the same date, amount, category
+     *                     and description as an existing transaction as duplicates
+     * @return Checker backed by the persistent dedup index
+     */
+    public TransactionDedupIndex.Checker newDuplicateChecker(boolean matchContent) {
+        return dedupIndex.newChecker(matchContent, new LedgerIdLookup());
+    }
+    
+    /**
+     * 确认去重索引中的ID命中：已加载的交易直接查内存，分区模式下未加载的月份读取分段
+     * 
+     * 只缓存最近读取的一个月份的ID，按日期排列的导入文件整月复查时只读一次分段
+     */
+    private class LedgerIdLookup implements TransactionDedupIndex.IdLookup {
+        private YearMonth cachedMonth;
+        private Set<String> cachedIds = Collections.emptySet();
+        
+        @Override
+        public boolean containsId(String id, YearMonth month) {
+            synchronized (storageLock) {
+                if (transactions.contains(id)) {
+                    return true;
+                }
+                if (ledgerFormat != LedgerFormat.PARTITIONED || month == null || loadedMonths.containsKey(month)) {
+                    return false;
+                }
+                if (!month.equals(cachedMonth)) {
+                    cachedIds = new HashSet<>();
+                    for (Transaction transaction : readPartition(month)) {
+                        cachedIds.add(transaction.getId());
+                    }
+                    cachedMonth = month;
+                }
+                return cachedIds.contains(id);
             }
         }
-        
-        // Sort by time in descending order
-        result.sort(Comparator.comparing(Transaction::getDateTime).reversed());
-        return result;
     }
     
     /**
@@ -167,13 +434,9 @@ public class TransactionManager {
      * @return Total income amount
      */
     public BigDecimal getTotalIncome() {
-        BigDecimal total = BigDecimal.ZERO;
-        for (Transaction t : transactions) {
-            if (t.getCategory().getType() == CategoryType.INCOME) {
-                total = total.add(t.getAmount());
-            }
+        synchronized (storageLock) {
+            return transactions.getTotal(CategoryType.INCOME).add(getUnloadedTotal(CategoryType.INCOME));
         }
-        return total;
     }
     
     /**
@@ -182,13 +445,9 @@ public class TransactionManager {
      * @return Total expense amount
      */
     public BigDecimal getTotalExpense() {
-        BigDecimal total = BigDecimal.ZERO;
-        for (Transaction t : transactions) {
-            if (t.getCategory().getType() == CategoryType.EXPENSE) {
-                total = total.add(t.getAmount());
-            }
+        synchronized (storageLock) {
+            return transactions.getTotal(CategoryType.EXPENSE).add(getUnloadedTotal(CategoryType.EXPENSE));
         }
-        return total;
     }
     
     /**
@@ -197,223 +456,1098 @@ public class TransactionManager {
      * @return Current balance
      */
     public BigDecimal getBalance() {
-        return getTotalIncome().subtract(getTotalExpense());
+        synchronized (storageLock) {
+            return transactions.getBalance()
+                    .add(getUnloadedTotal(CategoryType.INCOME))
+                    .subtract(getUnloadedTotal(CategoryType.EXPENSE));
+        }
     }
     
     /**
-     * Load transaction records from CSV file
+     * Calculate the total amount of a category
+     * 
+     * @param category Category
+     * @return Total amount
      */
-    private void loadTransactions() {
-        transactions.clear();
-        File file = new File(csvFilePath);
-        
-        // If file doesn't exist, create an empty file
-        if (!file.exists()) {
-            saveTransactions();
-            return;
-        }
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line = reader.readLine(); // Read header row
-            
-            // If file is empty or format is incorrect, recreate it
-            if (line == null || !line.equals(CSV_HEADER)) {
-                saveTransactions();
-                return;
-            }
-            
-            int lineCount = 0;
-            // Read transaction records
-            while ((line = reader.readLine()) != null) {
-                lineCount++;
-                Transaction transaction = parseCsvLine(line);
-                if (transaction != null) {
-                    transactions.add(transaction);
-                } else {
-                    System.err.println("Unable to parse CSV line " + lineCount + ": " + line);
-                }
-            }
-            
-            System.out.println("Loaded " + transactions.size() + " transaction records from CSV");
-            
-        } catch (IOException e) {
-            System.err.println("Error loading transaction records: " + e.getMessage());
+    public BigDecimal getTotalByCategory(Category category) {
+        synchronized (storageLock) {
+            return transactions.getCategoryTotal(category.getId()).add(getUnloadedCategoryTotal(category.getId()));
         }
     }
     
     /**
-     * Parse CSV line into transaction record
+     * Enable or disable the totals consistency check (for testing);
+     * when enabled every total read recomputes the totals from scratch
      * 
-     * @param line CSV line
-     * @return Transaction record object, or null
+     * @param enabled Whether to check on every read
      */
-    private Transaction parseCsvLine(String line) {
-        try {
-            // Split CSV line, handling commas within quotes
-            List<String> fields = new ArrayList<>();
-            boolean inQuotes = false;
-            StringBuilder field = new StringBuilder();
-            
-            for (char c : line.toCharArray()) {
-                if (c == '\"') {
-                    inQuotes = !inQuotes;
-                } else if (c == ',' && !inQuotes) {
-                    fields.add(field.toString());
-                    field = new StringBuilder();
-                } else {
-                    field.append(c);
-                }
+    public void setTotalsConsistencyCheck(boolean enabled) {
+        transactions.setConsistencyCheckEnabled(enabled);
+    }
+    
+    /**
+     * Recompute the totals from scratch and compare them with the maintained ones
+     * 
+     * @return true if the maintained totals are correct
+     */
+    public boolean verifyTotals() {
+        return transactions.verifyTotals();
+    }
+    
+    /**
+     * Load transaction records from the base file, then replay the journal on top of it
+     */
+    private void loadTransactions() {
+        Map<String, Transaction> loaded = new LinkedHashMap<>();
+        boolean baseValid;
+        if (ledgerFormat == LedgerFormat.PARTITIONED) {
+            baseValid = partitionStore.open();
+            if (baseValid && !journal.hasRecords()) {
+                loadInitialPartitions();
+                return;
             }
-            fields.add(field.toString());
-            
-            // Check field count
-            if (fields.size() < 6) {
-                return null;
+            // Damaged manifest or leftover journal: load every month and fold them back together
+            if (baseValid) {
+                readAllPartitions(loaded);
+            } else {
+                readBaseFile(new File(csvFilePath), loaded);
             }
-            
-            String id = fields.get(0);
-            LocalDateTime dateTime = LocalDateTime.parse(fields.get(1), DATE_FORMATTER);
-            int categoryId = Integer.parseInt(fields.get(2));
-            CategoryType categoryType = CategoryType.valueOf(fields.get(3));
-            BigDecimal amount = new BigDecimal(fields.get(4));
-            String description = fields.get(5);
-            
-            // If description has quotes, remove them
-            if (description.startsWith("\"") && description.endsWith("\"")) {
-                description = description.substring(1, description.length() - 1);
-                description = description.replace("\"\"", "\"");
+        } else if (ledgerFormat == LedgerFormat.BINARY) {
+            baseValid = readLedgerFile(new File(ledgerFilePath), loaded);
+            if (!baseValid) {
+                // Fall back to the last CSV export, if there is one
+                readBaseFile(new File(csvFilePath), loaded);
             }
-            
-            // Get category
-            Category category = categoryManager.getCategoryById(categoryId);
-            if (category == null) {
-                // If category doesn't exist, try to create a generic category
-                // Note: Using the type recorded in the transaction
-                category = new Category(categoryId, "Unknown Category", categoryType, null);
-                categoryManager.addCategory(category);
+        } else {
+            baseValid = readBaseFile(new File(csvFilePath), loaded);
+        }
+        
+        int replayed = journal.replay(loaded, this::parseCsvLine);
+        transactions.replaceAll(loaded.values());
+        if (ledgerFormat == LedgerFormat.PARTITIONED) {
+            for (Transaction transaction : loaded.values()) {
+                loadedMonths.put(TransactionPartitionStore.monthOf(transaction), Boolean.TRUE);
             }
-            
-            return new Transaction(id, dateTime, category, amount, description);
-            
-        } catch (DateTimeParseException | NumberFormatException e) {
-            System.err.println("Error parsing transaction: " + e.getMessage());
-            return null;
+            loadedMonths.keySet().addAll(partitionStore.getMonths());
+        }
+        
+        if (replayed > 0) {
+            System.out.println("Replayed " + replayed + " journal records");
+        }
+        
+        // If the base file is missing or outdated, fold everything back into it
+        // (writing the base file also rewrites the dedup index)
+        if (!baseValid || replayed > 0) {
+            dedupIndex.rebuild(loaded.values());
+            synchronized (baseFileLock) {
+                if (writeBaseFile(transactions.getAll())) {
+                    journal.reset();
+                }
+            }
+        } else if (!dedupIndex.load(new File(dedupFilePath), new File(getBaseFilePath()), loaded.size())) {
+            dedupIndex.rebuild(loaded.values());
+            saveDedupIndex(dedupIndex, new File(getBaseFilePath()));
         }
     }
     
     /**
-     * Save transaction records to CSV file
+     * 分区模式启动：只加载最近几个月，去重索引覆盖全部历史
      */
-    public void saveTransactions() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(csvFilePath))) {
-            // Write header row
-            writer.println(CSV_HEADER);
-            
-            // Write transaction records
-            for (Transaction transaction : transactions) {
-                writer.println(transaction.toCsvLine());
+    private void loadInitialPartitions() {
+        NavigableSet<YearMonth> months = partitionStore.getMonths();
+        List<Transaction> initial = new ArrayList<>();
+        for (YearMonth month : months.descendingSet()) {
+            if (loadedMonths.size() >= INITIAL_PARTITION_MONTHS) {
+                break;
             }
-            
-            System.out.println("Transactions saved to: " + csvFilePath);
-        } catch (IOException e) {
-            System.err.println("Error saving transactions: " + e.getMessage());
-            e.printStackTrace();
+            initial.addAll(readPartition(month));
+            loadedMonths.put(month, Boolean.TRUE);
         }
+        transactions.replaceAll(initial);
+        System.out.println("Loaded " + initial.size() + " transaction records from " + loadedMonths.size()
+                + " of " + months.size() + " monthly partitions");
         
-        // Refresh data in data center after saving
-        TransactionDataCenter.getInstance().refreshData();
+        File manifestFile = partitionStore.getManifestFile();
+        if (!dedupIndex.load(new File(dedupFilePath), manifestFile, partitionStore.getTotalCount())) {
+            // Rebuild one month at a time without keeping the months loaded
+            dedupIndex.rebuild(Collections.emptyList());
+            for (YearMonth month : months) {
+                dedupIndex.addAll(readPartition(month));
+            }
+            saveDedupIndex(dedupIndex, manifestFile);
+        }
     }
     
     /**
-     * Delete a transaction record
+     * 读取全部分区
      * 
-     * @param transaction Transaction to delete
-     * @return true if deleted successfully
+     * @param loaded Map of transaction ID to transaction
      */
-    public boolean deleteTransaction(Transaction transaction) {
-        if (transaction == null) {
-            return false;
-        }
-        
-        // 在删除前先保存交易的副本，用于同步
-        Transaction transactionCopy = transaction;
-        
-        // Use ID comparison to find the transaction to delete
-        boolean removed = transactions.removeIf(t -> t.getId().equals(transaction.getId()));
-        
-        if (removed) {
-            // If successfully deleted, update CSV file
-            saveTransactions();
-            System.out.println("Transaction record deleted: " + transaction.getId());
-            
-            // 同步删除操作到AI模型
-            if (syncWithAIModel) {
-                syncDeleteToAIModel(transactionCopy);
+    private void readAllPartitions(Map<String, Transaction> loaded) {
+        for (YearMonth month : partitionStore.getMonths()) {
+            for (Transaction transaction : readPartition(month)) {
+                loaded.put(transaction.getId(), transaction);
             }
-        } else {
-            System.out.println("Transaction record not found for deletion: " + transaction.getId());
         }
-        
-        return removed;
+        System.out.println("Loaded " + loaded.size() + " transaction records from monthly partitions");
     }
     
     /**
-     * 同步删除操作到AI模型
+     * 读取一个分区；分段文件损坏时移到 .corrupt 保留，按空分区处理
      * 
-     * @param transaction 被删除的交易
+     * @param month 年月
+     * @return 交易记录
      */
-    private void syncDeleteToAIModel(Transaction transaction) {
+    private List<Transaction> readPartition(YearMonth month) {
         try {
-            TransactionSyncFacade syncFacade = TransactionSyncFacade.getInstance();
-            syncFacade.deleteTransaction(transaction);
-        } catch (Exception e) {
-            System.err.println("同步删除交易到AI模型失败: " + e.getMessage());
-            e.printStackTrace();
+            return partitionStore.readPartition(month);
+        } catch (IOException e) {
+            System.err.println("Error loading transaction partition " + month + ": " + e.getMessage());
+            File segment = new File(partitionDirPath, month + ".csv");
+            File corrupt = new File(segment.getPath() + ".corrupt");
+            if (!segment.renameTo(corrupt)) {
+                System.err.println("Unable to move damaged partition to: " + corrupt.getAbsolutePath());
+            }
+            // 清单中不再保留这个月，否则它的合计仍会计入未加载月份
+            try {
+                partitionStore.discardPartition(month);
+            } catch (IOException manifestError) {
+                System.err.println("Error updating partition manifest: " + manifestError.getMessage());
+            }
+            return Collections.emptyList();
         }
     }
     
     /**
-     * 设置是否同步到AI模型
+     * Load the months covered by a query's time range (partitioned mode only)
      * 
-     * @param syncEnabled 启用或禁用同步
+     * @param query Query conditions; an open-ended range loads every month up to that end
      */
-    public void setSyncWithAIModel(boolean syncEnabled) {
-        this.syncWithAIModel = syncEnabled;
+    void loadPartitionsFor(TransactionQuery query) {
+        if (ledgerFormat != LedgerFormat.PARTITIONED) {
+            return;
+        }
+        YearMonth from = query.getFrom() != null ? YearMonth.from(query.getFrom()) : null;
+        YearMonth to = query.getTo() != null ? YearMonth.from(query.getTo().minusNanos(1)) : null;
+        loadMonths(from, to);
     }
     
     /**
-     * 获取是否同步到AI模型的状态
+     * Load every month in a range into memory (partitioned mode only)
      * 
-     * @return 同步状态
+     * Months outside the range may be evicted afterwards to stay within the memory budget
+     * 
+     * @param from First month (inclusive), or null for the earliest
+     * @param to Last month (inclusive), or null for the latest
      */
-    public boolean isSyncWithAIModel() {
-        return syncWithAIModel;
+    public void loadMonths(YearMonth from, YearMonth to) {
+        if (ledgerFormat != LedgerFormat.PARTITIONED) {
+            return;
+        }
+        List<Transaction> loaded;
+        List<Transaction> evicted;
+        synchronized (storageLock) {
+            Set<YearMonth> requested = new LinkedHashSet<>();
+            for (YearMonth month : partitionStore.getMonths()) {
+                if ((from == null || !month.isBefore(from)) && (to == null || !month.isAfter(to))) {
+                    requested.add(month);
+                }
+            }
+            loaded = loadMonthsLocked(requested);
+            evicted = evictColdMonthsLocked(requested);
+            applyPartitionsChangedLocked(loaded, evicted);
+        }
+        notifyPartitionsChanged(loaded, evicted);
     }
     
     /**
-     * 执行全量同步到AI模型
+     * Load the full history into memory (partitioned mode only)
      */
-    public void syncAllTransactionsToAIModel() {
-        try {
-            TransactionSyncFacade syncFacade = TransactionSyncFacade.getInstance();
-            syncFacade.syncAllTransactionsFromClassificationModule(getAllTransactions());
-        } catch (Exception e) {
-            System.err.println("全量同步交易到AI模型失败: " + e.getMessage());
-            e.printStackTrace();
+    public void loadAllPartitions() {
+        if (ledgerFormat != LedgerFormat.PARTITIONED) {
+            return;
+        }
+        List<Transaction> loaded;
+        synchronized (storageLock) {
+            loaded = loadMonthsLocked(partitionStore.getMonths());
+            applyPartitionsChangedLocked(loaded, Collections.emptyList());
         }
+        notifyPartitionsChanged(loaded, Collections.emptyList());
     }
     
     /**
-     * 更新AI推荐
+     * 每个月交易的同步校验和（各行 {@link TransactionSyncFacade#checksumOf} 之和），AI模型据此按月对账
+     * 
+     * 分区模式下未加载的月份直接取自分区清单，只有清单中没有校验和的月份（旧清单）才读取分段
+     * 
+     * @return 年月到校验和的映射，没有交易的月份不出现
      */
-    public void updateAIRecommendations() {
-        try {
-            TransactionSyncFacade syncFacade = TransactionSyncFacade.getInstance();
-            syncFacade.updateRecommendations();
-        } catch (Exception e) {
-            System.err.println("更新AI推荐失败: " + e.getMessage());
-            e.printStackTrace();
+    public Map<YearMonth, Long> getMonthChecksums() {
+        synchronized (storageLock) {
+            Map<YearMonth, Long> checksums = TransactionSyncFacade.monthChecksums(transactions.getAll());
+            if (ledgerFormat != LedgerFormat.PARTITIONED) {
+                return checksums;
+            }
+            for (YearMonth month : partitionStore.getMonths()) {
+                if (loadedMonths.containsKey(month)) {
+                    continue; // 已加载的月份以内存为准，其中可能有尚未写盘的修改
+                }
+                TransactionPartitionStore.PartitionInfo info = partitionStore.getInfo(month);
+                if (info != null && info.getRowChecksum() != null) {
+                    if (info.getCount() > 0) {
+                        checksums.put(month, info.getRowChecksum());
+                    }
+                } else {
+                    // 读取分段时会把校验和补进清单，不加载到内存
+                    checksums.putAll(TransactionSyncFacade.monthChecksums(readPartition(month)));
+                }
+            }
+            return checksums;
+        }
+    }
+    
+    /**
+     * 读取指定月份的全部交易；分区模式下未加载的月份直接读取分段，不加载到内存
+     * 
+     * @param months 年月
+     * @return 这些月份的交易记录
+     */
+    public List<Transaction> getTransactionsInMonths(Collection<YearMonth> months) {
+        List<Transaction> result = new ArrayList<>();
+        synchronized (storageLock) {
+            for (YearMonth month : months) {
+                if (ledgerFormat != LedgerFormat.PARTITIONED || loadedMonths.containsKey(month)) {
+                    result.addAll(getMonthTransactionsLocked(month));
+                } else if (partitionStore.getInfo(month) != null) {
+                    result.addAll(readPartition(month));
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * 获取已加载到内存的月份（分区模式），最久未用的在前
+     * 
+     * @return 年月列表
+     */
+    public List<YearMonth> getLoadedMonths() {
+        synchronized (storageLock) {
+            return new ArrayList<>(loadedMonths.keySet());
+        }
+    }
+    
+    /**
+     * 设置分区模式下内存中最多保留的交易条数；正在使用的月份不会被淘汰
+     * 
+     * @param maxTransactions 交易条数上限
+     */
+    public void setPartitionMemoryBudget(int maxTransactions) {
+        if (maxTransactions <= 0) {
+            throw new IllegalArgumentException("Partition memory budget must be positive: " + maxTransactions);
+        }
+        synchronized (storageLock) {
+            this.partitionMemoryBudget = maxTransactions;
+        }
+    }
+    
+    public int getPartitionMemoryBudget() {
+        synchronized (storageLock) {
+            return partitionMemoryBudget;
+        }
+    }
+    
+    /**
+     * 加载尚未加载的月份，必须在storageLock内调用
+     * 
+     * @param months 需要的月份
+     * @return 新加载的交易记录
+     */
+    private List<Transaction> loadMonthsLocked(Collection<YearMonth> months) {
+        if (ledgerFormat != LedgerFormat.PARTITIONED) {
+            return Collections.emptyList();
+        }
+        List<Transaction> loaded = new ArrayList<>();
+        for (YearMonth month : months) {
+            if (loadedMonths.get(month) != null) {
+                continue; // get() also marks the month as recently used
+            }
+            if (partitionStore.getInfo(month) != null) {
+                loaded.addAll(readPartition(month));
+            }
+            loadedMonths.put(month, Boolean.TRUE);
+        }
+        if (!loaded.isEmpty()) {
+            transactions.putAll(loaded);
+        }
+        return loaded;
+    }
+    
+    /**
+     * 超出内存预算时按最久未用顺序淘汰月份，有未保存修改的月份先写盘，必须在storageLock内调用
+     * 
+     * @param keep 本次用到、不能淘汰的月份
+     * @return 被移出内存的交易记录
+     */
+    private List<Transaction> evictColdMonthsLocked(Set<YearMonth> keep) {
+        List<Transaction> evicted = new ArrayList<>();
+        List<YearMonth> candidates = new ArrayList<>(loadedMonths.keySet());
+        for (YearMonth month : candidates) {
+            if (transactions.size() <= partitionMemoryBudget) {
+                break;
+            }
+            if (keep.contains(month)) {
+                continue;
+            }
+            List<Transaction> monthTransactions = getMonthTransactionsLocked(month);
+            if (dirtyMonths.contains(month)) {
+                try {
+                    partitionStore.writePartitions(Collections.singletonMap(month, monthTransactions));
+                    dirtyMonths.remove(month);
+                } catch (IOException e) {
+                    System.err.println("Error saving partition " + month + ", keeping it loaded: " + e.getMessage());
+                    continue;
+                }
+            }
+            List<String> ids = new ArrayList<>(monthTransactions.size());
+            for (Transaction transaction : monthTransactions) {
+                ids.add(transaction.getId());
+            }
+            evicted.addAll(transactions.removeAll(ids));
+            loadedMonths.remove(month);
+        }
+        return evicted;
+    }
+    
+    /**
+     * 已加载的某个月的全部交易，必须在storageLock内调用
+     */
+    private List<Transaction> getMonthTransactionsLocked(YearMonth month) {
+        TransactionQuery query = new TransactionQuery()
+                .between(month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+        return transactions.query(query).collect(java.util.stream.Collectors.toList());
+    }
+    
+    private void markMonthsDirtyLocked(Collection<Transaction> changed) {
+        if (ledgerFormat == LedgerFormat.PARTITIONED) {
+            dirtyMonths.addAll(monthsOf(changed));
+        }
+    }
+    
+    private static Set<YearMonth> monthsOf(Collection<Transaction> changed) {
+        Set<YearMonth> months = new LinkedHashSet<>();
+        for (Transaction transaction : changed) {
+            months.add(TransactionPartitionStore.monthOf(transaction));
+        }
+        return months;
+    }
+    
+    /**
+     * 分区加载或淘汰后更新数据中心，必须在storageLock内调用，
+     * 这样数据中心应用变更的顺序与内存列表一致
+     */
+    private void applyPartitionsChangedLocked(List<Transaction> loaded, List<Transaction> evicted) {
+        if (!loaded.isEmpty() || !evicted.isEmpty()) {
+            TransactionDataCenter.getInstance().onPartitionsChanged(this, loaded, evicted);
+        }
+    }
+    
+    /**
+     * 分区加载或淘汰后通知数据中心的同步监听器，在storageLock外调用
+     */
+    private void notifyPartitionsChanged(List<Transaction> loaded, List<Transaction> evicted) {
+        if (!loaded.isEmpty() || !evicted.isEmpty()) {
+            TransactionDataCenter.getInstance().fireChange(this, TransactionDataCenter.ChangeType.REFRESH,
+                    Collections.emptyList());
+        }
+    }
+    
+    /**
+     * 未加载月份的类型合计（来自分区清单），非分区模式下为0
+     * 
+     * @param type 类别类型
+     * @return 合计金额
+     */
+    private BigDecimal getUnloadedTotal(CategoryType type) {
+        if (ledgerFormat != LedgerFormat.PARTITIONED) {
+            return BigDecimal.ZERO;
+        }
+        synchronized (storageLock) {
+            MoneyAccumulator total = new MoneyAccumulator();
+            for (YearMonth month : partitionStore.getMonths()) {
+                if (!loadedMonths.containsKey(month)) {
+                    total.add(partitionStore.getInfo(month).getTotal(type));
+                }
+            }
+            return total.toBigDecimal();
+        }
+    }
+    
+    /**
+     * 未加载月份的类别合计（来自分区清单），非分区模式下为0
+     * 
+     * @param categoryId 类别ID
+     * @return 合计金额
+     */
+    private BigDecimal getUnloadedCategoryTotal(int categoryId) {
+        if (ledgerFormat != LedgerFormat.PARTITIONED) {
+            return BigDecimal.ZERO;
+        }
+        synchronized (storageLock) {
+            MoneyAccumulator total = new MoneyAccumulator();
+            for (YearMonth month : partitionStore.getMonths()) {
+                if (!loadedMonths.containsKey(month)) {
+                    total.add(partitionStore.getInfo(month).getCategoryTotal(categoryId));
+                }
+            }
+            return total.toBigDecimal();
+        }
+    }
+    
+    /**
+     * Read the base CSV file
+     * 
+     * @param file Base CSV file
+     * @param loaded Map of transaction ID to transaction, filled in file order
+     * @return false if the file is missing or has an incorrect header
+     */
+    private boolean readBaseFile(File file, Map<String, Transaction> loaded) {
+        if (!file.exists()) {
+            return false;
+        }
+        
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine(); // Read header row
+            
+            // If file is empty or format is incorrect, it will be recreated
+            if (line == null || !line.equals(CSV_HEADER)) {
+                return false;
+            }
+            
+            int lineCount = 0;
+            // Read transaction records
+            while ((line = reader.readLine()) != null) {
+                lineCount++;
+                Transaction transaction = parseCsvLine(line);
+                if (transaction != null) {
+                    loaded.put(transaction.getId(), transaction);
+                } else {
+                    System.err.println("Unable to parse CSV line " + lineCount + ": " + line);
+                }
+            }
+            
+            System.out.println("Loaded " + loaded.size() + " transaction records from CSV");
+            
+        } catch (IOException e) {
+            System.err.println("Error loading transaction records: " + e.getMessage());
+        }
+        return true;
+    }
+    
+    /**
+     * Read the binary ledger file
+     * 
+     * @param file Ledger file
+     * @param loaded Map of transaction ID to transaction, filled in file order
+     * @return false if the file is missing or unreadable
+     */
+    private boolean readLedgerFile(File file, Map<String, Transaction> loaded) {
+        if (!file.exists()) {
+            return false;
+        }
+        
+        try {
+            for (Transaction transaction : TransactionLedgerFile.read(file, this::resolveCategory)) {
+                loaded.put(transaction.getId(), transaction);
+            }
+            System.out.println("Loaded " + loaded.size() + " transaction records from ledger");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error loading transaction ledger: " + e.getMessage());
+            // Keep the damaged file for inspection instead of overwriting it
+            File corrupt = new File(file.getPath() + ".corrupt");
+            if (!file.renameTo(corrupt)) {
+                System.err.println("Unable to move damaged ledger to: " + corrupt.getAbsolutePath());
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * Look up a category by ID, registering a placeholder if it no longer exists
+     * 
+     * @param categoryId Category ID
+     * @param categoryType Type recorded with the transaction
+     * @return Category
+     */
+    private Category resolveCategory(int categoryId, CategoryType categoryType) {
+        // If category doesn't exist, a generic category is created with the type recorded in the transaction
+        return categoryManager.resolveCategory(categoryId, categoryType, "Unknown Category");
+    }
+    
+    /**
+     * Parse CSV line into transaction record
+     * 
+     * @param line CSV line
+     * @return Transaction record object, or null
+     */
+    private Transaction parseCsvLine(String line) {
+        try {
+            // Split CSV line, handling commas and escaped quotes within quotes
+            List<String> fields = CsvTokenizer.split(line);
+            
+            // Check field count
+            if (fields.size() < 6) {
+                return null;
+            }
+            
+            String id = fields.get(0);
+            LocalDateTime dateTime = LocalDateTime.parse(fields.get(1), DATE_FORMATTER);
+            int categoryId = Integer.parseInt(fields.get(2));
+            CategoryType categoryType = CategoryType.valueOf(fields.get(3));
+            BigDecimal amount = new BigDecimal(fields.get(4));
+            String description = fields.get(5);
+            
+            return new Transaction(id, dateTime, resolveCategory(categoryId, categoryType), amount, description);
+            
+        } catch (DateTimeParseException | NumberFormatException e) {
+            System.err.println("Error parsing transaction: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Save transaction records to CSV file
+     * 
+     * Rewrites the whole base file and clears the journal
+     */
+    public void saveTransactions() {
+        writeBaseAndResetJournal();
+        
+        // Refresh data in data center after saving
+        TransactionDataCenter.getInstance().refreshData();
+    }
+    
+    /**
+     * Rewrite the base file from the in-memory list and clear the journal
+     */
+    private void writeBaseAndResetJournal() {
+        synchronized (baseFileLock) {
+            synchronized (storageLock) {
+                if (ledgerFormat == LedgerFormat.PARTITIONED) {
+                    writeDirtyPartitionsLocked();
+                    return;
+                }
+                if (writeBaseFile(transactions.getAll())) {
+                    journal.reset();
+                    baseGeneration++;
+                    System.out.println("Transactions saved to: " + getBaseFilePath());
+                }
+            }
+        }
+    }
+    
+    /**
+     * 只重写有修改的月份分区，必须在storageLock内调用
+     */
+    private void writeDirtyPartitionsLocked() {
+        if (dirtyMonths.isEmpty()) {
+            return;
+        }
+        Map<YearMonth, List<Transaction>> changed = new TreeMap<>();
+        for (YearMonth month : dirtyMonths) {
+            changed.put(month, getMonthTransactionsLocked(month));
+        }
+        try {
+            partitionStore.writePartitions(changed);
+            dirtyMonths.clear();
+            saveDedupIndex(dedupIndex, partitionStore.getManifestFile());
+            System.out.println("Saved " + changed.size() + " transaction partition(s) to: " + partitionDirPath);
+        } catch (IOException e) {
+            System.err.println("Error saving transaction partitions: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Write the given transactions to the base file in the current format
+     * 
+     * @param snapshot Transactions to write; in partitioned mode this must be the full history
+     * @return true if the base file was replaced
+     */
+    private boolean writeBaseFile(List<Transaction> snapshot) {
+        if (ledgerFormat == LedgerFormat.PARTITIONED) {
+            try {
+                partitionStore.writeAll(snapshot);
+                dirtyMonths.clear();
+            } catch (IOException e) {
+                System.err.println("Error saving transaction partitions: " + e.getMessage());
+                e.printStackTrace();
+                return false;
+            }
+        } else if (ledgerFormat == LedgerFormat.BINARY) {
+            File ledgerFile = new File(ledgerFilePath);
+            File tempFile = AtomicFileWriter.tempFileFor(ledgerFile);
+            try {
+                TransactionLedgerFile.write(tempFile, snapshot);
+            } catch (IOException e) {
+                System.err.println("Error saving transaction ledger: " + e.getMessage());
+                e.printStackTrace();
+                return false;
+            }
+            if (!replaceFile(tempFile, ledgerFile)) {
+                return false;
+            }
+        } else if (!writeCsvFile(new File(csvFilePath), snapshot)) {
+            return false;
+        }
+        saveDedupIndex(TransactionDedupIndex.of(snapshot), new File(getBaseFilePath()));
+        return true;
+    }
+    
+    /**
+     * 保存去重索引，失败时只打印错误，下次加载会重建
+     * 
+     * @param index 与基础文件内容一致的索引
+     * @param baseFile 刚写入的基础文件
+     */
+    private void saveDedupIndex(TransactionDedupIndex index, File baseFile) {
+        try {
+            index.save(new File(dedupFilePath), baseFile);
+        } catch (IOException e) {
+            System.err.println("Error saving dedup index: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Write the given transactions to a CSV file through a temporary file
+     * 
+     * @param baseFile Target CSV file
+     * @param snapshot Transactions to write
+     * @return true if the file was replaced
+     */
+    private boolean writeCsvFile(File baseFile, List<Transaction> snapshot) {
+        try {
+            AtomicFileWriter.write(baseFile, out -> {
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(out));
+                // Write header row
+                writer.println(CSV_HEADER);
+                
+                // Write transaction records
+                for (Transaction transaction : snapshot) {
+                    writer.println(transaction.toCsvLine());
+                }
+                writer.flush();
+            });
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving transactions: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Atomically replace a file with a fully written temporary file
+     */
+    private boolean replaceFile(File tempFile, File target) {
+        try {
+            AtomicFileWriter.replace(tempFile, target);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error replacing transaction file: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * 追加日志记录（只缓冲，不等待落盘），必须在storageLock内调用
+     * 
+     * @param operation 操作类型
+     * @param changed 交易记录
+     * @return 日志序号；NOT_JOURNALED 表示需要改为全量保存
+     */
+    private long appendToJournal(TransactionJournal.Operation operation, Collection<Transaction> changed) {
+        // 分区模式直接重写变化的月份，不经过日志
+        if (!journalEnabled || ledgerFormat == LedgerFormat.PARTITIONED) {
+            return NOT_JOURNALED;
+        }
+        try {
+            return journal.appendAll(operation, changed);
+        } catch (IOException e) {
+            System.err.println("Error writing transaction journal, falling back to full save: " + e.getMessage());
+            return NOT_JOURNALED;
+        }
+    }
+    
+    /**
+     * 变更写入后的持久化收尾，在storageLock外调用：
+     * 日志落盘（或关闭日志时的全量保存）交给后台写线程合并执行，调用方（通常是EDT）不等待磁盘。
+     * 需要落盘保证的调用方使用 {@link #flush()} 或 {@link #awaitDurable()}
+     * 
+     * @param journalSequence appendToJournal 返回的序号
+     */
+    private void persistChange(long journalSequence) {
+        WriteBehindPersister.Store store = journalSequence != NOT_JOURNALED ? journalStore : baseFileStore;
+        WriteBehindPersister.getInstance().markDirty(changeSequenceStore);
+        long ticket = WriteBehindPersister.getInstance().markDirty(store);
+        lastPersistTicket.accumulateAndGet(ticket, Math::max);
+    }
+    
+    /**
+     * 把已缓冲的日志记录写入磁盘（后台写线程调用），失败时改为全量保存
+     */
+    private void syncJournal() {
+        try {
+            journal.syncAll();
+            scheduleCompactionIfNeeded();
+        } catch (IOException e) {
+            System.err.println("Error syncing transaction journal, falling back to full save: " + e.getMessage());
+            writeBaseAndResetJournal();
+        }
+    }
+    
+    /**
+     * Write all pending changes now and wait until they are on disk
+     *
+     * @return false if a write failed; it is retried on the next flush
+     */
+    public boolean flush() {
+        return WriteBehindPersister.getInstance().flush();
+    }
+    
+    /**
+     * Wait until every change made through this manager so far is on disk,
+     * without forcing an early flush
+     *
+     * @return false if the flush covering these changes failed; it is retried on the next flush
+     */
+    public boolean awaitDurable() {
+        return WriteBehindPersister.getInstance().awaitDurable(lastPersistTicket.get());
+    }
+    
+    /**
+     * 日志过长时，在后台把日志合并回基础CSV
+     */
+    private void scheduleCompactionIfNeeded() {
+        if (compactionScheduled || journal.getEntryCount() < COMPACTION_THRESHOLD) {
+            return;
+        }
+        
+        final List<Transaction> snapshot;
+        final long generation;
+        synchronized (storageLock) {
+            try {
+                journal.beginCompaction();
+            } catch (IOException e) {
+                System.err.println("Unable to start journal compaction: " + e.getMessage());
+                return;
+            }
+            snapshot = transactions.getAll();
+            generation = baseGeneration;
+            compactionScheduled = true;
+        }
+        
+        COMPACTION_EXECUTOR.submit(() -> {
+            try {
+                synchronized (baseFileLock) {
+                    // A full save after the snapshot already covers the compacted records
+                    if (generation == baseGeneration && writeBaseFile(snapshot)) {
+                        journal.finishCompaction();
+                        System.out.println("Compacted transaction journal into: " + getBaseFilePath());
+                    }
+                }
+            } finally {
+                compactionScheduled = false;
+            }
+        });
+    }
+    
+    /**
+     * Delete a transaction record
+     * 
+     * @param transaction Transaction to delete
+     * @return true if deleted successfully
+     */
+    public boolean deleteTransaction(Transaction transaction) {
+        if (transaction == null) {
+            return false;
+        }
+        
+        boolean removed = deleteTransactions(Collections.singletonList(transaction)) > 0;
+        if (removed) {
+            System.out.println("Transaction record deleted: " + transaction.getId());
+        } else {
+            System.out.println("Transaction record not found for deletion: " + transaction.getId());
+        }
+        return removed;
+    }
+    
+    /**
+     * Delete a batch of transaction records, matched by ID
+     * 
+     * @param toDelete Transactions to delete
+     * @return Number of transactions actually deleted
+     */
+    public int deleteTransactions(Collection<Transaction> toDelete) {
+        if (toDelete == null || toDelete.isEmpty()) {
+            return 0;
+        }
+        
+        List<String> ids = new ArrayList<>();
+        for (Transaction t : toDelete) {
+            ids.add(t.getId());
+        }
+        
+        List<Transaction> removed;
+        List<Transaction> loaded;
+        long journalSequence = NOT_JOURNALED;
+        synchronized (storageLock) {
+            loaded = loadMonthsLocked(monthsOf(toDelete));
+            removed = transactions.removeAll(ids);
+            dedupIndex.removeAll(removed);
+            markMonthsDirtyLocked(removed);
+            if (!removed.isEmpty()) {
+                journalSequence = appendToJournal(TransactionJournal.Operation.DELETE, removed);
+                changeLog.append(TransactionJournal.Operation.DELETE, removed);
+            }
+            applyPartitionsChangedLocked(loaded, Collections.emptyList());
+            if (!removed.isEmpty()) {
+                TransactionDataCenter.getInstance().onTransactionsDeleted(this, removed);
+            }
+        }
+        
+        notifyPartitionsChanged(loaded, Collections.emptyList());
+        if (removed.isEmpty()) {
+            return 0;
+        }
+        
+        persistChange(journalSequence);
+        TransactionDataCenter.getInstance().fireChange(this, TransactionDataCenter.ChangeType.DELETE, removed);
+        
+        // 同步删除操作到AI模型
+        if (syncWithAIModel) {
+            queueAISync();
+        }
+        return removed.size();
+    }
+    
+    /**
+     * Update an existing transaction record, matched by ID
+     * 
+     * @param transaction Updated transaction
+     * @return true if a transaction with the same ID was found
+     */
+    public boolean updateTransaction(Transaction transaction) {
+        if (transaction == null) {
+            return false;
+        }
+        
+        boolean updated = false;
+        List<Transaction> loaded;
+        long journalSequence = NOT_JOURNALED;
+        synchronized (storageLock) {
+            loaded = new ArrayList<>(loadMonthsLocked(Collections.singleton(TransactionPartitionStore.monthOf(transaction))));
+            if (!transactions.contains(transaction.getId())) {
+                // The date may have changed; the old version can be in any month
+                loaded.addAll(loadMonthsLocked(partitionStore.getMonths()));
+            }
+            Transaction previous = transactions.get(transaction.getId());
+            if (previous != null) {
+                transactions.put(transaction);
+                dedupIndex.add(transaction);
+                markMonthsDirtyLocked(java.util.Arrays.asList(previous, transaction));
+                updated = true;
+                journalSequence = appendToJournal(TransactionJournal.Operation.UPDATE,
+                        Collections.singletonList(transaction));
+                changeLog.append(TransactionJournal.Operation.UPDATE, Collections.singletonList(transaction),
+                        Collections.singletonMap(transaction.getId(), previous));
+            }
+            applyPartitionsChangedLocked(loaded, Collections.emptyList());
+            if (updated) {
+                TransactionDataCenter.getInstance().onTransactionUpdated(this, transaction);
+            }
+        }
+        
+        notifyPartitionsChanged(loaded, Collections.emptyList());
+        if (updated) {
+            persistChange(journalSequence);
+            TransactionDataCenter.getInstance().fireChange(this, TransactionDataCenter.ChangeType.UPDATE,
+                    Collections.singletonList(transaction));
+            
+            // 同步修改操作到AI模型
+            if (syncWithAIModel) {
+                queueAISync();
+            }
+        } else {
+            System.out.println("Transaction record not found for update: " + transaction.getId());
+        }
+        return updated;
+    }
+    
+    /**
+     * 设置是否同步到AI模型
+     * 
+     * @param syncEnabled 启用或禁用同步
+     */
+    public void setSyncWithAIModel(boolean syncEnabled) {
+        this.syncWithAIModel = syncEnabled;
+    }
+    
+    /**
+     * 获取是否同步到AI模型的状态
+     * 
+     * @return 同步状态
+     */
+    public boolean isSyncWithAIModel() {
+        return syncWithAIModel;
+    }
+    
+    /**
+     * 执行全量同步到AI模型
+     */
+    public void syncAllTransactionsToAIModel() {
+        try {
+            TransactionSyncFacade syncFacade = TransactionSyncFacade.getInstance();
+            // 先取序号再读账本，之后的变更由增量同步补上
+            String ledgerId = changeLog.getLedgerId();
+            long sequence = changeLog.getSequence();
+            syncFacade.syncAllTransactions(syncLedger, ledgerId, sequence);
+            changeLog.markReconciled(sequence);
+        } catch (Exception e) {
+            System.err.println("全量同步交易到AI模型失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * 更新AI推荐
+     */
+    public void updateAIRecommendations() {
+        try {
+            TransactionSyncFacade syncFacade = TransactionSyncFacade.getInstance();
+            syncFacade.updateRecommendations();
+        } catch (Exception e) {
+            System.err.println("更新AI推荐失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * 设置是否使用日志存储模式；关闭时会立即把日志合并回CSV
+     * 
+     * @param enabled true表示增删改只追加日志
+     */
+    public void setJournalEnabled(boolean enabled) {
+        boolean wasEnabled = journalEnabled;
+        journalEnabled = enabled;
+        if (wasEnabled && !enabled) {
+            saveTransactions();
+        }
+    }
+    
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+    
+    /**
+     * 设置日志每次写入后是否执行fsync
+     * 
+     * @param syncOnWrite true表示每条记录都立即落盘
+     */
+    public void setJournalSyncOnWrite(boolean syncOnWrite) {
+        journal.setSyncOnWrite(syncOnWrite);
+    }
+    
+    /**
+     * Switch the base file between CSV and the binary columnar ledger
+     * 
+     * The current transactions are written in the new format and the journal is folded in.
+     * Switching to BINARY or PARTITIONED leaves transactions.csv in place as an export of the
+     * data at that moment; it is ignored while the new store exists. Switching to another
+     * format removes the ledger and the monthly partitions that are no longer used.
+     * 
+     * @param format New storage format
+     * @return true if the base file was converted
+     */
+    public boolean setLedgerFormat(LedgerFormat format) {
+        // Converting needs the full history in memory
+        loadAllPartitions();
+        synchronized (baseFileLock) {
+            synchronized (storageLock) {
+                if (format == ledgerFormat) {
+                    return true;
+                }
+                LedgerFormat previous = ledgerFormat;
+                ledgerFormat = format;
+                if (!writeBaseFile(transactions.getAll())) {
+                    ledgerFormat = previous;
+                    return false;
+                }
+                journal.reset();
+                baseGeneration++;
+                
+                File ledgerFile = new File(ledgerFilePath);
+                if (format != LedgerFormat.BINARY && ledgerFile.exists() && !ledgerFile.delete()) {
+                    System.err.println("Unable to delete transaction ledger: " + ledgerFile.getAbsolutePath());
+                }
+                if (format == LedgerFormat.PARTITIONED) {
+                    loadedMonths.clear();
+                    for (YearMonth month : partitionStore.getMonths()) {
+                        loadedMonths.put(month, Boolean.TRUE);
+                    }
+                } else if (previous == LedgerFormat.PARTITIONED) {
+                    deletePartitions();
+                }
+                System.out.println("Transaction storage converted to " + format + ": " + getBaseFilePath());
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * 删除分区目录（先删清单，使其不再被识别为分区存储）
+     */
+    private void deletePartitions() {
+        File directory = new File(partitionDirPath);
+        File manifestFile = partitionStore.getManifestFile();
+        if (manifestFile.exists() && !manifestFile.delete()) {
+            System.err.println("Unable to delete partition manifest: " + manifestFile.getAbsolutePath());
+            return;
+        }
+        File[] segments = directory.listFiles();
+        if (segments != null) {
+            for (File segment : segments) {
+                if (!segment.delete()) {
+                    System.err.println("Unable to delete partition: " + segment.getAbsolutePath());
+                }
+            }
+        }
+        directory.delete();
+        loadedMonths.clear();
+        dirtyMonths.clear();
+    }
+    
+    public LedgerFormat getLedgerFormat() {
+        return ledgerFormat;
+    }
+    
+    /**
+     * Export all transactions to a CSV file in the standard ledger layout
+     * 
+     * @param target Target CSV file
+     * @return true if the export succeeded
+     */
+    public boolean exportCsv(File target) {
+        loadAllPartitions();
+        return writeCsvFile(target, transactions.getAll());
+    }
+    
+    private String getBaseFilePath() {
+        if (ledgerFormat == LedgerFormat.PARTITIONED) {
+            return partitionStore.getManifestFile().getPath();
         }
+        return ledgerFormat == LedgerFormat.BINARY ? ledgerFilePath : csvFilePath;
     }
     
     public CategoryManager getCategoryManager() {
@@ -0,0 +1,474 @@
+package com.finance.tracker.classification.util;
+
+import com.finance.tracker.classification.model.CategoryType;
+import com.finance.tracker.classification.model.Transaction;
+import com.finance.tracker.localization.MoneyAccumulator;
+import com.finance.tracker.persistence.AtomicFileWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 按月分区的交易存储
+ *
+ * 目录下每个月一个分段文件（yyyy-MM.csv，格式与transactions.csv相同），
+ * 另有清单文件 manifest.csv 记录每个分区的记录数、收支合计、各类别合计，以及分段文件的长度和CRC32，
+ * 因此不读取任何分段也能得到全部历史的合计，分区可以在用到时再加载。
+ * 设置了行校验和函数时，清单还记录每个分区各行校验和之和，AI模型按月对账时不必读取分段。
+ *
+ * 写入只重写发生变化的分区，再重写一次清单；两者都通过 {@link AtomicFileWriter} 原子替换。
+ * 先写分段后写清单，两步之间崩溃时清单记录的长度或CRC32与分段不符（长度相同的改写也能发现），
+ * 读取该分区时以分段内容为准重新统计；分段文件丢失时删除清单中的该分区，不再计入合计。
+ */
+public class TransactionPartitionStore {
+
+    private static final String MANIFEST_FILE = "manifest.csv";
+    private static final String MANIFEST_HEADER =
+            "Month,Count,Income,Expense,SegmentLength,SegmentCrc,RowChecksum,CategoryTotals";
+    // 旧清单：没有CRC列或没有行校验和列，缺少的值在第一次加载该分区时重新统计并补上
+    private static final String LEGACY_MANIFEST_HEADER = "Month,Count,Income,Expense,SegmentLength,CategoryTotals";
+    private static final String CRC_MANIFEST_HEADER = "Month,Count,Income,Expense,SegmentLength,SegmentCrc,CategoryTotals";
+    private static final long UNKNOWN_CRC = -1;
+    private static final String SEGMENT_SUFFIX = ".csv";
+
+    /**
+     * 一个分区的汇总信息
+     */
+    public static final class PartitionInfo {
+        private final YearMonth month;
+        private final int count;
+        private final BigDecimal income;
+        private final BigDecimal expense;
+        private final Map<Integer, BigDecimal> categoryTotals;
+        private final long segmentLength;
+        private final long segmentCrc;
+        private final Long rowChecksum;
+
+        PartitionInfo(YearMonth month, int count, BigDecimal income, BigDecimal expense,
+                      Map<Integer, BigDecimal> categoryTotals, long segmentLength, long segmentCrc, Long rowChecksum) {
+            this.month = month;
+            this.count = count;
+            this.income = income;
+            this.expense = expense;
+            this.categoryTotals = Collections.unmodifiableMap(categoryTotals);
+            this.segmentLength = segmentLength;
+            this.segmentCrc = segmentCrc;
+            this.rowChecksum = rowChecksum;
+        }
+
+        static PartitionInfo of(YearMonth month, Collection<Transaction> transactions, long segmentLength,
+                                long segmentCrc, ToLongFunction<Transaction> rowChecksumFunction) {
+            MoneyAccumulator income = new MoneyAccumulator();
+            MoneyAccumulator expense = new MoneyAccumulator();
+            Map<Integer, MoneyAccumulator> categorySums = new HashMap<>();
+            long rowChecksum = 0;
+            for (Transaction t : transactions) {
+                if (rowChecksumFunction != null) {
+                    rowChecksum += rowChecksumFunction.applyAsLong(t);
+                }
+                if (t.getCategory().getType() == CategoryType.INCOME) {
+                    income.add(t.getAmount());
+                } else {
+                    expense.add(t.getAmount());
+                }
+                categorySums.computeIfAbsent(t.getCategory().getId(), id -> new MoneyAccumulator()).add(t.getAmount());
+            }
+            Map<Integer, BigDecimal> categoryTotals = new HashMap<>(categorySums.size() * 2);
+            for (Map.Entry<Integer, MoneyAccumulator> entry : categorySums.entrySet()) {
+                categoryTotals.put(entry.getKey(), entry.getValue().toBigDecimal());
+            }
+            return new PartitionInfo(month, transactions.size(), income.toBigDecimal(), expense.toBigDecimal(),
+                    categoryTotals, segmentLength, segmentCrc, rowChecksumFunction != null ? rowChecksum : null);
+        }
+
+        public YearMonth getMonth() {
+            return month;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public BigDecimal getTotal(CategoryType type) {
+            return type == CategoryType.INCOME ? income : expense;
+        }
+
+        public BigDecimal getCategoryTotal(int categoryId) {
+            return categoryTotals.getOrDefault(categoryId, BigDecimal.ZERO);
+        }
+
+        long getSegmentLength() {
+            return segmentLength;
+        }
+
+        long getSegmentCrc() {
+            return segmentCrc;
+        }
+
+        /**
+         * 各行校验和之和（按设置的行校验和函数计算，溢出时回绕）
+         *
+         * @return 校验和，清单中没有记录时返回null
+         */
+        public Long getRowChecksum() {
+            return rowChecksum;
+        }
+
+        /**
+         * 清单记录的长度和CRC32是否与分段文件的实际内容一致
+         */
+        boolean matches(long length, long crc) {
+            return segmentLength == length && segmentCrc != UNKNOWN_CRC && segmentCrc == crc;
+        }
+    }
+
+    private final File directory;
+    private final File manifestFile;
+    private final String segmentHeader;
+    private final Function<String, Transaction> parser;
+    private final TreeMap<YearMonth, PartitionInfo> partitions = new TreeMap<>();
+    private ToLongFunction<Transaction> rowChecksumFunction;
+
+    /**
+     * 创建分区存储
+     *
+     * @param directory 分区目录
+     * @param segmentHeader 分段文件的表头行
+     * @param parser CSV行解析器，无法解析时返回null
+     */
+    public TransactionPartitionStore(File directory, String segmentHeader, Function<String, Transaction> parser) {
+        this.directory = directory;
+        this.manifestFile = new File(directory, MANIFEST_FILE);
+        this.segmentHeader = segmentHeader;
+        this.parser = parser;
+    }
+
+    /**
+     * 设置行校验和函数，之后写入或重新统计的分区都在清单中记录各行校验和之和
+     *
+     * @param rowChecksumFunction 单行交易的校验和，为null时不记录
+     */
+    public synchronized void setRowChecksumFunction(ToLongFunction<Transaction> rowChecksumFunction) {
+        this.rowChecksumFunction = rowChecksumFunction;
+    }
+
+    /**
+     * 判断目录下是否已有分区存储
+     *
+     * @param directory 分区目录
+     * @return 清单文件存在时返回true
+     */
+    public static boolean exists(File directory) {
+        return new File(directory, MANIFEST_FILE).exists();
+    }
+
+    /**
+     * 取得交易所属的分区
+     *
+     * @param transaction 交易记录
+     * @return 交易发生的年月
+     */
+    public static YearMonth monthOf(Transaction transaction) {
+        return YearMonth.from(transaction.getDateTime());
+    }
+
+    /**
+     * 读取清单
+     *
+     * @return 清单缺失或格式不正确时返回false
+     */
+    public synchronized boolean open() {
+        partitions.clear();
+        if (!manifestFile.exists()) {
+            return false;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(manifestFile))) {
+            String line = reader.readLine();
+            int columns;
+            if (MANIFEST_HEADER.equals(line)) {
+                columns = 8;
+            } else if (CRC_MANIFEST_HEADER.equals(line)) {
+                columns = 7;
+            } else if (LEGACY_MANIFEST_HEADER.equals(line)) {
+                columns = 6;
+            } else {
+                return false;
+            }
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                PartitionInfo info = parseManifestLine(line, columns);
+                if (info == null) {
+                    System.err.println("Unable to parse partition manifest line " + lineNumber + ": " + line);
+                    return false;
+                }
+                partitions.put(info.getMonth(), info);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error reading partition manifest: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static PartitionInfo parseManifestLine(String line, int columns) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != columns) {
+            return null;
+        }
+        try {
+            long segmentCrc = columns >= 7 ? Long.parseLong(fields[5]) : UNKNOWN_CRC;
+            Long rowChecksum = columns >= 8 && !fields[6].isEmpty() ? Long.valueOf(fields[6]) : null;
+            String categoryField = fields[fields.length - 1];
+            Map<Integer, BigDecimal> categoryTotals = new HashMap<>();
+            if (!categoryField.isEmpty()) {
+                for (String entry : categoryField.split(";")) {
+                    int colon = entry.indexOf(':');
+                    categoryTotals.put(Integer.parseInt(entry.substring(0, colon)),
+                            new BigDecimal(entry.substring(colon + 1)));
+                }
+            }
+            return new PartitionInfo(YearMonth.parse(fields[0]), Integer.parseInt(fields[1]),
+                    new BigDecimal(fields[2]), new BigDecimal(fields[3]), categoryTotals, Long.parseLong(fields[4]),
+                    segmentCrc, rowChecksum);
+        } catch (DateTimeParseException | NumberFormatException | StringIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 获取所有分区的年月（升序）
+     *
+     * @return 年月集合的副本
+     */
+    public synchronized NavigableSet<YearMonth> getMonths() {
+        return new TreeSet<>(partitions.keySet());
+    }
+
+    /**
+     * 获取分区汇总信息
+     *
+     * @param month 年月
+     * @return 汇总信息，分区不存在时返回null
+     */
+    public synchronized PartitionInfo getInfo(YearMonth month) {
+        return partitions.get(month);
+    }
+
+    /**
+     * 获取全部分区的记录总数
+     *
+     * @return 记录数
+     */
+    public synchronized int getTotalCount() {
+        int total = 0;
+        for (PartitionInfo info : partitions.values()) {
+            total += info.getCount();
+        }
+        return total;
+    }
+
+    /**
+     * 读取一个分区的全部交易
+     *
+     * 分段文件与清单不一致时（写清单前崩溃）以分段为准，更新内存中的汇总并重写清单；
+     * 分段文件不存在时从清单中删除该分区
+     *
+     * @param month 年月
+     * @return 交易记录，分区不存在时为空列表
+     * @throws IOException 读取失败
+     */
+    public List<Transaction> readPartition(YearMonth month) throws IOException {
+        File segment = segmentFile(month);
+        List<Transaction> loaded = new ArrayList<>();
+        if (!segment.exists()) {
+            discardPartition(month);
+            return loaded;
+        }
+
+        CRC32 crc = new CRC32();
+        long length;
+        try (FileInputStream fileIn = new FileInputStream(segment);
+             CheckedInputStream in = new CheckedInputStream(fileIn, crc);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
+            String line = reader.readLine();
+            if (line == null || !line.equals(segmentHeader)) {
+                throw new IOException("Unexpected header in partition " + segment.getName());
+            }
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                Transaction transaction = parser.apply(line);
+                if (transaction != null) {
+                    loaded.add(transaction);
+                } else {
+                    System.err.println("Unable to parse line " + lineNumber + " of partition " + segment.getName());
+                }
+            }
+            // 已读到文件末尾，CRC32覆盖了全部内容
+            length = fileIn.getChannel().position();
+        }
+
+        synchronized (this) {
+            PartitionInfo info = partitions.get(month);
+            if (info == null || !info.matches(length, crc.getValue())) {
+                System.err.println("Partition manifest out of date for " + month + ", recounting");
+                partitions.put(month, PartitionInfo.of(month, loaded, length, crc.getValue(), rowChecksumFunction));
+                writeManifest();
+            } else if (info.getRowChecksum() == null && rowChecksumFunction != null) {
+                // 旧清单没有行校验和，趁这次读取补上
+                partitions.put(month, PartitionInfo.of(month, loaded, length, crc.getValue(), rowChecksumFunction));
+                writeManifest();
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 从清单中删除一个分区（分段文件丢失或损坏），它的合计不再计入全部历史
+     *
+     * @param month 年月
+     * @throws IOException 重写清单失败
+     */
+    public synchronized void discardPartition(YearMonth month) throws IOException {
+        if (partitions.remove(month) != null) {
+            System.err.println("Partition segment for " + month + " is missing or damaged, dropping it from the manifest");
+            writeManifest();
+        }
+    }
+
+    /**
+     * 重写指定的分区，然后重写一次清单
+     *
+     * @param changed 每个年月的完整交易列表；空列表表示删除该分区
+     * @throws IOException 写入失败（已写入的分区保持新内容，清单保持旧内容）
+     */
+    public synchronized void writePartitions(Map<YearMonth, ? extends Collection<Transaction>> changed) throws IOException {
+        if (changed.isEmpty()) {
+            return;
+        }
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        for (Map.Entry<YearMonth, ? extends Collection<Transaction>> entry : changed.entrySet()) {
+            YearMonth month = entry.getKey();
+            Collection<Transaction> monthTransactions = entry.getValue();
+            File segment = segmentFile(month);
+            if (monthTransactions.isEmpty()) {
+                if (segment.exists() && !segment.delete()) {
+                    throw new IOException("Unable to delete partition " + segment.getAbsolutePath());
+                }
+                partitions.remove(month);
+                continue;
+            }
+            CRC32 crc = new CRC32();
+            AtomicFileWriter.write(segment, out -> {
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(new CheckedOutputStream(out, crc)));
+                writer.println(segmentHeader);
+                for (Transaction transaction : monthTransactions) {
+                    writer.println(transaction.toCsvLine());
+                }
+                writer.flush();
+            });
+            partitions.put(month, PartitionInfo.of(month, monthTransactions, segment.length(), crc.getValue(),
+                    rowChecksumFunction));
+        }
+        writeManifest();
+    }
+
+    /**
+     * 用给定的交易重写整个存储，删除不再有数据的分区
+     *
+     * @param all 全部交易记录
+     * @throws IOException 写入失败
+     */
+    public synchronized void writeAll(Collection<Transaction> all) throws IOException {
+        Map<YearMonth, List<Transaction>> byMonth = groupByMonth(all);
+        for (YearMonth month : partitions.keySet()) {
+            byMonth.putIfAbsent(month, Collections.emptyList());
+        }
+        if (byMonth.isEmpty()) {
+            // 没有任何交易时仍然写出清单，表示存储已创建
+            if (!directory.exists()) {
+                directory.mkdirs();
+            }
+            writeManifest();
+            return;
+        }
+        writePartitions(byMonth);
+    }
+
+    /**
+     * 按年月分组
+     *
+     * @param transactions 交易记录
+     * @return 年月到交易列表的有序映射
+     */
+    public static Map<YearMonth, List<Transaction>> groupByMonth(Collection<Transaction> transactions) {
+        Map<YearMonth, List<Transaction>> byMonth = new TreeMap<>();
+        for (Transaction transaction : transactions) {
+            byMonth.computeIfAbsent(monthOf(transaction), m -> new ArrayList<>()).add(transaction);
+        }
+        return byMonth;
+    }
+
+    /**
+     * 清单文件，分区存储以它作为“基础文件”
+     */
+    public File getManifestFile() {
+        return manifestFile;
+    }
+
+    private File segmentFile(YearMonth month) {
+        return new File(directory, month + SEGMENT_SUFFIX);
+    }
+
+    private void writeManifest() throws IOException {
+        StringBuilder text = new StringBuilder(64 + partitions.size() * 64);
+        text.append(MANIFEST_HEADER).append(System.lineSeparator());
+        for (PartitionInfo info : partitions.values()) {
+            text.append(info.getMonth()).append(',')
+                .append(info.getCount()).append(',')
+                .append(info.getTotal(CategoryType.INCOME).toPlainString()).append(',')
+                .append(info.getTotal(CategoryType.EXPENSE).toPlainString()).append(',')
+                .append(info.getSegmentLength()).append(',')
+                .append(info.getSegmentCrc()).append(',')
+                .append(info.getRowChecksum() != null ? info.getRowChecksum().toString() : "").append(',');
+            boolean first = true;
+            for (Map.Entry<Integer, BigDecimal> total : new TreeMap<>(info.categoryTotals).entrySet()) {
+                if (!first) {
+                    text.append(';');
+                }
+                text.append(total.getKey()).append(':').append(total.getValue().toPlainString());
+                first = false;
+            }
+            text.append(System.lineSeparator());
+        }
+        AtomicFileWriter.writeString(manifestFile, text.toString());
+    }
+}
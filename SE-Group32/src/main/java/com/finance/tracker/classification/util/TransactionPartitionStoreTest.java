@@ -0,0 +1,104 @@
+package com.finance.tracker.classification.util;
+
+import com.finance.tracker.classification.model.Category;
+import com.finance.tracker.classification.model.CategoryType;
+import com.finance.tracker.classification.model.Transaction;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 故障注入驱动：分段文件丢失、长度不变的改写、旧格式清单，
+ * 分区存储都必须以分段文件的实际内容为准更新清单。检查失败时以状态1退出。
+ */
+public class TransactionPartitionStoreTest {
+
+    private static final String HEADER = "ID,DateTime,CategoryID,CategoryType,Amount,Description";
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Category FOOD = new Category(1, "Food", CategoryType.EXPENSE, null);
+
+    private static int failures;
+
+    public static void main(String[] args) throws IOException {
+        File directory = Files.createTempDirectory("partition-test").toFile();
+        YearMonth january = YearMonth.of(2024, 1);
+        YearMonth february = YearMonth.of(2024, 2);
+        YearMonth march = YearMonth.of(2024, 3);
+
+        List<Transaction> all = new ArrayList<>();
+        for (int month = 1; month <= 3; month++) {
+            for (int day = 1; day <= 5; day++) {
+                all.add(new Transaction("t" + month + "-" + day, LocalDateTime.of(2024, month, day, 12, 0),
+                        FOOD, new BigDecimal("12.34"), "lunch"));
+            }
+        }
+        TransactionPartitionStore store = new TransactionPartitionStore(directory, HEADER,
+                TransactionPartitionStoreTest::parse);
+        store.writeAll(all);
+        check("three partitions written", store.getMonths().size() == 3);
+
+        // 分段文件丢失：清单中的分区和它的合计一起删除
+        Files.delete(new File(directory, february + ".csv").toPath());
+        store = newStore(directory);
+        check("manifest still lists the lost month before it is read", store.getInfo(february) != null);
+        check("lost month reads as empty", store.readPartition(february).isEmpty());
+        check("lost month is dropped from the manifest", store.getInfo(february) == null);
+        check("drop is persisted", newStore(directory).getInfo(february) == null);
+
+        // 长度不变的改写：只有CRC32能发现
+        File januarySegment = new File(directory, january + ".csv");
+        String text = new String(Files.readAllBytes(januarySegment.toPath()), Charset.defaultCharset());
+        Files.write(januarySegment.toPath(), text.replaceFirst("12\\.34", "98\\.34").getBytes(Charset.defaultCharset()));
+        store = newStore(directory);
+        store.readPartition(january);
+        check("same-length rewrite is recounted",
+                store.getInfo(january).getTotal(CategoryType.EXPENSE).compareTo(new BigDecimal("147.70")) == 0);
+
+        // 旧格式清单（没有CRC列）仍可读取，加载分区时补上CRC
+        File manifest = store.getManifestFile();
+        List<String> legacy = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest.toPath(), Charset.defaultCharset())) {
+            String[] fields = line.split(",", -1);
+            legacy.add(String.join(",", fields[0], fields[1], fields[2], fields[3], fields[4], fields[fields.length - 1]));
+        }
+        Files.write(manifest.toPath(), legacy, Charset.defaultCharset());
+        store = newStore(directory);
+        check("legacy manifest is accepted", store.getMonths().size() == 2);
+        check("legacy month reads back", store.readPartition(march).size() == 5);
+        check("manifest is upgraded on load",
+                Files.readAllLines(manifest.toPath(), Charset.defaultCharset()).get(0).contains("SegmentCrc"));
+
+        System.out.println(failures == 0 ? "All checks passed" : failures + " check(s) failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static TransactionPartitionStore newStore(File directory) {
+        TransactionPartitionStore store = new TransactionPartitionStore(directory, HEADER,
+                TransactionPartitionStoreTest::parse);
+        if (!store.open()) {
+            throw new IllegalStateException("Unable to open partition manifest in " + directory);
+        }
+        return store;
+    }
+
+    private static Transaction parse(String line) {
+        String[] fields = line.split(",", 6);
+        return new Transaction(fields[0], LocalDateTime.parse(fields[1], DATE_FORMATTER), FOOD,
+                new BigDecimal(fields[4]), fields[5].replaceAll("^\"|\"$", ""));
+    }
+
+    private static void check(String name, boolean passed) {
+        System.out.println((passed ? "PASS  " : "FAIL  ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.finance.tracker.classification.util;
+
+import com.finance.tracker.classification.model.Category;
+import com.finance.tracker.classification.model.CategoryType;
+import com.finance.tracker.classification.model.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * 交易查询 - 可组合的查询条件
+ *
+ * 支持时间范围、类别类型、类别集合、金额区间和描述关键字，以及 offset/limit 分页。
+ * 在 {@link TransactionDataCenter#query(TransactionQuery)} 中执行时会利用索引
+ * （类别索引或类型索引加时间范围截取），结果按时间降序惰性返回。
+ *
+ * <pre>
+ * TransactionQuery query = new TransactionQuery()
+ *         .ofType(CategoryType.EXPENSE)
+ *         .inCategory(food)
+ *         .between(start, end)
+ *         .limit(50);
+ * </pre>
+ */
+public class TransactionQuery implements Predicate<Transaction> {
+
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private CategoryType type;
+    private final Set<Integer> categoryIds = new LinkedHashSet<>();
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    private String descriptionKeyword;
+    private long offset = 0;
+    private long limit = -1;
+
+    /**
+     * 限定时间范围 [from, to)，任一端为null表示不限
+     *
+     * @param from 起始时间（含）
+     * @param to 结束时间（不含）
+     * @return 当前查询
+     */
+    public TransactionQuery between(LocalDateTime from, LocalDateTime to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    /**
+     * 限定日期范围，两端日期均包含在内
+     *
+     * @param fromDate 起始日期（含）
+     * @param toDate 结束日期（含）
+     * @return 当前查询
+     */
+    public TransactionQuery betweenDates(LocalDate fromDate, LocalDate toDate) {
+        return between(fromDate != null ? fromDate.atStartOfDay() : null,
+                toDate != null ? toDate.plusDays(1).atStartOfDay() : null);
+    }
+
+    /**
+     * 限定类别类型
+     *
+     * @param type 收入或支出
+     * @return 当前查询
+     */
+    public TransactionQuery ofType(CategoryType type) {
+        this.type = type;
+        return this;
+    }
+
+    /**
+     * 限定类别，可多次调用以组成类别集合
+     *
+     * @param category 类别
+     * @return 当前查询
+     */
+    public TransactionQuery inCategory(Category category) {
+        categoryIds.add(category.getId());
+        return this;
+    }
+
+    /**
+     * 限定类别ID集合
+     *
+     * @param ids 类别ID
+     * @return 当前查询
+     */
+    public TransactionQuery inCategories(Collection<Integer> ids) {
+        categoryIds.addAll(ids);
+        return this;
+    }
+
+    /**
+     * 限定金额区间，两端均包含，任一端为null表示不限
+     *
+     * @param min 最小金额
+     * @param max 最大金额
+     * @return 当前查询
+     */
+    public TransactionQuery amountBetween(BigDecimal min, BigDecimal max) {
+        this.minAmount = min;
+        this.maxAmount = max;
+        return this;
+    }
+
+    /**
+     * 限定描述中包含指定关键字（不区分大小写）
+     *
+     * @param keyword 关键字
+     * @return 当前查询
+     */
+    public TransactionQuery descriptionContains(String keyword) {
+        this.descriptionKeyword = keyword != null && !keyword.isEmpty() ? keyword.toLowerCase() : null;
+        return this;
+    }
+
+    /**
+     * 跳过前若干条结果
+     *
+     * @param offset 跳过的条数
+     * @return 当前查询
+     */
+    public TransactionQuery offset(long offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + offset);
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * 最多返回若干条结果
+     *
+     * @param limit 最大条数
+     * @return 当前查询
+     */
+    public TransactionQuery limit(long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * 判断交易是否满足全部条件（不考虑分页）
+     *
+     * @param t 交易记录
+     * @return 是否满足
+     */
+    @Override
+    public boolean test(Transaction t) {
+        if (from != null && t.getDateTime().isBefore(from)) {
+            return false;
+        }
+        if (to != null && !t.getDateTime().isBefore(to)) {
+            return false;
+        }
+        if (type != null && t.getCategory().getType() != type) {
+            return false;
+        }
+        if (!categoryIds.isEmpty() && !categoryIds.contains(t.getCategory().getId())) {
+            return false;
+        }
+        if (minAmount != null && t.getAmount().compareTo(minAmount) < 0) {
+            return false;
+        }
+        if (maxAmount != null && t.getAmount().compareTo(maxAmount) > 0) {
+            return false;
+        }
+        if (descriptionKeyword != null) {
+            String description = t.getDescription();
+            return description != null && description.toLowerCase().contains(descriptionKeyword);
+        }
+        return true;
+    }
+
+    /**
+     * 对任意交易集合执行查询（不使用索引），用于未经数据中心的内存数据
+     *
+     * @param transactions 交易集合
+     * @return 惰性结果流
+     */
+    public Stream<Transaction> apply(Collection<Transaction> transactions) {
+        return page(transactions.stream().filter(this));
+    }
+
+    /**
+     * 对结果流应用 offset/limit
+     */
+    Stream<Transaction> page(Stream<Transaction> stream) {
+        if (offset > 0) {
+            stream = stream.skip(offset);
+        }
+        if (limit >= 0) {
+            stream = stream.limit(limit);
+        }
+        return stream;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public CategoryType getType() {
+        return type;
+    }
+
+    public Set<Integer> getCategoryIds() {
+        return Collections.unmodifiableSet(categoryIds);
+    }
+
+    public BigDecimal getMinAmount() {
+        return minAmount;
+    }
+
+    public BigDecimal getMaxAmount() {
+        return maxAmount;
+    }
+
+    public String getDescriptionKeyword() {
+        return descriptionKeyword;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,533 @@
+package com.finance.tracker.classification.util;
+
+import com.finance.tracker.classification.model.CategoryType;
+import com.finance.tracker.classification.model.Transaction;
+import com.finance.tracker.localization.MoneyAccumulator;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 交易快照 - 某一版本下全部交易的不可变视图
+ *
+ * 主索引以 (时间, ID) 为键按时间倒序排列，另有类别类型和类别ID二级索引，
+ * 以及按类型和按类别维护的金额合计。所有结构都是持久化（路径复制）的，
+ * 修改时生成新快照并与旧快照共享未改动的部分；快照一旦发布便不再变化，
+ * 因此可以在任意线程中不加锁地读取，读到的所有数据都属于同一个版本。
+ */
+public final class TransactionSnapshot {
+
+    /**
+     * 索引键：时间降序，时间相同时按ID升序
+     */
+    static final class Key implements Comparable<Key> {
+        private final LocalDateTime dateTime;
+        private final String id;
+
+        Key(LocalDateTime dateTime, String id) {
+            this.dateTime = dateTime;
+            this.id = id;
+        }
+
+        static Key of(Transaction transaction) {
+            return new Key(transaction.getDateTime(), transaction.getId());
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int cmp = other.dateTime.compareTo(dateTime);
+            return cmp != 0 ? cmp : id.compareTo(other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return dateTime.equals(key.dateTime) && id.equals(key.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * dateTime.hashCode() + id.hashCode();
+        }
+    }
+
+    /**
+     * 记录入索引时的位置和金额，类别或金额被修改后仍能准确地从原索引和合计中移除
+     */
+    private static final class Entry {
+        private final Key key;
+        private final CategoryType type;
+        private final int categoryId;
+        private final BigDecimal amount;
+        private final Transaction transaction;
+
+        Entry(Key key, CategoryType type, int categoryId, BigDecimal amount, Transaction transaction) {
+            this.key = key;
+            this.type = type;
+            this.categoryId = categoryId;
+            this.amount = amount;
+            this.transaction = transaction;
+        }
+    }
+
+    static final TransactionSnapshot EMPTY = createEmpty();
+
+    private final long version;
+    private final PersistentSortedMap<Key, Transaction> byTime;
+    private final PersistentSortedMap<String, Entry> entries;
+    private final Map<CategoryType, PersistentSortedMap<Key, Transaction>> byType;
+    private final PersistentSortedMap<Integer, PersistentSortedMap<Key, Transaction>> byCategory;
+    private final Map<CategoryType, BigDecimal> typeTotals;
+    private final PersistentSortedMap<Integer, BigDecimal> categoryTotals;
+
+    private TransactionSnapshot(long version,
+                                PersistentSortedMap<Key, Transaction> byTime,
+                                PersistentSortedMap<String, Entry> entries,
+                                Map<CategoryType, PersistentSortedMap<Key, Transaction>> byType,
+                                PersistentSortedMap<Integer, PersistentSortedMap<Key, Transaction>> byCategory,
+                                Map<CategoryType, BigDecimal> typeTotals,
+                                PersistentSortedMap<Integer, BigDecimal> categoryTotals) {
+        this.version = version;
+        this.byTime = byTime;
+        this.entries = entries;
+        this.byType = byType;
+        this.byCategory = byCategory;
+        this.typeTotals = typeTotals;
+        this.categoryTotals = categoryTotals;
+    }
+
+    private static TransactionSnapshot createEmpty() {
+        Map<CategoryType, PersistentSortedMap<Key, Transaction>> byType = new EnumMap<>(CategoryType.class);
+        Map<CategoryType, BigDecimal> typeTotals = new EnumMap<>(CategoryType.class);
+        for (CategoryType type : CategoryType.values()) {
+            byType.put(type, PersistentSortedMap.empty());
+            typeTotals.put(type, BigDecimal.ZERO);
+        }
+        return new TransactionSnapshot(0, PersistentSortedMap.empty(), PersistentSortedMap.empty(), byType,
+                PersistentSortedMap.empty(), typeTotals, PersistentSortedMap.empty());
+    }
+
+    /**
+     * 由一组交易直接构造快照（ID重复时以后出现的为准）
+     *
+     * 先排序再自底向上建树，整体 O(n log n)，比逐条插入少得多的对象分配，用于加载和整体刷新
+     *
+     * @param transactions 交易记录
+     * @return 版本号为0的新快照
+     */
+    static TransactionSnapshot of(Collection<Transaction> transactions) {
+        Map<String, Transaction> byId = new HashMap<>(transactions.size() * 2);
+        for (Transaction transaction : transactions) {
+            byId.put(transaction.getId(), transaction);
+        }
+
+        List<String> ids = new ArrayList<>(byId.keySet());
+        Collections.sort(ids);
+        List<Entry> entryList = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Transaction t = byId.get(id);
+            entryList.add(new Entry(Key.of(t), t.getCategory().getType(), t.getCategory().getId(), t.getAmount(), t));
+        }
+        PersistentSortedMap<String, Entry> newEntries = PersistentSortedMap.fromSorted(ids, entryList);
+
+        List<Entry> timeOrdered = new ArrayList<>(entryList);
+        timeOrdered.sort((a, b) -> a.key.compareTo(b.key));
+
+        Map<CategoryType, List<Entry>> typeGroups = new EnumMap<>(CategoryType.class);
+        for (CategoryType type : CategoryType.values()) {
+            typeGroups.put(type, new ArrayList<>());
+        }
+        Map<Integer, List<Entry>> categoryGroups = new TreeMap<>();
+        Map<CategoryType, MoneyAccumulator> typeSums = newTypeAccumulators();
+        Map<Integer, MoneyAccumulator> categorySums = new TreeMap<>();
+        for (Entry entry : timeOrdered) {
+            typeGroups.get(entry.type).add(entry);
+            categoryGroups.computeIfAbsent(entry.categoryId, id -> new ArrayList<>()).add(entry);
+            typeSums.get(entry.type).add(entry.amount);
+            categorySums.computeIfAbsent(entry.categoryId, id -> new MoneyAccumulator()).add(entry.amount);
+        }
+        Map<CategoryType, BigDecimal> newTypeTotals = toTotals(typeSums);
+        List<BigDecimal> categoryTotalValues = new ArrayList<>(categorySums.size());
+        for (MoneyAccumulator sum : categorySums.values()) {
+            categoryTotalValues.add(sum.toBigDecimal());
+        }
+
+        Map<CategoryType, PersistentSortedMap<Key, Transaction>> newByType = new EnumMap<>(CategoryType.class);
+        for (Map.Entry<CategoryType, List<Entry>> group : typeGroups.entrySet()) {
+            newByType.put(group.getKey(), timeIndex(group.getValue()));
+        }
+        List<Integer> categoryIds = new ArrayList<>(categoryGroups.keySet());
+        List<PersistentSortedMap<Key, Transaction>> categoryIndexes = new ArrayList<>(categoryIds.size());
+        for (Integer categoryId : categoryIds) {
+            categoryIndexes.add(timeIndex(categoryGroups.get(categoryId)));
+        }
+
+        return new TransactionSnapshot(0,
+                timeIndex(timeOrdered),
+                newEntries,
+                newByType,
+                PersistentSortedMap.fromSorted(categoryIds, categoryIndexes),
+                newTypeTotals,
+                PersistentSortedMap.fromSorted(new ArrayList<>(categorySums.keySet()), categoryTotalValues));
+    }
+
+    private static PersistentSortedMap<Key, Transaction> timeIndex(List<Entry> timeOrdered) {
+        List<Key> keys = new ArrayList<>(timeOrdered.size());
+        List<Transaction> values = new ArrayList<>(timeOrdered.size());
+        for (Entry entry : timeOrdered) {
+            keys.add(entry.key);
+            values.add(entry.transaction);
+        }
+        return PersistentSortedMap.fromSorted(keys, values);
+    }
+
+    /**
+     * 返回加入该交易后的新快照；ID已存在时替换原记录
+     */
+    TransactionSnapshot with(Transaction transaction) {
+        TransactionSnapshot base = without(transaction.getId());
+
+        Key key = Key.of(transaction);
+        CategoryType type = transaction.getCategory().getType();
+        int categoryId = transaction.getCategory().getId();
+        BigDecimal amount = transaction.getAmount();
+
+        Map<CategoryType, PersistentSortedMap<Key, Transaction>> newByType = new EnumMap<>(base.byType);
+        newByType.put(type, base.byType.get(type).put(key, transaction));
+
+        PersistentSortedMap<Key, Transaction> category = base.byCategory.get(categoryId);
+        if (category == null) {
+            category = PersistentSortedMap.empty();
+        }
+
+        Map<CategoryType, BigDecimal> newTypeTotals = new EnumMap<>(base.typeTotals);
+        newTypeTotals.put(type, newTypeTotals.get(type).add(amount));
+
+        BigDecimal categoryTotal = base.categoryTotals.get(categoryId);
+        categoryTotal = categoryTotal != null ? categoryTotal.add(amount) : amount;
+
+        return new TransactionSnapshot(version,
+                base.byTime.put(key, transaction),
+                base.entries.put(transaction.getId(), new Entry(key, type, categoryId, amount, transaction)),
+                newByType,
+                base.byCategory.put(categoryId, category.put(key, transaction)),
+                newTypeTotals,
+                base.categoryTotals.put(categoryId, categoryTotal));
+    }
+
+    /**
+     * 返回移除该ID后的新快照；ID不存在时返回自身
+     */
+    TransactionSnapshot without(String id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return this;
+        }
+
+        Map<CategoryType, PersistentSortedMap<Key, Transaction>> newByType = new EnumMap<>(byType);
+        newByType.put(entry.type, byType.get(entry.type).remove(entry.key));
+
+        Map<CategoryType, BigDecimal> newTypeTotals = new EnumMap<>(typeTotals);
+        newTypeTotals.put(entry.type, newTypeTotals.get(entry.type).subtract(entry.amount));
+
+        PersistentSortedMap<Integer, PersistentSortedMap<Key, Transaction>> newByCategory = byCategory;
+        PersistentSortedMap<Integer, BigDecimal> newCategoryTotals = categoryTotals;
+        PersistentSortedMap<Key, Transaction> category = byCategory.get(entry.categoryId);
+        if (category != null) {
+            category = category.remove(entry.key);
+            if (category.isEmpty()) {
+                newByCategory = byCategory.remove(entry.categoryId);
+                newCategoryTotals = categoryTotals.remove(entry.categoryId);
+            } else {
+                newByCategory = byCategory.put(entry.categoryId, category);
+                newCategoryTotals = categoryTotals.put(entry.categoryId,
+                        categoryTotals.get(entry.categoryId).subtract(entry.amount));
+            }
+        }
+
+        return new TransactionSnapshot(version, byTime.remove(entry.key), entries.remove(id),
+                newByType, newByCategory, newTypeTotals, newCategoryTotals);
+    }
+
+    /**
+     * 返回相同内容、指定版本号的快照
+     */
+    TransactionSnapshot withVersion(long newVersion) {
+        return new TransactionSnapshot(newVersion, byTime, entries, byType, byCategory, typeTotals, categoryTotals);
+    }
+
+    /**
+     * 返回从头重新计算合计后的快照
+     */
+    TransactionSnapshot withRecomputedTotals() {
+        Map<CategoryType, MoneyAccumulator> typeSums = newTypeAccumulators();
+        Map<Integer, MoneyAccumulator> categorySums = new HashMap<>();
+        for (Iterator<Transaction> it = byTime.values(); it.hasNext(); ) {
+            Transaction t = it.next();
+            typeSums.get(t.getCategory().getType()).add(t.getAmount());
+            categorySums.computeIfAbsent(t.getCategory().getId(), id -> new MoneyAccumulator()).add(t.getAmount());
+        }
+        Map<CategoryType, BigDecimal> expectedTypes = toTotals(typeSums);
+
+        PersistentSortedMap<Integer, BigDecimal> newCategoryTotals = PersistentSortedMap.empty();
+        for (Map.Entry<Integer, MoneyAccumulator> entry : categorySums.entrySet()) {
+            newCategoryTotals = newCategoryTotals.put(entry.getKey(), entry.getValue().toBigDecimal());
+        }
+        return new TransactionSnapshot(version, byTime, entries, byType, byCategory, expectedTypes, newCategoryTotals);
+    }
+
+    /**
+     * 每种类型一个累加器，批量求和时不必每次相加都创建BigDecimal
+     */
+    private static Map<CategoryType, MoneyAccumulator> newTypeAccumulators() {
+        Map<CategoryType, MoneyAccumulator> sums = new EnumMap<>(CategoryType.class);
+        for (CategoryType type : CategoryType.values()) {
+            sums.put(type, new MoneyAccumulator());
+        }
+        return sums;
+    }
+
+    private static Map<CategoryType, BigDecimal> toTotals(Map<CategoryType, MoneyAccumulator> sums) {
+        Map<CategoryType, BigDecimal> totals = new EnumMap<>(CategoryType.class);
+        for (Map.Entry<CategoryType, MoneyAccumulator> entry : sums.entrySet()) {
+            totals.put(entry.getKey(), entry.getValue().toBigDecimal());
+        }
+        return totals;
+    }
+
+    /**
+     * 比较两个快照的合计，输出所有差异
+     *
+     * @param expected 作为基准的快照
+     * @return 合计是否一致
+     */
+    boolean totalsMatch(TransactionSnapshot expected) {
+        boolean consistent = true;
+        for (CategoryType type : CategoryType.values()) {
+            if (expected.typeTotals.get(type).compareTo(typeTotals.get(type)) != 0) {
+                System.err.println("Running total mismatch for " + type + ": expected "
+                        + expected.typeTotals.get(type) + ", maintained " + typeTotals.get(type));
+                consistent = false;
+            }
+        }
+        if (expected.categoryTotals.size() != categoryTotals.size()) {
+            consistent = false;
+        }
+        for (Iterator<Integer> it = expected.categoryTotals.keys(); it.hasNext(); ) {
+            Integer categoryId = it.next();
+            BigDecimal expectedTotal = expected.categoryTotals.get(categoryId);
+            BigDecimal maintained = categoryTotals.get(categoryId);
+            if (maintained == null || expectedTotal.compareTo(maintained) != 0) {
+                System.err.println("Running total mismatch for category " + categoryId
+                        + ": expected " + expectedTotal + ", maintained " + maintained);
+                consistent = false;
+            }
+        }
+        return consistent;
+    }
+
+    /**
+     * 获取快照版本号，每次发布修改都会递增
+     *
+     * @return 版本号
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 按ID查找交易记录
+     *
+     * @param id 交易ID
+     * @return 交易记录，不存在则为null
+     */
+    public Transaction get(String id) {
+        Entry entry = entries.get(id);
+        return entry != null ? entry.transaction : null;
+    }
+
+    public boolean contains(String id) {
+        return entries.containsKey(id);
+    }
+
+    public int size() {
+        return byTime.size();
+    }
+
+    /**
+     * 获取全部交易记录（按时间降序）
+     *
+     * 返回的是快照索引上的只读视图，不复制数据，按位置取值为 O(log n)；需要修改时由调用方自行复制
+     *
+     * @return 只读列表
+     */
+    public List<Transaction> getAll() {
+        return byTime.valuesView();
+    }
+
+    /**
+     * 获取指定类型的交易记录（按时间降序）
+     *
+     * @param type 类别类型
+     * @return 只读列表（视图）
+     */
+    public List<Transaction> getByType(CategoryType type) {
+        return byType.get(type).valuesView();
+    }
+
+    /**
+     * 获取指定类别的交易记录（按时间降序）
+     *
+     * @param categoryId 类别ID
+     * @return 只读列表（视图）
+     */
+    public List<Transaction> getByCategory(int categoryId) {
+        PersistentSortedMap<Key, Transaction> category = byCategory.get(categoryId);
+        if (category == null) {
+            return Collections.emptyList();
+        }
+        return category.valuesView();
+    }
+
+    /**
+     * 执行查询，结果按时间降序惰性返回
+     *
+     * 指定了类别时从类别索引读取（多个类别做有序归并），否则指定了类型时从类型索引读取，
+     * 时间范围直接截取索引的子范围，其余条件逐条过滤。
+     *
+     * @param query 查询条件
+     * @return 惰性结果流
+     */
+    public Stream<Transaction> query(TransactionQuery query) {
+        LocalDateTime from = query.getFrom();
+        LocalDateTime to = query.getTo();
+        if (from != null && to != null && !from.isBefore(to)) {
+            return Stream.empty();
+        }
+
+        // 键按时间降序排列，空字符串是最小的ID，因此 (t - 1ns, "") 恰好位于所有时间 >= t 的记录之后
+        Key lower = to != null ? new Key(to.minusNanos(1), "") : null;
+        Key upper = from != null ? new Key(from.minusNanos(1), "") : null;
+
+        Iterator<Transaction> source;
+        if (!query.getCategoryIds().isEmpty()) {
+            List<Iterator<Transaction>> ranges = new ArrayList<>();
+            for (Integer categoryId : query.getCategoryIds()) {
+                PersistentSortedMap<Key, Transaction> category = byCategory.get(categoryId);
+                if (category != null) {
+                    ranges.add(category.values(lower, upper));
+                }
+            }
+            if (ranges.isEmpty()) {
+                return Stream.empty();
+            }
+            source = ranges.size() == 1 ? ranges.get(0) : new MergingIterator(ranges);
+        } else if (query.getType() != null) {
+            source = byType.get(query.getType()).values(lower, upper);
+        } else {
+            source = byTime.values(lower, upper);
+        }
+
+        Stream<Transaction> stream = StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(source, Spliterator.ORDERED | Spliterator.NONNULL), false);
+        return query.page(stream.filter(query));
+    }
+
+    /**
+     * 对多个已按时间降序排列的来源做有序归并
+     */
+    private static final class MergingIterator implements Iterator<Transaction> {
+        private final PriorityQueue<Head> heads = new PriorityQueue<>();
+
+        private static final class Head implements Comparable<Head> {
+            private final Key key;
+            private final Transaction transaction;
+            private final Iterator<Transaction> rest;
+
+            Head(Transaction transaction, Iterator<Transaction> rest) {
+                this.key = Key.of(transaction);
+                this.transaction = transaction;
+                this.rest = rest;
+            }
+
+            @Override
+            public int compareTo(Head other) {
+                return key.compareTo(other.key);
+            }
+        }
+
+        MergingIterator(List<Iterator<Transaction>> sources) {
+            for (Iterator<Transaction> source : sources) {
+                advance(source);
+            }
+        }
+
+        private void advance(Iterator<Transaction> iterator) {
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator.next(), iterator));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Transaction next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            advance(head.rest);
+            return head.transaction;
+        }
+    }
+
+    /**
+     * 获取指定类型的金额合计
+     *
+     * @param type 类别类型
+     * @return 合计金额
+     */
+    public BigDecimal getTotal(CategoryType type) {
+        return typeTotals.get(type);
+    }
+
+    /**
+     * 获取指定类别的金额合计
+     *
+     * @param categoryId 类别ID
+     * @return 合计金额
+     */
+    public BigDecimal getCategoryTotal(int categoryId) {
+        BigDecimal total = categoryTotals.get(categoryId);
+        return total != null ? total : BigDecimal.ZERO;
+    }
+
+    /**
+     * 获取余额（总收入减总支出）
+     *
+     * @return 余额
+     */
+    public BigDecimal getBalance() {
+        return typeTotals.get(CategoryType.INCOME).subtract(typeTotals.get(CategoryType.EXPENSE));
+    }
+}
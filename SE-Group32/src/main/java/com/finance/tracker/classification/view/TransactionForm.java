@@ -24,6 +24,8 @@ public class TransactionForm extends JPanel {
     private JTextArea descriptionArea;
     private JButton saveButton;
     private JButton clearButton;
+    private JButton importButton;
+    private JProgressBar importProgress;
     private TransactionManager transactionManager;
     private final CategoryController categoryController;
     private CurrencyManager currencyManager;
@@ -53,17 +55,24 @@ public class TransactionForm extends JPanel {
 
         // === 顶部工具栏：导入 CSV 按钮 ===
         JPanel toolbarPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        JButton importButton = new JButton("Import CSV");
+        importButton = new JButton("Import CSV");
         importButton.addActionListener(e -> {
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV Files", "csv"));
             int result = fileChooser.showOpenDialog(this);
             if (result == JFileChooser.APPROVE_OPTION) {
                 File selectedFile = fileChooser.getSelectedFile();
+                // 导入在后台进行，期间禁用按钮并显示进度
+                importButton.setEnabled(false);
+                showImportProgress(0, "Importing " + selectedFile.getName() + "...");
                 categoryController.importCSV(selectedFile, this);
             }
         });
         toolbarPanel.add(importButton);
+        importProgress = new JProgressBar(0, 100);
+        importProgress.setStringPainted(true);
+        importProgress.setVisible(false);
+        toolbarPanel.add(importProgress);
         add(toolbarPanel, BorderLayout.NORTH);
 
         // === 表单区域 ===
@@ -317,6 +326,28 @@ public class TransactionForm extends JPanel {
         saveButton.setEnabled(hasCategory && hasValidAmount);
     }
 
+    /**
+     * 显示CSV导入进度
+     * 
+     * @param percent 进度百分比
+     * @param message 进度说明
+     */
+    public void showImportProgress(int percent, String message) {
+        importProgress.setValue(percent);
+        importProgress.setString(message);
+        importProgress.setVisible(true);
+        revalidate();
+    }
+    
+    /**
+     * CSV导入结束（完成、失败或取消）后隐藏进度并恢复导入按钮
+     */
+    public void importFinished() {
+        importProgress.setVisible(false);
+        importButton.setEnabled(true);
+        revalidate();
+    }
+
     /**
      * 刷新货币显示
      */
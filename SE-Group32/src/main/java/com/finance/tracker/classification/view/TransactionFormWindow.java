@@ -1,7 +1,6 @@
 package com.finance.tracker.classification.view;
 
 import com.finance.tracker.classification.controller.CategoryController;
-import com.finance.tracker.classification.util.CategoryManager;
 import com.finance.tracker.classification.util.TransactionManager;
 import com.finance.tracker.localization.CurrencyManager;
 import javax.swing.*;
@@ -28,11 +27,8 @@ public class TransactionFormWindow extends JFrame {
         // 初始化货币管理器
         currencyManager = CurrencyManager.getInstance();
         
-        // 初始化数据和控制器
-        TransactionManager transactionManager = new TransactionManager(
-            new CategoryManager(), 
-            "data/transactions.csv"
-        );
+        // 初始化数据和控制器（与其他窗口共用同一账本的管理器）
+        TransactionManager transactionManager = TransactionManager.getShared("data/transactions.csv");
         
         TransactionList transactionList = new TransactionList(transactionManager);
         CategoryController categoryController = new CategoryController(transactionManager, transactionList);
@@ -3,17 +3,21 @@ package com.finance.tracker.classification.view;
 import com.finance.tracker.classification.model.CategoryType;
 import com.finance.tracker.classification.model.Transaction;
 import com.finance.tracker.classification.util.TransactionDataCenter;
+import com.finance.tracker.classification.util.TransactionEventBus;
 import com.finance.tracker.classification.util.TransactionManager;
 import com.finance.tracker.integration.AIModuleFacade;
 import com.finance.tracker.localization.CurrencyManager;
 import com.finance.tracker.localization.Currency;
+import com.finance.tracker.ui.BackgroundTask;
+import com.finance.tracker.ui.BackgroundTaskExecutor;
 import java.awt.*;
 import java.math.BigDecimal;
-import java.text.DecimalFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 
 /**
  * Transaction List - Displays existing transaction records
@@ -22,13 +26,13 @@ public class TransactionList extends JPanel {
     private TransactionManager transactionManager;
     private TransactionDataCenter dataCenter;
     private JTable transactionTable;
-    private DefaultTableModel tableModel;
+    private TransactionTableModel tableModel;
     private JLabel balanceLabel;
     private JLabel incomeLabel;
     private JLabel expenseLabel;
-    private List<Transaction> currentTransactions;
-    private CategoryType currentFilterType = null;
     private CurrencyManager currencyManager;
+    private BackgroundTask<List<Transaction>> loadTask;
+    private boolean reloadPending;
     
     /**
      * Create transaction list
@@ -40,17 +44,17 @@ public class TransactionList extends JPanel {
         this.dataCenter = TransactionDataCenter.getInstance();
         this.currencyManager = CurrencyManager.getInstance();
         
-        // 注册为数据变化监听器
-        dataCenter.addTransactionChangeListener(new TransactionDataCenter.TransactionChangeListener() {
-            @Override
-            public void onTransactionDataChanged(TransactionDataCenter.ChangeType type, Transaction transaction) {
-                // 当数据发生变化时刷新列表
-                refresh();
-            }
-        });
-        
         initializeUI();
         loadTransactions();
+        
+        // 订阅合并后的变更：只插入、删除或重绘受影响的行，汇总直接取数据中心的合计
+        // 正在后台加载时先不动表格，加载完成后再读一次最新数据
+        dataCenter.getEventBus().subscribe("TransactionList", delta -> {
+            if (loadTask != null || !tableModel.apply(delta)) {
+                refresh();
+            }
+            updateSummary();
+        }, TransactionEventBus.Delivery.EDT);
     }
     
     /**
@@ -64,15 +68,8 @@ public class TransactionList extends JPanel {
         JPanel summaryPanel = createSummaryPanel();
         add(summaryPanel, BorderLayout.NORTH);
         
-        // Create transaction record table
-        String[] columnNames = {"Time", "Type", "Category", "Amount", "Description", "Import Time"};
-
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Do not allow direct editing of the table
-            }
-        };
+        // Create transaction record table - 行数据直接来自数据中心，不复制成字符串
+        tableModel = new TransactionTableModel(dataCenter);
         
         transactionTable = new JTable(tableModel);
         configureTransactionTable();
@@ -97,13 +94,16 @@ public class TransactionList extends JPanel {
         transactionTable.getColumnModel().getColumn(4).setPreferredWidth(200); // Description
         transactionTable.getColumnModel().getColumn(5).setPreferredWidth(150); // Import Time
 
-        // Set row height
+        // Set row height - 固定行高让JTable按行号直接计算可见区域
         transactionTable.setRowHeight(25);
         
+        // 时间列只在绘制时格式化
+        DateTimeRenderer dateTimeRenderer = new DateTimeRenderer();
+        transactionTable.getColumnModel().getColumn(TransactionTableModel.COLUMN_TIME).setCellRenderer(dateTimeRenderer);
+        transactionTable.getColumnModel().getColumn(TransactionTableModel.COLUMN_IMPORT_TIME).setCellRenderer(dateTimeRenderer);
+        
         // Set renderer for amount column
-        transactionTable.getColumnModel().getColumn(3).setCellRenderer(new DefaultTableCellRenderer() {
-            private final DecimalFormat df = new DecimalFormat("#,##0.00");
-            
+        transactionTable.getColumnModel().getColumn(TransactionTableModel.COLUMN_AMOUNT).setCellRenderer(new DefaultTableCellRenderer() {
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value, 
                     boolean isSelected, boolean hasFocus, int row, int column) {
@@ -112,10 +112,10 @@ public class TransactionList extends JPanel {
                         table, value, isSelected, hasFocus, row, column);
                 
                 // Get transaction type
-                String type = (String) table.getValueAt(row, 1);
+                Transaction transaction = tableModel.getTransactionAt(table.convertRowIndexToModel(row));
                 
                 // Set amount color: expenses in red, income in green
-                if (type.equals("Expense")) {
+                if (transaction.getCategory().getType() == CategoryType.EXPENSE) {
                     setForeground(new Color(255, 50, 50));
                 } else {
                     setForeground(new Color(0, 150, 0));
@@ -142,6 +142,19 @@ public class TransactionList extends JPanel {
         });
     }
     
+    /**
+     * 时间列渲染器：LocalDateTime 在绘制时才格式化，空值显示为空
+     */
+    private static class DateTimeRenderer extends DefaultTableCellRenderer {
+        private static final long serialVersionUID = 1L;
+        private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        
+        @Override
+        protected void setValue(Object value) {
+            setText(value instanceof LocalDateTime ? ((LocalDateTime) value).format(FORMATTER) : "");
+        }
+    }
+    
     /**
      * Create summary panel
      * 
@@ -218,38 +231,39 @@ public class TransactionList extends JPanel {
      * @param type Category type
      */
     private void loadTransactions(CategoryType type) {
-        currentFilterType = type;
-        
-        // Clear the table
-        tableModel.setRowCount(0);
-        
-        // Get transaction records from the data center
-        List<Transaction> transactions;
-        if (type == null) {
-            transactions = dataCenter.getAllTransactions();
-        } else {
-            transactions = dataCenter.getTransactionsByType(type);
+        // 取消仍在进行的旧加载（先清空引用，旧任务结束时不再触发后续刷新）
+        BackgroundTask<List<Transaction>> previous = loadTask;
+        loadTask = null;
+        reloadPending = false;
+        if (previous != null) {
+            previous.cancel(true);
         }
         
-        // Store current transactions
-        currentTransactions = transactions;
-        
-        // Add to the table - 不在此处转换货币，由TableCellRenderer负责
-        for (Transaction t : transactions) {
-            Object[] rowData = {
-                t.getFormattedDateTime(),
-                t.getCategory().getType() == CategoryType.INCOME ? "Income" : "Expense",
-                t.getCategory().getName(),
-                t.getAmount(), // 保持原始金额，不在此处转换
-                t.getDescription() != null ? t.getDescription() : "",
-                t.getFormattedImportTimestamp()  
-            };
+        // 在后台读取数据中心，读完后在EDT上一次性替换表格行；单元格由渲染器在绘制时格式化
+        loadTask = new BackgroundTask<List<Transaction>>("TransactionList.load") {
+            @Override
+            protected List<Transaction> doInBackground() {
+                return tableModel.fetch(type);
+            }
             
-            tableModel.addRow(rowData);
-        }
-        
-        // Update summary information
-        updateSummary();
+            @Override
+            protected void succeeded(List<Transaction> transactions) {
+                tableModel.setRows(type, transactions);
+            }
+            
+            @Override
+            protected void finished() {
+                if (loadTask != this) {
+                    return; // 已被新的加载取代
+                }
+                loadTask = null;
+                updateSummary();
+                if (reloadPending) {
+                    refresh();
+                }
+            }
+        };
+        BackgroundTaskExecutor.getInstance().submit(this, loadTask);
     }
     
     /**
@@ -280,7 +294,12 @@ public class TransactionList extends JPanel {
      * Refresh transaction records
      */
     public void refresh() {
-        loadTransactions(currentFilterType);
+        if (loadTask != null) {
+            // 加载期间的变更可能未包含在正在读取的数据中，结束后再加载一次
+            reloadPending = true;
+            return;
+        }
+        loadTransactions(tableModel.getFilterType());
     }
     
     /**
@@ -311,22 +330,19 @@ public class TransactionList extends JPanel {
         }
         
         try {
-            // 从后往前删除，避免索引变化问题
-            for (int i = selectedRows.length - 1; i >= 0; i--) {
-                int modelRow = transactionTable.convertRowIndexToModel(selectedRows[i]);
+            // 收集选中的交易记录
+            List<Transaction> selected = new ArrayList<>();
+            for (int selectedRow : selectedRows) {
+                int modelRow = transactionTable.convertRowIndexToModel(selectedRow);
                 
-                // 获取当前的交易记录
-                if (modelRow >= 0 && modelRow < currentTransactions.size()) {
-                    Transaction transaction = currentTransactions.get(modelRow);
-                    
-                    // 通过数据中心删除
-                    dataCenter.deleteTransaction(transaction);
-                    
-                    // 从表格模型中删除
-                    tableModel.removeRow(modelRow);
+                if (modelRow >= 0 && modelRow < tableModel.getRowCount()) {
+                    selected.add(tableModel.getTransactionAt(modelRow));
                 }
             }
             
+            // 通过数据中心批量删除，事件总线投递后表格只移除这些行
+            dataCenter.deleteTransactions(selected);
+            
             // 显示成功消息
             JOptionPane.showMessageDialog(
                 this,
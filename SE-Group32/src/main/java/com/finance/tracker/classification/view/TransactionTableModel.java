@@ -0,0 +1,248 @@
+package com.finance.tracker.classification.view;
+
+import com.finance.tracker.classification.model.CategoryType;
+import com.finance.tracker.classification.model.Transaction;
+import com.finance.tracker.classification.util.TransactionDataCenter;
+import com.finance.tracker.classification.util.TransactionDelta;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * 交易表格模型 - 直接以数据中心的交易列表作为行数据
+ *
+ * 单元格返回原始值（时间、类型、金额等），格式化交给渲染器，因此只有可见的单元格才会被格式化。
+ * 行按时间降序排列（与数据中心的索引一致），收到变更时用二分查找定位，
+ * 只对受影响的行触发插入、删除或更新事件，不再整表重建。
+ *
+ * 除 {@link #fetch} 外只能在EDT上使用。
+ */
+public class TransactionTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int COLUMN_TIME = 0;
+    public static final int COLUMN_TYPE = 1;
+    public static final int COLUMN_CATEGORY = 2;
+    public static final int COLUMN_AMOUNT = 3;
+    public static final int COLUMN_DESCRIPTION = 4;
+    public static final int COLUMN_IMPORT_TIME = 5;
+
+    private static final String[] COLUMN_NAMES = {"Time", "Type", "Category", "Amount", "Description", "Import Time"};
+    private static final Class<?>[] COLUMN_CLASSES = {
+        LocalDateTime.class, CategoryType.class, String.class, BigDecimal.class, String.class, LocalDateTime.class
+    };
+
+    /**
+     * 一次变更涉及的行数超过此值时改为整体重新加载，比逐行触发事件更快
+     */
+    private static final int MAX_INCREMENTAL_ROWS = 1000;
+
+    private final TransactionDataCenter dataCenter;
+    private List<Transaction> rows = new ArrayList<>();
+    private final Map<String, Transaction> rowsById = new HashMap<>();
+    private CategoryType filterType;
+
+    public TransactionTableModel(TransactionDataCenter dataCenter) {
+        this.dataCenter = dataCenter;
+    }
+
+    /**
+     * 按类型同步重新加载全部行
+     *
+     * @param type 类别类型，null表示全部
+     */
+    public void load(CategoryType type) {
+        setRows(type, fetch(type));
+    }
+
+    /**
+     * 从数据中心读取某类型的全部行（按时间降序），可在后台线程调用
+     *
+     * @param type 类别类型，null表示全部
+     * @return 可修改的新列表，交给 {@link #setRows} 使用
+     */
+    public List<Transaction> fetch(CategoryType type) {
+        List<Transaction> transactions = type == null
+                ? dataCenter.getAllTransactions()
+                : dataCenter.getTransactionsByType(type);
+        return new ArrayList<>(transactions);
+    }
+
+    /**
+     * 用 {@link #fetch} 读取的结果替换全部行
+     *
+     * @param type 这批行对应的类别类型
+     * @param transactions 按时间降序排列的行，模型直接持有该列表
+     */
+    public void setRows(CategoryType type, List<Transaction> transactions) {
+        this.filterType = type;
+        rows = transactions;
+        rowsById.clear();
+        for (Transaction t : rows) {
+            rowsById.put(t.getId(), t);
+        }
+        fireTableDataChanged();
+    }
+
+    /**
+     * 应用一批合并后的变更
+     *
+     * 同一变更可能已经包含在最近一次重新加载的数据里，因此添加和更新都按ID覆盖，删除不存在的行直接忽略。
+     *
+     * @param delta 事件总线投递的变更
+     * @return false 表示变更需要整体重新加载（整体刷新或涉及行数过多），此时模型未做任何修改
+     */
+    public boolean apply(TransactionDelta delta) {
+        int changed = delta.getAdded().size() + delta.getRemoved().size() + delta.getUpdated().size();
+        if (delta.isRefresh() || changed > MAX_INCREMENTAL_ROWS) {
+            return false;
+        }
+        for (Transaction t : delta.getRemoved()) {
+            removeRow(t.getId());
+        }
+        for (Transaction t : delta.getAdded()) {
+            upsertRow(t);
+        }
+        for (Transaction t : delta.getUpdated()) {
+            upsertRow(t);
+        }
+        return true;
+    }
+
+    /**
+     * 获取某一行的交易
+     *
+     * @param row 模型行号
+     * @return 交易记录
+     */
+    public Transaction getTransactionAt(int row) {
+        return rows.get(row);
+    }
+
+    public CategoryType getFilterType() {
+        return filterType;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return COLUMN_CLASSES[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false; // 不允许直接编辑表格
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Transaction t = rows.get(row);
+        switch (column) {
+            case COLUMN_TIME:
+                return t.getDateTime();
+            case COLUMN_TYPE:
+                return t.getCategory().getType();
+            case COLUMN_CATEGORY:
+                return t.getCategory().getName();
+            case COLUMN_AMOUNT:
+                return t.getAmount();
+            case COLUMN_DESCRIPTION:
+                return t.getDescription() != null ? t.getDescription() : "";
+            case COLUMN_IMPORT_TIME:
+                return t.getImportTimestamp();
+            default:
+                return null;
+        }
+    }
+
+    private boolean matchesFilter(Transaction t) {
+        return filterType == null || t.getCategory().getType() == filterType;
+    }
+
+    private void removeRow(String id) {
+        Transaction existing = rowsById.remove(id);
+        if (existing == null) {
+            return;
+        }
+        int index = indexOf(existing);
+        if (index >= 0) {
+            rows.remove(index);
+            fireTableRowsDeleted(index, index);
+        }
+    }
+
+    /**
+     * 插入或替换一行；修改后的交易不再符合过滤条件时移除该行
+     */
+    private void upsertRow(Transaction t) {
+        Transaction existing = rowsById.get(t.getId());
+        if (!matchesFilter(t)) {
+            if (existing != null) {
+                removeRow(t.getId());
+            }
+            return;
+        }
+        if (existing != null) {
+            int index = indexOf(existing);
+            if (index >= 0 && existing.getDateTime().equals(t.getDateTime())) {
+                // 位置不变，只重绘这一行
+                rows.set(index, t);
+                rowsById.put(t.getId(), t);
+                fireTableRowsUpdated(index, index);
+                return;
+            }
+            removeRow(t.getId());
+        }
+        int index = -(indexOf(t) + 1);
+        rows.add(index, t);
+        rowsById.put(t.getId(), t);
+        fireTableRowsInserted(index, index);
+    }
+
+    /**
+     * 按 (时间降序, ID升序) 二分查找
+     *
+     * @return 行号；不存在时返回 -(插入位置 + 1)
+     */
+    private int indexOf(Transaction target) {
+        int low = 0;
+        int high = rows.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(rows.get(mid), target);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static int compare(Transaction a, Transaction b) {
+        int cmp = b.getDateTime().compareTo(a.getDateTime());
+        return cmp != 0 ? cmp : a.getId().compareTo(b.getId());
+    }
+}
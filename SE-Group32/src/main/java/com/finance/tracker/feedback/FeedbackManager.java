@@ -6,13 +6,16 @@
 package com.finance.tracker.feedback;
 
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.io.File;
 
+import com.finance.tracker.persistence.AtomicFileWriter;
+import com.finance.tracker.persistence.WriteAheadLog;
+
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
@@ -23,13 +26,18 @@ import org.json.simple.parser.ParseException;
  */
 public class FeedbackManager {
     private static final String FEEDBACK_FILE = "data/user_feedback.json";
+    private static final String FEEDBACK_LOG_FILE = FEEDBACK_FILE + ".wal";
+    
+    // Fold the log back into the JSON file after this many records
+    private static final int COMPACTION_THRESHOLD = 100;
     
     private List<FeedbackEntry> feedbackHistory;
+    private final WriteAheadLog feedbackLog = new WriteAheadLog(new File(FEEDBACK_LOG_FILE));
     
     // Singleton pattern
     private static FeedbackManager instance;
     
-    public static FeedbackManager getInstance() {
+    public static synchronized FeedbackManager getInstance() {
         if (instance == null) {
             instance = new FeedbackManager();
         }
@@ -42,7 +50,8 @@ public class FeedbackManager {
     }
     
     /**
-     * Loads feedback history from JSON file
+     * Loads feedback history from the JSON file, then replays feedback
+     * recorded in the log since the file was last written
      */
     private void loadFeedback() {
         JSONParser parser = new JSONParser();
@@ -51,59 +60,106 @@ public class FeedbackManager {
             JSONArray feedbackArray = (JSONArray) parser.parse(reader);
             
             for (Object obj : feedbackArray) {
-                JSONObject fbJson = (JSONObject) obj;
-                
-                String id = (String) fbJson.get("id");
-                String type = (String) fbJson.get("type");
-                String targetId = (String) fbJson.get("targetId");
-                boolean helpful = (boolean) fbJson.get("helpful");
-                String comment = (String) fbJson.get("comment");
-                String dateStr = (String) fbJson.get("date");
-                LocalDate date = LocalDate.parse(dateStr);
-                
-                FeedbackEntry entry = new FeedbackEntry(id, type, targetId, helpful, comment, date);
-                feedbackHistory.add(entry);
+                feedbackHistory.add(fromJson((JSONObject) obj));
             }
             
         } catch (IOException | ParseException e) {
             System.err.println("Error loading feedback: " + e.getMessage());
             // Continue with empty feedback list
         }
+        
+        try {
+            int replayed = feedbackLog.replay(payload -> {
+                try {
+                    FeedbackEntry entry = fromJson((JSONObject) parser.parse(new String(payload, StandardCharsets.UTF_8)));
+                    // A crash between writing the file and clearing the log leaves entries in both
+                    if (!contains(entry)) {
+                        feedbackHistory.add(entry);
+                    }
+                } catch (ParseException | RuntimeException e) {
+                    System.err.println("Skipping unreadable feedback log record: " + e.getMessage());
+                }
+            });
+            if (replayed > 0) {
+                saveFeedback();
+            }
+        } catch (IOException e) {
+            System.err.println("Error replaying feedback log: " + e.getMessage());
+        }
+    }
+    
+    private boolean contains(FeedbackEntry entry) {
+        for (FeedbackEntry existing : feedbackHistory) {
+            if (existing.getId().equals(entry.getId()) && existing.getType().equals(entry.getType())
+                    && existing.getTargetId().equals(entry.getTargetId())) {
+                return true;
+            }
+        }
+        return false;
     }
     
     /**
-     * Saves feedback history to JSON file
+     * Saves feedback history to the JSON file atomically and clears the log
      */
     private void saveFeedback() {
         JSONArray feedbackArray = new JSONArray();
         
         for (FeedbackEntry entry : feedbackHistory) {
-            JSONObject fbJson = new JSONObject();
-            fbJson.put("id", entry.getId());
-            fbJson.put("type", entry.getType());
-            fbJson.put("targetId", entry.getTargetId());
-            fbJson.put("helpful", entry.isHelpful());
-            fbJson.put("comment", entry.getComment());
-            fbJson.put("date", entry.getDate().toString());
-            
-            feedbackArray.add(fbJson);
+            feedbackArray.add(toJson(entry));
         }
         
-        try (FileWriter writer = new FileWriter(FEEDBACK_FILE)) {
-            writer.write(feedbackArray.toJSONString());
+        try {
+            AtomicFileWriter.writeString(new File(FEEDBACK_FILE), feedbackArray.toJSONString());
+            feedbackLog.reset();
         } catch (IOException e) {
             System.err.println("Error saving feedback: " + e.getMessage());
         }
     }
     
+    private static JSONObject toJson(FeedbackEntry entry) {
+        JSONObject fbJson = new JSONObject();
+        fbJson.put("id", entry.getId());
+        fbJson.put("type", entry.getType());
+        fbJson.put("targetId", entry.getTargetId());
+        fbJson.put("helpful", entry.isHelpful());
+        fbJson.put("comment", entry.getComment());
+        fbJson.put("date", entry.getDate().toString());
+        return fbJson;
+    }
+    
+    private static FeedbackEntry fromJson(JSONObject fbJson) {
+        String id = (String) fbJson.get("id");
+        String type = (String) fbJson.get("type");
+        String targetId = (String) fbJson.get("targetId");
+        boolean helpful = (boolean) fbJson.get("helpful");
+        String comment = (String) fbJson.get("comment");
+        String dateStr = (String) fbJson.get("date");
+        LocalDate date = LocalDate.parse(dateStr);
+        
+        return new FeedbackEntry(id, type, targetId, helpful, comment, date);
+    }
+    
     /**
      * Records new feedback
+     * 
+     * Only the new entry is appended to the log; the JSON file is rewritten
+     * once the log grows past the compaction threshold
      */
     public void recordFeedback(String type, String targetId, boolean helpful, String comment) {
         String id = "feedback_" + System.currentTimeMillis();
         FeedbackEntry entry = new FeedbackEntry(id, type, targetId, helpful, comment, LocalDate.now());
         feedbackHistory.add(entry);
-        saveFeedback();
+        
+        try {
+            byte[] record = toJson(entry).toJSONString().getBytes(StandardCharsets.UTF_8);
+            feedbackLog.sync(feedbackLog.append(record));
+            if (feedbackLog.getRecordCount() >= COMPACTION_THRESHOLD) {
+                saveFeedback();
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing feedback log, saving full history: " + e.getMessage());
+            saveFeedback();
+        }
     }
     
     /**
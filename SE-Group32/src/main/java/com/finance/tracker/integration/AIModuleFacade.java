@@ -7,6 +7,7 @@ package com.finance.tracker.integration;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -39,7 +40,7 @@ public class AIModuleFacade {
     // Singleton pattern
     private static AIModuleFacade instance;
     
-    public static AIModuleFacade getInstance() {
+    public static synchronized AIModuleFacade getInstance() {
         if (instance == null) {
             instance = new AIModuleFacade();
         }
@@ -71,13 +72,15 @@ public class AIModuleFacade {
      * Import multiple transactions at once
      */
     public void importTransactions(List<TransactionDTO> transactions) {
+        List<com.finance.tracker.profile.Transaction> batch = new ArrayList<>();
         for (TransactionDTO transaction : transactions) {
-            userProfile.recordTransaction(
+            batch.add(new com.finance.tracker.profile.Transaction(
                 transaction.getCategory(),
                 transaction.getAmount(),
                 transaction.getDate()
-            );
+            ));
         }
+        userProfile.recordTransactions(batch);
         // Generate new recommendations after batch import
         recommendationEngine.generateAllRecommendations();
     }
@@ -101,6 +104,16 @@ public class AIModuleFacade {
         return transactionSyncFacade.deleteTransaction(transaction);
     }
     
+    /**
+     * 修改一条来自交易模块的交易记录
+     * 
+     * @param transaction 修改后的交易记录
+     * @return 是否修改成功
+     */
+    public boolean updateTransaction(Transaction transaction) {
+        return transactionSyncFacade.updateTransaction(transaction);
+    }
+    
     /**
      * 同步所有交易记录从交易模块到AI模型
      * 
@@ -2,18 +2,49 @@ package com.finance.tracker.integration;
 
 import com.finance.tracker.classification.model.Transaction;
 import com.finance.tracker.classification.model.CategoryType;
+import com.finance.tracker.classification.util.TransactionChangeLog;
+import com.finance.tracker.classification.util.TransactionJournal;
 import com.finance.tracker.profile.UserProfile;
 import com.finance.tracker.ai.RecommendationEngine;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * 交易数据同步工具类 - 用于classification模块与AIModel数据模型之间的桥接
  */
 public class TransactionSyncFacade {
     
+    /**
+     * 按月读取的账本，对账时使用：先比较各月校验和，只读取不一致的月份
+     */
+    public interface Ledger {
+        /**
+         * 每个月各行 {@link TransactionSyncFacade#checksumOf} 之和（溢出时回绕），没有交易的月份不出现
+         * 
+         * @return 年月到校验和的映射
+         */
+        Map<YearMonth, Long> getMonthChecksums();
+        
+        /**
+         * 读取指定月份的全部交易
+         * 
+         * @param months 年月
+         * @return 这些月份的交易记录
+         */
+        List<Transaction> getTransactions(Collection<YearMonth> months);
+    }
+    
     private static TransactionSyncFacade instance;
     private final UserProfile userProfile;
     private final RecommendationEngine recommendationEngine;
@@ -21,7 +52,7 @@ public class TransactionSyncFacade {
     /**
      * 获取单例实例
      */
-    public static TransactionSyncFacade getInstance() {
+    public static synchronized TransactionSyncFacade getInstance() {
         if (instance == null) {
             instance = new TransactionSyncFacade();
         }
@@ -53,8 +84,8 @@ public class TransactionSyncFacade {
         boolean isIncome = transaction.getCategory().getType() == CategoryType.INCOME;
         LocalDate date = transaction.getDateTime().toLocalDate();
         
-        // 记录到用户配置文件
-        userProfile.recordTransaction(category, amount, date);
+        // 记录到用户配置文件（带交易ID，之后可以删除或修改）
+        userProfile.recordTransaction(convertToProfileTransaction(transaction));
         
         // 打印调试信息
         System.out.println("已同步交易: " + (isIncome ? "收入" : "支出") + " - " + 
@@ -62,28 +93,59 @@ public class TransactionSyncFacade {
     }
     
     /**
-     * 删除交易记录并同步到AIModel（注意：因为记录已存入，只能追加抵消记录）
+     * 批量添加交易记录并同步到AIModel，整批只保存一次用户配置文件
+     * 
+     * @param transactions classification模块的交易记录
+     */
+    public void appendTransactions(Collection<Transaction> transactions) {
+        if (transactions == null || transactions.isEmpty()) {
+            return;
+        }
+        
+        List<com.finance.tracker.profile.Transaction> profileTransactions = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            profileTransactions.add(convertToProfileTransaction(transaction));
+        }
+        userProfile.recordTransactions(profileTransactions);
+        
+        System.out.println("已批量同步交易: " + profileTransactions.size() + " 条");
+    }
+    
+    /**
+     * 删除交易记录并同步到AIModel：按交易ID从用户配置文件中移除，所在月份的汇总随之扣减
      * 
      * @param transaction 要删除的交易记录
-     * @return 是否成功添加抵消记录
+     * @return 是否从用户配置文件中移除了该交易
      */
     public boolean deleteTransaction(Transaction transaction) {
         if (transaction == null) {
             return false;
         }
+        return deleteTransactions(Collections.singletonList(transaction));
+    }
+    
+    /**
+     * 批量删除交易记录并同步到AIModel，整批只保存一次用户配置文件
+     * 
+     * 未带ID记录的旧交易无法定位，会被跳过；超出保留期限、只留下ID的交易按传入的类别和金额扣减
+     * 
+     * @param transactions 要删除的交易记录
+     * @return 是否至少移除了一条交易
+     */
+    public boolean deleteTransactions(Collection<Transaction> transactions) {
+        if (transactions == null || transactions.isEmpty()) {
+            return false;
+        }
         
         try {
-            // 获取交易信息
-            String category = transaction.getCategory().getName();
-            BigDecimal amount = transaction.getAmount().negate(); // 使用负值抵消原始交易
-            LocalDate date = LocalDate.now(); // 使用当前日期
-            
-            // 添加抵消记录（因UserProfile不支持直接删除单个交易）
-            userProfile.recordTransaction(category, amount, date);
+            List<com.finance.tracker.profile.Transaction> removing = new ArrayList<>(transactions.size());
+            for (Transaction transaction : transactions) {
+                removing.add(convertToProfileTransaction(transaction));
+            }
+            int removed = userProfile.removeTransactions(removing);
             
-            // 打印调试信息
-            System.out.println("已添加抵消交易: " + category + " - " + amount + " - " + date);
-            return true;
+            System.out.println("已从AI模型移除交易: " + removed + "/" + removing.size() + " 条");
+            return removed > 0;
         } catch (Exception e) {
             System.err.println("同步删除交易失败: " + e.getMessage());
             e.printStackTrace();
@@ -91,32 +153,221 @@ public class TransactionSyncFacade {
         }
     }
     
+    /**
+     * 修改交易记录并同步到AIModel：按交易ID替换，原月份和新月份的汇总都会调整
+     * 
+     * @param transaction 修改后的交易记录
+     * @return 是否找到并替换了该交易
+     */
+    public boolean updateTransaction(Transaction transaction) {
+        if (transaction == null) {
+            return false;
+        }
+        
+        try {
+            boolean updated = userProfile.updateTransaction(convertToProfileTransaction(transaction));
+            if (updated) {
+                System.out.println("已同步修改交易: " + transaction.getId());
+            } else {
+                System.out.println("AI模型中没有该交易记录，未同步修改: " + transaction.getId());
+            }
+            return updated;
+        } catch (Exception e) {
+            System.err.println("同步修改交易失败: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * 增量同步：只重放用户配置文件上次同步之后的账本变更
+     * 
+     * 启动后的第一次同步、所需的变更已不在内存中（落后太多）或账本已更换时，改为按月比较校验和，
+     * 只读取并重建不一致的月份。整个同步只保存一次用户配置文件。
+     * 
+     * @param changeLog 账本的变更记录
+     * @param ledger 按月读取账本，仅在需要对账时使用
+     */
+    public synchronized void syncChanges(TransactionChangeLog changeLog, Ledger ledger) {
+        userProfile.beginBatch();
+        try {
+            String ledgerId = changeLog.getLedgerId();
+            List<TransactionChangeLog.Change> changes = ledgerId.equals(userProfile.getSyncedLedgerId())
+                    ? changeLog.getChangesSince(userProfile.getSyncedSequence())
+                    : null;
+            
+            if (changes == null) {
+                // 先取序号再读账本：读取期间的新变更之后会再重放一次，按ID应用是幂等的
+                long sequence = changeLog.getSequence();
+                int drifted = reconcile(ledger);
+                userProfile.setSyncPosition(ledgerId, sequence);
+                changeLog.markReconciled(sequence);
+                System.out.println("AI模型与账本对账完成，重建 " + drifted + " 个月份");
+                return;
+            }
+            if (changes.isEmpty()) {
+                return;
+            }
+            
+            for (TransactionChangeLog.Change change : changes) {
+                com.finance.tracker.profile.Transaction transaction = convertToProfileTransaction(change.getTransaction());
+                if (change.getOperation() == TransactionJournal.Operation.DELETE) {
+                    // 按账本给出的被删除交易扣减，超出保留期限的交易也能正确移除
+                    userProfile.removeTransactions(Collections.singletonList(transaction));
+                } else if (change.getPrevious() == null
+                        || !userProfile.updateTransaction(convertToProfileTransaction(change.getPrevious()), transaction)) {
+                    // 新增，或用户配置文件中还没有这笔交易：按ID写入，已存在时替换
+                    userProfile.recordTransaction(transaction);
+                }
+            }
+            userProfile.setSyncPosition(ledgerId, changes.get(changes.size() - 1).getSequence());
+            System.out.println("已增量同步交易变更: " + changes.size() + " 条");
+        } finally {
+            userProfile.commit();
+        }
+    }
+    
     /**
      * 同步所有交易记录从classification模块到AIModel
      * 
+     * 按月比较账本与用户配置文件的校验和，只重建不一致的月份，然后重新计算推荐
+     * 
      * @param transactions 所有交易记录列表
      */
     public void syncAllTransactionsFromClassificationModule(List<Transaction> transactions) {
+        syncAllTransactionsFromClassificationModule(transactions, null, 0);
+    }
+    
+    /**
+     * 同步所有交易记录从classification模块到AIModel，并记录同步到的账本变更序号
+     * 
+     * @param transactions 所有交易记录列表
+     * @param ledgerId 账本ID，为null时不更新同步位置
+     * @param sequence 读取交易记录之前账本的变更序号
+     */
+    public void syncAllTransactionsFromClassificationModule(List<Transaction> transactions, String ledgerId, long sequence) {
         if (transactions == null || transactions.isEmpty()) {
             return;
         }
-        
-        // 清空现有记录（使用UserProfile中新增的清空方法）
-        System.out.println("正在清空现有交易记录历史...");
-        boolean cleared = userProfile.clearTransactionHistory();
-        if (!cleared) {
-            System.err.println("警告：清空现有交易记录失败，将继续同步（可能导致重复记录）");
-        }
-        
-        // 添加所有交易
-        for (Transaction transaction : transactions) {
-            appendTransaction(transaction);
+        syncAllTransactions(listLedger(transactions), ledgerId, sequence);
+    }
+    
+    /**
+     * 按月对账整个账本，只读取校验和不一致的月份，然后重新计算推荐
+     * 
+     * @param ledger 按月读取的账本
+     * @param ledgerId 账本ID，为null时不更新同步位置
+     * @param sequence 读取账本之前的变更序号
+     */
+    public void syncAllTransactions(Ledger ledger, String ledgerId, long sequence) {
+        int drifted;
+        synchronized (this) {
+            userProfile.beginBatch();
+            try {
+                drifted = reconcile(ledger);
+                if (ledgerId != null) {
+                    userProfile.setSyncPosition(ledgerId, sequence);
+                }
+            } finally {
+                userProfile.commit();
+            }
         }
         
         // 重新计算推荐
         updateRecommendations();
         
-        System.out.println("全量同步完成，共同步 " + transactions.size() + " 条记录");
+        System.out.println("全量同步完成，重建 " + drifted + " 个月份");
+    }
+    
+    /**
+     * 按月对账：校验和不一致（或只在一边存在）的月份用账本中的交易整月替换，
+     * 校验和一致的月份不读取
+     * 
+     * @param ledger 账本
+     * @return 重建的月份数
+     */
+    private int reconcile(Ledger ledger) {
+        Map<YearMonth, Long> ledgerChecksums = ledger.getMonthChecksums();
+        Map<YearMonth, Long> profileChecksums = userProfile.getSpendingHistory().getMonthChecksums();
+        Set<YearMonth> drifted = new TreeSet<>();
+        for (Map.Entry<YearMonth, Long> month : ledgerChecksums.entrySet()) {
+            if (!month.getValue().equals(profileChecksums.get(month.getKey()))) {
+                drifted.add(month.getKey());
+            }
+        }
+        for (YearMonth month : profileChecksums.keySet()) {
+            if (!ledgerChecksums.containsKey(month)) {
+                drifted.add(month);
+            }
+        }
+        if (drifted.isEmpty()) {
+            return 0;
+        }
+        
+        Map<YearMonth, List<com.finance.tracker.profile.Transaction>> replacements = new TreeMap<>();
+        for (YearMonth month : drifted) {
+            replacements.put(month, new ArrayList<>());
+        }
+        for (Transaction transaction : ledger.getTransactions(drifted)) {
+            com.finance.tracker.profile.Transaction converted = convertToProfileTransaction(transaction);
+            List<com.finance.tracker.profile.Transaction> month = replacements.get(YearMonth.from(converted.getDate()));
+            if (month != null) {
+                month.add(converted);
+            }
+        }
+        
+        userProfile.replaceMonths(replacements);
+        return drifted.size();
+    }
+    
+    /**
+     * 把已在内存中的全部交易包装成账本
+     * 
+     * @param transactions 账本全部交易
+     * @return 账本
+     */
+    private static Ledger listLedger(List<Transaction> transactions) {
+        return new Ledger() {
+            @Override
+            public Map<YearMonth, Long> getMonthChecksums() {
+                return monthChecksums(transactions);
+            }
+            
+            @Override
+            public List<Transaction> getTransactions(Collection<YearMonth> months) {
+                List<Transaction> selected = new ArrayList<>();
+                for (Transaction transaction : transactions) {
+                    if (months.contains(YearMonth.from(transaction.getDateTime()))) {
+                        selected.add(transaction);
+                    }
+                }
+                return selected;
+            }
+        };
+    }
+    
+    /**
+     * 按月汇总交易的校验和
+     * 
+     * @param transactions 交易记录
+     * @return 年月到校验和的映射
+     */
+    public static Map<YearMonth, Long> monthChecksums(Collection<Transaction> transactions) {
+        Map<YearMonth, Long> checksums = new HashMap<>();
+        for (Transaction transaction : transactions) {
+            checksums.merge(YearMonth.from(transaction.getDateTime()), checksumOf(transaction), Long::sum);
+        }
+        return checksums;
+    }
+    
+    /**
+     * 单笔交易同步到用户配置文件后的校验和，与用户配置文件的月校验和使用同一算法
+     * 
+     * @param transaction classification交易记录
+     * @return 校验和
+     */
+    public static long checksumOf(Transaction transaction) {
+        return convertToProfileTransaction(transaction).checksum();
     }
     
     /**
@@ -138,7 +389,7 @@ public class TransactionSyncFacade {
      * @param transaction classification交易记录
      * @return profile交易记录
      */
-    private com.finance.tracker.profile.Transaction convertToProfileTransaction(Transaction transaction) {
+    private static com.finance.tracker.profile.Transaction convertToProfileTransaction(Transaction transaction) {
         if (transaction == null) {
             return null;
         }
@@ -148,7 +399,7 @@ public class TransactionSyncFacade {
         BigDecimal amount = transaction.getAmount();
         LocalDate date = transaction.getDateTime().toLocalDate();
         
-        // 创建并返回profile交易记录
-        return new com.finance.tracker.profile.Transaction(category, amount, date);
+        // 创建并返回profile交易记录，保留交易ID以便之后删除或修改
+        return new com.finance.tracker.profile.Transaction(transaction.getId(), category, amount, date);
     }
 } 
\ No newline at end of file
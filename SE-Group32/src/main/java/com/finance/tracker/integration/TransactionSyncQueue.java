@@ -0,0 +1,232 @@
+package com.finance.tracker.integration;
+
+import com.finance.tracker.classification.util.TransactionChangeLog;
+import com.finance.tracker.profile.UserProfile;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI模型同步队列 - 把账本变更同步到用户配置文件的工作移出交易写入路径
+ *
+ * 同步请求不携带数据，只表示“这个账本有新变更”，需要同步的内容都在账本的变更记录里。
+ * 因此每个变更记录只有一个待同步标记：{@link #submit} 设置标记后立即返回，从不阻塞写入方
+ * （通常是事件分发线程）；唯一的消费线程在标记被设置期间反复调用
+ * {@link TransactionSyncFacade#syncChanges}，一次同步合并上次同步以来的全部变更。
+ * 同步期间到达的请求重新设置标记，由下一轮同步处理。
+ *
+ * 同步失败时不自动重试，变更仍记录在变更记录中，下一次提交时一起补上；
+ * 进程退出时未同步的变更也不会丢失，下次启动时由增量同步或校验和对账补上。
+ *
+ * 深度和延迟直接取自变更记录：深度是账本序号与用户配置文件已同步序号之差，
+ * 延迟是最早一条未同步变更已经等待的时间。
+ */
+public class TransactionSyncQueue {
+
+    private static TransactionSyncQueue instance;
+
+    private final Object lock = new Object();
+    // 由lock保护
+    private final Map<TransactionChangeLog, TransactionSyncFacade.Ledger> ledgers = new LinkedHashMap<>();
+    private final Set<TransactionChangeLog> pending = new LinkedHashSet<>(); // 设置了待同步标记的变更记录
+    private boolean syncing;
+    private long submittedRequests;
+    private long syncRuns;
+    private long failedRuns;
+    private long maxLagMillis;
+
+    /**
+     * 获取单例实例
+     */
+    public static synchronized TransactionSyncQueue getInstance() {
+        if (instance == null) {
+            instance = new TransactionSyncQueue();
+        }
+        return instance;
+    }
+
+    private TransactionSyncQueue() {
+        Thread consumer = new Thread(this::runConsumer, "ai-sync-queue");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * 标记一个账本需要同步，立即返回；已标记时与之前的请求合并
+     *
+     * @param changeLog 发生变更的账本的变更记录
+     * @param ledger 按月读取的账本，对账时使用
+     */
+    public void submit(TransactionChangeLog changeLog, TransactionSyncFacade.Ledger ledger) {
+        synchronized (lock) {
+            ledgers.put(changeLog, ledger);
+            pending.add(changeLog);
+            submittedRequests++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 等待已标记的账本全部同步完
+     *
+     * @param timeoutMillis 最长等待时间
+     * @return 是否在超时前同步完
+     */
+    public boolean awaitIdle(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (lock) {
+            while (syncing || !pending.isEmpty()) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private void runConsumer() {
+        while (true) {
+            List<TransactionChangeLog> flagged;
+            synchronized (lock) {
+                while (pending.isEmpty()) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                // 取走标记：之后到达的请求会重新设置，由下一轮处理
+                flagged = new ArrayList<>(pending);
+                pending.clear();
+                syncing = true;
+            }
+            for (TransactionChangeLog changeLog : flagged) {
+                syncOnce(changeLog);
+            }
+            synchronized (lock) {
+                syncing = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void syncOnce(TransactionChangeLog changeLog) {
+        TransactionSyncFacade.Ledger ledger;
+        synchronized (lock) {
+            ledger = ledgers.get(changeLog);
+        }
+        long oldest = changeLog.getFirstChangeTimeAfter(getSyncedSequence(changeLog));
+        boolean failed = false;
+        try {
+            TransactionSyncFacade.getInstance().syncChanges(changeLog, ledger);
+        } catch (Exception e) {
+            failed = true;
+            System.err.println("同步交易到AI模型失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+        synchronized (lock) {
+            syncRuns++;
+            if (failed) {
+                failedRuns++;
+            } else if (oldest >= 0) {
+                maxLagMillis = Math.max(maxLagMillis, System.currentTimeMillis() - oldest);
+            }
+        }
+    }
+
+    /**
+     * 用户配置文件已同步到的序号；同步位置属于另一个账本时为0（全部变更都未同步）
+     */
+    private static long getSyncedSequence(TransactionChangeLog changeLog) {
+        UserProfile profile = UserProfile.getInstance();
+        return changeLog.getLedgerId().equals(profile.getSyncedLedgerId()) ? profile.getSyncedSequence() : 0;
+    }
+
+    private List<TransactionChangeLog> getChangeLogs() {
+        synchronized (lock) {
+            return new ArrayList<>(ledgers.keySet());
+        }
+    }
+
+    /**
+     * 深度：尚未同步到用户配置文件的变更条数（各账本序号与已同步序号之差）
+     */
+    public long getDepth() {
+        long depth = 0;
+        for (TransactionChangeLog changeLog : getChangeLogs()) {
+            depth += Math.max(0, changeLog.getSequence() - getSyncedSequence(changeLog));
+        }
+        return depth;
+    }
+
+    /**
+     * 当前延迟：最早一条未同步变更已经等待的毫秒数，全部已同步时为0
+     */
+    public long getLagMillis() {
+        long now = System.currentTimeMillis();
+        long lag = 0;
+        for (TransactionChangeLog changeLog : getChangeLogs()) {
+            long oldest = changeLog.getFirstChangeTimeAfter(getSyncedSequence(changeLog));
+            if (oldest >= 0) {
+                lag = Math.max(lag, now - oldest);
+            }
+        }
+        return lag;
+    }
+
+    /**
+     * 最大延迟：变更从记录到同步完成的最长毫秒数
+     */
+    public long getMaxLagMillis() {
+        synchronized (lock) {
+            return maxLagMillis;
+        }
+    }
+
+    /**
+     * 已提交的同步请求数（合并前）
+     */
+    public long getSubmittedRequests() {
+        synchronized (lock) {
+            return submittedRequests;
+        }
+    }
+
+    /**
+     * 实际执行的同步次数（每次合并为一次用户配置文件更新）
+     */
+    public long getSyncRuns() {
+        synchronized (lock) {
+            return syncRuns;
+        }
+    }
+
+    /**
+     * 同步过程中抛出异常的次数
+     */
+    public long getFailedRuns() {
+        synchronized (lock) {
+            return failedRuns;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TransactionSyncQueue: depth %d, lag %d ms / max %d ms, "
+                        + "%d requests coalesced into %d syncs, %d failed",
+                getDepth(), getLagMillis(), getMaxLagMillis(),
+                getSubmittedRequests(), getSyncRuns(), getFailedRuns());
+    }
+}
@@ -0,0 +1,120 @@
+package com.finance.tracker.integration;
+
+import com.finance.tracker.classification.model.Category;
+import com.finance.tracker.classification.model.CategoryType;
+import com.finance.tracker.classification.model.Transaction;
+import com.finance.tracker.classification.util.TransactionChangeLog;
+import com.finance.tracker.classification.util.TransactionJournal;
+import com.finance.tracker.profile.UserProfile;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并驱动：一次同步正在进行时大量提交同步请求，提交方不能被阻塞，
+ * 这些请求要合并成一次同步，深度和延迟要反映变更记录中尚未同步的变更。
+ *
+ * 用户配置文件固定保存在工作目录下的 data/ 中，因此需要在空目录中运行；
+ * 检查失败时以状态1退出。
+ */
+public class TransactionSyncQueueTest {
+
+    private static final int CHANGES = 5000;
+    private static final Category FOOD = new Category(1, "Food", CategoryType.EXPENSE, null);
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        if (new File("data/user_profile.json").exists()) {
+            System.err.println("data/user_profile.json already exists; run this driver from an empty directory");
+            System.exit(2);
+        }
+
+        File sequenceFile = File.createTempFile("sync-queue-test", ".seq");
+        sequenceFile.delete();
+        sequenceFile.deleteOnExit();
+        TransactionChangeLog changeLog = new TransactionChangeLog(sequenceFile);
+        List<Transaction> all = Collections.synchronizedList(new ArrayList<>());
+
+        // 第一次同步时用户配置文件属于另一个账本，需要对账；对账在这里停住，直到允许继续
+        CountDownLatch reconciling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TransactionSyncFacade.Ledger ledger = new TransactionSyncFacade.Ledger() {
+            @Override
+            public Map<YearMonth, Long> getMonthChecksums() {
+                reconciling.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return TransactionSyncFacade.monthChecksums(new ArrayList<>(all));
+            }
+
+            @Override
+            public List<Transaction> getTransactions(Collection<YearMonth> months) {
+                List<Transaction> selected = new ArrayList<>();
+                for (Transaction transaction : new ArrayList<>(all)) {
+                    if (months.contains(YearMonth.from(transaction.getDateTime()))) {
+                        selected.add(transaction);
+                    }
+                }
+                return selected;
+            }
+        };
+
+        TransactionSyncQueue queue = TransactionSyncQueue.getInstance();
+        queue.submit(changeLog, ledger);
+        check("first sync started", reconciling.await(10, TimeUnit.SECONDS));
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < CHANGES; i++) {
+                Transaction transaction = new Transaction("sync-" + i, LocalDateTime.of(2024, 1 + i % 12, 1, 12, 0),
+                        FOOD, new BigDecimal("1.25"), "coalescing");
+                all.add(transaction);
+                changeLog.append(TransactionJournal.Operation.ADD, Collections.singletonList(transaction));
+                queue.submit(changeLog, ledger);
+            }
+        }, "writer");
+        writer.start();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        check("submit does not block while a sync is running", !writer.isAlive());
+
+        Thread.sleep(100);
+        check("depth counts the unsynced changes", queue.getDepth() == CHANGES);
+        check("lag is the age of the oldest unsynced change", queue.getLagMillis() >= 100);
+
+        release.countDown();
+        check("queue drains", queue.awaitIdle(TimeUnit.SECONDS.toMillis(30)));
+        check("requests are coalesced into a few syncs", queue.getSyncRuns() <= 3);
+        check("depth returns to zero", queue.getDepth() == 0);
+        check("lag returns to zero", queue.getLagMillis() == 0);
+
+        UserProfile profile = UserProfile.getInstance();
+        check("profile is synced to the last change", changeLog.getLedgerId().equals(profile.getSyncedLedgerId())
+                && profile.getSyncedSequence() == changeLog.getSequence());
+        check("profile holds every change", TransactionSyncFacade.monthChecksums(all)
+                .equals(profile.getSpendingHistory().getMonthChecksums()));
+        check("profile is saved", profile.flushProfile());
+
+        System.out.println(queue);
+        System.out.println(failures == 0 ? "All checks passed" : failures + " check(s) failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void check(String name, boolean passed) {
+        System.out.println((passed ? "PASS  " : "FAIL  ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.finance.tracker.localization;
 
 import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -16,6 +16,8 @@ import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
+import com.finance.tracker.persistence.AtomicFileWriter;
+
 /**
  * Manages different currency units and conversion between them
  */
@@ -27,7 +29,7 @@ public class CurrencyManager {
     // Singleton pattern
     private static CurrencyManager instance;
     
-    public static CurrencyManager getInstance() {
+    public static synchronized CurrencyManager getInstance() {
         if (instance == null) {
             instance = new CurrencyManager();
         }
@@ -178,8 +180,8 @@ public class CurrencyManager {
         
         config.put("currencies", currencies);
         
-        try (FileWriter writer = new FileWriter(CONFIG_FILE)) {
-            writer.write(config.toJSONString());
+        try {
+            AtomicFileWriter.writeString(new File(CONFIG_FILE), config.toJSONString());
         } catch (IOException e) {
             System.err.println("Error saving currency preferences: " + e.getMessage());
         }
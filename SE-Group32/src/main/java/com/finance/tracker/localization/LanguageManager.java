@@ -90,7 +90,7 @@ public class LanguageManager {
     /**
      * Get singleton instance
      */
-    public static LanguageManager getInstance() {
+    public static synchronized LanguageManager getInstance() {
         if (instance == null) {
             instance = new LanguageManager();
         }
@@ -0,0 +1,302 @@
+package com.finance.tracker.localization;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An exact amount of money: a whole number of minor units (fen, cents, ...)
+ * in one currency.
+ *
+ * Arithmetic works on the long directly, so adding, subtracting and scaling by a
+ * rate never build intermediate BigDecimals unless the result would overflow.
+ * Every operation that can lose precision takes an explicit {@link RoundingMode};
+ * creating a Money from a BigDecimal without one fails instead of rounding silently.
+ *
+ * Instances are immutable. For summing many amounts use {@link MoneyAccumulator},
+ * which keeps a single mutable long.
+ */
+public final class Money implements Comparable<Money> {
+
+    /**
+     * Currency that stored amounts are kept in (see {@link Currency#getExchangeRate()})
+     */
+    public static final String BASE_CURRENCY = "CNY";
+
+    /**
+     * Returned by {@link #minorUnitsOf} when an amount has no exact long representation
+     */
+    static final long NOT_EXACT = Long.MIN_VALUE;
+
+    private static final int DEFAULT_FRACTION_DIGITS = 2;
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final long[] POWERS_OF_TEN = new long[MAX_LONG_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final long minorUnits;
+    private final String currencyCode;
+    private final int fractionDigits;
+
+    private Money(long minorUnits, String currencyCode, int fractionDigits) {
+        this.minorUnits = minorUnits;
+        this.currencyCode = currencyCode;
+        this.fractionDigits = fractionDigits;
+    }
+
+    /**
+     * Create an amount from minor units
+     *
+     * @param minorUnits Amount in minor units, e.g. 1250 for 12.50 CNY
+     * @param currencyCode ISO 4217 code
+     */
+    public static Money ofMinor(long minorUnits, String currencyCode) {
+        return new Money(minorUnits, currencyCode, fractionDigits(currencyCode));
+    }
+
+    public static Money zero(String currencyCode) {
+        return ofMinor(0, currencyCode);
+    }
+
+    /**
+     * Create an amount from a decimal value that fits the currency exactly
+     *
+     * @throws ArithmeticException If the value has more fraction digits than the
+     *         currency or does not fit in a long
+     */
+    public static Money of(BigDecimal amount, String currencyCode) {
+        return of(amount, currencyCode, RoundingMode.UNNECESSARY);
+    }
+
+    /**
+     * Create an amount from a decimal value, rounding it to the currency's minor unit
+     *
+     * @throws ArithmeticException If the rounded value does not fit in a long
+     */
+    public static Money of(BigDecimal amount, String currencyCode, RoundingMode rounding) {
+        int digits = fractionDigits(currencyCode);
+        long minor = minorUnitsOf(amount, digits);
+        if (minor == NOT_EXACT) {
+            minor = amount.setScale(digits, rounding).unscaledValue().longValueExact();
+        }
+        return new Money(minor, currencyCode, digits);
+    }
+
+    /**
+     * Number of minor-unit digits for a currency; 2 when the code is unknown
+     */
+    public static int fractionDigits(String currencyCode) {
+        try {
+            int digits = java.util.Currency.getInstance(currencyCode).getDefaultFractionDigits();
+            return digits >= 0 ? digits : DEFAULT_FRACTION_DIGITS;
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return DEFAULT_FRACTION_DIGITS;
+        }
+    }
+
+    /**
+     * Convert a decimal to minor units when that is possible without rounding or overflow
+     *
+     * @return Minor units, or {@link #NOT_EXACT}
+     */
+    static long minorUnitsOf(BigDecimal amount, int fractionDigits) {
+        int scale = amount.scale();
+        if (scale < 0 || scale > fractionDigits
+                || amount.precision() + (fractionDigits - scale) > MAX_LONG_DIGITS) {
+            return NOT_EXACT;
+        }
+        return amount.unscaledValue().longValue() * POWERS_OF_TEN[fractionDigits - scale];
+    }
+
+    /**
+     * Divide two longs with the given rounding, without allocating
+     */
+    static long divide(long dividend, long divisor, RoundingMode rounding) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+
+        int signum = (dividend < 0) == (divisor < 0) ? 1 : -1;
+        boolean increment;
+        switch (rounding) {
+            case UNNECESSARY:
+                throw new ArithmeticException("Rounding necessary");
+            case DOWN:
+                increment = false;
+                break;
+            case UP:
+                increment = true;
+                break;
+            case FLOOR:
+                increment = signum < 0;
+                break;
+            case CEILING:
+                increment = signum > 0;
+                break;
+            default:
+                long absRemainder = Math.abs(remainder);
+                int half = Long.compare(absRemainder, Math.abs(divisor) - absRemainder);
+                if (half != 0) {
+                    increment = half > 0;
+                } else if (rounding == RoundingMode.HALF_UP) {
+                    increment = true;
+                } else if (rounding == RoundingMode.HALF_DOWN) {
+                    increment = false;
+                } else {
+                    increment = (quotient & 1) != 0;
+                }
+                break;
+        }
+        return increment ? quotient + signum : quotient;
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    public int getFractionDigits() {
+        return fractionDigits;
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isZero() {
+        return minorUnits == 0;
+    }
+
+    /**
+     * @throws ArithmeticException On overflow
+     */
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return other.minorUnits == 0 ? this : withMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    /**
+     * @throws ArithmeticException On overflow
+     */
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return other.minorUnits == 0 ? this : withMinor(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public Money negate() {
+        return withMinor(Math.negateExact(minorUnits));
+    }
+
+    /**
+     * Multiply by a rate (exchange rate, growth factor, ...) and round to the minor unit
+     */
+    public Money times(BigDecimal rate, RoundingMode rounding) {
+        return times(rate, fractionDigits, rounding);
+    }
+
+    /**
+     * Multiply by a rate and round the product once, to the given number of decimal places
+     *
+     * @param scale Decimal places to keep; negative values round to tens, hundreds, ...
+     *        and values above the currency's fraction digits are not allowed
+     */
+    public Money times(BigDecimal rate, int scale, RoundingMode rounding) {
+        if (scale > fractionDigits) {
+            throw new IllegalArgumentException("Scale " + scale + " is finer than the minor unit of " + currencyCode);
+        }
+        int rateScale = rate.scale();
+        int shift = rateScale + fractionDigits - scale;
+        int restore = fractionDigits - scale;
+        if (rateScale >= 0 && rate.precision() <= MAX_LONG_DIGITS && shift <= MAX_LONG_DIGITS) {
+            long rateUnscaled = rate.unscaledValue().longValue();
+            long product = minorUnits * rateUnscaled;
+            // Same overflow test as Math.multiplyExact, without throwing on the fast path
+            boolean overflow = minorUnits != 0
+                    && (product / minorUnits != rateUnscaled || (minorUnits == -1 && rateUnscaled == Long.MIN_VALUE));
+            if (!overflow) {
+                long rounded = divide(product, POWERS_OF_TEN[shift], rounding);
+                if (Math.abs(rounded) <= Long.MAX_VALUE / POWERS_OF_TEN[restore]) {
+                    return withMinor(rounded * POWERS_OF_TEN[restore]);
+                }
+            }
+        }
+        BigDecimal exact = toBigDecimal().multiply(rate).setScale(scale, rounding);
+        return withMinor(exact.setScale(fractionDigits).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Round to the given number of decimal places, e.g. -1 for the nearest ten
+     */
+    public Money round(int scale, RoundingMode rounding) {
+        if (scale >= fractionDigits) {
+            return this;
+        }
+        int shift = fractionDigits - scale;
+        if (shift > MAX_LONG_DIGITS) {
+            return times(BigDecimal.ONE, scale, rounding);
+        }
+        long unit = POWERS_OF_TEN[shift];
+        long rounded = divide(minorUnits, unit, rounding);
+        return withMinor(Math.multiplyExact(rounded, unit));
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, fractionDigits);
+    }
+
+    /**
+     * Nearest double, for charts and other display-only code
+     */
+    public double doubleValue() {
+        return fractionDigits < POWERS_OF_TEN.length
+                ? (double) minorUnits / POWERS_OF_TEN[fractionDigits]
+                : toBigDecimal().doubleValue();
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        Money other = (Money) o;
+        return minorUnits == other.minorUnits && currencyCode.equals(other.currencyCode);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + currencyCode.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currencyCode;
+    }
+
+    private Money withMinor(long newMinorUnits) {
+        return newMinorUnits == minorUnits ? this : new Money(newMinorUnits, currencyCode, fractionDigits);
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currencyCode.equals(other.currencyCode)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currencyCode + " and " + other.currencyCode);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.finance.tracker.localization;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Mutable running total for summing many amounts without allocating per addition.
+ *
+ * Amounts that fit the currency's minor unit are added to a long. Anything else
+ * (more fraction digits than the currency has, or a sum that would overflow the long)
+ * is carried in a BigDecimal instead, so the total is always exact; the
+ * slow path only costs something when such amounts actually occur.
+ *
+ * Not thread-safe; use one accumulator per thread or per aggregation.
+ */
+public final class MoneyAccumulator {
+
+    private final String currencyCode;
+    private final int fractionDigits;
+    private long minorUnits;
+    private BigDecimal carry;
+
+    public MoneyAccumulator() {
+        this(Money.BASE_CURRENCY);
+    }
+
+    public MoneyAccumulator(String currencyCode) {
+        this.currencyCode = currencyCode;
+        this.fractionDigits = Money.fractionDigits(currencyCode);
+    }
+
+    public MoneyAccumulator add(BigDecimal amount) {
+        long minor = Money.minorUnitsOf(amount, fractionDigits);
+        if (minor == Money.NOT_EXACT) {
+            carry = carry == null ? amount : carry.add(amount);
+        } else {
+            addMinor(minor);
+        }
+        return this;
+    }
+
+    public MoneyAccumulator subtract(BigDecimal amount) {
+        long minor = Money.minorUnitsOf(amount, fractionDigits);
+        if (minor == Money.NOT_EXACT) {
+            carry = carry == null ? amount.negate() : carry.subtract(amount);
+        } else {
+            addMinor(-minor);
+        }
+        return this;
+    }
+
+    public MoneyAccumulator add(Money amount) {
+        requireSameCurrency(amount);
+        return addMinor(amount.getMinorUnits());
+    }
+
+    public MoneyAccumulator subtract(Money amount) {
+        requireSameCurrency(amount);
+        long minor = amount.getMinorUnits();
+        if (minor == Long.MIN_VALUE) {
+            carry = carry == null ? amount.toBigDecimal().negate() : carry.subtract(amount.toBigDecimal());
+            return this;
+        }
+        return addMinor(-minor);
+    }
+
+    public MoneyAccumulator add(MoneyAccumulator other) {
+        if (!currencyCode.equals(other.currencyCode)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currencyCode + " and " + other.currencyCode);
+        }
+        addMinor(other.minorUnits);
+        if (other.carry != null) {
+            carry = carry == null ? other.carry : carry.add(other.carry);
+        }
+        return this;
+    }
+
+    /**
+     * Add an amount given in minor units of this accumulator's currency
+     */
+    public MoneyAccumulator addMinor(long minor) {
+        long sum = minorUnits + minor;
+        if (((minorUnits ^ sum) & (minor ^ sum)) < 0) {
+            // The long would overflow: move what we have into the carry and start again
+            BigDecimal spilled = BigDecimal.valueOf(minorUnits, fractionDigits);
+            carry = carry == null ? spilled : carry.add(spilled);
+            sum = minor;
+        }
+        minorUnits = sum;
+        return this;
+    }
+
+    public boolean isZero() {
+        return minorUnits == 0 && (carry == null || carry.signum() == 0);
+    }
+
+    /**
+     * @return The exact total
+     */
+    public BigDecimal toBigDecimal() {
+        BigDecimal total = BigDecimal.valueOf(minorUnits, fractionDigits);
+        return carry == null ? total : total.add(carry);
+    }
+
+    /**
+     * @return The total in minor units, rounded only when the carry holds finer amounts
+     */
+    public Money toMoney(RoundingMode rounding) {
+        return carry == null ? Money.ofMinor(minorUnits, currencyCode) : Money.of(toBigDecimal(), currencyCode, rounding);
+    }
+
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    public void reset() {
+        minorUnits = 0;
+        carry = null;
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currencyCode;
+    }
+
+    private void requireSameCurrency(Money amount) {
+        if (!currencyCode.equals(amount.getCurrencyCode())) {
+            throw new IllegalArgumentException("Currency mismatch: " + currencyCode + " and " + amount.getCurrencyCode());
+        }
+    }
+}
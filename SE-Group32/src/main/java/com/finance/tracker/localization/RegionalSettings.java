@@ -5,7 +5,6 @@
 package com.finance.tracker.localization;
 
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
@@ -14,6 +13,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.io.File;
 
+import com.finance.tracker.persistence.AtomicFileWriter;
+
 /**
  * Manages regional settings and preferences
  */
@@ -28,7 +29,7 @@ public class RegionalSettings {
     
     private Map<String, String> regionalSettings = new HashMap<>();
     
-    public static RegionalSettings getInstance() {
+    public static synchronized RegionalSettings getInstance() {
         if (instance == null) {
             instance = new RegionalSettings();
         }
@@ -77,8 +78,8 @@ public class RegionalSettings {
         settings.put("language", language);
         settings.put("dateFormat", dateFormat);
         
-        try (FileWriter writer = new FileWriter(SETTINGS_FILE)) {
-            writer.write(settings.toJSONString());
+        try {
+            AtomicFileWriter.writeString(new File(SETTINGS_FILE), settings.toJSONString());
         } catch (IOException e) {
             System.err.println("Error saving regional settings: " + e.getMessage());
         }
@@ -0,0 +1,118 @@
+/*
+ * Package: com.finance.tracker.persistence
+ * Purpose: Crash-safe file persistence shared by all stores
+ */
+
+package com.finance.tracker.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replaces files atomically.
+ *
+ * Content is written to a temporary file next to the target and forced to disk, then
+ * moved over the target with ATOMIC_MOVE. A crash at any point leaves either the old
+ * file or the new one, never a truncated mix, and no second copy has to be written.
+ */
+public final class AtomicFileWriter {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Writes the content of a file
+     */
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private AtomicFileWriter() {
+    }
+
+    /**
+     * Atomically replace the target with the given content
+     *
+     * @param target File to replace
+     * @param content Writes the new content
+     * @throws IOException if the content could not be written; the target is left untouched
+     */
+    public static void write(File target, Content content) throws IOException {
+        File tempFile = tempFileFor(target);
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        try (FileOutputStream fileOut = new FileOutputStream(tempFile)) {
+            OutputStream out = new BufferedOutputStream(fileOut, 64 * 1024);
+            content.writeTo(out);
+            out.flush();
+            fileOut.getChannel().force(true);
+        } catch (IOException | RuntimeException e) {
+            tempFile.delete();
+            throw e;
+        }
+        replace(tempFile, target);
+    }
+
+    /**
+     * Atomically replace the target with text in the platform charset,
+     * matching files read back through FileReader
+     */
+    public static void writeString(File target, String text) throws IOException {
+        writeString(target, text, Charset.defaultCharset());
+    }
+
+    public static void writeString(File target, String text, Charset charset) throws IOException {
+        byte[] bytes = text.getBytes(charset);
+        write(target, out -> out.write(bytes));
+    }
+
+    /**
+     * Move a fully written and synced file over the target
+     *
+     * @param source Complete replacement file, removed by the move
+     * @param target File to replace
+     * @throws IOException if the move failed
+     */
+    public static void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(target.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Temporary file used while replacing the target
+     */
+    public static File tempFileFor(File target) {
+        return new File(target.getPath() + TEMP_SUFFIX);
+    }
+
+    /**
+     * Make a rename durable by syncing the directory entry.
+     * Not every platform allows opening a directory, so failures are ignored.
+     */
+    static void syncDirectory(File directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Best effort only
+        }
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Package: com.finance.tracker.persistence
+ * Purpose: Crash-safe file persistence shared by all stores
+ */
+
+package com.finance.tracker.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of checksummed records.
+ *
+ * File layout: a header (magic, version) followed by records of
+ * [int length][int CRC32 of payload][payload]. A crash can only damage the tail,
+ * so replay stops at the first short or mismatching record and truncates the file there.
+ *
+ * Appending and syncing are separate steps so that callers can append while holding
+ * their own lock and wait for durability after releasing it. Concurrent callers
+ * waiting in {@link #sync(long)} are group-committed: one fsync covers every record
+ * appended before it started.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final int MAGIC = 0x4654574C; // "FTWL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Receives records during replay
+     */
+    public interface RecordHandler {
+        void onRecord(byte[] payload) throws IOException;
+    }
+
+    private final File file;
+    private final Object syncLock = new Object();
+    private FileChannel channel;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+    private long appendedSequence;
+    private volatile long durableSequence;
+    private int recordCount;
+    private boolean forceOnSync = true;
+    private long tornFrom = -1; // start of a failed write whose truncate also failed
+
+    public WriteAheadLog(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Check whether a file starts with the write-ahead log header
+     */
+    public static boolean isLogFile(File file) {
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Check whether a log file holds anything after its header
+     */
+    public static boolean hasRecords(File file) {
+        return isLogFile(file) && file.length() > HEADER_SIZE;
+    }
+
+    /**
+     * Buffer a record; it is written and made durable by {@link #sync(long)}
+     *
+     * @param payload Record content
+     * @return Sequence number to pass to {@link #sync(long)}
+     */
+    public synchronized long append(byte[] payload) throws IOException {
+        return appendAll(Collections.singletonList(payload));
+    }
+
+    /**
+     * Buffer several records
+     *
+     * @return Sequence number of the last record
+     */
+    public synchronized long appendAll(Collection<byte[]> payloads) throws IOException {
+        CRC32 crc = new CRC32();
+        for (byte[] payload : payloads) {
+            if (payload.length > MAX_RECORD_SIZE) {
+                throw new IOException("Log record too large: " + payload.length + " bytes");
+            }
+            crc.reset();
+            crc.update(payload, 0, payload.length);
+            pendingOut.writeInt(payload.length);
+            pendingOut.writeInt((int) crc.getValue());
+            pendingOut.write(payload);
+            appendedSequence++;
+            recordCount++;
+        }
+        return appendedSequence;
+    }
+
+    /**
+     * Write buffered records and wait until the given sequence is on disk
+     *
+     * @param sequence Sequence returned by append
+     */
+    public void sync(long sequence) throws IOException {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        synchronized (syncLock) {
+            // Another thread's fsync may already have covered this record
+            if (durableSequence >= sequence) {
+                return;
+            }
+            long target;
+            FileChannel out;
+            boolean force;
+            synchronized (this) {
+                target = appendedSequence;
+                out = openChannel();
+                writePending(out);
+                force = forceOnSync;
+            }
+            if (force) {
+                out.force(false);
+            }
+            durableSequence = target;
+        }
+    }
+
+    /**
+     * Append records and wait for them to be durable
+     */
+    public void appendAndSync(Collection<byte[]> payloads) throws IOException {
+        sync(appendAll(payloads));
+    }
+
+    /**
+     * Replay every intact record in order and truncate a torn tail
+     *
+     * @param handler Receives each record
+     * @return Number of records replayed
+     */
+    public int replay(RecordHandler handler) throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (channel != null) {
+                    writePending(channel);
+                }
+                if (!file.exists() || file.length() == 0) {
+                    recordCount = 0;
+                    return 0;
+                }
+
+                long validEnd = HEADER_SIZE;
+                int replayed = 0;
+                try (InputStream fileIn = new FileInputStream(file);
+                     DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn, 64 * 1024))) {
+                    if (file.length() < HEADER_SIZE) {
+                        validEnd = 0;
+                    } else if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                        throw new IOException("Not a write-ahead log: " + file.getName());
+                    } else {
+                        CRC32 crc = new CRC32();
+                        long fileLength = file.length();
+                        while (validEnd + RECORD_HEADER_SIZE <= fileLength) {
+                            int length = in.readInt();
+                            int checksum = in.readInt();
+                            if (length < 0 || length > MAX_RECORD_SIZE
+                                    || validEnd + RECORD_HEADER_SIZE + length > fileLength) {
+                                break;
+                            }
+                            byte[] payload = new byte[length];
+                            in.readFully(payload);
+                            crc.reset();
+                            crc.update(payload, 0, length);
+                            if ((int) crc.getValue() != checksum) {
+                                break;
+                            }
+                            handler.onRecord(payload);
+                            replayed++;
+                            validEnd += RECORD_HEADER_SIZE + length;
+                        }
+                    }
+                } catch (EOFException e) {
+                    // Torn tail, handled below
+                }
+
+                if (validEnd < HEADER_SIZE) {
+                    // Crashed while creating the file: start over with a fresh header
+                    openChannel();
+                } else if (validEnd < file.length()) {
+                    System.err.println("Truncating torn tail of " + file.getName() + " at byte " + validEnd
+                            + " (was " + file.length() + ")");
+                    FileChannel out = openChannel();
+                    out.truncate(validEnd);
+                    out.force(false);
+                }
+                recordCount = replayed;
+                return replayed;
+            }
+        }
+    }
+
+    /**
+     * Discard every record
+     */
+    public void reset() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                pending.reset();
+                tornFrom = -1;
+                FileChannel out = openChannel();
+                out.truncate(HEADER_SIZE);
+                out.force(false);
+                recordCount = 0;
+                durableSequence = appendedSequence;
+            }
+        }
+    }
+
+    /**
+     * Number of records in the log, including buffered ones
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Set whether sync forces records to disk (true) or only hands them to the OS
+     */
+    public synchronized void setForceOnSync(boolean forceOnSync) {
+        this.forceOnSync = forceOnSync;
+    }
+
+    public synchronized boolean isForceOnSync() {
+        return forceOnSync;
+    }
+
+    /**
+     * Write buffered records and release the file handle
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (channel == null) {
+                    return;
+                }
+                try {
+                    writePending(channel);
+                    channel.force(false);
+                    durableSequence = appendedSequence;
+                } finally {
+                    channel.close();
+                    channel = null;
+                }
+            }
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null) {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            boolean created = !file.exists() || file.length() < HEADER_SIZE;
+            channel = openFileChannel();
+            if (created) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                channel.truncate(0);
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(false);
+                AtomicFileWriter.syncDirectory(parent);
+            }
+        }
+        return channel;
+    }
+
+    /**
+     * Open the log file for reading and writing. Package-private so that
+     * fault-injection drivers can substitute a failing channel.
+     */
+    FileChannel openFileChannel() throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Write the buffered records at the end of the file. If the write fails part way,
+     * the file is truncated back to where it started and the records stay buffered,
+     * so the next sync writes them again instead of appending after torn bytes.
+     */
+    private void writePending(FileChannel out) throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        if (tornFrom >= 0) {
+            out.truncate(tornFrom);
+            tornFrom = -1;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        long start = out.size();
+        long position = start;
+        try {
+            while (buffer.hasRemaining()) {
+                position += out.write(buffer, position);
+            }
+        } catch (IOException e) {
+            try {
+                out.truncate(start);
+            } catch (IOException truncateFailure) {
+                tornFrom = start;
+                e.addSuppressed(truncateFailure);
+            }
+            throw e;
+        }
+        pending.reset();
+    }
+}
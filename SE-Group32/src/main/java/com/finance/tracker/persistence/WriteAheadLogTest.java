@@ -0,0 +1,209 @@
+package com.finance.tracker.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fault-injection driver for {@link WriteAheadLog}: a write that fails part way must
+ * not leave torn bytes in front of the records written by the next sync.
+ * Run standalone; exits with status 1 if a check fails.
+ */
+public class WriteAheadLogTest {
+
+    private static int failures;
+
+    public static void main(String[] args) throws IOException {
+        File file = File.createTempFile("wal-test", ".log");
+        file.delete();
+        file.deleteOnExit();
+
+        FailingLog log = new FailingLog(file);
+        log.sync(log.append(bytes("first")));
+        long lengthBefore = file.length();
+
+        // The write tears half way and the truncate succeeds
+        log.failWrites = 1;
+        long second = log.append(bytes("second record, long enough to be torn half way"));
+        check("torn write is reported", syncFails(log, second));
+        check("file is truncated back to the last good record", file.length() == lengthBefore);
+        log.sync(second);
+        check("records survive the retry", replay(file).equals(
+                Arrays.asList("first", "second record, long enough to be torn half way")));
+
+        // The write tears and the truncate fails as well
+        long lengthAfterRetry = file.length();
+        log.failWrites = 1;
+        log.failTruncates = 1;
+        long third = log.append(bytes("third"));
+        check("torn write with failed truncate is reported", syncFails(log, third));
+        check("torn bytes are still on disk", file.length() > lengthAfterRetry);
+        log.sync(third);
+        check("next sync cuts the torn bytes before writing", replay(file).equals(
+                Arrays.asList("first", "second record, long enough to be torn half way", "third")));
+        log.close();
+
+        System.out.println(failures == 0 ? "All checks passed" : failures + " check(s) failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static boolean syncFails(WriteAheadLog log, long sequence) {
+        try {
+            log.sync(sequence);
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static List<String> replay(File file) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            log.replay(payload -> records.add(new String(payload, StandardCharsets.UTF_8)));
+        }
+        return records;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void check(String name, boolean passed) {
+        System.out.println((passed ? "PASS  " : "FAIL  ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+
+    /**
+     * Log whose channel can be told to tear its next writes or fail its next truncates
+     */
+    private static final class FailingLog extends WriteAheadLog {
+        int failWrites;
+        int failTruncates;
+
+        FailingLog(File file) {
+            super(file);
+        }
+
+        @Override
+        FileChannel openFileChannel() throws IOException {
+            return new FailingChannel(super.openFileChannel());
+        }
+
+        private final class FailingChannel extends FileChannel {
+            private final FileChannel delegate;
+
+            FailingChannel(FileChannel delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public int write(ByteBuffer src, long position) throws IOException {
+                if (failWrites > 0) {
+                    failWrites--;
+                    ByteBuffer half = src.duplicate();
+                    half.limit(src.position() + src.remaining() / 2);
+                    delegate.write(half, position);
+                    throw new IOException("injected torn write");
+                }
+                return delegate.write(src, position);
+            }
+
+            @Override
+            public FileChannel truncate(long size) throws IOException {
+                if (failTruncates > 0) {
+                    failTruncates--;
+                    throw new IOException("injected truncate failure");
+                }
+                delegate.truncate(size);
+                return this;
+            }
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                return delegate.read(dst);
+            }
+
+            @Override
+            public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+                return delegate.read(dsts, offset, length);
+            }
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                return delegate.write(src);
+            }
+
+            @Override
+            public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+                return delegate.write(srcs, offset, length);
+            }
+
+            @Override
+            public long position() throws IOException {
+                return delegate.position();
+            }
+
+            @Override
+            public FileChannel position(long newPosition) throws IOException {
+                delegate.position(newPosition);
+                return this;
+            }
+
+            @Override
+            public long size() throws IOException {
+                return delegate.size();
+            }
+
+            @Override
+            public void force(boolean metaData) throws IOException {
+                delegate.force(metaData);
+            }
+
+            @Override
+            public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+                return delegate.transferTo(position, count, target);
+            }
+
+            @Override
+            public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+                return delegate.transferFrom(src, position, count);
+            }
+
+            @Override
+            public int read(ByteBuffer dst, long position) throws IOException {
+                return delegate.read(dst, position);
+            }
+
+            @Override
+            public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+                return delegate.map(mode, position, size);
+            }
+
+            @Override
+            public FileLock lock(long position, long size, boolean shared) throws IOException {
+                return delegate.lock(position, size, shared);
+            }
+
+            @Override
+            public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+                return delegate.tryLock(position, size, shared);
+            }
+
+            @Override
+            protected void implCloseChannel() throws IOException {
+                delegate.close();
+            }
+        }
+    }
+}
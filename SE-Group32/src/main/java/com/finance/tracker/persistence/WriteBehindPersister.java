@@ -0,0 +1,268 @@
+/*
+ * Package: com.finance.tracker.persistence
+ * Purpose: Crash-safe file persistence shared by all stores
+ */
+
+package com.finance.tracker.persistence;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persistence on a single background thread.
+ *
+ * Callers mark a store dirty and return immediately; the writer thread persists
+ * each dirty store once per flush, however many times it was marked. A flush starts
+ * when the oldest pending change is older than the flush delay or when the number
+ * of pending changes reaches the size threshold.
+ *
+ * Callers that need a guarantee use {@link #flush()} (write now and wait) or
+ * {@link #awaitDurable(long)} (wait for the flush that covers a given change).
+ * A shutdown hook drains everything that is still pending.
+ *
+ * A store that fails to persist is logged and queued again for the next flush.
+ * Tickets covered by a failed flush are not reported durable until a later flush
+ * succeeds; waiters on them get {@code false} instead of a false promise.
+ */
+public final class WriteBehindPersister {
+
+    /**
+     * State that can be written out as a whole
+     */
+    public interface Store {
+        /**
+         * Name used in log messages
+         */
+        String getName();
+
+        /**
+         * Write the current state. Called on the writer thread, so it must take
+         * whatever lock protects the state it reads.
+         */
+        void persist() throws Exception;
+    }
+
+    private static final long DEFAULT_FLUSH_DELAY_MILLIS = 500;
+    private static final int DEFAULT_MAX_PENDING_CHANGES = 200;
+
+    private static WriteBehindPersister instance;
+
+    private final Object lock = new Object();
+    private final Object flushLock = new Object();
+    private final Set<Store> dirty = new LinkedHashSet<>();
+    private long markedTicket;
+    private long durableTicket;
+    private long failedTicket; // highest ticket covered by a flush that had a failing store
+    private long firstDirtyNanos;
+    private int pendingChanges;
+    private boolean shutdown;
+    private long flushDelayMillis = DEFAULT_FLUSH_DELAY_MILLIS;
+    private int maxPendingChanges = DEFAULT_MAX_PENDING_CHANGES;
+    private final Thread writer;
+
+    public static synchronized WriteBehindPersister getInstance() {
+        if (instance == null) {
+            instance = new WriteBehindPersister();
+        }
+        return instance;
+    }
+
+    private WriteBehindPersister() {
+        writer = new Thread(this::runWriter, "write-behind-persister");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "write-behind-persister-shutdown"));
+    }
+
+    /**
+     * Mark a store as changed
+     *
+     * @param store Store to persist on the next flush
+     * @return Ticket to pass to {@link #awaitDurable(long)}
+     */
+    public long markDirty(Store store) {
+        long ticket;
+        boolean writeNow;
+        synchronized (lock) {
+            if (dirty.isEmpty()) {
+                firstDirtyNanos = System.nanoTime();
+            }
+            dirty.add(store);
+            pendingChanges++;
+            ticket = ++markedTicket;
+            writeNow = shutdown;
+            // Wake the writer to start the delay timer, or to flush once the size threshold is hit
+            if (pendingChanges == 1 || pendingChanges >= maxPendingChanges) {
+                lock.notifyAll();
+            }
+        }
+        if (writeNow) {
+            // The writer is gone; persist in the caller instead of losing the change
+            flushOnce();
+        }
+        return ticket;
+    }
+
+    /**
+     * Persist every pending change now and wait until it is written
+     *
+     * @return false if a store failed to persist; it stays queued for the next flush
+     */
+    public boolean flush() {
+        long ticket;
+        synchronized (lock) {
+            ticket = markedTicket;
+            if (durableTicket >= ticket) {
+                return true;
+            }
+        }
+        // Do the work in the caller; flushLock orders it after any flush in progress
+        flushOnce();
+        return awaitDurable(ticket);
+    }
+
+    /**
+     * Wait until the change identified by the ticket has been written,
+     * without forcing an early flush
+     *
+     * @param ticket Ticket returned by {@link #markDirty(Store)}
+     * @return true once the change is on disk; false if the flush that covered it
+     *         failed (the store is retried on the next flush) or the wait was interrupted
+     */
+    public boolean awaitDurable(long ticket) {
+        synchronized (lock) {
+            while (durableTicket < ticket) {
+                if (failedTicket >= ticket) {
+                    return false;
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Number of stores waiting to be written
+     */
+    public int getPendingStoreCount() {
+        synchronized (lock) {
+            return dirty.size();
+        }
+    }
+
+    /**
+     * Set how long a change may wait before it is written
+     */
+    public void setFlushDelayMillis(long flushDelayMillis) {
+        if (flushDelayMillis < 0) {
+            throw new IllegalArgumentException("Flush delay must not be negative: " + flushDelayMillis);
+        }
+        synchronized (lock) {
+            this.flushDelayMillis = flushDelayMillis;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Set how many changes may pile up before a flush starts regardless of the delay
+     */
+    public void setMaxPendingChanges(int maxPendingChanges) {
+        if (maxPendingChanges <= 0) {
+            throw new IllegalArgumentException("Max pending changes must be positive: " + maxPendingChanges);
+        }
+        synchronized (lock) {
+            this.maxPendingChanges = maxPendingChanges;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Stop the writer thread after draining all pending changes.
+     * Later changes are persisted synchronously by the caller.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            lock.notifyAll();
+        }
+        flushOnce();
+    }
+
+    private void runWriter() {
+        while (true) {
+            synchronized (lock) {
+                while (!shutdown && !isFlushDue()) {
+                    try {
+                        if (dirty.isEmpty()) {
+                            lock.wait();
+                        } else {
+                            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - firstDirtyNanos);
+                            lock.wait(Math.max(1, flushDelayMillis - waited));
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (shutdown) {
+                    return;
+                }
+            }
+            flushOnce();
+        }
+    }
+
+    private boolean isFlushDue() {
+        if (dirty.isEmpty()) {
+            return false;
+        }
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - firstDirtyNanos);
+        return pendingChanges >= maxPendingChanges || waited >= flushDelayMillis;
+    }
+
+    private void flushOnce() {
+        synchronized (flushLock) {
+            List<Store> batch;
+            long upTo;
+            synchronized (lock) {
+                batch = new ArrayList<>(dirty);
+                dirty.clear();
+                pendingChanges = 0;
+                upTo = markedTicket;
+            }
+
+            List<Store> failed = new ArrayList<>();
+            for (Store store : batch) {
+                try {
+                    store.persist();
+                } catch (Exception e) {
+                    System.err.println("Error persisting " + store.getName() + ", will retry: " + e.getMessage());
+                    e.printStackTrace();
+                    failed.add(store);
+                }
+            }
+
+            synchronized (lock) {
+                if (failed.isEmpty()) {
+                    durableTicket = Math.max(durableTicket, upTo);
+                } else {
+                    // Keep the failed stores queued even after shutdown, where the next
+                    // markDirty flushes in the caller and retries them
+                    if (dirty.isEmpty()) {
+                        firstDirtyNanos = System.nanoTime();
+                    }
+                    dirty.addAll(failed);
+                    failedTicket = Math.max(failedTicket, upTo);
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+}
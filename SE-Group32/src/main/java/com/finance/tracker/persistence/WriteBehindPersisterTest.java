@@ -0,0 +1,63 @@
+package com.finance.tracker.persistence;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fault-injection driver for {@link WriteBehindPersister}: a store that fails to
+ * persist must not be reported durable, and must be written by a later flush.
+ * Run standalone; exits with status 1 if a check fails.
+ */
+public class WriteBehindPersisterTest {
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        WriteBehindPersister persister = WriteBehindPersister.getInstance();
+        persister.setFlushDelayMillis(50);
+
+        AtomicBoolean broken = new AtomicBoolean(true);
+        AtomicInteger written = new AtomicInteger();
+        WriteBehindPersister.Store store = new WriteBehindPersister.Store() {
+            @Override
+            public String getName() {
+                return "flaky store";
+            }
+
+            @Override
+            public void persist() throws Exception {
+                if (broken.get()) {
+                    throw new IOException("injected disk error");
+                }
+                written.incrementAndGet();
+            }
+        };
+
+        long ticket = persister.markDirty(store);
+        check("awaitDurable reports the failed flush", !persister.awaitDurable(ticket));
+        check("flush reports the failed write", !persister.flush());
+        check("failed store stays queued", persister.getPendingStoreCount() == 1);
+        check("nothing was written while broken", written.get() == 0);
+
+        broken.set(false);
+        check("flush succeeds once the store recovers", persister.flush());
+        check("earlier ticket is durable after the retry", persister.awaitDurable(ticket));
+        check("store was written", written.get() >= 1);
+        check("nothing left queued", persister.getPendingStoreCount() == 0);
+
+        // A later ticket is only durable after a successful flush of its own
+        long next = persister.markDirty(store);
+        check("background flush makes a new ticket durable", persister.awaitDurable(next));
+
+        System.out.println(failures == 0 ? "All checks passed" : failures + " check(s) failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void check(String name, boolean passed) {
+        System.out.println((passed ? "PASS  " : "FAIL  ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
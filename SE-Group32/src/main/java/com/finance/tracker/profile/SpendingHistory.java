@@ -4,78 +4,311 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+
+import com.finance.tracker.localization.MoneyAccumulator;
 /**
- * Tracks spending history
+ * Tracks spending history.
+ *
+ * Each month keeps a running total per category and for the whole month, updated as
+ * transactions are added, so month and category lookups never re-sum transactions.
+ * The raw transactions are kept as well unless a retention limit is set; see
+ * {@link #setRawRetentionMonths(int)}.
+ *
+ * Transactions that carry a ledger ID can later be removed or replaced; the totals
+ * of their month are adjusted directly. Past the retention limit only the ID and
+ * checksum of such a transaction are kept, and removing it subtracts the category
+ * and amount supplied by the caller (the version the ledger deleted or replaced).
+ *
+ * Months changed since the last save are remembered so the profile can
+ * rewrite only those months' segments; see {@link #drainDirtyMonths()}.
+ * Each month also keeps a checksum of its transactions ({@link Transaction#checksum()}),
+ * so it can be compared with the ledger without looking at the transactions.
+ *
+ * Thread-safe: the profile writes under its own lock, the AI module reads from any thread.
  */
 public class SpendingHistory {
-    private Map<String, List<Transaction>> transactions; // Year-Month -> List of transactions
     
-    public SpendingHistory() {
-        transactions = new TreeMap<>();
+    /**
+     * Keep raw transactions for every month
+     */
+    public static final int RETAIN_ALL = -1;
+    
+    /**
+     * Running total of one category in one month
+     */
+    private static final class CategoryTotal {
+        private final MoneyAccumulator total = new MoneyAccumulator();
+        private int count; // At least the number of transactions that can still be removed
     }
     
     /**
-     * Add a transaction to history
+     * Totals and transactions of one month
      */
-    public void addTransaction(String category, BigDecimal amount, LocalDate date) {
-        String yearMonth = date.getYear() + "-" + String.format("%02d", date.getMonthValue());
+    private static final class MonthSummary {
+        private final Map<String, CategoryTotal> categoryTotals = new HashMap<>();
+        private final MoneyAccumulator total = new MoneyAccumulator();
+        private int count;
+        private long checksum;
+        // Kept transactions: ID -> transaction for transactions with an ID, a unique key for the others
+        private final LinkedHashMap<Object, Transaction> transactions = new LinkedHashMap<>();
+        // ID -> checksum of the transactions with an ID that are no longer kept
+        private final Map<String, Long> droppedIds = new HashMap<>();
+        private boolean retained; // false once the transactions were dropped
+        
+        void add(Transaction transaction) {
+            addTotal(transaction.getCategory(), transaction.getAmount(), 1);
+            checksum += transaction.checksum();
+        }
         
-        if (!transactions.containsKey(yearMonth)) {
-            transactions.put(yearMonth, new ArrayList<>());
+        void addTotal(String category, BigDecimal amount, int transactionCount) {
+            CategoryTotal categoryTotal = categoryTotals.computeIfAbsent(category, c -> new CategoryTotal());
+            categoryTotal.total.add(amount);
+            categoryTotal.count += transactionCount;
+            total.add(amount);
+            count += transactionCount;
         }
         
-        transactions.get(yearMonth).add(new Transaction(category, amount, date));
+        void subtract(String category, BigDecimal amount, long transactionChecksum) {
+            CategoryTotal categoryTotal = categoryTotals.get(category);
+            if (categoryTotal != null) {
+                if (--categoryTotal.count == 0) {
+                    categoryTotals.remove(category);
+                } else {
+                    categoryTotal.total.subtract(amount);
+                }
+            }
+            total.subtract(amount);
+            count--;
+            checksum -= transactionChecksum;
+        }
+        
+        /**
+         * Drop the kept transactions, remembering the ID and checksum of those with an ID
+         *
+         * @return true if any transaction was dropped
+         */
+        boolean dropTransactions() {
+            for (Map.Entry<Object, Transaction> entry : transactions.entrySet()) {
+                if (entry.getKey() instanceof String) {
+                    droppedIds.put((String) entry.getKey(), entry.getValue().checksum());
+                }
+            }
+            boolean dropped = !transactions.isEmpty();
+            transactions.clear();
+            retained = false;
+            return dropped;
+        }
+        
+        /**
+         * IDs of every transaction with an ID in this month, kept or not
+         */
+        Set<String> ids() {
+            Set<String> ids = new HashSet<>(droppedIds.keySet());
+            for (Object key : transactions.keySet()) {
+                if (key instanceof String) {
+                    ids.add((String) key);
+                }
+            }
+            return ids;
+        }
     }
     
+    private final TreeMap<YearMonth, MonthSummary> months = new TreeMap<>();
+    private final Map<String, YearMonth> transactionsById = new HashMap<>(); // ID -> month it was recorded in
+    private final Set<String> dirtyMonths = new TreeSet<>();
+    private int rawRetentionMonths = RETAIN_ALL;
+    
     /**
-     * Get transactions for a specific month
+     * Add a transaction to history
      */
-    public List<Transaction> getMonthlyTransactions(YearMonth yearMonth) {
-        String key = yearMonth.getYear() + "-" + String.format("%02d", yearMonth.getMonthValue());
-        return transactions.getOrDefault(key, new ArrayList<>());
+    public synchronized void addTransaction(String category, BigDecimal amount, LocalDate date) {
+        addTransaction(new Transaction(category, amount, date));
     }
     
     /**
-     * Get total spending for a specific month
+     * Add a transaction to history; a transaction whose ID is already recorded replaces it
      */
-    public BigDecimal getMonthlySpending(YearMonth yearMonth) {
-        List<Transaction> monthTransactions = getMonthlyTransactions(yearMonth);
-        BigDecimal total = BigDecimal.ZERO;
+    public synchronized void addTransaction(Transaction transaction) {
+        String id = transaction.getId();
+        if (id != null) {
+            removeRecorded(id, null);
+        }
         
-        for (Transaction transaction : monthTransactions) {
-            total = total.add(transaction.getAmount());
+        YearMonth yearMonth = YearMonth.from(transaction.getDate());
+        MonthSummary month = months.get(yearMonth);
+        if (month == null) {
+            month = new MonthSummary();
+            month.retained = isRetained(yearMonth);
+            months.put(yearMonth, month);
         }
         
-        return total;
+        month.add(transaction);
+        if (id != null) {
+            if (month.retained) {
+                month.transactions.put(id, transaction);
+            } else {
+                month.droppedIds.put(id, transaction.checksum());
+            }
+            transactionsById.put(id, yearMonth);
+        } else if (month.retained) {
+            month.transactions.put(new Object(), transaction);
+        }
+        dirtyMonths.add(yearMonth.toString());
     }
     
     /**
-     * Get spending by category for a specific month
+     * Remove a transaction recorded with an ID, taking its amount back out of its month.
+     * A transaction past the retention limit can only be taken out of the totals with
+     * {@link #removeTransaction(Transaction)}.
+     *
+     * @return false if no transaction with this ID is recorded
      */
-    public Map<String, BigDecimal> getMonthlyCategorySpending(YearMonth yearMonth) {
-        List<Transaction> monthTransactions = getMonthlyTransactions(yearMonth);
-        Map<String, BigDecimal> categorySpending = new HashMap<>();
-        
-        for (Transaction transaction : monthTransactions) {
-            String category = transaction.getCategory();
-            BigDecimal currentAmount = categorySpending.getOrDefault(category, BigDecimal.ZERO);
-            categorySpending.put(category, currentAmount.add(transaction.getAmount()));
+    public synchronized boolean removeTransaction(String id) {
+        return removeRecorded(id, null);
+    }
+    
+    /**
+     * Remove a transaction recorded with an ID. If it is no longer kept, the category and
+     * amount of the given transaction are subtracted from its month instead.
+     *
+     * @param transaction The transaction as the ledger last had it
+     * @return false if no transaction with this ID is recorded
+     */
+    public synchronized boolean removeTransaction(Transaction transaction) {
+        return transaction.getId() != null && removeRecorded(transaction.getId(), transaction);
+    }
+    
+    /**
+     * Replace a recorded transaction with its edited version
+     *
+     * @param previous The transaction as the ledger had it before the edit
+     * @param updated The edited transaction, with the same ID
+     */
+    public synchronized void replaceTransaction(Transaction previous, Transaction updated) {
+        if (previous != null && previous.getId() != null) {
+            removeRecorded(previous.getId(), previous);
+        }
+        addTransaction(updated);
+    }
+    
+    private boolean removeRecorded(String id, Transaction supplied) {
+        YearMonth yearMonth = transactionsById.remove(id);
+        if (yearMonth == null) {
+            return false;
         }
         
-        return categorySpending;
+        MonthSummary month = months.get(yearMonth);
+        Transaction kept = month.transactions.remove(id);
+        Long droppedChecksum = month.droppedIds.remove(id);
+        if (kept != null) {
+            month.subtract(kept.getCategory(), kept.getAmount(), kept.checksum());
+        } else if (supplied != null) {
+            month.subtract(supplied.getCategory(), supplied.getAmount(),
+                    droppedChecksum != null ? droppedChecksum : supplied.checksum());
+        } else {
+            // Nothing to subtract: the month keeps the transaction's amount and checksum,
+            // so it no longer matches the ledger and is rebuilt by the next reconcile
+            System.err.println("Removed transaction " + id + " past the retention limit without its amount; "
+                    + yearMonth + " is out of date until it is reconciled");
+        }
+        if (month.count == 0) {
+            months.remove(yearMonth);
+        }
+        dirtyMonths.add(yearMonth.toString());
+        return true;
+    }
+    
+    /**
+     * Replace everything recorded for a month with the given transactions
+     *
+     * @param yearMonth Month to replace
+     * @param transactions The month's transactions; empty to remove the month
+     */
+    public synchronized void replaceMonth(YearMonth yearMonth, Collection<Transaction> transactions) {
+        MonthSummary previous = months.remove(yearMonth);
+        if (previous != null) {
+            transactionsById.keySet().removeAll(previous.ids());
+        }
+        dirtyMonths.add(yearMonth.toString());
+        for (Transaction transaction : transactions) {
+            addTransaction(transaction);
+        }
+    }
+    
+    /**
+     * Checksum of every month that holds transactions
+     */
+    public synchronized Map<YearMonth, Long> getMonthChecksums() {
+        Map<YearMonth, Long> checksums = new TreeMap<>();
+        for (Map.Entry<YearMonth, MonthSummary> entry : months.entrySet()) {
+            checksums.put(entry.getKey(), entry.getValue().checksum);
+        }
+        return checksums;
+    }
+    
+    /**
+     * Whether a transaction with this ID is recorded
+     */
+    public synchronized boolean containsTransaction(String id) {
+        return transactionsById.containsKey(id);
+    }
+    
+    /**
+     * Remove all transactions; every month that had data is marked changed
+     */
+    public synchronized void clear() {
+        for (YearMonth yearMonth : months.keySet()) {
+            dirtyMonths.add(yearMonth.toString());
+        }
+        months.clear();
+        transactionsById.clear();
+    }
+    
+    /**
+     * Get transactions for a specific month
+     *
+     * @return The month's transactions, empty if none were recorded or they are past the retention limit
+     */
+    public synchronized List<Transaction> getMonthlyTransactions(YearMonth yearMonth) {
+        MonthSummary month = months.get(yearMonth);
+        if (month == null || !month.retained) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(month.transactions.values());
+    }
+    
+    /**
+     * Get total spending for a specific month
+     */
+    public synchronized BigDecimal getMonthlySpending(YearMonth yearMonth) {
+        MonthSummary month = months.get(yearMonth);
+        return month == null ? BigDecimal.ZERO : month.total.toBigDecimal();
+    }
+    
+    /**
+     * Get spending by category for a specific month
+     */
+    public synchronized Map<String, BigDecimal> getMonthlyCategorySpending(YearMonth yearMonth) {
+        MonthSummary month = months.get(yearMonth);
+        return month == null ? new HashMap<>() : toAmounts(month);
     }
     
     /**
      * Get spending trend over last few months
      */
-    public Map<YearMonth, BigDecimal> getSpendingTrend(int months) {
+    public synchronized Map<YearMonth, BigDecimal> getSpendingTrend(int months) {
         Map<YearMonth, BigDecimal> trend = new TreeMap<>();
         YearMonth current = YearMonth.now();
         
@@ -87,77 +320,250 @@ public class SpendingHistory {
         return trend;
     }
     
+    /**
+     * Set for how many recent months raw transactions are kept; older months keep only
+     * their totals and the ID and checksum of each transaction that has an ID.
+     * Months past the limit lose their transactions now and when history is loaded.
+     *
+     * @param months Number of months including the current one, 0 to keep none,
+     *        or {@link #RETAIN_ALL} to keep every month
+     */
+    public synchronized void setRawRetentionMonths(int months) {
+        if (months < RETAIN_ALL) {
+            throw new IllegalArgumentException("Retention must be RETAIN_ALL or at least 0: " + months);
+        }
+        this.rawRetentionMonths = months;
+        for (Map.Entry<YearMonth, MonthSummary> entry : this.months.entrySet()) {
+            MonthSummary month = entry.getValue();
+            if (month.retained && !isRetained(entry.getKey())) {
+                month.dropTransactions();
+                dirtyMonths.add(entry.getKey().toString());
+            }
+        }
+    }
+    
+    public synchronized int getRawRetentionMonths() {
+        return rawRetentionMonths;
+    }
+    
+    private boolean isRetained(YearMonth yearMonth) {
+        return rawRetentionMonths == RETAIN_ALL
+                || yearMonth.isAfter(YearMonth.now().minusMonths(rawRetentionMonths));
+    }
+    
     /**
      * Loads spending history from JSON
      */
-    public void loadFromJson(JSONObject historyJson) {
+    public synchronized void loadFromJson(JSONObject historyJson) {
         if (historyJson == null) return;
         
-        transactions.clear();
+        months.clear();
+        transactionsById.clear();
         
         for (Object keyObj : historyJson.keySet()) {
             String yearMonth = (String) keyObj;
-            JSONArray transactionsArray = (JSONArray) historyJson.get(yearMonth);
-            
-            List<Transaction> monthTransactions = new ArrayList<>();
+            loadMonthFromJson(yearMonth, historyJson.get(yearMonth));
+        }
+    }
+    /**
+     * Loads one month of spending history, replacing what was held for that month
+     *
+     * @param yearMonth Month key in "yyyy-MM" form
+     * @param monthJson An object as written by {@link #monthToJson(String)}, or the plain
+     *        transaction array written by older versions
+     */
+    public synchronized void loadMonthFromJson(String yearMonth, Object monthJson) {
+        YearMonth key = YearMonth.parse(yearMonth);
+        MonthSummary previous = months.get(key);
+        if (previous != null) {
+            transactionsById.keySet().removeAll(previous.ids());
+        }
+        
+        MonthSummary month = new MonthSummary();
+        JSONArray transactionsArray;
+        
+        if (monthJson instanceof JSONArray) {
+            // Older files hold only the transactions; totals are summed from them
+            transactionsArray = (JSONArray) monthJson;
             for (Object transObj : transactionsArray) {
-                JSONObject transJson = (JSONObject) transObj;
-                
-                String category = (String) transJson.get("category");
-                double amount = ((Number) transJson.get("amount")).doubleValue();
-                String dateStr = (String) transJson.get("date");
-                LocalDate date = LocalDate.parse(dateStr);
-                
-                monthTransactions.add(new Transaction(category, BigDecimal.valueOf(amount), date));
+                month.add(parseTransaction((JSONObject) transObj));
+            }
+            month.retained = true;
+        } else {
+            JSONObject summaryJson = (JSONObject) monthJson;
+            JSONObject totalsJson = (JSONObject) summaryJson.get("totals");
+            JSONObject countsJson = (JSONObject) summaryJson.get("counts");
+            for (Object categoryObj : totalsJson.keySet()) {
+                String category = (String) categoryObj;
+                // Files without counts hold no removable transactions; 1 keeps the category until cleared
+                Number count = countsJson != null ? (Number) countsJson.get(category) : null;
+                month.addTotal(category, new BigDecimal(totalsJson.get(category).toString()),
+                        count != null ? count.intValue() : 1);
+            }
+            transactionsArray = (JSONArray) summaryJson.get("transactions");
+            Number checksum = (Number) summaryJson.get("checksum");
+            if (checksum != null) {
+                month.checksum = checksum.longValue();
+            } else if (transactionsArray != null) {
+                // Written before checksums were kept; rows that were already dropped are missing from it
+                for (Object transObj : transactionsArray) {
+                    month.checksum += parseTransaction((JSONObject) transObj).checksum();
+                }
+            }
+            month.retained = transactionsArray != null && !Boolean.FALSE.equals(summaryJson.get("retained"));
+        }
+        
+        if (transactionsArray != null) {
+            for (Object transObj : transactionsArray) {
+                Transaction transaction = parseTransaction((JSONObject) transObj);
+                if (transaction.getId() != null) {
+                    month.transactions.put(transaction.getId(), transaction);
+                    transactionsById.put(transaction.getId(), key);
+                } else {
+                    month.transactions.put(new Object(), transaction);
+                }
+            }
+        }
+        if (monthJson instanceof JSONObject) {
+            JSONObject idsJson = (JSONObject) ((JSONObject) monthJson).get("ids");
+            if (idsJson != null) {
+                for (Object idObj : idsJson.keySet()) {
+                    String id = (String) idObj;
+                    month.droppedIds.put(id, ((Number) idsJson.get(id)).longValue());
+                    transactionsById.put(id, key);
+                }
             }
-            
-            transactions.put(yearMonth, monthTransactions);
         }
+        // Past the retention limit, or written when transactions with an ID were still kept
+        // in dropped months; rewrite the segment with only their IDs
+        if ((!month.retained || !isRetained(key)) && month.dropTransactions()) {
+            dirtyMonths.add(yearMonth);
+        }
+        
+        months.put(key, month);
+    }
+    
+    private static Transaction parseTransaction(JSONObject transJson) {
+        String id = (String) transJson.get("id");
+        String category = (String) transJson.get("category");
+        // Amounts are written as exact decimal strings; older files stored a JSON number
+        BigDecimal amount = new BigDecimal(transJson.get("amount").toString());
+        String dateStr = (String) transJson.get("date");
+        LocalDate date = LocalDate.parse(dateStr);
+        
+        return new Transaction(id, category, amount, date);
     }
     
     /**
      * Converts spending history to JSON
      */
-    public JSONObject toJson() {
+    public synchronized JSONObject toJson() {
         JSONObject historyJson = new JSONObject();
         
-        for (Map.Entry<String, List<Transaction>> entry : transactions.entrySet()) {
-            String yearMonth = entry.getKey();
-            List<Transaction> monthTransactions = entry.getValue();
-            
-            JSONArray transactionsArray = new JSONArray();
-            for (Transaction transaction : monthTransactions) {
-                JSONObject transJson = new JSONObject();
-                transJson.put("category", transaction.getCategory());
-                transJson.put("amount", transaction.getAmount().doubleValue());
-                transJson.put("date", transaction.getDate().toString());
-                
-                transactionsArray.add(transJson);
-            }
-            
-            historyJson.put(yearMonth, transactionsArray);
+        for (YearMonth yearMonth : months.keySet()) {
+            historyJson.put(yearMonth.toString(), monthToJson(yearMonth.toString()));
         }
         
         return historyJson;
     }
     
+    /**
+     * Converts one month of spending history to JSON: the category totals and counts,
+     * and the transactions that are kept
+     *
+     * @param yearMonth Month key in "yyyy-MM" form
+     * @return The month's data, or null if the month has none
+     */
+    public synchronized JSONObject monthToJson(String yearMonth) {
+        MonthSummary month = months.get(YearMonth.parse(yearMonth));
+        if (month == null) {
+            return null;
+        }
+        
+        JSONObject monthJson = new JSONObject();
+        JSONObject totalsJson = new JSONObject();
+        JSONObject countsJson = new JSONObject();
+        for (Map.Entry<String, CategoryTotal> entry : month.categoryTotals.entrySet()) {
+            totalsJson.put(entry.getKey(), entry.getValue().total.toBigDecimal().toPlainString());
+            countsJson.put(entry.getKey(), entry.getValue().count);
+        }
+        monthJson.put("totals", totalsJson);
+        monthJson.put("counts", countsJson);
+        monthJson.put("checksum", month.checksum);
+        
+        if (!month.retained) {
+            // Only the ID and checksum of the dropped transactions, so they can still be removed
+            JSONObject idsJson = new JSONObject();
+            idsJson.putAll(month.droppedIds);
+            monthJson.put("ids", idsJson);
+            monthJson.put("retained", false);
+            return monthJson;
+        }
+        
+        JSONArray transactionsArray = new JSONArray();
+        for (Transaction transaction : month.transactions.values()) {
+            JSONObject transJson = new JSONObject();
+            if (transaction.getId() != null) {
+                transJson.put("id", transaction.getId());
+            }
+            transJson.put("category", transaction.getCategory());
+            transJson.put("amount", transaction.getAmount().toPlainString());
+            transJson.put("date", transaction.getDate().toString());
+            
+            transactionsArray.add(transJson);
+        }
+        monthJson.put("transactions", transactionsArray);
+        return monthJson;
+    }
+    
+    /**
+     * Month keys that currently hold transactions, oldest first
+     */
+    public synchronized List<String> getMonthKeys() {
+        List<String> keys = new ArrayList<>(months.size());
+        for (YearMonth yearMonth : months.keySet()) {
+            keys.add(yearMonth.toString());
+        }
+        return keys;
+    }
+    
+    /**
+     * Returns the months changed since the last call and forgets them
+     *
+     * @return Month keys; a month that no longer has transactions was cleared
+     */
+    public synchronized Set<String> drainDirtyMonths() {
+        Set<String> drained = new TreeSet<>(dirtyMonths);
+        dirtyMonths.clear();
+        return drained;
+    }
+    
+    /**
+     * Marks months as changed again, e.g. after a failed save
+     */
+    public synchronized void markMonthsDirty(Collection<String> yearMonths) {
+        dirtyMonths.addAll(yearMonths);
+    }
+    
     /**
      * Returns a map of all spending history by year-month
      * @return Map with YearMonth as key and Map of category to amount as value
      */
-    public Map<YearMonth, Map<String, BigDecimal>> getAllSpendingHistory() {
+    public synchronized Map<YearMonth, Map<String, BigDecimal>> getAllSpendingHistory() {
         Map<YearMonth, Map<String, BigDecimal>> allHistory = new TreeMap<>();
         
-        for (String yearMonthStr : transactions.keySet()) {
-            String[] parts = yearMonthStr.split("-");
-            int year = Integer.parseInt(parts[0]);
-            int month = Integer.parseInt(parts[1]);
-            YearMonth yearMonth = YearMonth.of(year, month);
-            
-            Map<String, BigDecimal> categorySpending = getMonthlyCategorySpending(yearMonth);
-            allHistory.put(yearMonth, categorySpending);
+        for (Map.Entry<YearMonth, MonthSummary> entry : months.entrySet()) {
+            allHistory.put(entry.getKey(), toAmounts(entry.getValue()));
         }
         
         return allHistory;
     }
+    
+    private static Map<String, BigDecimal> toAmounts(MonthSummary month) {
+        Map<String, BigDecimal> categorySpending = new HashMap<>(month.categoryTotals.size() * 2);
+        for (Map.Entry<String, CategoryTotal> entry : month.categoryTotals.entrySet()) {
+            categorySpending.put(entry.getKey(), entry.getValue().total.toBigDecimal());
+        }
+        return categorySpending;
+    }
 }
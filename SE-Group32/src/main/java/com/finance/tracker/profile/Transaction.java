@@ -11,19 +11,41 @@ import java.time.LocalDate;
  * Represents a single financial transaction
  */
 public class Transaction {
+    private String id; // Ledger ID; null for transactions that cannot be removed or updated later
     private String category;
     private BigDecimal amount;
     private LocalDate date;
     
     public Transaction(String category, BigDecimal amount, LocalDate date) {
+        this(null, category, amount, date);
+    }
+    
+    public Transaction(String id, String category, BigDecimal amount, LocalDate date) {
+        this.id = id;
         this.category = category;
         this.amount = amount;
         this.date = date;
     }
     
     // Getters
+    public String getId() { return id; }
     public String getCategory() { return category; }
     public BigDecimal getAmount() { return amount; }
     public LocalDate getDate() { return date; }
+    
+    /**
+     * 64-bit hash of the ID, category, amount and date. Month checksums are sums of these,
+     * so they can be adjusted as transactions come and go, and compared with the ledger.
+     */
+    public long checksum() {
+        String key = id + '\u0000' + category + '\u0000' + amount.stripTrailingZeros().toPlainString() + '\u0000' + date;
+        // FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
 }
 
@@ -6,25 +6,40 @@
 package com.finance.tracker.profile;
 
 import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
+import com.finance.tracker.persistence.AtomicFileWriter;
+import com.finance.tracker.persistence.WriteBehindPersister;
+
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 /**
- * Manages user profile and spending preferences
+ * Manages user profile and spending preferences.
+ *
+ * The profile file holds the preferences, budgets and the list of history months;
+ * each month of spending history lives in its own segment file under
+ * {@value #HISTORY_DIR}, and a save rewrites only the months that changed.
+ * Callers recording many transactions wrap them in {@link #beginBatch()} /
+ * {@link #commit()} so the whole batch schedules a single save.
  */
 public class UserProfile {
     private static final String PROFILE_FILE = "data/user_profile.json";
+    private static final String HISTORY_DIR = "data/profile_history";
     
     private String userId;
     private String name;
@@ -32,10 +47,31 @@ public class UserProfile {
     private Map<String, BigDecimal> categoryBudgets = new HashMap<>(); // Category -> Budget amount
     private SpendingHistory spendingHistory;
     
+    // Ledger and change sequence the spending history has been synced up to
+    private String syncedLedgerId;
+    private long syncedSequence;
+    
+    // Nesting depth of beginBatch() and whether a save was requested inside the batch
+    private int batchDepth;
+    private boolean batchSavePending;
+    
+    // Written by the background persister; see saveProfile()
+    private final WriteBehindPersister.Store profileStore = new WriteBehindPersister.Store() {
+        @Override
+        public String getName() {
+            return "user profile";
+        }
+        
+        @Override
+        public void persist() throws IOException {
+            writeProfile();
+        }
+    };
+    
     // Singleton pattern
     private static UserProfile instance;
     
-    public static UserProfile getInstance() {
+    public static synchronized UserProfile getInstance() {
         if (instance == null) {
             instance = new UserProfile();
         }
@@ -75,8 +111,25 @@ public class UserProfile {
                 categoryBudgets.put(category, BigDecimal.valueOf(amount));
             }
             
-            // Load spending history
-            spendingHistory.loadFromJson((JSONObject) profile.get("spendingHistory"));
+            syncedLedgerId = (String) profile.get("syncedLedgerId");
+            Number sequence = (Number) profile.get("syncedSequence");
+            syncedSequence = sequence != null ? sequence.longValue() : 0;
+            
+            // Load spending history; the retention limit applies while segments are read
+            Number retention = (Number) profile.get("historyRetentionMonths");
+            if (retention != null) {
+                spendingHistory.setRawRetentionMonths(retention.intValue());
+            }
+            JSONArray historyMonths = (JSONArray) profile.get("historyMonths");
+            if (historyMonths != null) {
+                for (Object month : historyMonths) {
+                    loadHistorySegment((String) month);
+                }
+            } else {
+                // Older files keep the whole history inline; the next save splits it into segments
+                spendingHistory.loadFromJson((JSONObject) profile.get("spendingHistory"));
+                spendingHistory.markMonthsDirty(spendingHistory.getMonthKeys());
+            }
             
         } catch (IOException | ParseException e) {
             System.err.println("Error loading user profile: " + e.getMessage());
@@ -85,6 +138,24 @@ public class UserProfile {
         }
     }
     
+    /**
+     * Loads one month of spending history from its segment file.
+     * A missing or unreadable segment is logged and skipped so the rest of the profile still loads.
+     */
+    private void loadHistorySegment(String yearMonth) {
+        JSONParser parser = new JSONParser();
+        
+        try (FileReader reader = new FileReader(segmentFile(yearMonth))) {
+            spendingHistory.loadMonthFromJson(yearMonth, parser.parse(reader));
+        } catch (IOException | ParseException e) {
+            System.err.println("Error loading spending history for " + yearMonth + ": " + e.getMessage());
+        }
+    }
+    
+    private static File segmentFile(String yearMonth) {
+        return new File(HISTORY_DIR, yearMonth + ".json");
+    }
+    
     /**
      * Initialize with default values if profile file is not found
      */
@@ -112,9 +183,100 @@ public class UserProfile {
     }
     
     /**
-     * Saves user profile to JSON file
+     * Schedules the profile to be saved to the JSON file by the background
+     * persister, so callers on the EDT never wait for the disk. Repeated calls
+     * before the next flush are written once.
      */
     public void saveProfile() {
+        synchronized (this) {
+            if (batchDepth > 0) {
+                // Deferred to commit()
+                batchSavePending = true;
+                return;
+            }
+        }
+        WriteBehindPersister.getInstance().markDirty(profileStore);
+    }
+    
+    /**
+     * Start a batch of changes: saves requested until the matching {@link #commit()}
+     * are collapsed into one. Batches may nest; only the outermost commit saves.
+     */
+    public synchronized void beginBatch() {
+        batchDepth++;
+    }
+    
+    /**
+     * End a batch started with {@link #beginBatch()}, scheduling one save if anything
+     * in the batch asked for it. Call from a finally block so a failed batch still ends.
+     */
+    public void commit() {
+        synchronized (this) {
+            if (batchDepth == 0) {
+                throw new IllegalStateException("commit() called without beginBatch()");
+            }
+            if (--batchDepth > 0 || !batchSavePending) {
+                return;
+            }
+            batchSavePending = false;
+        }
+        saveProfile();
+    }
+    
+    /**
+     * Saves the profile now and waits until it is on disk
+     *
+     * @return false if the write failed; it is retried on the next flush
+     */
+    public boolean flushProfile() {
+        WriteBehindPersister persister = WriteBehindPersister.getInstance();
+        return persister.awaitDurable(persister.markDirty(profileStore));
+    }
+    
+    /**
+     * Write the changed history segments, then the profile file that lists them, then
+     * delete segments of months that no longer have data. Called on the writer thread.
+     */
+    private void writeProfile() throws IOException {
+        Set<String> changedMonths;
+        Map<String, String> segments = new TreeMap<>(); // Year-Month -> JSON, null if the month was emptied
+        String profileJson;
+        synchronized (this) {
+            changedMonths = spendingHistory.drainDirtyMonths();
+            for (String yearMonth : changedMonths) {
+                JSONObject month = spendingHistory.monthToJson(yearMonth);
+                segments.put(yearMonth, month == null ? null : month.toJSONString());
+            }
+            profileJson = toJsonString();
+        }
+        
+        try {
+            for (Map.Entry<String, String> segment : segments.entrySet()) {
+                if (segment.getValue() != null) {
+                    AtomicFileWriter.writeString(segmentFile(segment.getKey()), segment.getValue());
+                }
+            }
+            AtomicFileWriter.writeString(new File(PROFILE_FILE), profileJson);
+        } catch (IOException e) {
+            // Rewrite these months on the persister's retry
+            synchronized (this) {
+                spendingHistory.markMonthsDirty(changedMonths);
+            }
+            throw e;
+        }
+        
+        for (Map.Entry<String, String> segment : segments.entrySet()) {
+            File file = segmentFile(segment.getKey());
+            if (segment.getValue() == null && file.exists() && !file.delete()) {
+                System.err.println("Could not delete spending history segment " + file);
+            }
+        }
+    }
+    
+    /**
+     * Serialize the profile; synchronized so the writer thread sees a consistent state
+     */
+    private synchronized String toJsonString() {
         JSONObject profile = new JSONObject();
         profile.put("userId", userId);
         profile.put("name", name);
@@ -133,20 +295,22 @@ public class UserProfile {
         }
         profile.put("categoryBudgets", budgetsJson);
         
-        // Save spending history
-        profile.put("spendingHistory", spendingHistory.toJson());
+        // Spending history is written as per-month segments; list the months here
+        JSONArray historyMonths = new JSONArray();
+        historyMonths.addAll(spendingHistory.getMonthKeys());
+        profile.put("historyMonths", historyMonths);
+        profile.put("historyRetentionMonths", spendingHistory.getRawRetentionMonths());
+        // Written after the segments, so a crash in between replays changes that are already applied, never skips one
+        profile.put("syncedLedgerId", syncedLedgerId);
+        profile.put("syncedSequence", syncedSequence);
         
-        try (FileWriter writer = new FileWriter(PROFILE_FILE)) {
-            writer.write(profile.toJSONString());
-        } catch (IOException e) {
-            System.err.println("Error saving user profile: " + e.getMessage());
-        }
+        return profile.toJSONString();
     }
     
     /**
      * Updates user preference for a category based on spending
      */
-    public void updateCategoryPreference(String category, BigDecimal amount) {
+    public synchronized void updateCategoryPreference(String category, BigDecimal amount) {
         double currentScore = categoryPreferences.getOrDefault(category, 0.5);
         
         // Simple adaptive algorithm: increase preference if spending in this category
@@ -159,22 +323,33 @@ public class UserProfile {
     /**
      * Set or update budget for a category
      */
-    public void setBudget(String category, BigDecimal amount) {
+    public synchronized void setBudget(String category, BigDecimal amount) {
         categoryBudgets.put(category, amount);
         saveProfile();
     }
     
+    /**
+     * Set for how many recent months individual transactions are kept in the
+     * spending history; older months keep only their category totals
+     *
+     * @param months Number of months, or {@link SpendingHistory#RETAIN_ALL}
+     */
+    public synchronized void setHistoryRetentionMonths(int months) {
+        spendingHistory.setRawRetentionMonths(months);
+        saveProfile();
+    }
+    
     /**
      * Get budget for a category
      */
-    public BigDecimal getBudget(String category) {
+    public synchronized BigDecimal getBudget(String category) {
         return categoryBudgets.getOrDefault(category, BigDecimal.ZERO);
     }
     
     /**
      * Record a new transaction to update user profile
      */
-    public void recordTransaction(String category, BigDecimal amount, LocalDate date) {
+    public synchronized void recordTransaction(String category, BigDecimal amount, LocalDate date) {
         // Update preference
         updateCategoryPreference(category, amount);
         
@@ -185,16 +360,135 @@ public class UserProfile {
         saveProfile();
     }
     
+    /**
+     * Record a transaction carrying a ledger ID, so it can later be removed or updated.
+     * Recording an ID that is already known replaces the earlier transaction.
+     */
+    public synchronized void recordTransaction(Transaction transaction) {
+        recordTransactions(Collections.singletonList(transaction));
+    }
+    
+    /**
+     * Record a batch of transactions, saving the profile only once
+     */
+    public synchronized void recordTransactions(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        
+        for (Transaction transaction : transactions) {
+            // Only new transactions count towards the preference; a known ID is an update
+            if (transaction.getId() == null || !spendingHistory.containsTransaction(transaction.getId())) {
+                updateCategoryPreference(transaction.getCategory(), transaction.getAmount());
+            }
+            spendingHistory.addTransaction(transaction);
+        }
+        
+        // Save changes once for the whole batch
+        saveProfile();
+    }
+    
+    /**
+     * Replace a recorded transaction with its edited version, matched by ID
+     *
+     * @return false if no transaction with this ID was recorded; nothing is changed then
+     */
+    public synchronized boolean updateTransaction(Transaction transaction) {
+        if (transaction.getId() == null || !spendingHistory.containsTransaction(transaction.getId())) {
+            return false;
+        }
+        spendingHistory.addTransaction(transaction);
+        saveProfile();
+        return true;
+    }
+    
+    /**
+     * Replace a recorded transaction with its edited version. The previous version is
+     * subtracted if the recorded one is past the history retention limit.
+     *
+     * @param previous The transaction as the ledger had it before the edit, or null if unknown
+     * @param transaction The edited transaction, with the same ID
+     * @return false if no transaction with this ID was recorded; nothing is changed then
+     */
+    public synchronized boolean updateTransaction(Transaction previous, Transaction transaction) {
+        if (transaction.getId() == null || !spendingHistory.containsTransaction(transaction.getId())) {
+            return false;
+        }
+        spendingHistory.replaceTransaction(previous, transaction);
+        saveProfile();
+        return true;
+    }
+    
+    /**
+     * Remove recorded transactions, matched by ID, saving the profile only once.
+     * The given category and amount are subtracted for transactions past the
+     * history retention limit.
+     *
+     * @param transactions The transactions as the ledger last had them
+     * @return Number of transactions removed; IDs that were never recorded are skipped
+     */
+    public synchronized int removeTransactions(Collection<Transaction> transactions) {
+        int removed = 0;
+        for (Transaction transaction : transactions) {
+            if (spendingHistory.removeTransaction(transaction)) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            saveProfile();
+        }
+        return removed;
+    }
+    
+    /**
+     * Replace whole months of spending history, saving the profile only once.
+     * Preferences are not touched: the transactions are not new spending.
+     *
+     * @param months Month to its transactions; an empty list removes the month
+     */
+    public synchronized void replaceMonths(Map<YearMonth, List<Transaction>> months) {
+        if (months.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<YearMonth, List<Transaction>> month : months.entrySet()) {
+            spendingHistory.replaceMonth(month.getKey(), month.getValue());
+        }
+        saveProfile();
+    }
+    
+    /**
+     * Record how far the spending history has been synced with the ledger
+     *
+     * @param ledgerId ID of the ledger the sequence belongs to
+     * @param sequence Last change sequence applied
+     */
+    public synchronized void setSyncPosition(String ledgerId, long sequence) {
+        this.syncedLedgerId = ledgerId;
+        this.syncedSequence = sequence;
+        saveProfile();
+    }
+    
+    public synchronized String getSyncedLedgerId() {
+        return syncedLedgerId;
+    }
+    
+    public synchronized long getSyncedSequence() {
+        return syncedSequence;
+    }
+    
     /**
      * 清空所有交易记录历史（重置状态）
      * 注意：这个方法将删除所有交易记录，但保留用户的偏好设置和预算
      * 
      * @return 是否成功清空
      */
-    public boolean clearTransactionHistory() {
+    public synchronized boolean clearTransactionHistory() {
         try {
-            // 创建一个新的空白交易历史
-            this.spendingHistory = new SpendingHistory();
+            // 清空交易历史，所有月份标记为已修改，保存时删除对应的分段文件
+            spendingHistory.clear();
+            // 历史已不对应账本中的任何位置，下次同步按校验和对账
+            syncedLedgerId = null;
+            syncedSequence = 0;
             
             // 保存更改
             saveProfile();
@@ -211,7 +505,7 @@ public class UserProfile {
     /**
      * Get user's top spending categories
      */
-    public List<CategorySpending> getTopSpendingCategories(int limit) {
+    public synchronized List<CategorySpending> getTopSpendingCategories(int limit) {
         YearMonth currentMonth = YearMonth.now();
         Map<String, BigDecimal> monthlySpending = spendingHistory.getMonthlyCategorySpending(currentMonth);
         
@@ -230,7 +524,7 @@ public class UserProfile {
     /**
      * Check if user has overspent in any category
      */
-    public Map<String, BigDecimal> getOverspentCategories() {
+    public synchronized Map<String, BigDecimal> getOverspentCategories() {
         YearMonth currentMonth = YearMonth.now();
         Map<String, BigDecimal> monthlySpending = spendingHistory.getMonthlyCategorySpending(currentMonth);
         Map<String, BigDecimal> overSpent = new HashMap<>();
@@ -251,16 +545,16 @@ public class UserProfile {
     // Getters and setters
     public String getUserId() { return userId; }
     public String getName() { return name; }
-    public void setName(String name) { 
+    public synchronized void setName(String name) { 
         this.name = name; 
         saveProfile();
     }
     
-    public Map<String, Double> getCategoryPreferences() { 
+    public synchronized Map<String, Double> getCategoryPreferences() { 
         return new HashMap<>(categoryPreferences); 
     }
     
-    public Map<String, BigDecimal> getCategoryBudgets() { 
+    public synchronized Map<String, BigDecimal> getCategoryBudgets() { 
         return new HashMap<>(categoryBudgets); 
     }
     
@@ -285,7 +579,7 @@ public class UserProfile {
     /**
      * Get all budget categories
      */
-    public Map<String, BigDecimal> getBudgets() {
+    public synchronized Map<String, BigDecimal> getBudgets() {
         return new HashMap<>(categoryBudgets);
     }
 
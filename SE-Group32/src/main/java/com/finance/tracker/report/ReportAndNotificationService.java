@@ -3,12 +3,15 @@ package com.finance.tracker.report;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Set;
-import java.util.stream.Collectors;
+
+import com.finance.tracker.localization.MoneyAccumulator;
 
 /**
  * 简化版报告和通知服务 - 不使用外部PDF和CSV库
@@ -38,7 +41,7 @@ public class ReportAndNotificationService {
                 writer.println(
                     transaction.getDate() + "," +
                     transaction.getCategory() + "," +
-                    transaction.getAmount() + "," +
+                    transaction.getMoney().toBigDecimal().toPlainString() + "," +
                     escapeCSV(transaction.getNote())
                 );
             }
@@ -66,37 +69,36 @@ public class ReportAndNotificationService {
      * 生成预算提醒通知 - 检查单个类别和总支出
      */
     public String generateBudgetAlertNotification(List<Transaction> transactions, double budgetLimit) {
-        // 过滤出支出类别的交易（排除收入类别）
-        List<Transaction> expenseTransactions = transactions.stream()
-            .filter(t -> !isIncomeCategory(t.getCategory()))
-            .collect(Collectors.toList());
-            
-        Map<String, Double> categorySpending = expenseTransactions.stream()
-            .collect(Collectors.groupingBy(
-                Transaction::getCategory, 
-                Collectors.summingDouble(Transaction::getAmount)
-            ));
+        // 只累计支出类别的交易（排除收入类别），金额按分精确累加
+        MoneyAccumulator totalExpenseSum = new MoneyAccumulator();
+        Map<String, MoneyAccumulator> categorySums = new LinkedHashMap<>();
+        for (Transaction t : transactions) {
+            if (!isIncomeCategory(t.getCategory())) {
+                totalExpenseSum.add(t.getMoney());
+                categorySums.computeIfAbsent(t.getCategory(), c -> new MoneyAccumulator()).add(t.getMoney());
+            }
+        }
 
         StringBuilder alerts = new StringBuilder();
         boolean hasAlert = false;
+        BigDecimal limit = BigDecimal.valueOf(budgetLimit);
 
         // 计算总支出
-        double totalExpense = expenseTransactions.stream()
-            .mapToDouble(Transaction::getAmount)
-            .sum();
+        BigDecimal totalExpense = totalExpenseSum.toBigDecimal();
             
         // 检查总支出是否超过预算
-        if (totalExpense > budgetLimit) {
+        if (totalExpense.compareTo(limit) > 0) {
             alerts.append(String.format("Warning: Total expense %.2f exceeds budget limit %.2f\n", 
                 totalExpense, budgetLimit));
             hasAlert = true;
         }
 
         // 检查每个类别支出是否超过预算
-        for (Map.Entry<String, Double> entry : categorySpending.entrySet()) {
-            if (entry.getValue() > budgetLimit) {
+        for (Map.Entry<String, MoneyAccumulator> entry : categorySums.entrySet()) {
+            BigDecimal spending = entry.getValue().toBigDecimal();
+            if (spending.compareTo(limit) > 0) {
                 alerts.append(String.format("Warning: %s category spending %.2f exceeds budget limit %.2f\n", 
-                    entry.getKey(), entry.getValue(), budgetLimit));
+                    entry.getKey(), spending, budgetLimit));
                 hasAlert = true;
             }
         }
@@ -84,7 +84,7 @@ public class ReportAndNotificationUI extends JFrame {
                     latestTransactions.add(new Transaction(
                         dateStr,
                         t.getCategory().getName(),
-                        t.getAmount().doubleValue(),
+                        t.getAmount(),
                         t.getDescription() != null ? t.getDescription() : ""
                     ));
                 }
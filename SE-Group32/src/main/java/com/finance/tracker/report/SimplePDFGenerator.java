@@ -4,6 +4,7 @@ import java.awt.*;
 import java.awt.print.*;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.List;
 import javax.swing.*;
 import java.awt.font.FontRenderContext;
@@ -14,6 +15,9 @@ import java.text.AttributedCharacterIterator;
 import java.text.AttributedString;
 import java.util.ArrayList;
 
+import com.finance.tracker.localization.Money;
+import com.finance.tracker.localization.MoneyAccumulator;
+
 /**
  * A simple PDF generator that uses Java's printing API to create PDF files
  */
@@ -113,31 +117,33 @@ public class SimplePDFGenerator {
         lines.add("----------------------------------------");
         
         // Calculate totals
-        double totalIncome = 0.0;
-        double totalExpense = 0.0;
+        MoneyAccumulator totalIncome = new MoneyAccumulator();
+        MoneyAccumulator totalExpense = new MoneyAccumulator();
         
         // Add transaction lines
         for (Transaction t : transactions) {
             String category = t.getCategory();
-            double amount = t.getAmount();
+            Money amount = t.getMoney();
             
             // Determine if income or expense (based on predefined income categories)
             boolean isIncome = ReportAndNotificationService.isIncomeCategory(category);
             if (isIncome) {
-                totalIncome += amount;
+                totalIncome.add(amount);
             } else {
-                totalExpense += amount;
+                totalExpense.add(amount);
             }
             
-            lines.add(String.format("%s\t%s\t%.2f\t%s", 
-                t.getDate(), category, amount, t.getNote()));
+            lines.add(String.format("%s\t%s\t%s\t%s", 
+                t.getDate(), category, amount.toBigDecimal().toPlainString(), t.getNote()));
         }
         
         // Add summary
         lines.add("----------------------------------------");
-        lines.add(String.format("Total Income: %.2f", totalIncome));
-        lines.add(String.format("Total Expense: %.2f", totalExpense));
-        lines.add(String.format("Balance: %.2f", totalIncome - totalExpense));
+        BigDecimal income = totalIncome.toBigDecimal();
+        BigDecimal expense = totalExpense.toBigDecimal();
+        lines.add("Total Income: " + income.toPlainString());
+        lines.add("Total Expense: " + expense.toPlainString());
+        lines.add("Balance: " + income.subtract(expense).toPlainString());
         lines.add("");
         lines.add("Report generated: " + java.time.LocalDateTime.now());
         
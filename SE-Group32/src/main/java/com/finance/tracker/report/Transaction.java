@@ -1,23 +1,32 @@
 package com.finance.tracker.report;
 
+import com.finance.tracker.localization.Money;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 
 public class Transaction {
     private final LocalDate date;
     private final String category;
-    private final double amount;
+    private final Money amount;
     private final String note;
 
     public Transaction(String dateStr, String category, double amount, String note) {
+        this(dateStr, category, BigDecimal.valueOf(amount), note);
+    }
+
+    public Transaction(String dateStr, String category, BigDecimal amount, String note) {
         this.date = LocalDate.parse(dateStr);
         this.category = category;
-        this.amount = amount;
+        // Reports work in whole minor units; finer source amounts are rounded once here
+        this.amount = Money.of(amount, Money.BASE_CURRENCY, RoundingMode.HALF_EVEN);
         this.note = note;
     }
 
     // Getters
     public LocalDate getDate() { return date; }
     public String getCategory() { return category; }
-    public double getAmount() { return amount; }
+    public double getAmount() { return amount.doubleValue(); }
+    public Money getMoney() { return amount; }
     public String getNote() { return note; }
-} 
\ No newline at end of file
+} 
@@ -4,13 +4,16 @@ import java.awt.BorderLayout;
 import java.io.File;
 import java.io.FileWriter;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.stream.Collectors;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
@@ -20,6 +23,9 @@ import org.json.simple.JSONObject;
 
 import com.finance.tracker.classification.model.CategoryType;
 import com.finance.tracker.classification.model.Transaction;
+import com.finance.tracker.classification.util.TransactionDataCenter;
+import com.finance.tracker.classification.util.TransactionQuery;
+import com.finance.tracker.ui.BackgroundTaskExecutor;
 
 /**
  * 统计模块启动器 - 负责启动统计功能GUI
@@ -45,7 +51,11 @@ public class StatisticsLauncher extends JPanel {
      * 初始化图表面板
      */
     private void initializeChartPanel() {
-        try {
+        JLabel loadingLabel = new JLabel("Loading statistics...", JLabel.CENTER);
+        add(loadingLabel, BorderLayout.CENTER);
+        
+        // 在后台汇总交易并写出JSON数据文件，完成后在EDT上创建图表面板
+        BackgroundTaskExecutor.getInstance().submit(this, "StatisticsLauncher.generateJSON", () -> {
             // 创建临时JSON数据文件
             File tempDir = new File("temp");
             if (!tempDir.exists()) {
@@ -54,19 +64,29 @@ public class StatisticsLauncher extends JPanel {
             
             File jsonFile = new File("temp/finance_data.json");
             generateJSONFile(jsonFile);
-            
-            // 创建内部图表面板
-            chartPanel = createChartPanel(jsonFile.getAbsolutePath());
-            add(chartPanel, BorderLayout.CENTER);
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(
-                this,
-                "Error initializing chart panel: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE
-            );
-        }
+            return jsonFile;
+        }, jsonFile -> {
+            try {
+                // 创建内部图表面板
+                chartPanel = createChartPanel(jsonFile.getAbsolutePath());
+                remove(loadingLabel);
+                add(chartPanel, BorderLayout.CENTER);
+                revalidate();
+                repaint();
+            } catch (Exception e) {
+                e.printStackTrace();
+                showInitializationError(e);
+            }
+        }, this::showInitializationError);
+    }
+    
+    private void showInitializationError(Throwable e) {
+        JOptionPane.showMessageDialog(
+            this,
+            "Error initializing chart panel: " + e.getMessage(),
+            "Error",
+            JOptionPane.ERROR_MESSAGE
+        );
     }
     
     /**
@@ -80,10 +100,13 @@ public class StatisticsLauncher extends JPanel {
         JSONObject rootObj = new JSONObject();
         rootObj.put("year", LocalDateTime.now().getYear());
         
-        // 处理交易数据，按月分组
+        // 处理交易数据，按月分组；只统计文件中声明的年份，避免不同年份的同月数据混在一起
         Map<String, JSONObject> monthData = new HashMap<>();
+        int year = LocalDateTime.now().getYear();
+        TransactionQuery yearQuery = new TransactionQuery().betweenDates(
+                LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
         
-        for (Transaction transaction : transactions) {
+        for (Transaction transaction : yearQuery.apply(transactions).collect(Collectors.toList())) {
             LocalDateTime dateTime = transaction.getDateTime();
             String month = dateTime.format(DateTimeFormatter.ofPattern("MM"));
             
@@ -193,6 +216,18 @@ public class StatisticsLauncher extends JPanel {
         }
     }
     
+    /**
+     * 按查询条件从数据中心读取交易并启动统计图表模块
+     * 
+     * @param query 查询条件
+     */
+    public static void launchStatisticsModule(TransactionQuery query) {
+        // 查询可能需要加载分区，放到后台执行
+        BackgroundTaskExecutor.getInstance().submit(null, "StatisticsLauncher.query",
+                () -> TransactionDataCenter.getInstance().query(query).collect(Collectors.toList()),
+                StatisticsLauncher::launchStatisticsModule);
+    }
+    
     /**
      * 启动统计图表模块
      * 
@@ -0,0 +1,132 @@
+package com.finance.tracker.ui;
+
+import java.awt.Component;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import javax.swing.SwingWorker;
+
+/**
+ * 界面后台任务 - 在 {@link BackgroundTaskExecutor} 的线程池中执行耗时操作，结果回到EDT
+ *
+ * 子类在 {@link #doInBackground()} 中读取账本、访问网络或构建数据，不要触碰Swing组件；
+ * 需要时调用 {@link #reportProgress(int, String)} 报告进度。结束后在EDT上依次调用
+ * {@link #succeeded}、{@link #failed} 或 {@link #cancelled} 之一，最后调用 {@link #finished()}。
+ *
+ * 所属组件关闭时任务会被取消（线程被中断），长循环中应检查 {@link #isCancelled()} 及时退出。
+ *
+ * @param <T> 结果类型
+ */
+public abstract class BackgroundTask<T> extends SwingWorker<T, String> {
+
+    private final String name;
+    private volatile BackgroundTaskExecutor executor;
+    private volatile Component owner;
+
+    /**
+     * @param name 任务名称，用于日志
+     */
+    protected BackgroundTask(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 报告进度，可在后台线程中调用；监听器在EDT上收到 {@link #progressChanged}
+     *
+     * @param percent 进度百分比（0-100）
+     * @param message 进度说明，可以为null
+     */
+    protected final void reportProgress(int percent, String message) {
+        setProgress(Math.max(0, Math.min(100, percent)));
+        if (message != null) {
+            publish(message);
+        }
+    }
+
+    /**
+     * 进度更新（EDT）；短时间内的多次更新只回调最后一次
+     *
+     * @param percent 当前进度
+     * @param message 最新的进度说明
+     */
+    protected void progressChanged(int percent, String message) {
+    }
+
+    /**
+     * 任务成功完成（EDT）
+     *
+     * @param result 后台计算的结果
+     */
+    protected void succeeded(T result) {
+    }
+
+    /**
+     * 任务抛出异常（EDT），默认打印错误
+     *
+     * @param cause 后台抛出的异常
+     */
+    protected void failed(Throwable cause) {
+        System.err.println("Background task " + name + " failed: " + cause.getMessage());
+        cause.printStackTrace();
+    }
+
+    /**
+     * 任务被取消（EDT），包括所属组件关闭和任务队列已满
+     */
+    protected void cancelled() {
+    }
+
+    /**
+     * 无论结果如何最后都会调用（EDT），用于恢复按钮等界面状态
+     */
+    protected void finished() {
+    }
+
+    @Override
+    protected final void process(List<String> messages) {
+        progressChanged(getProgress(), messages.get(messages.size() - 1));
+    }
+
+    @Override
+    protected final void done() {
+        try {
+            if (isCancelled()) {
+                cancelled();
+            } else {
+                succeeded(get());
+            }
+        } catch (CancellationException e) {
+            cancelled();
+        } catch (ExecutionException e) {
+            failed(e.getCause() != null ? e.getCause() : e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                finished();
+            } finally {
+                BackgroundTaskExecutor taskExecutor = executor;
+                if (taskExecutor != null) {
+                    taskExecutor.taskFinished(owner, this);
+                }
+            }
+        }
+    }
+
+    /**
+     * 由执行器在提交时调用
+     */
+    void attach(BackgroundTaskExecutor executor, Component owner) {
+        this.executor = executor;
+        this.owner = owner;
+    }
+
+    @Override
+    public String toString() {
+        return name + " [" + getState() + "]";
+    }
+}
@@ -0,0 +1,204 @@
+package com.finance.tracker.ui;
+
+import java.awt.Component;
+import java.awt.Window;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 界面后台任务执行器 - 所有读取账本、访问网络、构建图表数据的界面操作共用的有界线程池
+ *
+ * 每个任务登记在所属组件名下：窗口关闭（windowClosed）或面板不再可显示（所在窗口被销毁）时，
+ * 该组件名下尚未结束的任务全部取消，排队中的任务直接移出队列，运行中的任务收到中断。
+ * 队列已满时新任务被拒绝并按取消处理，不会阻塞EDT。
+ */
+public class BackgroundTaskExecutor {
+
+    private static final int DEFAULT_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int QUEUE_CAPACITY = 64;
+
+    private static BackgroundTaskExecutor instance;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<Component, Set<BackgroundTask<?>>> tasksByOwner = new IdentityHashMap<>();
+    private final Set<Component> boundOwners = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private BackgroundTaskExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "ui-background-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 获取执行器实例
+     *
+     * @return 执行器实例
+     */
+    public static synchronized BackgroundTaskExecutor getInstance() {
+        if (instance == null) {
+            instance = new BackgroundTaskExecutor();
+        }
+        return instance;
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param owner 所属组件（窗口或面板），关闭时取消任务；为null时任务不随界面取消，
+     *        保存文件等不能中途放弃的写入任务应传null
+     * @param task 任务
+     * @return 提交的任务，可用于取消
+     */
+    public <T> BackgroundTask<T> submit(Component owner, BackgroundTask<T> task) {
+        task.attach(this, owner);
+        if (owner != null) {
+            bindOwner(owner);
+            synchronized (this) {
+                tasksByOwner.computeIfAbsent(owner, o -> new LinkedHashSet<>()).add(task);
+            }
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            System.err.println("Background task queue is full, task " + task.getName() + " cancelled");
+            task.cancel(false);
+        }
+        return task;
+    }
+
+    /**
+     * 提交任务：后台执行 work，成功后在EDT上调用 onSuccess，失败时打印错误
+     */
+    public <T> BackgroundTask<T> submit(Component owner, String name, Callable<T> work, Consumer<T> onSuccess) {
+        return submit(owner, name, work, onSuccess, null);
+    }
+
+    /**
+     * 提交任务：后台执行 work，成功后在EDT上调用 onSuccess，失败时在EDT上调用 onFailure
+     */
+    public <T> BackgroundTask<T> submit(Component owner, String name, Callable<T> work,
+                                        Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        return submit(owner, new BackgroundTask<T>(name) {
+            @Override
+            protected T doInBackground() throws Exception {
+                return work.call();
+            }
+
+            @Override
+            protected void succeeded(T result) {
+                if (onSuccess != null) {
+                    onSuccess.accept(result);
+                }
+            }
+
+            @Override
+            protected void failed(Throwable cause) {
+                super.failed(cause);
+                if (onFailure != null) {
+                    onFailure.accept(cause);
+                }
+            }
+        });
+    }
+
+    /**
+     * 取消某个组件名下所有未结束的任务
+     *
+     * @param owner 所属组件
+     * @return 取消的任务数
+     */
+    public int cancelAll(Component owner) {
+        List<BackgroundTask<?>> tasks;
+        synchronized (this) {
+            Set<BackgroundTask<?>> owned = tasksByOwner.remove(owner);
+            if (owned == null) {
+                return 0;
+            }
+            tasks = new ArrayList<>(owned);
+        }
+        int cancelled = 0;
+        for (BackgroundTask<?> task : tasks) {
+            if (task.cancel(true)) {
+                cancelled++;
+            }
+            executor.remove(task);
+        }
+        return cancelled;
+    }
+
+    /**
+     * 正在执行的任务数
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * 排队等待执行的任务数
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 任务结束时由 {@link BackgroundTask} 调用（EDT）
+     */
+    synchronized void taskFinished(Component owner, BackgroundTask<?> task) {
+        if (owner == null) {
+            return;
+        }
+        Set<BackgroundTask<?>> owned = tasksByOwner.get(owner);
+        if (owned != null) {
+            owned.remove(task);
+            if (owned.isEmpty()) {
+                tasksByOwner.remove(owner);
+            }
+        }
+    }
+
+    /**
+     * 组件关闭时取消其任务：窗口监听关闭事件，其他组件监听可显示状态
+     */
+    private void bindOwner(Component owner) {
+        synchronized (boundOwners) {
+            if (!boundOwners.add(owner)) {
+                return;
+            }
+        }
+        if (owner instanceof Window) {
+            ((Window) owner).addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosed(WindowEvent e) {
+                    cancelAll(owner);
+                }
+            });
+        } else {
+            owner.addHierarchyListener(e -> {
+                if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 && !owner.isDisplayable()) {
+                    cancelAll(owner);
+                }
+            });
+        }
+    }
+}
@@ -312,70 +312,66 @@ public class RecommendationPanel extends JPanel {
         // Start spinner animation
         spinner.startAnimation();
         
-        // Generate recommendations in background thread
-        new Thread(() -> {
-            try {
-                // Simulate API request delay
-                Thread.sleep(1500);
-                
-                // Call the real recommendation engine API for recommendations
-                if (recommendationEngine != null) {
-                    try {
-                        // Generate new AI recommendations
-                        recommendationEngine.generateAIPersonalizedRecommendations();
-                        
-                        // Get generated recommendations
-                        List<Recommendation> recommendations = recommendationEngine.getActiveRecommendations();
-                        
-                        // Convert to text list
-                        List<String> recommendationMessages = new ArrayList<>();
-                        for (Recommendation rec : recommendations) {
-                            if (!rec.isDismissed()) {
-                                recommendationMessages.add(rec.getMessage());
-                            }
+        // Generate recommendations on the shared background executor; cancelled if the panel's window closes
+        BackgroundTaskExecutor.getInstance().submit(this, new BackgroundTask<List<String>>("RecommendationPanel.generate") {
+            private boolean engineFailed;
+            
+            @Override
+            protected List<String> doInBackground() {
+                // Use simulated data when engine is null
+                if (recommendationEngine == null) {
+                    engineFailed = true;
+                    return getSimulatedRecommendations();
+                }
+                try {
+                    // Generate new AI recommendations
+                    recommendationEngine.generateAIPersonalizedRecommendations();
+                    
+                    // Get generated recommendations and convert to text list
+                    List<String> recommendationMessages = new ArrayList<>();
+                    for (Recommendation rec : recommendationEngine.getActiveRecommendations()) {
+                        if (!rec.isDismissed()) {
+                            recommendationMessages.add(rec.getMessage());
                         }
-                        
-                        // Update UI in EDT thread
-                        SwingUtilities.invokeLater(() -> {
-                            displayRecommendations(recommendationMessages);
-                            generatingRecommendations = false;
-                            generateButton.setEnabled(true);
-                            statusLabel.setText("AI financial recommendations generated, " + recommendationMessages.size() + " recommendations total");
-                            
-                            // Notify main frame to update status
-                            if (parentFrame != null) {
-                                parentFrame.setCurrency(parentFrame.getCurrentCurrency());
-                            }
-                        });
-                    } catch (Exception e) {
-                        System.err.println("Error calling recommendation engine: " + e.getMessage());
-                        e.printStackTrace();
-                        
-                        // If API call fails, use simulated data
-                        SwingUtilities.invokeLater(() -> {
-                            displayRecommendations(getSimulatedRecommendations());
-                            generatingRecommendations = false;
-                            generateButton.setEnabled(true);
-                            statusLabel.setText(languageManager.getText(LanguageManager.UNABLE_CONNECT));
-                        });
                     }
-                } else {
-                    // Use simulated data when engine is null
-                    SwingUtilities.invokeLater(() -> {
-                        displayRecommendations(getSimulatedRecommendations());
-                        generatingRecommendations = false;
-                        generateButton.setEnabled(true);
-                        statusLabel.setText(languageManager.getText(LanguageManager.UNABLE_CONNECT));
-                    });
+                    return recommendationMessages;
+                } catch (Exception e) {
+                    System.err.println("Error calling recommendation engine: " + e.getMessage());
+                    e.printStackTrace();
+                    
+                    // If API call fails, use simulated data
+                    engineFailed = true;
+                    return getSimulatedRecommendations();
+                }
+            }
+            
+            @Override
+            protected void succeeded(List<String> recommendationMessages) {
+                displayRecommendations(recommendationMessages);
+                if (engineFailed) {
+                    statusLabel.setText(languageManager.getText(LanguageManager.UNABLE_CONNECT));
+                    return;
+                }
+                statusLabel.setText("AI financial recommendations generated, " + recommendationMessages.size() + " recommendations total");
+                
+                // Notify main frame to update status
+                if (parentFrame != null) {
+                    parentFrame.setCurrency(parentFrame.getCurrentCurrency());
                 }
-            } catch (InterruptedException e) {
-                SwingUtilities.invokeLater(() -> {
-                    statusLabel.setText("Error generating recommendations: " + e.getMessage());
-                    generatingRecommendations = false;
-                    generateButton.setEnabled(true);
-                });
             }
-        }).start();
+            
+            @Override
+            protected void failed(Throwable cause) {
+                super.failed(cause);
+                statusLabel.setText("Error generating recommendations: " + cause.getMessage());
+            }
+            
+            @Override
+            protected void finished() {
+                generatingRecommendations = false;
+                generateButton.setEnabled(true);
+            }
+        });
     }
     
     /**
@@ -727,46 +723,36 @@ public class RecommendationPanel extends JPanel {
                 // 更新状态
                 statusLabel.setText(languageManager.getText(LanguageManager.UPDATING));
                 
-                // 在后台线程中更新推荐
-                new Thread(() -> {
-                    try {
-                        // 触发所有类型的推荐更新，确保与节日数据等同步
-                        recommendationEngine.generateAllRecommendations();
-                        
-                        // 在EDT线程更新UI
-                        SwingUtilities.invokeLater(() -> {
-                            // 显示更新后的推荐
-                            List<Recommendation> updatedRecs = recommendationEngine.getActiveRecommendations();
-                            if (!updatedRecs.isEmpty()) {
-                                // 转换为显示格式
-                                List<String> messages = new ArrayList<>();
-                                for (Recommendation rec : updatedRecs) {
-                                    if (!rec.isDismissed()) {
-                                        messages.add(rec.getMessage());
-                                    }
-                                }
-                                displayRecommendations(messages);
-                            } else {
-                                setDefaultContent();
-                            }
-                            
-                            // 更新状态
-                            statusLabel.setText(languageManager.getText(LanguageManager.READY) + ". " + 
-                                             languageManager.getText(LanguageManager.WELCOME_CLICK));
-                                             
-                            // 更新主窗口状态
-                            if (parentFrame != null) {
-                                parentFrame.setCurrency(parentFrame.getCurrentCurrency());
-                            }
-                        });
-                    } catch (Exception e) {
-                        System.err.println("Error auto-updating recommendations: " + e.getMessage());
-                        // 在EDT线程更新UI
-                        SwingUtilities.invokeLater(() -> {
-                            statusLabel.setText(languageManager.getText(LanguageManager.ERROR_UPDATE));
-                        });
+                // 在共享后台执行器中更新推荐，面板所在窗口关闭时自动取消
+                BackgroundTaskExecutor.getInstance().submit(this, "RecommendationPanel.autoUpdate", () -> {
+                    // 触发所有类型的推荐更新，确保与节日数据等同步
+                    recommendationEngine.generateAllRecommendations();
+                    
+                    // 转换为显示格式
+                    List<String> messages = new ArrayList<>();
+                    for (Recommendation rec : recommendationEngine.getActiveRecommendations()) {
+                        if (!rec.isDismissed()) {
+                            messages.add(rec.getMessage());
+                        }
+                    }
+                    return messages;
+                }, messages -> {
+                    // 显示更新后的推荐
+                    if (!messages.isEmpty()) {
+                        displayRecommendations(messages);
+                    } else {
+                        setDefaultContent();
+                    }
+                    
+                    // 更新状态
+                    statusLabel.setText(languageManager.getText(LanguageManager.READY) + ". " + 
+                                     languageManager.getText(LanguageManager.WELCOME_CLICK));
+                                     
+                    // 更新主窗口状态
+                    if (parentFrame != null) {
+                        parentFrame.setCurrency(parentFrame.getCurrentCurrency());
                     }
-                }).start();
+                }, e -> statusLabel.setText(languageManager.getText(LanguageManager.ERROR_UPDATE)));
             }
         }
     }
@@ -45,11 +45,20 @@ public class TransactionDashboardPanel extends JPanel {
     public TransactionDashboardPanel(MainModuleUI parentFrame) {
         this.parentFrame = parentFrame;
         
-        // 初始化管理器类
-        this.categoryManager = new CategoryManager();
-        this.transactionManager = new TransactionManager(categoryManager, "data/transactions.csv");
+        // 初始化管理器类（与其他窗口共用同一账本的管理器）
+        this.transactionManager = TransactionManager.getShared("data/transactions.csv");
+        this.categoryManager = transactionManager.getCategoryManager();
         this.csvImportManager = new CSVImportManager(categoryManager, transactionManager);
         
+        // 在后台补上AI模型尚未应用的变更：启动后的第一次同步总是按月校验和对账，
+        // 上次退出前没来得及同步或保存序号的变更也会被发现
+        if (transactionManager.isSyncWithAIModel()) {
+            BackgroundTaskExecutor.getInstance().submit(null, "TransactionDashboardPanel.syncProfile", () -> {
+                transactionManager.syncChangesToAIModel();
+                return null;
+            }, null);
+        }
+        
         // 初始化界面
         initializeUI();
     }
@@ -258,54 +267,52 @@ public class TransactionDashboardPanel extends JPanel {
      * 打开图表面板
      */
     private void openChartPanel() {
-        try {
-            // 使用数据中心获取数据，而不是直接从TransactionManager获取
+        updateStatusBar("Loading statistics chart...");
+        
+        // 在后台从数据中心读取并汇总图表数据，完成后在EDT上打开统计图表窗口
+        BackgroundTaskExecutor.getInstance().submit(this, "Dashboard.openChart", () -> {
             com.financeapp.util.ChartGenerator.refreshDataFromDataCenter();
-            
-            // 直接打开统计图表窗口
+            return null;
+        }, ignored -> {
             com.financeapp.FinanceAppGUI chartUI = new com.financeapp.FinanceAppGUI();
             chartUI.setVisible(true);
             
             // 更新状态栏
             updateStatusBar("Statistics chart opened");
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(
+        }, e -> JOptionPane.showMessageDialog(
                 this,
                 "Error opening statistics chart: " + e.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE
-            );
-            e.printStackTrace();
-        }
+            ));
     }
     
     /**
      * 打开报告UI界面
      */
     private void openReportUI() {
-        try {
-            // 创建交易列表以将分类模块的交易转换为报告UI需要的格式
+        updateStatusBar("Loading report data...");
+        
+        // 在后台按时间顺序逐条读取交易并转换为报告UI需要的格式，完成后在EDT上打开报告窗口
+        BackgroundTaskExecutor.getInstance().submit(this, "Dashboard.openReport", () -> {
             List<com.finance.tracker.report.Transaction> reportTransactions = new ArrayList<>();
-            
-            // 从数据中心获取所有交易
-            List<com.finance.tracker.classification.model.Transaction> allTransactions = 
-                com.finance.tracker.classification.util.TransactionDataCenter.getInstance().getAllTransactions();
-            
-            // 转换交易格式
-            for (com.finance.tracker.classification.model.Transaction t : allTransactions) {
-                // 日期格式转换：将LocalDateTime转为yyyy-MM-dd字符串
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-                String dateStr = t.getDateTime().toLocalDate().format(formatter);
-                
-                // 创建报告UI需要的Transaction对象
-                reportTransactions.add(new com.finance.tracker.report.Transaction(
-                    dateStr,
-                    t.getCategory().getName(),
-                    t.getAmount().doubleValue(),  // BigDecimal转为double
-                    t.getDescription() != null ? t.getDescription() : ""
-                ));
-            }
-            
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+            com.finance.tracker.classification.util.TransactionDataCenter.getInstance()
+                .query(new com.finance.tracker.classification.util.TransactionQuery())
+                .forEach(t -> {
+                    // 日期格式转换：将LocalDateTime转为yyyy-MM-dd字符串
+                    String dateStr = t.getDateTime().toLocalDate().format(formatter);
+                    
+                    // 创建报告UI需要的Transaction对象
+                    reportTransactions.add(new com.finance.tracker.report.Transaction(
+                        dateStr,
+                        t.getCategory().getName(),
+                        t.getAmount(),  // 保持BigDecimal精度，由报告模块按分取整
+                        t.getDescription() != null ? t.getDescription() : ""
+                    ));
+                });
+            return reportTransactions;
+        }, reportTransactions -> {
             // 创建并显示报告窗口
             com.finance.tracker.report.ReportAndNotificationUI reportUI = 
                 new com.finance.tracker.report.ReportAndNotificationUI(reportTransactions);
@@ -313,15 +320,12 @@ public class TransactionDashboardPanel extends JPanel {
             
             // 更新状态栏
             updateStatusBar("Report UI opened");
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(
+        }, e -> JOptionPane.showMessageDialog(
                 this,
                 "Error opening report UI: " + e.getMessage(),
                 "Error",
                 JOptionPane.ERROR_MESSAGE
-            );
-            e.printStackTrace();
-        }
+            ));
     }
     
     /**
@@ -124,10 +124,8 @@ public class TransactionPanel extends JPanel {
             return;
         }
         
-        // 清空表格
-        while (tableModel.getRowCount() > 0) {
-            tableModel.removeRow(0);
-        }
+        // 清空表格（一次清空，逐行 removeRow(0) 每次都要移动剩余的所有行）
+        tableModel.setRowCount(0);
         
         // 使用当前货币符号和汇率重新添加行
         String currencySymbol = getCurrencySymbol();
@@ -303,35 +301,9 @@ public class TransactionPanel extends JPanel {
             tableModel.addRow(row);
             
             // 把交易记录保存到用户配置文件，确保AI能够获取到最新数据
-            try {
-                // 将日期转换为Java 8 LocalDate格式
-                java.time.LocalDate localDate = java.time.LocalDate.parse(dateStr);
-                
-                // 获取UserProfile实例并记录交易
-                com.finance.tracker.profile.UserProfile userProfile = com.finance.tracker.profile.UserProfile.getInstance();
-                userProfile.recordTransaction(category, new java.math.BigDecimal(yuanAmount), localDate);
-                
-                // 强制保存配置文件以确保数据持久化
-                userProfile.saveProfile();
-                
-                System.out.println("DEBUG: 交易已保存到用户配置文件: " + category + ", " + yuanAmount + ", " + localDate);
-                
-                // 如果RecommendationPanel可见，则刷新推荐
-                if (parentFrame.getMainContentPanel().isVisible()) {
-                    try {
-                        // 尝试获取并刷新推荐引擎
-                        com.finance.tracker.ai.RecommendationEngine recommendationEngine = 
-                            com.finance.tracker.ai.RecommendationEngine.getInstance();
-                        recommendationEngine.generateAllRecommendations();
-                        System.out.println("DEBUG: 已通知推荐引擎更新数据");
-                    } catch (Exception ex) {
-                        System.err.println("DEBUG: 无法刷新推荐引擎: " + ex.getMessage());
-                    }
-                }
-            } catch (Exception ex) {
-                System.err.println("DEBUG: 保存交易到用户配置失败: " + ex.getMessage());
-                ex.printStackTrace();
-            }
+            // 在后台写入用户配置文件并刷新推荐，文件写入和推荐计算不阻塞界面
+            syncProfileInBackground(category, new java.math.BigDecimal(yuanAmount), java.time.LocalDate.parse(dateStr),
+                    "DEBUG: 交易已保存到用户配置文件", "DEBUG: 保存交易到用户配置失败");
             
             // Clear input fields
             amountField.setText("");
@@ -368,46 +340,11 @@ public class TransactionPanel extends JPanel {
             tableModel.removeRow(selectedRow);
             
             // 尝试更新用户配置文件 - 注意：UserProfile可能不支持删除单个交易，但我们可以强制保存
-            try {
-                // 获取UserProfile实例并强制保存配置
-                com.finance.tracker.profile.UserProfile userProfile = com.finance.tracker.profile.UserProfile.getInstance();
-                
-                // 记录一个负值交易来抵消被删除的交易（一种变通方法）
-                // 将日期转换为Java 8 LocalDate格式
-                java.time.LocalDate localDate = java.time.LocalDate.parse(deletedTransaction.getDate());
-                
-                // 创建一个负值金额来抵消删除的交易
-                java.math.BigDecimal negativeAmount = new java.math.BigDecimal(-deletedTransaction.getYuanAmount());
-                
-                // 记录一个负值交易
-                userProfile.recordTransaction(
-                    deletedTransaction.getCategory(), 
-                    negativeAmount, 
-                    localDate
-                );
-                
-                // 强制保存配置文件以确保数据持久化
-                userProfile.saveProfile();
-                
-                System.out.println("DEBUG: 已从用户配置文件中抵消删除的交易: " + deletedTransaction.getCategory() + 
-                                 ", " + (-deletedTransaction.getYuanAmount()) + ", " + localDate);
-                
-                // 如果RecommendationPanel可见，则刷新推荐
-                if (parentFrame.getMainContentPanel().isVisible()) {
-                    try {
-                        // 尝试获取并刷新推荐引擎
-                        com.finance.tracker.ai.RecommendationEngine recommendationEngine = 
-                            com.finance.tracker.ai.RecommendationEngine.getInstance();
-                        recommendationEngine.generateAllRecommendations();
-                        System.out.println("DEBUG: 已通知推荐引擎更新数据");
-                    } catch (Exception ex) {
-                        System.err.println("DEBUG: 无法刷新推荐引擎: " + ex.getMessage());
-                    }
-                }
-            } catch (Exception ex) {
-                System.err.println("DEBUG: 从用户配置删除交易失败: " + ex.getMessage());
-                ex.printStackTrace();
-            }
+            // 记录一个负值交易来抵消被删除的交易（一种变通方法），在后台写入并刷新推荐
+            syncProfileInBackground(deletedTransaction.getCategory(),
+                    new java.math.BigDecimal(-deletedTransaction.getYuanAmount()),
+                    java.time.LocalDate.parse(deletedTransaction.getDate()),
+                    "DEBUG: 已从用户配置文件中抵消删除的交易", "DEBUG: 从用户配置删除交易失败");
             
             // Update statistics
             updateStats();
@@ -424,6 +361,40 @@ public class TransactionPanel extends JPanel {
         }
     }
     
+    /**
+     * 在后台把交易记录到用户配置文件并强制保存，推荐面板可见时顺便刷新推荐
+     * 
+     * 写入任务不绑定到面板，面板关闭也会执行完，避免丢失配置数据
+     */
+    private void syncProfileInBackground(String category, java.math.BigDecimal yuanAmount,
+                                         java.time.LocalDate localDate, String successLog, String failureLog) {
+        boolean refreshRecommendations = parentFrame.getMainContentPanel().isVisible();
+        BackgroundTaskExecutor.getInstance().submit(null, "TransactionPanel.syncProfile", () -> {
+            // 获取UserProfile实例并记录交易
+            com.finance.tracker.profile.UserProfile userProfile = com.finance.tracker.profile.UserProfile.getInstance();
+            userProfile.recordTransaction(category, yuanAmount, localDate);
+            
+            // 强制保存配置文件以确保数据持久化
+            userProfile.saveProfile();
+            
+            System.out.println(successLog + ": " + category + ", " + yuanAmount + ", " + localDate);
+            
+            // 如果RecommendationPanel可见，则刷新推荐
+            if (refreshRecommendations) {
+                try {
+                    // 尝试获取并刷新推荐引擎
+                    com.finance.tracker.ai.RecommendationEngine recommendationEngine = 
+                        com.finance.tracker.ai.RecommendationEngine.getInstance();
+                    recommendationEngine.generateAllRecommendations();
+                    System.out.println("DEBUG: 已通知推荐引擎更新数据");
+                } catch (Exception ex) {
+                    System.err.println("DEBUG: 无法刷新推荐引擎: " + ex.getMessage());
+                }
+            }
+            return null;
+        }, null, ex -> System.err.println(failureLog + ": " + ex.getMessage()));
+    }
+    
     /**
      * Generate report
      */
@@ -8,6 +8,7 @@ import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -68,8 +69,10 @@ public class FinanceAppGUI extends JFrame implements ActionListener {
                     "No transaction data available, please add transactions first", 
                     "Notice", JOptionPane.INFORMATION_MESSAGE);
                 
-                // Add some default months
-                availableMonths = Arrays.asList("01", "02", "03");
+                // Add some default months (the last three, in the same "yyyy-MM" form as real data)
+                YearMonth now = YearMonth.now();
+                availableMonths = Arrays.asList(
+                    now.minusMonths(2).toString(), now.minusMonths(1).toString(), now.toString());
             }
             
             // Create main interface
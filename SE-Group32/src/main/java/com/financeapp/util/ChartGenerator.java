@@ -8,12 +8,12 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,11 +48,11 @@ import com.financeapp.model.FinanceData;
 import com.financeapp.model.FinanceData.MonthData;
 
 public class ChartGenerator {
-    // Store transaction data
-    private static List<Transaction> transactionData = new ArrayList<>();
+    // Monthly totals by (month, category, type); follows the data center once attached
+    private static final MonthlyAggregateCube cube = new MonthlyAggregateCube();
     
-    // Cache month data
-    private static Map<String, MonthData> monthDataCache = new HashMap<>();
+    // True when the cube holds data injected through setTransactionData instead of the data center
+    private static volatile boolean explicitData = false;
     
     // Chart colors
     private static final Color[] CHART_COLORS = {
@@ -75,19 +75,22 @@ public class ChartGenerator {
      * @param transactions Transaction data list
      */
     public static void setTransactionData(List<Transaction> transactions) {
-        transactionData = new ArrayList<>(transactions);
-        processTransactionData();
+        // Injected data replaces the data center as the source until refreshDataFromDataCenter is called
+        explicitData = true;
+        cube.detach();
+        cube.rebuild(transactions);
     }
     
     /**
-     * Get the latest data from TransactionDataCenter
-     * This method should be called before generating charts to ensure they use the latest data
+     * Use the data from TransactionDataCenter
+     * The first call loads the data once; after that the charts follow the data center's
+     * change events, so calling this again costs nothing
      */
     public static void refreshDataFromDataCenter() {
         TransactionDataCenter dataCenter = TransactionDataCenter.getInstance();
         if (dataCenter != null) {
-            transactionData = new ArrayList<>(dataCenter.getAllTransactions());
-            processTransactionData();
+            explicitData = false;
+            cube.attach(dataCenter);
         }
     }
     
@@ -101,13 +104,11 @@ public class ChartGenerator {
     }
     
     /**
-     * Process transaction data, converting Transaction objects to the format required by FinanceData
+     * Make sure the cube has data, loading from the data center on first use
      */
-    private static void processTransactionData() {
-        monthDataCache.clear();
-        
-        if (!transactionData.isEmpty()) {
-            monthDataCache = convertTransactionsToMonthData();
+    private static void ensureLoaded() {
+        if (!explicitData && !cube.isAttached()) {
+            refreshDataFromDataCenter();
         }
     }
     
@@ -531,81 +532,48 @@ public class ChartGenerator {
     }
     
     /**
-     * Convert transaction data to MonthData objects
+     * Build the MonthData of one month from the cube
      * 
-     * @return Map of month string to MonthData object
+     * @param month Month
+     * @return MonthData, or null if the month has no transactions
      */
-    private static Map<String, MonthData> convertTransactionsToMonthData() {
-        Map<String, List<com.financeapp.model.FinanceData.Expense>> expensesByMonth = new HashMap<>();
-        Map<String, Double> incomeByMonth = new HashMap<>();
-        Map<String, Double> totalExpensesByMonth = new HashMap<>();
-        
-        for (Transaction transaction : transactionData) {
-            // Get month
-            String month = String.format("%02d", transaction.getDateTime().getMonthValue());
-            
-            if (transaction.getCategory().getType() == CategoryType.EXPENSE) {
-                // Expense
-                if (!expensesByMonth.containsKey(month)) {
-                    expensesByMonth.put(month, new ArrayList<>());
-                    totalExpensesByMonth.put(month, 0.0);
-                }
-                
-                // Convert Transaction to Expense
-                expensesByMonth.get(month).add(new com.financeapp.model.FinanceData.Expense(
-                    transaction.getCategory().getName(),
-                    transaction.getAmount().doubleValue()
-                ));
-                
-                // Update total expenses
-                totalExpensesByMonth.put(month, 
-                    totalExpensesByMonth.get(month) + transaction.getAmount().doubleValue());
-            } else {
-                // Income
-                if (!incomeByMonth.containsKey(month)) {
-                    incomeByMonth.put(month, 0.0);
-                }
-                
-                // Update total income
-                incomeByMonth.put(month, 
-                    incomeByMonth.getOrDefault(month, 0.0) + transaction.getAmount().doubleValue());
-            }
+    private static MonthData toMonthData(YearMonth month) {
+        // One read, so a change applied in the background cannot land between the totals
+        MonthlyAggregateCube.MonthTotals totals = cube.getMonthTotals(month);
+        if (totals == null) {
+            return null;
         }
+        BigDecimal income = totals.getTotal(CategoryType.INCOME);
+        BigDecimal totalExpenses = totals.getTotal(CategoryType.EXPENSE);
         
-        // Create MonthData objects
-        Map<String, MonthData> result = new HashMap<>();
-        
-        for (String month : expensesByMonth.keySet()) {
-            double income = incomeByMonth.getOrDefault(month, 0.0);
-            List<com.financeapp.model.FinanceData.Expense> expenses = expensesByMonth.get(month);
-            double totalExpenses = totalExpensesByMonth.get(month);
-            double balance = income - totalExpenses;
-            
-            result.put(month, new MonthData(month, income, expenses, totalExpenses, balance));
+        // One Expense per category name, so getExpensesByCategory() sees the category total
+        Map<String, BigDecimal> byName = new LinkedHashMap<>();
+        for (Map.Entry<Integer, BigDecimal> entry : totals.getCategoryTotals(CategoryType.EXPENSE).entrySet()) {
+            byName.merge(totals.getCategoryName(entry.getKey()), entry.getValue(), BigDecimal::add);
         }
-        
-        // Ensure each month with income has data
-        for (String month : incomeByMonth.keySet()) {
-            if (!result.containsKey(month)) {
-                double income = incomeByMonth.get(month);
-                result.put(month, new MonthData(month, income, new ArrayList<>(), 0.0, income));
-            }
+        List<com.financeapp.model.FinanceData.Expense> expenses = new ArrayList<>(byName.size());
+        for (Map.Entry<String, BigDecimal> entry : byName.entrySet()) {
+            expenses.add(new com.financeapp.model.FinanceData.Expense(entry.getKey(), entry.getValue().doubleValue()));
         }
         
-        return result;
+        BigDecimal balance = income.subtract(totalExpenses);
+        return new MonthData(month.toString(), income.doubleValue(), expenses,
+            totalExpenses.doubleValue(), balance.doubleValue());
     }
     
     /**
      * Get MonthData for a specific month
      * 
-     * @param month Month string (e.g., "01" for January)
+     * @param month Month string (e.g., "2025-01" for January 2025)
      * @return MonthData for the specified month or null if no data available
      */
     public static MonthData getMonthData(String month) {
-        if (monthDataCache.isEmpty()) {
-            processTransactionData();
+        ensureLoaded();
+        try {
+            return toMonthData(YearMonth.parse(month));
+        } catch (DateTimeParseException e) {
+            return null;
         }
-        return monthDataCache.get(month);
     }
     
     /**
@@ -615,13 +583,9 @@ public class ChartGenerator {
      * @return List of MonthData objects
      */
     public static List<MonthData> getMonthsData(List<String> months) {
-        if (monthDataCache.isEmpty()) {
-            processTransactionData();
-        }
-        
         List<MonthData> result = new ArrayList<>();
         for (String month : months) {
-            MonthData data = monthDataCache.get(month);
+            MonthData data = getMonthData(month);
             if (data != null) {
                 result.add(data);
             }
@@ -632,15 +596,15 @@ public class ChartGenerator {
     /**
      * Get all available months from transaction data
      * 
-     * @return List of available month strings
+     * @return List of available month strings ("yyyy-MM"), oldest first
      */
     public static List<String> getAvailableMonths() {
-        if (monthDataCache.isEmpty()) {
-            processTransactionData();
-        }
+        ensureLoaded();
         
-        List<String> months = new ArrayList<>(monthDataCache.keySet());
-        Collections.sort(months);
+        List<String> months = new ArrayList<>();
+        for (YearMonth month : cube.getMonths()) {
+            months.add(month.toString());
+        }
         return months;
     }
     
@@ -0,0 +1,310 @@
+package com.financeapp.util;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.finance.tracker.classification.model.CategoryType;
+import com.finance.tracker.classification.model.Transaction;
+import com.finance.tracker.classification.util.TransactionDataCenter;
+import com.finance.tracker.classification.util.TransactionDelta;
+import com.finance.tracker.classification.util.TransactionEventBus;
+import com.finance.tracker.localization.MoneyAccumulator;
+
+/**
+ * Monthly totals keyed by (YearMonth, category id, type), kept up to date from
+ * data-center change events.
+ *
+ * Each transaction's contribution (month, category, type, amount) is remembered by id,
+ * so an update or removal takes back exactly what was added even if the transaction
+ * object has been edited in the meantime. Applying a change therefore costs
+ * O(changed transactions), and chart queries read a handful of cells instead of
+ * scanning the ledger. Only a refresh event (reload, storage switch, ...) rebuilds the
+ * cube from scratch.
+ *
+ * Adds for an id that is already counted are treated as updates and removals of
+ * unknown ids are ignored, so events that overlap a rebuild are harmless.
+ *
+ * Thread-safe: events arrive on a background thread, queries usually come from the EDT.
+ */
+public class MonthlyAggregateCube {
+
+    /**
+     * What a single transaction added to the cube
+     */
+    private static final class Contribution {
+        private final YearMonth month;
+        private final int categoryId;
+        private final CategoryType type;
+        private final BigDecimal amount;
+
+        Contribution(Transaction transaction) {
+            this.month = YearMonth.from(transaction.getDateTime());
+            this.categoryId = transaction.getCategory().getId();
+            this.type = transaction.getCategory().getType();
+            this.amount = transaction.getAmount();
+        }
+    }
+
+    /**
+     * Total of one (month, category, type) cell
+     */
+    private static final class Cell {
+        private final MoneyAccumulator total = new MoneyAccumulator();
+        private int transactionCount;
+    }
+
+    /**
+     * All cells of one month
+     */
+    private static final class MonthCells {
+        private final Map<CategoryType, Map<Integer, Cell>> byCategory = new EnumMap<>(CategoryType.class);
+        private final Map<CategoryType, MoneyAccumulator> byType = new EnumMap<>(CategoryType.class);
+        private int transactionCount;
+
+        MonthCells() {
+            for (CategoryType type : CategoryType.values()) {
+                byCategory.put(type, new HashMap<>());
+                byType.put(type, new MoneyAccumulator());
+            }
+        }
+    }
+
+    /**
+     * Totals and category cells of one month, read in a single step
+     */
+    public static final class MonthTotals {
+        private final YearMonth month;
+        private final Map<CategoryType, BigDecimal> totals = new EnumMap<>(CategoryType.class);
+        private final Map<CategoryType, Map<Integer, BigDecimal>> categoryTotals = new EnumMap<>(CategoryType.class);
+        private final Map<Integer, String> categoryNames = new HashMap<>();
+
+        private MonthTotals(YearMonth month) {
+            this.month = month;
+        }
+
+        public YearMonth getMonth() {
+            return month;
+        }
+
+        /**
+         * Total of one type
+         */
+        public BigDecimal getTotal(CategoryType type) {
+            return totals.get(type);
+        }
+
+        /**
+         * Per-category totals of one type
+         *
+         * @return Category id to total, in id order
+         */
+        public Map<Integer, BigDecimal> getCategoryTotals(CategoryType type) {
+            return Collections.unmodifiableMap(categoryTotals.get(type));
+        }
+
+        /**
+         * Name of a category in this month, as known when the totals were read
+         */
+        public String getCategoryName(int categoryId) {
+            String name = categoryNames.get(categoryId);
+            return name != null ? name : "Category " + categoryId;
+        }
+    }
+
+    private final TreeMap<YearMonth, MonthCells> months = new TreeMap<>();
+    private final Map<String, Contribution> contributions = new HashMap<>();
+    private final Map<Integer, String> categoryNames = new HashMap<>();
+    private final TransactionEventBus.DeltaListener listener = this::apply;
+    private TransactionDataCenter attachedTo;
+    private long version;
+
+    /**
+     * Follow a data center: subscribe to its change events and load its current data.
+     * Does nothing if the cube is already attached to it.
+     *
+     * @param dataCenter Data center to follow
+     */
+    public synchronized void attach(TransactionDataCenter dataCenter) {
+        if (attachedTo == dataCenter) {
+            return;
+        }
+        detach();
+        attachedTo = dataCenter;
+        // Subscribe before reading so no change falls between the read and the subscription;
+        // events that arrive meanwhile wait for the lock and are applied on top of the rebuild
+        dataCenter.getEventBus().subscribe("MonthlyAggregateCube", listener, TransactionEventBus.Delivery.BACKGROUND);
+        rebuild(dataCenter.getAllTransactions());
+    }
+
+    /**
+     * Stop following the data center; the current totals are kept
+     */
+    public synchronized void detach() {
+        if (attachedTo != null) {
+            attachedTo.getEventBus().unsubscribe(listener);
+            attachedTo = null;
+        }
+    }
+
+    public synchronized boolean isAttached() {
+        return attachedTo != null;
+    }
+
+    /**
+     * Replace all totals with those of the given transactions
+     *
+     * @param transactions Transactions to aggregate
+     */
+    public synchronized void rebuild(Collection<Transaction> transactions) {
+        months.clear();
+        contributions.clear();
+        for (Transaction transaction : transactions) {
+            add(transaction);
+        }
+        version++;
+    }
+
+    /**
+     * Apply a batch of changes from the event bus
+     *
+     * @param delta Coalesced changes
+     */
+    public void apply(TransactionDelta delta) {
+        TransactionDataCenter source;
+        synchronized (this) {
+            source = attachedTo;
+            if (!delta.isRefresh()) {
+                for (Transaction transaction : delta.getRemoved()) {
+                    remove(transaction.getId());
+                }
+                for (Transaction transaction : delta.getAdded()) {
+                    add(transaction);
+                }
+                for (Transaction transaction : delta.getUpdated()) {
+                    add(transaction);
+                }
+                version++;
+                return;
+            }
+        }
+        if (source != null) {
+            rebuild(source.getAllTransactions());
+        }
+    }
+
+    /**
+     * Months that have at least one transaction, oldest first
+     */
+    public synchronized List<YearMonth> getMonths() {
+        return new ArrayList<>(months.keySet());
+    }
+
+    public synchronized boolean isEmpty() {
+        return months.isEmpty();
+    }
+
+    /**
+     * Total of one type in one month
+     */
+    public synchronized BigDecimal getTotal(YearMonth month, CategoryType type) {
+        MonthCells cells = months.get(month);
+        return cells == null ? BigDecimal.ZERO : cells.byType.get(type).toBigDecimal();
+    }
+
+    /**
+     * Per-category totals of one type in one month
+     *
+     * @return Category id to total, empty when the month has no data
+     */
+    public synchronized Map<Integer, BigDecimal> getCategoryTotals(YearMonth month, CategoryType type) {
+        MonthCells cells = months.get(month);
+        if (cells == null) {
+            return Collections.emptyMap();
+        }
+        Map<Integer, BigDecimal> totals = new TreeMap<>();
+        for (Map.Entry<Integer, Cell> cell : cells.byCategory.get(type).entrySet()) {
+            totals.put(cell.getKey(), cell.getValue().total.toBigDecimal());
+        }
+        return totals;
+    }
+
+    /**
+     * Totals, category cells and category names of one month, consistent with each other
+     *
+     * @return The month's totals, or null when the month has no data
+     */
+    public synchronized MonthTotals getMonthTotals(YearMonth month) {
+        MonthCells cells = months.get(month);
+        if (cells == null) {
+            return null;
+        }
+        MonthTotals snapshot = new MonthTotals(month);
+        for (CategoryType type : CategoryType.values()) {
+            snapshot.totals.put(type, cells.byType.get(type).toBigDecimal());
+            Map<Integer, BigDecimal> totals = new TreeMap<>();
+            for (Map.Entry<Integer, Cell> cell : cells.byCategory.get(type).entrySet()) {
+                totals.put(cell.getKey(), cell.getValue().total.toBigDecimal());
+                snapshot.categoryNames.put(cell.getKey(), getCategoryName(cell.getKey()));
+            }
+            snapshot.categoryTotals.put(type, totals);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Last known name of a category
+     */
+    public synchronized String getCategoryName(int categoryId) {
+        String name = categoryNames.get(categoryId);
+        return name != null ? name : "Category " + categoryId;
+    }
+
+    /**
+     * Incremented on every change, for callers that cache derived data
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    private void add(Transaction transaction) {
+        remove(transaction.getId());
+        Contribution contribution = new Contribution(transaction);
+        contributions.put(transaction.getId(), contribution);
+        categoryNames.put(contribution.categoryId, transaction.getCategory().getName());
+
+        MonthCells cells = months.computeIfAbsent(contribution.month, m -> new MonthCells());
+        cells.transactionCount++;
+        cells.byType.get(contribution.type).add(contribution.amount);
+        Cell cell = cells.byCategory.get(contribution.type).computeIfAbsent(contribution.categoryId, id -> new Cell());
+        cell.transactionCount++;
+        cell.total.add(contribution.amount);
+    }
+
+    private void remove(String id) {
+        Contribution contribution = contributions.remove(id);
+        if (contribution == null) {
+            return;
+        }
+        MonthCells cells = months.get(contribution.month);
+        if (--cells.transactionCount == 0) {
+            months.remove(contribution.month);
+            return;
+        }
+        cells.byType.get(contribution.type).subtract(contribution.amount);
+        Map<Integer, Cell> categories = cells.byCategory.get(contribution.type);
+        Cell cell = categories.get(contribution.categoryId);
+        if (--cell.transactionCount == 0) {
+            categories.remove(contribution.categoryId);
+        } else {
+            cell.total.subtract(contribution.amount);
+        }
+    }
+}